@@ -446,9 +446,9 @@ CREATE TABLE IF NOT EXISTS `spectrum` (
   `precursor_mz` decimal(20,4) NOT NULL,
   `precursor_int` decimal(20,4) NOT NULL,
   `precursor_charge` int(3) NOT NULL,
-  `mzarray` text NOT NULL,
-  `intarray` text NOT NULL,
-  `chargearray` text NOT NULL,
+  `mzarray` mediumblob NOT NULL,
+  `intarray` mediumblob NOT NULL,
+  `chargearray` mediumblob NOT NULL,
   `total_int` decimal(20,4) NOT NULL,
   `maximum_int` decimal(12,4) NOT NULL,
   `creationdate` datetime NOT NULL,
@@ -0,0 +1,16 @@
+-- Migration of the `spectrum` table from Base64-encoded text columns to
+-- binary peak arrays.
+--
+-- Step 1: convert the column types. Existing rows keep their Base64 contents
+-- as raw bytes and remain readable, since the client recognizes legacy
+-- contents and decodes them transparently.
+--
+-- Step 2 (optional): re-encode existing rows into the binary format to reclaim
+-- storage by calling DBManager.migratePeakArrays() (which delegates to
+-- Spectrum.migratePeakArrays()). The conversion runs in committed batches and
+-- may be interrupted and resumed at any time.
+
+ALTER TABLE `spectrum`
+  MODIFY `mzarray` mediumblob NOT NULL,
+  MODIFY `intarray` mediumblob NOT NULL,
+  MODIFY `chargearray` mediumblob NOT NULL;
@@ -1,7 +1,5 @@
 package de.mpa.algorithms;
 
-import java.util.HashMap;
-
 import de.mpa.io.MascotGenericFile;
 
 /**
@@ -83,7 +81,7 @@ public class SpectrumFeatures {
 	 */
 	private void init(){
 		// Standard
-		this.numPeaks = mgf.getPeaks().size();
+		this.numPeaks = mgf.getPeakCount();
 		this.totalInt = mgf.getTotalIntensity();
 		this.highestInt = mgf.getHighestIntensity();		
 		this.meanInt = totalInt / numPeaks; 
@@ -104,7 +102,7 @@ public class SpectrumFeatures {
 	 */
 	private double calcPeakIntensityDeviation(){		
 		double sum = 0.0;		
-		for(double intensity : mgf.getPeaks().values()){
+		for(double intensity : mgf.getIntensityArray()){
 			sum += Math.pow(intensity - this.meanInt, 2);
 		}
 		return Math.sqrt(sum / this.numPeaks);		
@@ -122,13 +120,15 @@ public class SpectrumFeatures {
 		double y1_lys = Masses.C_term + Masses.aaMap.get('K');
 		double y1_arg = Masses.C_term + Masses.aaMap.get('R');	
 		
-		HashMap<Double, Double> peaks = mgf.getPeaks();
-		for (double mz : peaks.keySet()) {
+		double[] mzs = mgf.getMzArray();
+		double[] intensities = mgf.getIntensityArray();
+		for (int i = 0; i < mzs.length; i++) {
+			double mz = mzs[i];
 			// Check whether both ions match within a certain fragment ion tolerance window.
 			if(Math.abs(mz - y1_lys) <= fragTol) {
-				y1_lysInt = peaks.get(mz);
+				y1_lysInt = intensities[i];
 			} else if (Math.abs(mz - y1_arg) <= fragTol) {
-				y1_argInt = peaks.get(mz);
+				y1_argInt = intensities[i];
 			}
 		}
 		return (y1_lysInt > y1_argInt) ? y1_lysInt : y1_argInt;
@@ -0,0 +1,226 @@
+package de.mpa.algorithms.similarity;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Base class of spectrum comparators operating on sparse spectrum vectors,
+ * providing the adapter for peak map inputs.<br>
+ * Peak maps are vectorized using {@link BinningVectorization} methods where
+ * possible. Other vectorization methods (e.g. peak matching) align target
+ * peak positions to source peak positions, in which case each source position
+ * is assigned an index of its own and unmatched target peaks are assigned
+ * indices past the source range.<br>
+ * Dot products against the prepared source vector are calculated on a dense
+ * copy of the source vector if its bin range is narrow enough, e.g. for
+ * cross-correlation or wide bins, and by merging sparse vectors otherwise.
+ *
+ * @author A. Behne
+ */
+public abstract class AbstractSpectrumComparator implements SpectrumComparator {
+
+	/**
+	 * The distance between the indices of consecutive source peaks when
+	 * adapting non-binning vectorization methods. Leaves room for index
+	 * offsets applied during preparation.
+	 */
+	private static final int STRIDE = 1 << 10;
+
+	/**
+	 * The input vectorization method.
+	 */
+	protected Vectorization vect;
+
+	/**
+	 * The input transformation method.
+	 */
+	protected Transformation trafo;
+
+	/**
+	 * The prepared source spectrum vector.
+	 */
+	protected SpectrumVector vectorSrc = new SpectrumVector();
+
+	/**
+	 * The similarity score between source spectrum and target spectrum.
+	 */
+	protected double similarity;
+
+	/**
+	 * Reusable vector for adapted peak map inputs.
+	 */
+	private SpectrumVector scratch = new SpectrumVector();
+
+	/**
+	 * The sorted source peak positions when adapting non-binning
+	 * vectorization methods.
+	 */
+	private double[] keysSrc;
+
+	/**
+	 * The dense copy of the prepared source vector.
+	 */
+	protected DenseSpectrumVector denseSrc = new DenseSpectrumVector();
+
+	/**
+	 * Flag denoting whether the dense copy of the source vector is in use.
+	 */
+	protected boolean dense;
+
+	/**
+	 * The number of bins up to which the source vector is copied into a dense
+	 * vector regardless of occupancy.
+	 */
+	protected int maxDenseBins = DenseSpectrumVector.DEFAULT_MAX_BINS;
+
+	/**
+	 * Class constructor specifying vectorization and data transformation methods.
+	 * @param vect
+	 * @param trafo
+	 */
+	public AbstractSpectrumComparator(Vectorization vect, Transformation trafo) {
+		this.vect = vect;
+		this.trafo = trafo;
+	}
+
+	@Override
+	public void prepare(Map<Double, Double> inputPeaksSrc) {
+		if (vect instanceof BinningVectorization) {
+			this.vectorize(inputPeaksSrc);
+		} else {
+			Map<Double, Double> peaksSrc = vect.vectorize(inputPeaksSrc, trafo);
+			keysSrc = new double[peaksSrc.size()];
+			scratch.clear();
+			int i = 0;
+			for (Entry<Double, Double> peakSrc : new TreeMap<Double, Double>(peaksSrc).entrySet()) {
+				keysSrc[i] = peakSrc.getKey();
+				scratch.add(i * STRIDE, peakSrc.getValue());
+				i++;
+			}
+		}
+		this.prepare(scratch);
+	}
+
+	@Override
+	public void compareTo(Map<Double, Double> inputPeaksTrg) {
+		if (vect instanceof BinningVectorization) {
+			this.vectorize(inputPeaksTrg);
+		} else {
+			Map<Double, Double> peaksTrg = new TreeMap<Double, Double>(vect.vectorize(inputPeaksTrg, trafo));
+			scratch.clear();
+			// matched peaks first, in ascending source order
+			for (Entry<Double, Double> peakTrg : peaksTrg.entrySet()) {
+				int pos = Arrays.binarySearch(keysSrc, peakTrg.getKey());
+				if (pos >= 0) {
+					scratch.add(pos * STRIDE, peakTrg.getValue());
+				}
+			}
+			// unmatched peaks behind the source range
+			int index = (keysSrc.length + 1) * STRIDE;
+			for (Entry<Double, Double> peakTrg : peaksTrg.entrySet()) {
+				if (Arrays.binarySearch(keysSrc, peakTrg.getKey()) < 0) {
+					scratch.add(index++, peakTrg.getValue());
+				}
+			}
+		}
+		this.compareTo(scratch);
+	}
+
+	/**
+	 * Sets the bin range of source vectors up to which dot products are
+	 * calculated on a dense copy regardless of occupancy. Wider ranges are
+	 * only copied if they are occupied densely enough.
+	 * @param maxDenseBins the number of bins, <code>0</code> always merges
+	 *  sparse vectors
+	 * @see DenseSpectrumVector#isSuitable(long, long, int)
+	 */
+	public void setMaxDenseBins(int maxDenseBins) {
+		this.maxDenseBins = maxDenseBins;
+	}
+
+	/**
+	 * Chooses dense or sparse dot products for the prepared source vector
+	 * depending on its bin range and occupancy. To be called at the end of preparation by
+	 * comparators using {@link #dotProduct(SpectrumVector)}.
+	 */
+	protected void prepareDotProduct() {
+		dense = denseSrc.set(vectorSrc, maxDenseBins);
+	}
+
+	/**
+	 * Calculates the dot product of the prepared source vector and the
+	 * specified target vector. Both modes yield identical results.
+	 * @param vectorTrg the target vector
+	 * @return the dot product
+	 */
+	protected double dotProduct(SpectrumVector vectorTrg) {
+		if (dense) {
+			return denseSrc.dot(vectorTrg);
+		}
+		int[] indicesSrc = vectorSrc.getIndices(), indicesTrg = vectorTrg.getIndices();
+		double[] valuesSrc = vectorSrc.getValues(), valuesTrg = vectorTrg.getValues();
+		int sizeSrc = vectorSrc.size(), sizeTrg = vectorTrg.size();
+		double res = 0.0;
+		int i = 0;
+		for (int j = 0; j < sizeTrg; j++) {
+			while ((i < sizeSrc) && (indicesSrc[i] < indicesTrg[j])) {
+				i++;
+			}
+			if ((i < sizeSrc) && (indicesSrc[i] == indicesTrg[j])) {
+				res += valuesSrc[i] * valuesTrg[j];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Vectorizes the specified peak map into the scratch vector using the
+	 * binning vectorization method.
+	 * @param peaks the peak map
+	 */
+	private void vectorize(Map<Double, Double> peaks) {
+		double[] mzs = new double[peaks.size()];
+		double[] intensities = new double[peaks.size()];
+		int i = 0;
+		for (Entry<Double, Double> peak : peaks.entrySet()) {
+			mzs[i] = peak.getKey();
+			intensities[i] = peak.getValue();
+			i++;
+		}
+		((BinningVectorization) vect).vectorize(mzs, intensities, i, trafo, scratch);
+	}
+
+	@Override
+	public double getSimilarity() {
+		return similarity;
+	}
+
+	/**
+	 * Returns the prepared source peaks. When adapting non-binning
+	 * vectorization methods only entries located at source peak positions are
+	 * returned.
+	 * @return the source peak map
+	 */
+	@Override
+	public Map<Double, Double> getSourcePeaks() {
+		if (vect instanceof BinningVectorization) {
+			return vectorSrc.toMap();
+		}
+		Map<Double, Double> peaks = new TreeMap<Double, Double>();
+		for (int i = 0; i < vectorSrc.size(); i++) {
+			int index = vectorSrc.getIndex(i);
+			if ((index >= 0) && (index % STRIDE == 0) && (index / STRIDE < keysSrc.length)) {
+				peaks.put(keysSrc[index / STRIDE], vectorSrc.getValue(i));
+			}
+		}
+		return peaks;
+	}
+
+	@Override
+	public Vectorization getVectorization() {
+		return vect;
+	}
+
+}
@@ -0,0 +1,23 @@
+package de.mpa.algorithms.similarity;
+
+/**
+ * Vectorization mapping peaks onto fixed bins, which allows spectra to be
+ * represented by sparse vectors of integer bin indices.
+ *
+ * @author A. Behne
+ */
+public interface BinningVectorization extends Vectorization {
+
+	/**
+	 * Vectorizes the specified peaks into the specified sparse vector. The
+	 * peaks need not be sorted.
+	 * @param mzs the m/z values
+	 * @param intensities the intensities
+	 * @param size the number of peaks
+	 * @param trafo the transformation applied to the binned intensities
+	 * @param res the vector to fill, may be <code>null</code>
+	 * @return the filled vector
+	 */
+	public SpectrumVector vectorize(double[] mzs, double[] intensities, int size, Transformation trafo, SpectrumVector res);
+
+}
@@ -1,32 +1,13 @@
 package de.mpa.algorithms.similarity;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
-
-public class CrossCorrelation implements SpectrumComparator {
-	
-	/**
-	 * The input vectorization method.
-	 */
-	private Vectorization vect;
-	
-	/**
-	 * The input transformation method.
-	 */
-	private Transformation trafo;
+public class CrossCorrelation extends AbstractSpectrumComparator {
 
 	/**
 	 * The amount of neighboring bins that are evaluated (in both positive and negative m/z direction) during correlation.
 	 */
 	private int offsets;
 	
-	/**
-	 * The peak map of the source spectrum which gets auto-correlated during preparation.
-	 */
-	private Map<Double,Double> peaksSrc;
-	
 	/**
 	 * The bin width.
 	 */
@@ -37,98 +18,105 @@ public class CrossCorrelation implements SpectrumComparator {
 	 */
 	private double autoCorr;
 	
-	
 	/**
-	 * The similarity score between source spectrum and target spectrum.
-	 * Ranges between 0.0 (negative scores are cut off) and around 1.0
-	 * (higher scores are possible due to poor auto-correlation of the source spectrum).
+	 * Reusable vector for assembling the auto-correlated source spectrum.
 	 */
-	private double similarity;
+	private SpectrumVector correlated = new SpectrumVector();
 	
+	/**
+	 * Class constructor specifying vectorization and data transformation methods
+	 * as well as the number of neighboring bins to be evaluated. Offsets are
+	 * applied to bin indices, i.e. in steps of the vectorization's bin width.
+	 * @param vect
+	 * @param trafo
+	 * @param binWidth
+	 * @param offsets
+	 */
 	public CrossCorrelation(Vectorization vect, Transformation trafo, double binWidth, int offsets) {
-		this.vect = vect;
-		this.trafo = trafo;
+		super(vect, trafo);
 		this.binWidth = binWidth;
 		this.offsets = offsets;
 	}
 
 	@Override
-	public void prepare(Map<Double, Double> inputPeaksSrc) {
-		
-		// TODO: make adjustments for peak matching method, if possible
-		
-		// vectorize input source spectrum
-		Map<Double, Double> vectPeaksSrc = vect.vectorize(inputPeaksSrc, trafo);
-		
-		peaksSrc = new HashMap<Double, Double>(vectPeaksSrc.size());
+	public void prepare(SpectrumVector vectorSrc) {
 		
 		// determine source spectrum magnitude
-		double magSrc = 0.0;
-		for (double intenSrc : vectPeaksSrc.values())
-			magSrc += intenSrc * intenSrc;
-		magSrc = Math.sqrt(magSrc);
+		double magSrc = Math.sqrt(vectorSrc.getSquaredMagnitude());
 		
-		// apply cross-correlation transformation
-		for (Entry<Double, Double> peakSrc : vectPeaksSrc.entrySet()) {
+		int size = vectorSrc.size();
+		if ((size > 0) && DenseSpectrumVector.isSuitable((long) vectorSrc.getIndex(size - 1)
+				- vectorSrc.getIndex(0) + 2 * offsets + 1, (long) size * (2 * offsets + 1), maxDenseBins)) {
+			// apply cross-correlation transformation directly inside the
+			// dense vector, sparing the sparse vector from being re-sorted
+			denseSrc.reset(vectorSrc.getIndex(0) - offsets, vectorSrc.getIndex(size - 1) + offsets);
+			for (int i = 0; i < size; i++) {
+				int index = vectorSrc.getIndex(i);
+				// normalize intensity
+				double intenSrc = vectorSrc.getValue(i) / magSrc;
+				for (int tau = -offsets; tau <= offsets; tau++) {
+					if (tau == 0) {
+						denseSrc.add(index, intenSrc);
+					} else {
+						denseSrc.add(index + tau, -intenSrc/(2*offsets));
+					}
+				}
+			}
+			denseSrc.toSparse(this.vectorSrc);
+			this.vectorSrc.setBinning(vectorSrc.getBinWidth(), vectorSrc.getBinShift());
+			dense = true;
+			
+			// determine auto-correlation (squared magnitude, essentially)
+			autoCorr = this.vectorSrc.getSquaredMagnitude();
+			return;
+		}
+		
+		// apply cross-correlation transformation, contributions of
+		// neighboring peaks to the same bin are summed up
+		correlated.clear();
+		correlated.setBinning(vectorSrc.getBinWidth(), vectorSrc.getBinShift());
+		for (int i = 0; i < vectorSrc.size(); i++) {
+			int index = vectorSrc.getIndex(i);
 			// normalize intensity
-			double intenSrc = peakSrc.getValue() / magSrc;
-			// apply cross-correlation processing and store resulting peaks
+			double intenSrc = vectorSrc.getValue(i) / magSrc;
 			for (int tau = -offsets; tau <= offsets; tau++) {
 				if (tau == 0) {
-					peaksSrc.put(peakSrc.getKey(), intenSrc);
+					correlated.add(index, intenSrc);
 				} else {
-					double offsetMz = peakSrc.getKey() + tau*binWidth;
-					Double existingInten = peaksSrc.get(offsetMz);
-					if (existingInten == null) existingInten = 0.0;
-					peaksSrc.put(offsetMz, existingInten - intenSrc/(2*offsets));
+					correlated.add(index + tau, -intenSrc/(2*offsets));
 				}
 			}
 		}
+		correlated.sort();
+		this.vectorSrc.set(correlated);
 		
 		// determine auto-correlation (squared magnitude, essentially)
-		autoCorr = 0.0;
-		for (double intenSrc : peaksSrc.values()) {
-			autoCorr += intenSrc * intenSrc; 
-		}
+		autoCorr = this.vectorSrc.getSquaredMagnitude();
+		
+		// correlated source vectors are dense around their peaks
+		this.prepareDotProduct();
 	}
 	
 	@Override
-	public void compareTo(Map<Double, Double> inputPeaksTrg) {
-		
-		Map<Double, Double> peaksTrg = vect.vectorize(inputPeaksTrg, trafo);
+	public void compareTo(SpectrumVector vectorTrg) {
 		
 		// determine target spectrum magnitude
-		double magTrg = 0.0;
-		for (double intenTrg : peaksTrg.values())
-			magTrg += intenTrg * intenTrg;
-		magTrg = Math.sqrt(magTrg);
+		double magTrg = Math.sqrt(vectorTrg.getSquaredMagnitude());
 		
-		// calculate dot product
-		double numer = 0.0;
-		for (Entry<Double, Double> peakTrg : peaksTrg.entrySet()) {
-			Double intenSrc = peaksSrc.get(peakTrg.getKey());
-			if (intenSrc != null)
-				numer += intenSrc * (peakTrg.getValue() / magTrg);
-		}
+		// calculate dot product using normalized target intensities
+		double numer = this.dotProduct(vectorTrg) / magTrg;
 		
 		// normalize score using auto-correlation
 		double similarity = numer / autoCorr;
 		this.similarity = (similarity > 0.0) ? similarity : 0.0;	// cut off negative scores
 	}
 
-	@Override
-	public double getSimilarity() {
-		return similarity;
-	}
-
-	@Override
-	public Map<Double, Double> getSourcePeaks() {
-		return peaksSrc;
-	}
-
-	@Override
-	public Vectorization getVectorization() {
-		return vect;
+	/**
+	 * Returns the bin width.
+	 * @return the bin width
+	 */
+	public double getBinWidth() {
+		return binWidth;
 	}
 
 }
@@ -0,0 +1,158 @@
+package de.mpa.algorithms.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Dense spectrum vector covering a contiguous bin range, e.g. the range
+ * between the lowest and highest index of a sparse vector. Dot products
+ * against sparse vectors take a single array lookup per target bin instead of
+ * a branchy merge of both index lists, which pays off unless the covered
+ * range is both wide and sparsely occupied. The buffer is retained between
+ * spectra.
+ *
+ * @author A. Behne
+ */
+public class DenseSpectrumVector {
+
+	/**
+	 * The default number of bins up to which dense vectors are used
+	 * regardless of occupancy.
+	 */
+	public static final int DEFAULT_MAX_BINS = 1 << 16;
+
+	/**
+	 * The maximum ratio of covered bins to occupied bins of dense vectors
+	 * exceeding the default bin range.
+	 */
+	public static final int MAX_SPARSITY = 1 << 8;
+
+	/**
+	 * The maximum number of bins of dense vectors exceeding the default bin
+	 * range.
+	 */
+	public static final int LIMIT_BINS = 1 << 22;
+
+	/**
+	 * The bin weights, the first {@link #length} elements are valid.
+	 */
+	private double[] values = new double[0];
+
+	/**
+	 * The bin index of the first element.
+	 */
+	private int base;
+
+	/**
+	 * The number of covered bins.
+	 */
+	private int length;
+
+	/**
+	 * Returns whether a dense vector is preferable for the specified bin range.
+	 * @param span the number of bins covered
+	 * @param size the (estimated) number of occupied bins
+	 * @param maxBins the number of bins up to which dense vectors are used
+	 *  regardless of occupancy, dense vectors are never used if not positive
+	 * @return <code>true</code> if a dense vector should be used,
+	 *  <code>false</code> otherwise
+	 */
+	public static boolean isSuitable(long span, long size, int maxBins) {
+		if (maxBins <= 0) {
+			return false;
+		}
+		return (span <= maxBins) || ((span <= LIMIT_BINS) && (span <= size * MAX_SPARSITY));
+	}
+
+	/**
+	 * Clears this vector and makes it cover the specified bin range.
+	 * @param from the lowest bin index
+	 * @param to the highest bin index (inclusive)
+	 */
+	public void reset(int from, int to) {
+		Arrays.fill(values, 0, length, 0.0);
+		base = from;
+		length = to - from + 1;
+		if (values.length < length) {
+			values = new double[length];
+		}
+	}
+
+	/**
+	 * Makes this vector a dense copy of the specified sorted sparse vector,
+	 * provided a dense vector is suitable for its bin range.
+	 * @param vector the sparse vector
+	 * @param maxBins the number of bins up to which dense vectors are used
+	 *  regardless of occupancy
+	 * @return <code>true</code> if the vector was copied, <code>false</code>
+	 *  if its bin range is too wide
+	 * @see #isSuitable(long, long, int)
+	 */
+	public boolean set(SpectrumVector vector, int maxBins) {
+		int size = vector.size();
+		int[] indices = vector.getIndices();
+		if ((size == 0) || !isSuitable((long) indices[size - 1] - indices[0] + 1L, size, maxBins)) {
+			this.reset(0, -1);
+			return false;
+		}
+		this.reset(indices[0], indices[size - 1]);
+		double[] weights = vector.getValues();
+		for (int i = 0; i < size; i++) {
+			values[indices[i] - base] = weights[i];
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the specified weight to the bin with the specified index, which
+	 * must be inside the covered range.
+	 * @param index the bin index
+	 * @param value the weight
+	 */
+	public void add(int index, double value) {
+		values[index - base] += value;
+	}
+
+	/**
+	 * Copies all non-zero bins into the specified sparse vector.
+	 * @param res the sparse vector to fill
+	 */
+	public void toSparse(SpectrumVector res) {
+		res.clear();
+		for (int k = 0; k < length; k++) {
+			if (values[k] != 0.0) {
+				res.add(base + k, values[k]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of covered bins.
+	 * @return the length
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Calculates the dot product with the specified sparse vector. Products
+	 * are summed up in ascending target index order, i.e. the same order a
+	 * merge of two sparse vectors uses.
+	 * @param vector the sparse vector
+	 * @return the dot product
+	 */
+	public double dot(SpectrumVector vector) {
+		int[] indices = vector.getIndices();
+		double[] weights = vector.getValues();
+		double[] values = this.values;
+		int base = this.base, length = this.length;
+		double res = 0.0;
+		for (int j = 0, size = vector.size(); j < size; j++) {
+			int k = indices[j] - base;
+			if ((k >= 0) && (k < length)) {
+				res += values[k] * weights[j];
+			}
+		}
+		return res;
+	}
+
+}
@@ -1,16 +1,9 @@
 package de.mpa.algorithms.similarity;
 
-import java.util.Map;
-import java.util.Map.Entry;
 
+public class EuclideanDistance extends AbstractSpectrumComparator {
 
-public class EuclideanDistance implements SpectrumComparator {
-
-	private Vectorization vect;
-	private Transformation trafo;
-	private Map<Double, Double> peaksSrc;
 	private double magSrc;
-	private double similarity;
 	
 //	private final double sqrt2 = Math.sqrt(2.0);
 
@@ -20,37 +13,35 @@ public class EuclideanDistance implements SpectrumComparator {
 	 * @param trafo
 	 */
 	public EuclideanDistance(Vectorization vect, Transformation trafo) {
-		this.vect = vect;
-		this.trafo = trafo;
+		super(vect, trafo);
 	}
 	
 	@Override
-	public void prepare(Map<Double, Double> inputPeaksSrc) {
-		
-		// bin source spectrum
-		peaksSrc = vect.vectorize(inputPeaksSrc, trafo);
+	public void prepare(SpectrumVector vectorSrc) {
+		this.vectorSrc.set(vectorSrc);
 		
 		// calculate squared magnitude of source intensity vector
-		magSrc = 0.0;
-		for (double intenSrc : peaksSrc.values()) {
-			magSrc += intenSrc * intenSrc;
-		}
+		magSrc = vectorSrc.getSquaredMagnitude();
 	}
 
 	@Override
-	public void compareTo(Map<Double, Double> inputPeaksTrg) {
-
-		// bin target spectrum
-		Map<Double, Double> peaksTrg = vect.vectorize(inputPeaksTrg, trafo);
+	public void compareTo(SpectrumVector vectorTrg) {
+		
+		int[] indicesSrc = vectorSrc.getIndices(), indicesTrg = vectorTrg.getIndices();
+		double[] valuesSrc = vectorSrc.getValues(), valuesTrg = vectorTrg.getValues();
+		int sizeSrc = vectorSrc.size(), sizeTrg = vectorTrg.size();
 		
 		// calculate euclidean distance
 		double distance = magSrc;
-		for (Entry<Double, Double> peakTrg : peaksTrg.entrySet()) {
-			double intenTrg = peakTrg.getValue();
-			Double intenSrc = peaksSrc.get(peakTrg.getKey());
-			if (intenSrc == null) { 
-				intenSrc = 0.0;
-			} else {
+		int i = 0;
+		for (int j = 0; j < sizeTrg; j++) {
+			double intenTrg = valuesTrg[j];
+			double intenSrc = 0.0;
+			while ((i < sizeSrc) && (indicesSrc[i] < indicesTrg[j])) {
+				i++;
+			}
+			if ((i < sizeSrc) && (indicesSrc[i] == indicesTrg[j])) {
+				intenSrc = valuesSrc[i];
 				distance -= intenSrc * intenSrc;
 			}
 			double delta = intenTrg - intenSrc;
@@ -60,19 +51,4 @@ public class EuclideanDistance implements SpectrumComparator {
 		this.similarity = Math.sqrt(distance);
 	}
 
-	@Override
-	public double getSimilarity() {
-		return similarity;
-	}
-
-	@Override
-	public Map<Double, Double> getSourcePeaks() {
-		return peaksSrc;
-	}
-
-	@Override
-	public Vectorization getVectorization() {
-		return vect;
-	}
-
 }
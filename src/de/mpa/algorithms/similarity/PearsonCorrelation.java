@@ -1,31 +1,7 @@
 package de.mpa.algorithms.similarity;
 
-import java.util.Map;
-import java.util.Map.Entry;
 
-
-public class PearsonCorrelation implements SpectrumComparator {
-
-	/**
-	 * The input vectorization method.
-	 */
-	private Vectorization vect;
-	
-	/**
-	 * The input transformation method.
-	 */
-	private Transformation trafo;
-
-	/**
-	 * The peak map of the source spectrum.
-	 */
-	private Map<Double, Double> peaksSrc; 
-	
-	/**
-	 * The similarity score between source spectrum and target spectrum.
-	 * Ranges between 0.0 and 1.0.
-	 */
-	private double similarity = 0.0;
+public class PearsonCorrelation extends AbstractSpectrumComparator {
 
 	/**
 	 * The squared magnitude of the source intensity vector.
@@ -38,62 +14,66 @@ public class PearsonCorrelation implements SpectrumComparator {
 	 * @param trafo
 	 */
 	public PearsonCorrelation(Vectorization vect, Transformation trafo) {
-		this.vect = vect;
-		this.trafo = trafo;
+		super(vect, trafo);
 	}
 	
 	// TODO: remove normalization, seems to have no effect here
 	
 	@Override
-	public void prepare(Map<Double, Double> inputPeaksSrc) {
+	public void prepare(SpectrumVector vectorSrc) {
+		this.vectorSrc.set(vectorSrc);
 		
-		// bin source spectrum
-		peaksSrc = vect.vectorize(inputPeaksSrc, trafo);
+		double[] valuesSrc = this.vectorSrc.getValues();
+		int sizeSrc = this.vectorSrc.size();
 		
 		// calculate magnitude and mean intensity
 		double magSrc = 0.0;
 		double meanSrc = 0.0;
-		for (double intenSrc : peaksSrc.values()) {
-			magSrc += intenSrc * intenSrc;
-			meanSrc += intenSrc;
+		for (int i = 0; i < sizeSrc; i++) {
+			magSrc += valuesSrc[i] * valuesSrc[i];
+			meanSrc += valuesSrc[i];
 		}
 		magSrc = Math.sqrt(magSrc);
-		meanSrc /= peaksSrc.size();
+		meanSrc /= sizeSrc;
 		meanSrc /= magSrc;
 		
 		// normalize and center source spectrum peaks
 		denom1 = 0.0;
-		for (Entry<Double, Double> peakSrc : peaksSrc.entrySet()) {
-			double intenSrc = peakSrc.getValue()/magSrc - meanSrc;
-			peaksSrc.put(peakSrc.getKey(), intenSrc);
+		for (int i = 0; i < sizeSrc; i++) {
+			double intenSrc = valuesSrc[i]/magSrc - meanSrc;
+			valuesSrc[i] = intenSrc;
 			denom1 += intenSrc * intenSrc;
 		}
 	}
 
 	@Override
-	public void compareTo(Map<Double, Double> inputPeaksTrg) {
+	public void compareTo(SpectrumVector vectorTrg) {
 		
-		// bin target spectrum
-		Map<Double, Double> peaksTrg = vect.vectorize(inputPeaksTrg, trafo);
+		int[] indicesSrc = vectorSrc.getIndices(), indicesTrg = vectorTrg.getIndices();
+		double[] valuesSrc = vectorSrc.getValues(), valuesTrg = vectorTrg.getValues();
+		int sizeSrc = vectorSrc.size(), sizeTrg = vectorTrg.size();
 		
 		// calculate magnitude and mean intensity
 		double magTrg = 0.0;
 		double meanTrg = 0.0;
-		for (double intenTrg : peaksTrg.values()) {
-			magTrg += intenTrg * intenTrg;
-			meanTrg += intenTrg;
+		for (int j = 0; j < sizeTrg; j++) {
+			magTrg += valuesTrg[j] * valuesTrg[j];
+			meanTrg += valuesTrg[j];
 		}
 		magTrg = Math.sqrt(magTrg);
-		meanTrg /= peaksTrg.size();
+		meanTrg /= sizeTrg;
 		meanTrg /= magTrg;
 		
 		// calculate dot product
 		double numer = 0.0, denom2 = 0.0;
-		for (Entry<Double, Double> peakTrg : peaksTrg.entrySet()) {
-			double intenTrg = peakTrg.getValue()/magTrg - meanTrg;	// normalize and center
-			Double intenSrc = peaksSrc.get(peakTrg.getKey());
-			if (intenSrc != null) {
-				numer += intenSrc * intenTrg;
+		int i = 0;
+		for (int j = 0; j < sizeTrg; j++) {
+			double intenTrg = valuesTrg[j]/magTrg - meanTrg;	// normalize and center
+			while ((i < sizeSrc) && (indicesSrc[i] < indicesTrg[j])) {
+				i++;
+			}
+			if ((i < sizeSrc) && (indicesSrc[i] == indicesTrg[j])) {
+				numer += valuesSrc[i] * intenTrg;
 			}
 			denom2 += intenTrg * intenTrg;
 		}
@@ -103,19 +83,4 @@ public class PearsonCorrelation implements SpectrumComparator {
 		this.similarity = (similarity > 0.0) ? similarity : 0.0;	// cut off negative scores
 	}
 
-	@Override
-	public double getSimilarity() {
-		return similarity;
-	}
-
-	@Override
-	public Map<Double, Double> getSourcePeaks() {
-		return peaksSrc;
-	}
-
-	@Override
-	public Vectorization getVectorization() {
-		return vect;
-	}
-
 }
@@ -2,11 +2,29 @@ package de.mpa.algorithms.similarity;
 
 import java.util.Map;
 
-
+/**
+ * General interface for spectrum similarity measures. Spectra are compared as
+ * sparse vectors of ascending bin indices, which turns scoring into a linear
+ * merge-join. The peak map based methods adapt peak maps to this contract
+ * using the comparator's vectorization method.
+ */
 public interface SpectrumComparator {
 	public double getSimilarity();
 	public void prepare(Map<Double, Double> inputPeaksSrc);
 	public void compareTo(Map<Double, Double> inputPeaksTrg);
 	public Map<Double, Double> getSourcePeaks();
 	public Vectorization getVectorization();
+	
+	/**
+	 * Prepares the source spectrum for subsequent comparisons.
+	 * @param vectorSrc the vectorized and transformed source spectrum, its
+	 *  contents are copied
+	 */
+	public void prepare(SpectrumVector vectorSrc);
+	
+	/**
+	 * Compares the prepared source spectrum to the specified target spectrum.
+	 * @param vectorTrg the vectorized and transformed target spectrum
+	 */
+	public void compareTo(SpectrumVector vectorTrg);
 }	
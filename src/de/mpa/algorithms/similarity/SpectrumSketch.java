@@ -0,0 +1,163 @@
+package de.mpa.algorithms.similarity;
+
+import java.util.Arrays;
+
+import de.mpa.io.PeakList;
+
+/**
+ * Compact MinHash fingerprint of a spectrum. The most intensive peaks are
+ * binned, the bin indices are hashed and the smallest distinct hash values are
+ * kept (bottom-k sketch). Comparing two sketches estimates the Jaccard index
+ * of the binned peak sets at a fraction of the cost of full scoring, which
+ * allows dissimilar candidates to be skipped before vectorization.<br>
+ * Sketches are immutable and may be shared between threads.
+ *
+ * @author A. Behne
+ */
+public class SpectrumSketch {
+
+	/**
+	 * The default maximum number of hash values per sketch.
+	 */
+	public static final int DEFAULT_SIZE = 32;
+
+	/**
+	 * The number of most intensive peaks the sketch was built from.
+	 */
+	private final int peakCount;
+
+	/**
+	 * The bin width.
+	 */
+	private final double binWidth;
+
+	/**
+	 * The shift of the bin boundaries.
+	 */
+	private final double binShift;
+
+	/**
+	 * The maximum number of hash values.
+	 */
+	private final int sketchSize;
+
+	/**
+	 * The smallest distinct hash values in ascending order.
+	 */
+	private final int[] hashes;
+
+	/**
+	 * Creates a sketch of the specified peaks using the default sketch size.
+	 * @param mzs the m/z values
+	 * @param intensities the intensities
+	 * @param peakCount the number of most intensive peaks to consider, all
+	 *  peaks are considered if zero
+	 * @param binWidth the bin width
+	 * @param binShift the shift of the bin boundaries
+	 */
+	public SpectrumSketch(double[] mzs, double[] intensities, int peakCount, double binWidth, double binShift) {
+		this(mzs, intensities, peakCount, binWidth, binShift, DEFAULT_SIZE);
+	}
+
+	/**
+	 * Creates a sketch of the specified peaks.
+	 * @param mzs the m/z values
+	 * @param intensities the intensities
+	 * @param peakCount the number of most intensive peaks to consider, all
+	 *  peaks are considered if zero
+	 * @param binWidth the bin width
+	 * @param binShift the shift of the bin boundaries
+	 * @param sketchSize the maximum number of hash values
+	 */
+	public SpectrumSketch(double[] mzs, double[] intensities, int peakCount, double binWidth, double binShift, int sketchSize) {
+		this.peakCount = peakCount;
+		this.binWidth = binWidth;
+		this.binShift = binShift;
+		this.sketchSize = Math.max(sketchSize, 1);
+
+		// hash bin indices of the most intensive peaks
+		PeakList peaks = PeakList.selectHighest(mzs, intensities, peakCount, null);
+		double[] peakMzs = peaks.getMzArray();
+		int[] values = new int[peaks.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = hash((int) Math.round((peakMzs[i] - binShift) / binWidth));
+		}
+		Arrays.sort(values);
+
+		// keep smallest distinct values
+		int n = 0;
+		for (int i = 0; (i < values.length) && (n < this.sketchSize); i++) {
+			if ((n == 0) || (values[n - 1] != values[i])) {
+				values[n++] = values[i];
+			}
+		}
+		this.hashes = Arrays.copyOf(values, n);
+	}
+
+	/**
+	 * Returns whether this sketch was built using the specified parameters.
+	 * @param peakCount the number of most intensive peaks
+	 * @param binWidth the bin width
+	 * @param binShift the shift of the bin boundaries
+	 * @param sketchSize the maximum number of hash values
+	 * @return <code>true</code> if the parameters match, <code>false</code> otherwise
+	 */
+	public boolean matches(int peakCount, double binWidth, double binShift, int sketchSize) {
+		return (this.peakCount == peakCount) && (this.sketchSize == sketchSize)
+				&& (Double.compare(this.binWidth, binWidth) == 0)
+				&& (Double.compare(this.binShift, binShift) == 0);
+	}
+
+	/**
+	 * Returns the number of hash values.
+	 * @return the size
+	 */
+	public int size() {
+		return hashes.length;
+	}
+
+	/**
+	 * Estimates the Jaccard index of the binned peak sets of this and the
+	 * specified sketch. The estimate is exact if neither spectrum occupies
+	 * more bins than the sketch size.
+	 * @param that the sketch to compare to, built using the same parameters
+	 * @return the similarity between <code>0</code> and <code>1</code>
+	 */
+	public double similarity(SpectrumSketch that) {
+		int[] a = this.hashes, b = that.hashes;
+		int size = Math.min(this.sketchSize, that.sketchSize);
+		// merge smallest values of the union, count those contained in both
+		int i = 0, j = 0, union = 0, shared = 0;
+		while ((union < size) && (i < a.length) && (j < b.length)) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				shared++;
+				i++;
+				j++;
+			}
+			union++;
+		}
+		union = Math.min(union + (a.length - i) + (b.length - j), size);
+		return (union > 0) ? (double) shared / union : 0.0;
+	}
+
+	/**
+	 * Scrambles the specified bin index.
+	 * @param index the bin index
+	 * @return the hash value
+	 */
+	private static int hash(int index) {
+		// finalization mix of MurmurHash3
+		int h = index * 0x9E3779B9;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+}
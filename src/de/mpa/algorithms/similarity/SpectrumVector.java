@@ -0,0 +1,264 @@
+package de.mpa.algorithms.similarity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sparse spectrum vector consisting of bin indices in ascending order and
+ * their associated weights, both backed by primitive arrays. Buffers grow on
+ * demand and are retained when the vector is cleared, so that instances can
+ * be recycled across many spectra.
+ *
+ * @author A. Behne
+ */
+public class SpectrumVector {
+
+	/**
+	 * The bin indices.
+	 */
+	private int[] indices;
+
+	/**
+	 * The bin weights.
+	 */
+	private double[] values;
+
+	/**
+	 * The number of occupied bins.
+	 */
+	private int size;
+
+	/**
+	 * Flag denoting whether the bin indices are in strictly ascending order.
+	 */
+	private boolean sorted = true;
+
+	/**
+	 * The bin width used for converting indices into bin centers.
+	 */
+	private double binWidth = 1.0;
+
+	/**
+	 * The bin shift used for converting indices into bin centers.
+	 */
+	private double binShift = 0.0;
+
+	/**
+	 * Creates an empty spectrum vector.
+	 */
+	public SpectrumVector() {
+		this(64);
+	}
+
+	/**
+	 * Creates an empty spectrum vector with the specified initial capacity.
+	 * @param capacity the initial capacity
+	 */
+	public SpectrumVector(int capacity) {
+		indices = new int[Math.max(capacity, 1)];
+		values = new double[indices.length];
+	}
+
+	/**
+	 * Returns the number of occupied bins.
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the bin index at the specified position.
+	 * @param pos the position
+	 * @return the bin index
+	 */
+	public int getIndex(int pos) {
+		return indices[pos];
+	}
+
+	/**
+	 * Returns the weight at the specified position.
+	 * @param pos the position
+	 * @return the weight
+	 */
+	public double getValue(int pos) {
+		return values[pos];
+	}
+
+	/**
+	 * Returns the backing array of bin indices. Only the first {@link #size()}
+	 * elements are valid.
+	 * @return the bin indices
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Returns the backing array of weights. Only the first {@link #size()}
+	 * elements are valid.
+	 * @return the weights
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Sets the bin geometry used for converting indices into bin centers.
+	 * @param binWidth the bin width
+	 * @param binShift the shift of the bin boundaries
+	 */
+	public void setBinning(double binWidth, double binShift) {
+		this.binWidth = binWidth;
+		this.binShift = binShift;
+	}
+
+	/**
+	 * Returns the bin width.
+	 * @return the bin width
+	 */
+	public double getBinWidth() {
+		return binWidth;
+	}
+
+	/**
+	 * Returns the bin shift.
+	 * @return the bin shift
+	 */
+	public double getBinShift() {
+		return binShift;
+	}
+
+	/**
+	 * Returns the center position of the bin with the specified index.
+	 * @param index the bin index
+	 * @return the bin center
+	 */
+	public double getBinCenter(int index) {
+		return index * binWidth + binShift;
+	}
+
+	/**
+	 * Removes all bins while retaining the buffers.
+	 */
+	public void clear() {
+		size = 0;
+		sorted = true;
+	}
+
+	/**
+	 * Adds the specified weight to the bin with the specified index. Bins
+	 * should be added in ascending order, otherwise {@link #sort()} needs to
+	 * be called afterwards.
+	 * @param index the bin index
+	 * @param value the weight
+	 */
+	public void add(int index, double value) {
+		if (size > 0) {
+			int last = indices[size - 1];
+			if (index == last) {
+				values[size - 1] += value;
+				return;
+			}
+			if (index < last) {
+				sorted = false;
+			}
+		}
+		if (size == indices.length) {
+			indices = Arrays.copyOf(indices, size << 1);
+			values = Arrays.copyOf(values, size << 1);
+		}
+		indices[size] = index;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Restores ascending index order after bins have been added out of order
+	 * and merges bins sharing the same index.
+	 */
+	public void sort() {
+		if (sorted) {
+			return;
+		}
+		// insertion sort, bins are expected to be nearly sorted
+		for (int i = 1; i < size; i++) {
+			int index = indices[i];
+			double value = values[i];
+			int j = i - 1;
+			while ((j >= 0) && (indices[j] > index)) {
+				indices[j + 1] = indices[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			indices[j + 1] = index;
+			values[j + 1] = value;
+		}
+		// merge duplicates
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if ((n > 0) && (indices[n - 1] == indices[i])) {
+				values[n - 1] += values[i];
+			} else {
+				indices[n] = indices[i];
+				values[n] = values[i];
+				n++;
+			}
+		}
+		size = n;
+		sorted = true;
+	}
+
+	/**
+	 * Applies the specified transformation to all weights.
+	 * @param trafo the transformation
+	 */
+	public void transform(Transformation trafo) {
+		for (int i = 0; i < size; i++) {
+			values[i] = trafo.transform(values[i]);
+		}
+	}
+
+	/**
+	 * Returns the sum of squared weights.
+	 * @return the squared magnitude
+	 */
+	public double getSquaredMagnitude() {
+		double res = 0.0;
+		for (int i = 0; i < size; i++) {
+			res += values[i] * values[i];
+		}
+		return res;
+	}
+
+	/**
+	 * Makes this vector a copy of the specified vector.
+	 * @param vector the vector to copy
+	 */
+	public void set(SpectrumVector vector) {
+		if (indices.length < vector.size) {
+			indices = new int[vector.size];
+			values = new double[vector.size];
+		}
+		System.arraycopy(vector.indices, 0, indices, 0, vector.size);
+		System.arraycopy(vector.values, 0, values, 0, vector.size);
+		size = vector.size;
+		sorted = vector.sorted;
+		binWidth = vector.binWidth;
+		binShift = vector.binShift;
+	}
+
+	/**
+	 * Builds a peak map of bin centers and weights from this vector.
+	 * @return the peak map
+	 */
+	public Map<Double, Double> toMap() {
+		Map<Double, Double> res = new HashMap<Double, Double>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			res.put(this.getBinCenter(indices[i]), values[i]);
+		}
+		return res;
+	}
+
+}
@@ -1,6 +1,5 @@
 package de.mpa.algorithms.similarity;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -91,27 +90,29 @@ public abstract class VectorizationFactory {
 	 * @param binShift The shift of the bin boundaries along the position axis.
 	 * @return the direct binning vectorization method
 	 */
-	public static Vectorization createDirectBinning(final double binWidth, final double binShift) {
-		return new Vectorization() {
+	public static BinningVectorization createDirectBinning(final double binWidth, final double binShift) {
+		return new BinningVectorization() {
 			@Override
-			public Map<Double, Double> vectorize(Map<Double, Double> input,
-					Transformation trafo) {
-				Map<Double, Double> output = new HashMap<Double, Double>(input.size());
-				for (Entry<Double, Double> entry : input.entrySet()) {
-					// round key to nearest bin center
-					double roundedKey = Math.round((entry.getKey()-binShift)/binWidth)*binWidth + binShift;
-					// grab input value
-					double val = entry.getValue();
-					if (output.containsKey(roundedKey)) 
-						val += output.get(roundedKey);	// add to already existing bin
-					// store value in output
-					output.put(roundedKey, val);
+			public SpectrumVector vectorize(double[] mzs, double[] intensities, int size,
+					Transformation trafo, SpectrumVector res) {
+				if (res == null) {
+					res = new SpectrumVector(size);
 				}
-				// transform output values
-				for (Entry<Double, Double> entry : output.entrySet()) {
-					output.put(entry.getKey(), trafo.transform(entry.getValue()));
+				res.clear();
+				res.setBinning(binWidth, binShift);
+				for (int i = 0; i < size; i++) {
+					// round key to index of nearest bin center, add to already existing bin
+					res.add((int) Math.round((mzs[i] - binShift) / binWidth), intensities[i]);
 				}
-				return output;
+				res.sort();
+				// transform output values
+				res.transform(trafo);
+				return res;
+			}
+			@Override
+			public Map<Double, Double> vectorize(Map<Double, Double> input,
+					Transformation trafo) {
+				return vectorizeMap(this, input, trafo);
 			}
 			@Override
 			public void cleanup() {}
@@ -130,53 +131,80 @@ public abstract class VectorizationFactory {
 	 * @param baseWidth The base width of the profile shape.
 	 * @return the direct binning vectorization method
 	 */
-	public static Vectorization createProfiling(final double binWidth, final double binShift,
+	public static BinningVectorization createProfiling(final double binWidth, final double binShift,
 			final int profShape, final double baseWidth) {
-		return new Vectorization() {
+		return new BinningVectorization() {
 			@Override
-			public Map<Double, Double> vectorize(Map<Double, Double> input,
-					Transformation trafo) {
-				Map<Double, Double> output = new HashMap<Double, Double>(input.size());
-				for (Entry<Double, Double> entry : input.entrySet()) {
-					double ky = entry.getKey(), 				// original key
+			public SpectrumVector vectorize(double[] mzs, double[] intensities, int size,
+					Transformation trafo, SpectrumVector res) {
+				if (res == null) {
+					res = new SpectrumVector(size);
+				}
+				res.clear();
+				res.setBinning(binWidth, binShift);
+				for (int i = 0; i < size; i++) {
+					double ky = mzs[i], 						// original key
 						   lb = ky - baseWidth/2,				// left boundary
 						   rb,									// right boundary
 						   lr = lb,								// left root
 						   rr = ky + baseWidth/2,				// right root
-						   h2 = 4*entry.getValue()/baseWidth,	// doubled area height
+						   h2 = 4*intensities[i]/baseWidth,		// doubled area height
 						   l2 = h2/baseWidth / 2,				// halved area slope
-						   rk = Math.round((lb - binShift)/binWidth)*binWidth + binShift,	// rounded key
 						   vl;									// transformed value
+					int ri = (int) Math.round((lb - binShift)/binWidth);	// rounded key index
 					while (true) {
 						// calculate right boundary
-						rb = rk + binWidth/2;
+						rb = res.getBinCenter(ri) + binWidth/2;
 						// reset right boundary if it exceeds either the original key or the right root
 						rb = (rb > rr) ? rr : ( ((lb < ky) && (rb > ky)) ? ky : rb );
 						// calculate trapezoid area between boundaries
 						vl = l2*(lb + rb - 2*lr);
 						vl = (rb <= ky) ? vl*(rb-lb) : (h2-vl)*(rb-lb);
 						// store calculated value
-						if (output.containsKey(rk)) 
-							vl += output.get(rk);
-						output.put(rk, vl);
+						res.add(ri, vl);
 						// right boundary becomes left boundary in next iteration
 						lb = rb;
 						// abort if right root has been reached
 						if (lb >= rr)
 							break;
 						// find nearest bin center
-						rk = Math.ceil((lb - binShift)/binWidth)*binWidth + binShift;
+						ri = (int) Math.ceil((lb - binShift)/binWidth);
 					}
 				}
+				// profiles of neighboring peaks may overlap
+				res.sort();
 				// transform output values
-				for (Entry<Double, Double> entry : output.entrySet()) {
-					output.put(entry.getKey(), trafo.transform(entry.getValue()));
-				}
-				return output;
+				res.transform(trafo);
+				return res;
+			}
+			@Override
+			public Map<Double, Double> vectorize(Map<Double, Double> input,
+					Transformation trafo) {
+				return vectorizeMap(this, input, trafo);
 			}
 			@Override
 			public void cleanup() {}
 		};
 	}
 
+	/**
+	 * Adapter applying a binning vectorization method to a peak map.
+	 * @param vect the vectorization method
+	 * @param input the peak map
+	 * @param trafo the transformation method
+	 * @return a map of bin centers and transformed intensities
+	 */
+	private static Map<Double, Double> vectorizeMap(BinningVectorization vect,
+			Map<Double, Double> input, Transformation trafo) {
+		double[] mzs = new double[input.size()];
+		double[] intensities = new double[input.size()];
+		int i = 0;
+		for (Entry<Double, Double> entry : new TreeMap<Double, Double>(input).entrySet()) {
+			mzs[i] = entry.getKey();
+			intensities[i] = entry.getValue();
+			i++;
+		}
+		return vect.vectorize(mzs, intensities, i, trafo, null).toMap();
+	}
+
 }
@@ -51,6 +51,7 @@ import de.mpa.db.accessor.SpecSearchHit;
 import de.mpa.db.extractor.SpectrumExtractor;
 import de.mpa.graphdb.insert.GraphDatabaseHandler;
 import de.mpa.graphdb.setup.GraphDatabase;
+import de.mpa.io.MappedMascotGenericFileReader;
 import de.mpa.io.MascotGenericFile;
 import de.mpa.io.MascotGenericFileReader;
 import de.mpa.io.MascotGenericFileReader.LoadMode;
@@ -118,6 +119,12 @@ public class Client {
 	private GraphDatabaseHandler graphDatabaseHandler;
 
 	private RequestThread requestThread;
+	
+	/**
+	 * Reader instance re-used for reading single spectra from the most
+	 * recently accessed MGF file.
+	 */
+	private MascotGenericFileReader spectrumFileReader;
 
 	/**
 	 * Creates the singleton client instance in non-viewer, non-debug mode.
@@ -289,6 +296,21 @@ public class Client {
 		return server.sendMessage();
 	}
 	
+	/**
+	 * Retrieves the timing and resource metrics of the most recently completed server jobs.
+	 * @return String JSON array of job metrics
+	 */
+	public String getJobMetrics() {
+		return server.getJobMetrics();
+	}
+	
+	/**
+	 * Cancels the searches running on the server.
+	 */
+	public void cancelSearches() {
+		server.cancelSearches();
+	}
+	
 	/**
 	 * Sends a message to the server.
 	 * @param message Server message
@@ -429,13 +451,19 @@ public class Client {
 	 * @param endPos The end byte position of the spectrum in the desired file.
 	 * @return the desired spectrum or <code>null</code> if no such spectrum could be found
 	 */
-	public MascotGenericFile readSpectrumFromFile(String pathname, long startPos, long endPos) {
+	public synchronized MascotGenericFile readSpectrumFromFile(String pathname, long startPos, long endPos) {
 		// TODO: delegate to experiment implementation
 		MascotGenericFile mgf = null;
 		try {
 			// TODO: maybe use only one single reader instance for all MGF parsing needs (file panel, results panel, etc.)
-			MascotGenericFileReader reader = new MascotGenericFileReader(new File(pathname), LoadMode.NONE);
-			mgf = reader.loadSpectrum(0, startPos, endPos);
+			File file = new File(pathname);
+			if ((spectrumFileReader == null) || !spectrumFileReader.isReaderFor(file)) {
+				if (spectrumFileReader != null) {
+					spectrumFileReader.close();
+				}
+				spectrumFileReader = new MappedMascotGenericFileReader(file, LoadMode.NONE);
+			}
+			mgf = spectrumFileReader.loadSpectrum(0, startPos, endPos);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -44,6 +44,23 @@ public interface Server {
     @Action(input = "http://webservice.mpa.de/Server/sendMessageRequest", output = "http://webservice.mpa.de/Server/sendMessageResponse")
     public String sendMessage();
 
+    /**
+     * 
+     * @return
+     *     returns java.lang.String
+     */
+    @WebMethod
+    @WebResult(partName = "return")
+    @Action(input = "http://webservice.mpa.de/Server/getJobMetricsRequest", output = "http://webservice.mpa.de/Server/getJobMetricsResponse")
+    public String getJobMetrics();
+
+    /**
+     * 
+     */
+    @WebMethod
+    @Action(input = "http://webservice.mpa.de/Server/cancelSearchesRequest", output = "http://webservice.mpa.de/Server/cancelSearchesResponse")
+    public void cancelSearches();
+
     /**
      * 
      * @param arg0
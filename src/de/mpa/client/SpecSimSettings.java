@@ -29,6 +29,9 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="profileIndex" type="{http://www.w3.org/2001/XMLSchema}int"/>
  *         &lt;element name="baseWidth" type="{http://www.w3.org/2001/XMLSchema}double"/>
  *         &lt;element name="xCorrOffset" type="{http://www.w3.org/2001/XMLSchema}int"/>
+ *         &lt;element name="maxMatches" type="{http://www.w3.org/2001/XMLSchema}int"/>
+ *         &lt;element name="sketchPeaks" type="{http://www.w3.org/2001/XMLSchema}int"/>
+ *         &lt;element name="sketchThreshold" type="{http://www.w3.org/2001/XMLSchema}double"/>
  *       &lt;/sequence>
  *     &lt;/restriction>
  *   &lt;/complexContent>
@@ -51,7 +54,10 @@ import javax.xml.bind.annotation.XmlType;
     "binShift",
     "profileIndex",
     "baseWidth",
-    "xCorrOffset"
+    "xCorrOffset",
+    "maxMatches",
+    "sketchPeaks",
+    "sketchThreshold"
 })
 public class SpecSimSettings {
 
@@ -68,6 +74,9 @@ public class SpecSimSettings {
     protected int profileIndex;
     protected double baseWidth;
     protected int xCorrOffset;
+    protected int maxMatches;
+    protected int sketchPeaks;
+    protected double sketchThreshold;
 
     /**
      * Gets the value of the tolMz property.
@@ -277,4 +286,57 @@ public class SpecSimSettings {
         this.xCorrOffset = value;
     }
 
+    /**
+     * Gets the value of the maxMatches property, i.e. the maximum number of
+     * best-scoring matches kept per query spectrum. Values below
+     * <code>1</code> keep all matches.
+     * 
+     */
+    public int getMaxMatches() {
+        return maxMatches;
+    }
+
+    /**
+     * Sets the value of the maxMatches property.
+     * 
+     */
+    public void setMaxMatches(int value) {
+        this.maxMatches = value;
+    }
+
+    /**
+     * Gets the value of the sketchPeaks property, i.e. the number of most
+     * intensive peaks sketched for pre-filtering candidates. Values below
+     * <code>1</code> disable the pre-filter.
+     * 
+     */
+    public int getSketchPeaks() {
+        return sketchPeaks;
+    }
+
+    /**
+     * Sets the value of the sketchPeaks property.
+     * 
+     */
+    public void setSketchPeaks(int value) {
+        this.sketchPeaks = value;
+    }
+
+    /**
+     * Gets the value of the sketchThreshold property, i.e. the minimum sketch
+     * similarity a candidate needs to be scored.
+     * 
+     */
+    public double getSketchThreshold() {
+        return sketchThreshold;
+    }
+
+    /**
+     * Sets the value of the sketchThreshold property.
+     * 
+     */
+    public void setSketchThreshold(double value) {
+        this.sketchThreshold = value;
+    }
+
 }
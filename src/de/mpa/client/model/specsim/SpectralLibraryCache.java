@@ -0,0 +1,338 @@
+package de.mpa.client.model.specsim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.mpa.algorithms.similarity.SpectrumVector;
+import de.mpa.client.SpecSimSettings;
+
+/**
+ * Thread-safe cache of vectorized and transformed library spectra, so that
+ * candidates shared by many query spectra and repeated searches against the
+ * same library need to be vectorized only once. Entries are keyed by library
+ * spectrum ID and all settings affecting the vectorized representation.<br>
+ * The cache is split into segments with separate locks, each evicting its
+ * least recently used entries. Evicted entries are optionally spilled into a
+ * file from which they are read back on demand instead of being vectorized
+ * again.
+ *
+ * @author A. Behne
+ */
+public class SpectralLibraryCache {
+
+	/**
+	 * The default maximum number of vectors held in memory.
+	 */
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	/**
+	 * The number of cache segments, a power of two.
+	 */
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * The cache segments.
+	 */
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	/**
+	 * The channel of the spill file or <code>null</code> if evicted entries
+	 * are discarded.
+	 */
+	private final FileChannel spillChannel;
+
+	/**
+	 * The current length of the spill file.
+	 */
+	private long spillLength;
+
+	/**
+	 * Creates a cache holding up to the specified number of vectors in memory.
+	 * @param capacity the maximum number of vectors held in memory
+	 * @param spillFile the file receiving evicted entries, may be
+	 *  <code>null</code>
+	 * @throws IOException if the spill file could not be opened
+	 */
+	public SpectralLibraryCache(int capacity, File spillFile) throws IOException {
+		int segmentCapacity = Math.max(capacity / SEGMENTS, 1);
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+		if (spillFile != null) {
+			RandomAccessFile raf = new RandomAccessFile(spillFile, "rw");
+			raf.setLength(0L);
+			spillChannel = raf.getChannel();
+			spillFile.deleteOnExit();
+		} else {
+			spillChannel = null;
+		}
+	}
+
+	/**
+	 * Returns the cached vector of the specified library spectrum. The vector
+	 * is shared and must not be modified.
+	 * @param libspectrumID the library spectrum ID
+	 * @param settings the search settings the vector was created with
+	 * @return the vector or <code>null</code> if it is not cached
+	 */
+	public SpectrumVector get(long libspectrumID, SpecSimSettings settings) {
+		Key key = new Key(libspectrumID, settings);
+		Segment segment = this.getSegment(key);
+		Long offset;
+		synchronized (segment) {
+			SpectrumVector vector = segment.get(key);
+			if ((vector != null) || (spillChannel == null)) {
+				return vector;
+			}
+			offset = segment.spilled.get(key);
+		}
+		if (offset == null) {
+			return null;
+		}
+		// restore spilled vector
+		SpectrumVector vector;
+		try {
+			vector = this.readVector(offset);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		synchronized (segment) {
+			segment.put(key, vector);
+		}
+		return vector;
+	}
+
+	/**
+	 * Stores a copy of the specified vector.
+	 * @param libspectrumID the library spectrum ID
+	 * @param settings the search settings the vector was created with
+	 * @param vector the vectorized and transformed library spectrum
+	 * @return the cached copy
+	 */
+	public SpectrumVector put(long libspectrumID, SpecSimSettings settings, SpectrumVector vector) {
+		Key key = new Key(libspectrumID, settings);
+		SpectrumVector copy = new SpectrumVector(vector.size());
+		copy.set(vector);
+		Segment segment = this.getSegment(key);
+		synchronized (segment) {
+			segment.put(key, copy);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the number of vectors held in memory.
+	 * @return the size
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Removes all entries, including spilled ones.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+				segment.spilled.clear();
+			}
+		}
+		if (spillChannel != null) {
+			synchronized (spillChannel) {
+				try {
+					spillChannel.truncate(0L);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				spillLength = 0L;
+			}
+		}
+	}
+
+	/**
+	 * Returns the segment responsible for the specified key.
+	 * @param key the key
+	 * @return the segment
+	 */
+	private Segment getSegment(Key key) {
+		int h = key.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * Appends the specified vector to the spill file.
+	 * @param vector the vector
+	 * @return the file offset of the written entry
+	 * @throws IOException if writing failed
+	 */
+	private long writeVector(SpectrumVector vector) throws IOException {
+		int size = vector.size();
+		ByteBuffer bb = ByteBuffer.allocate(20 + size * 12);
+		bb.putDouble(vector.getBinWidth());
+		bb.putDouble(vector.getBinShift());
+		bb.putInt(size);
+		bb.asIntBuffer().put(vector.getIndices(), 0, size);
+		bb.position(bb.position() + size * 4);
+		bb.asDoubleBuffer().put(vector.getValues(), 0, size);
+		bb.rewind();
+		long offset;
+		synchronized (spillChannel) {
+			offset = spillLength;
+			spillLength += bb.capacity();
+		}
+		while (bb.hasRemaining()) {
+			spillChannel.write(bb, offset + bb.position());
+		}
+		return offset;
+	}
+
+	/**
+	 * Reads the vector stored at the specified offset of the spill file.
+	 * @param offset the file offset
+	 * @return the vector
+	 * @throws IOException if reading failed
+	 */
+	private SpectrumVector readVector(long offset) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(20);
+		this.readFully(header, offset);
+		double binWidth = header.getDouble(0);
+		double binShift = header.getDouble(8);
+		int size = header.getInt(16);
+		ByteBuffer bb = ByteBuffer.allocate(size * 12);
+		this.readFully(bb, offset + 20);
+		SpectrumVector vector = new SpectrumVector(size);
+		vector.setBinning(binWidth, binShift);
+		for (int i = 0; i < size; i++) {
+			vector.add(bb.getInt(i * 4), bb.getDouble(size * 4 + i * 8));
+		}
+		return vector;
+	}
+
+	/**
+	 * Fills the specified buffer from the spill file.
+	 * @param bb the buffer
+	 * @param offset the file offset
+	 * @throws IOException if reading failed
+	 */
+	private void readFully(ByteBuffer bb, long offset) throws IOException {
+		while (bb.hasRemaining()) {
+			if (spillChannel.read(bb, offset + bb.position()) < 0) {
+				throw new IOException("End of spill file has been reached prematurely.");
+			}
+		}
+	}
+
+	/**
+	 * Cache segment evicting its least recently used entries.
+	 */
+	private class Segment extends LinkedHashMap<Key, SpectrumVector> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The maximum number of entries.
+		 */
+		private int capacity;
+
+		/**
+		 * The spill file offsets of evicted entries.
+		 */
+		private Map<Key, Long> spilled = new HashMap<Key, Long>();
+
+		/**
+		 * Creates a segment holding up to the specified number of entries.
+		 * @param capacity the maximum number of entries
+		 */
+		public Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, SpectrumVector> eldest) {
+			if (size() <= capacity) {
+				return false;
+			}
+			if ((spillChannel != null) && !spilled.containsKey(eldest.getKey())) {
+				try {
+					spilled.put(eldest.getKey(), writeVector(eldest.getValue()));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Key consisting of library spectrum ID and all settings affecting
+	 * vectorization and transformation.
+	 */
+	private static class Key {
+
+		private final long libspectrumID;
+		private final int vectIndex;
+		private final double binWidth;
+		private final double binShift;
+		private final int profileIndex;
+		private final double baseWidth;
+		private final int trafoIndex;
+
+		/**
+		 * Creates a key from the specified library spectrum ID and settings.
+		 * @param libspectrumID the library spectrum ID
+		 * @param settings the search settings
+		 */
+		public Key(long libspectrumID, SpecSimSettings settings) {
+			this.libspectrumID = libspectrumID;
+			this.vectIndex = settings.getVectIndex();
+			this.binWidth = settings.getBinWidth();
+			this.binShift = settings.getBinShift();
+			// profile settings are irrelevant for other vectorization methods
+			this.profileIndex = (vectIndex == 2) ? settings.getProfileIndex() : 0;
+			this.baseWidth = (vectIndex == 2) ? settings.getBaseWidth() : 0.0;
+			this.trafoIndex = settings.getTrafoIndex();
+		}
+
+		@Override
+		public int hashCode() {
+			long h = libspectrumID;
+			h = h * 31 + vectIndex;
+			h = h * 31 + Double.doubleToLongBits(binWidth);
+			h = h * 31 + Double.doubleToLongBits(binShift);
+			h = h * 31 + profileIndex;
+			h = h * 31 + Double.doubleToLongBits(baseWidth);
+			h = h * 31 + trafoIndex;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return (libspectrumID == that.libspectrumID) && (vectIndex == that.vectIndex)
+					&& (Double.compare(binWidth, that.binWidth) == 0)
+					&& (Double.compare(binShift, that.binShift) == 0)
+					&& (profileIndex == that.profileIndex)
+					&& (Double.compare(baseWidth, that.baseWidth) == 0)
+					&& (trafoIndex == that.trafoIndex);
+		}
+	}
+
+}
@@ -0,0 +1,600 @@
+package de.mpa.client.model.specsim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import de.mpa.algorithms.Interval;
+import de.mpa.algorithms.similarity.BinningVectorization;
+import de.mpa.algorithms.similarity.SpectrumVector;
+import de.mpa.algorithms.similarity.Transformation;
+import de.mpa.client.SpecSimSettings;
+
+/**
+ * Spectral library exported into a single binary file which is mapped into
+ * memory for searching, so that spectral similarity searches need no database
+ * access at all. The file holds the library spectra in ascending precursor m/z
+ * order together with their peptide annotations and, optionally, their peaks
+ * vectorized using the settings recorded in the file header.<br>
+ * Layout (big-endian): a fixed-size header, the records, the table of
+ * precursor m/z values and the table of record offsets (one more than there
+ * are records, the last one denoting the end of the records). The tables
+ * trail the records, so that files can be written while the library spectra
+ * are being streamed. Library spectra are only decoded on demand from their
+ * mapped records.
+ *
+ * @author A. Behne
+ */
+public class SpectralLibraryFile {
+
+	/**
+	 * The file extension of spectral library files.
+	 */
+	public static final String EXTENSION = ".mpalib";
+
+	/**
+	 * The magic number identifying spectral library files ('MPSL').
+	 */
+	private static final int MAGIC = 0x4D50534C;
+
+	/**
+	 * The file format version.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * The size of the file header in bytes.
+	 */
+	private static final int HEADER_SIZE = 64;
+
+	/**
+	 * The maximum size of a single mapped file segment in bytes. Segments are
+	 * cut at record boundaries, so that records never straddle two segments.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/**
+	 * The character set of titles and sequences.
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The file channel backing the memory mapping.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The index of the vectorization method the stored vectors were created
+	 * with or <code>-1</code> if no vectors are stored.
+	 */
+	private int vectIndex;
+
+	/**
+	 * The index of the transformation method applied to stored vectors.
+	 */
+	private int trafoIndex;
+
+	/**
+	 * The index of the profiling method.
+	 */
+	private int profileIndex;
+
+	/**
+	 * The bin width.
+	 */
+	private double binWidth;
+
+	/**
+	 * The shift of the bin boundaries.
+	 */
+	private double binShift;
+
+	/**
+	 * The profile peak base width.
+	 */
+	private double baseWidth;
+
+	/**
+	 * The precursor m/z values of the records in ascending order.
+	 */
+	private double[] precursorMzs;
+
+	/**
+	 * The file offsets of the records, followed by the file length.
+	 */
+	private long[] offsets;
+
+	/**
+	 * The memory-mapped segments of the record section.
+	 */
+	private MappedByteBuffer[] segments;
+
+	/**
+	 * The file offsets of the mapped segments.
+	 */
+	private long[] segmentStarts;
+
+	/**
+	 * The indices of the segments containing the records.
+	 */
+	private int[] segmentIndices;
+
+	/**
+	 * Opens and maps the specified spectral library file.
+	 * @param file the library file
+	 * @throws IOException if the file could not be read or is no spectral
+	 *  library file
+	 */
+	public SpectralLibraryFile(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		channel = raf.getChannel();
+		try {
+			ByteBuffer header = this.read(0L, HEADER_SIZE);
+			if ((header.getInt(0) != MAGIC) || (header.getInt(4) != VERSION)) {
+				throw new IOException("No spectral library file: " + file.getName());
+			}
+			int size = header.getInt(8);
+			vectIndex = header.getInt(12);
+			trafoIndex = header.getInt(16);
+			profileIndex = header.getInt(20);
+			binWidth = header.getDouble(24);
+			binShift = header.getDouble(32);
+			baseWidth = header.getDouble(40);
+			long tablesOffset = header.getLong(48);
+			if (tablesOffset < HEADER_SIZE) {
+				// tables are registered last
+				throw new IOException("Incomplete spectral library file: " + file.getName());
+			}
+
+			// read tables
+			precursorMzs = new double[size];
+			this.read(tablesOffset, size * 8).asDoubleBuffer().get(precursorMzs);
+			offsets = new long[size + 1];
+			this.read(tablesOffset + size * 8L, (size + 1) * 8).asLongBuffer().get(offsets);
+
+			// map records, cutting segments at record boundaries
+			List<MappedByteBuffer> maps = new ArrayList<MappedByteBuffer>();
+			List<Long> starts = new ArrayList<Long>();
+			segmentIndices = new int[size];
+			long start = offsets[0];
+			for (int i = 0; i < size; i++) {
+				if (offsets[i + 1] - start > SEGMENT_SIZE) {
+					if (offsets[i] == start) {
+						throw new IOException("Spectral library record exceeds maximum size.");
+					}
+					maps.add(channel.map(MapMode.READ_ONLY, start, offsets[i] - start));
+					starts.add(start);
+					start = offsets[i];
+				}
+				segmentIndices[i] = maps.size();
+			}
+			maps.add(channel.map(MapMode.READ_ONLY, start, offsets[size] - start));
+			starts.add(start);
+			segments = maps.toArray(new MappedByteBuffer[maps.size()]);
+			segmentStarts = new long[starts.size()];
+			for (int i = 0; i < segmentStarts.length; i++) {
+				segmentStarts[i] = starts.get(i);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the specified library spectra into a spectral library file.
+	 * @param file the library file
+	 * @param candidates the library spectra
+	 * @param settings the search settings the stored vectors are created with
+	 * @param vect the vectorization method matching the settings, no vectors
+	 *  are stored if <code>null</code>
+	 * @param trafo the transformation method matching the settings
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(File file, Collection<SpectralSearchCandidate> candidates,
+			SpecSimSettings settings, BinningVectorization vect, Transformation trafo) throws IOException {
+		SpectralSearchCandidate[] sorted = candidates.toArray(new SpectralSearchCandidate[candidates.size()]);
+		Arrays.sort(sorted, new Comparator<SpectralSearchCandidate>() {
+			@Override
+			public int compare(SpectralSearchCandidate o1, SpectralSearchCandidate o2) {
+				int res = Double.compare(o1.getPrecursorMz(), o2.getPrecursorMz());
+				return (res != 0) ? res : Long.compare(o1.getLibpectrumID(), o2.getLibpectrumID());
+			}
+		});
+		final List<SpectralSearchCandidate> page = Arrays.asList(sorted);
+		try {
+			write(file, new SpectralSearchCandidateStream() {
+				/** Flag denoting whether the single page has been delivered. */
+				private boolean delivered;
+
+				@Override
+				public List<SpectralSearchCandidate> nextPage() {
+					if (delivered) {
+						return null;
+					}
+					delivered = true;
+					return page;
+				}
+
+				@Override
+				public void close() {
+					delivered = true;
+				}
+			}, settings, vect, trafo);
+		} catch (SQLException e) {
+			// in-memory streams neither access the database nor block
+			throw new IllegalStateException(e);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the library spectra delivered by the specified stream into a
+	 * spectral library file. Records are written page by page, so that only
+	 * the precursor m/z and offset tables are kept in memory.
+	 * @param file the library file
+	 * @param candidates the library spectra in ascending order of precursor
+	 *  m/z and library spectrum ID
+	 * @param settings the search settings the stored vectors are created with
+	 * @param vect the vectorization method matching the settings, no vectors
+	 *  are stored if <code>null</code>
+	 * @param trafo the transformation method matching the settings
+	 * @throws IOException if the file could not be written or the library
+	 *  spectra are not in ascending order
+	 * @throws SQLException if fetching library spectra from the database failed
+	 * @throws InterruptedException if interrupted while waiting for library spectra
+	 */
+	public static void write(File file, SpectralSearchCandidateStream candidates,
+			SpecSimSettings settings, BinningVectorization vect, Transformation trafo)
+			throws IOException, SQLException, InterruptedException {
+		double[] precursorMzs = new double[1024];
+		long[] offsets = new long[1025];
+		offsets[0] = HEADER_SIZE;
+		int size = 0;
+		long lastID = Long.MIN_VALUE;
+
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			// header, the number of records and the tables offset are filled in last
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeInt(0);
+			dos.writeInt((vect != null) ? settings.getVectIndex() : -1);
+			dos.writeInt(settings.getTrafoIndex());
+			dos.writeInt(settings.getProfileIndex());
+			dos.writeDouble(settings.getBinWidth());
+			dos.writeDouble(settings.getBinShift());
+			dos.writeDouble(settings.getBaseWidth());
+			dos.writeLong(0L);	// tables offset
+			dos.writeLong(0L);	// reserved
+
+			// records
+			List<SpectralSearchCandidate> page;
+			while ((page = candidates.nextPage()) != null) {
+				for (SpectralSearchCandidate candidate : page) {
+					double precursorMz = candidate.getPrecursorMz();
+					if ((size > 0) && ((precursorMz < precursorMzs[size - 1])
+							|| ((precursorMz == precursorMzs[size - 1]) && (candidate.getLibpectrumID() <= lastID)))) {
+						throw new IOException("Library spectra are not in ascending precursor m/z order.");
+					}
+					if (size == precursorMzs.length) {
+						precursorMzs = Arrays.copyOf(precursorMzs, size * 2);
+						offsets = Arrays.copyOf(offsets, size * 2 + 1);
+					}
+					precursorMzs[size] = precursorMz;
+					lastID = candidate.getLibpectrumID();
+					offsets[size + 1] = offsets[size] + writeRecord(dos, candidate, vect, trafo);
+					size++;
+				}
+			}
+
+			// tables
+			for (int i = 0; i < size; i++) {
+				dos.writeDouble(precursorMzs[i]);
+			}
+			for (int i = 0; i <= size; i++) {
+				dos.writeLong(offsets[i]);
+			}
+		} finally {
+			dos.close();
+		}
+
+		// register the tables, which marks the file as complete
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(8L);
+			raf.writeInt(size);
+			raf.seek(48L);
+			raf.writeLong(offsets[size]);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the record of a library spectrum.
+	 * @param dos the output stream
+	 * @param candidate the library spectrum
+	 * @param vect the vectorization method, no vector is stored if <code>null</code>
+	 * @param trafo the transformation method
+	 * @return the number of bytes written
+	 * @throws IOException if writing failed
+	 */
+	private static long writeRecord(DataOutputStream dos, SpectralSearchCandidate candidate,
+			BinningVectorization vect, Transformation trafo) throws IOException {
+		double[] mzs = candidate.getMzArray(), intensities = candidate.getIntensityArray();
+		SpectrumVector vector = (vect != null) ? vect.vectorize(mzs, intensities, mzs.length, trafo, null) : null;
+		byte[] title = getBytes(candidate.getSpectrumTitle());
+		List<Long> peptideIDs = candidate.getPeptideIDs();
+		List<String> sequences = candidate.getSequences();
+		int vectorSize = (vector != null) ? vector.size() : 0;
+		dos.writeLong(candidate.getLibpectrumID());
+		dos.writeInt(candidate.getPrecursorCharge());
+		dos.writeInt(mzs.length);
+		dos.writeInt(vectorSize);
+		dos.writeInt(peptideIDs.size());
+		dos.writeInt(title.length);
+		dos.writeInt(0);	// padding
+		dos.write(title);
+		for (double mz : mzs) {
+			dos.writeDouble(mz);
+		}
+		for (double intensity : intensities) {
+			dos.writeDouble(intensity);
+		}
+		for (int j = 0; j < vectorSize; j++) {
+			dos.writeInt(vector.getIndex(j));
+		}
+		for (int j = 0; j < vectorSize; j++) {
+			dos.writeDouble(vector.getValue(j));
+		}
+		long size = 32L + title.length + mzs.length * 16L + vectorSize * 12L;
+		for (int j = 0; j < peptideIDs.size(); j++) {
+			byte[] sequence = getBytes(sequences.get(j));
+			dos.writeLong(peptideIDs.get(j));
+			dos.writeInt(sequence.length);
+			dos.write(sequence);
+			size += 12L + sequence.length;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of library spectra.
+	 * @return the size
+	 */
+	public int size() {
+		return precursorMzs.length;
+	}
+
+	/**
+	 * Returns the precursor m/z of the library spectrum at the specified position.
+	 * @param index the position
+	 * @return the precursor m/z
+	 */
+	public double getPrecursorMz(int index) {
+		return precursorMzs[index];
+	}
+
+	/**
+	 * Returns whether the stored vectors were created using the vectorization
+	 * and transformation settings of the specified search settings.
+	 * @param settings the search settings
+	 * @return <code>true</code> if the stored vectors can be searched directly,
+	 *  <code>false</code> otherwise
+	 */
+	public boolean isVectorized(SpecSimSettings settings) {
+		return (vectIndex >= 0) && (vectIndex == settings.getVectIndex())
+				&& (trafoIndex == settings.getTrafoIndex())
+				&& (Double.compare(binWidth, settings.getBinWidth()) == 0)
+				&& (Double.compare(binShift, settings.getBinShift()) == 0)
+				// profile settings are irrelevant for other vectorization methods
+				&& ((vectIndex != 2) || ((profileIndex == settings.getProfileIndex())
+						&& (Double.compare(baseWidth, settings.getBaseWidth()) == 0)));
+	}
+
+	/**
+	 * Decodes the library spectrum at the specified position.
+	 * @param index the position
+	 * @param withVector <code>true</code> if stored vectors shall be attached
+	 *  to the candidate
+	 * @return the library spectrum
+	 */
+	public SpectralSearchCandidate get(int index, boolean withVector) {
+		int segmentIndex = segmentIndices[index];
+		ByteBuffer bb = segments[segmentIndex].duplicate();
+		bb.position((int) (offsets[index] - segmentStarts[segmentIndex]));
+
+		long libspectrumID = bb.getLong();
+		int charge = bb.getInt();
+		int peakCount = bb.getInt();
+		int vectorSize = bb.getInt();
+		int annotationCount = bb.getInt();
+		byte[] title = new byte[bb.getInt()];
+		bb.getInt();	// padding
+		bb.get(title);
+		double[] mzs = new double[peakCount];
+		double[] intensities = new double[peakCount];
+		bb.asDoubleBuffer().get(mzs).get(intensities);
+		bb.position(bb.position() + peakCount * 16);
+
+		SpectralSearchCandidate candidate = new SpectralSearchCandidate(libspectrumID,
+				new String(title, UTF8), precursorMzs[index], charge, mzs, intensities);
+		if (withVector && (vectorSize > 0)) {
+			SpectrumVector vector = new SpectrumVector(vectorSize);
+			vector.setBinning(binWidth, binShift);
+			for (int j = 0; j < vectorSize; j++) {
+				vector.add(bb.getInt(bb.position() + j * 4), bb.getDouble(bb.position() + vectorSize * 4 + j * 8));
+			}
+			candidate.setVector(vector);
+		}
+		bb.position(bb.position() + vectorSize * 12);
+		for (int j = 0; j < annotationCount; j++) {
+			long peptideID = bb.getLong();
+			byte[] sequence = new byte[bb.getInt()];
+			bb.get(sequence);
+			candidate.addAnnotation(peptideID, new String(sequence, UTF8));
+		}
+		return candidate;
+	}
+
+	/**
+	 * Returns the position of the first library spectrum whose precursor m/z
+	 * is not smaller than the specified value.
+	 * @param precursorMz the precursor m/z
+	 * @return the position
+	 */
+	public int fromIndex(double precursorMz) {
+		int lo = 0, hi = precursorMzs.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (precursorMzs[mid] < precursorMz) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the position past the last library spectrum whose precursor m/z
+	 * is not greater than the specified value.
+	 * @param precursorMz the precursor m/z
+	 * @return the end position (exclusive)
+	 */
+	public int toIndex(double precursorMz) {
+		int lo = 0, hi = precursorMzs.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (precursorMzs[mid] <= precursorMz) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns a stream of the library spectra inside the specified precursor
+	 * m/z intervals. Stored vectors are attached to the candidates if they
+	 * match the specified search settings.
+	 * @param precIntervals the non-overlapping precursor m/z intervals in
+	 *  ascending order
+	 * @param settings the search settings
+	 * @param pageSize the number of candidates per page
+	 * @return the candidate stream
+	 */
+	public SpectralSearchCandidateStream stream(final List<Interval> precIntervals,
+			SpecSimSettings settings, final int pageSize) {
+		final boolean withVector = this.isVectorized(settings);
+		return new SpectralSearchCandidateStream() {
+			/** The index of the current interval. */
+			private int interval = -1;
+			/** The position of the next library spectrum. */
+			private int next;
+			/** The end position of the current interval. */
+			private int end;
+
+			@Override
+			public List<SpectralSearchCandidate> nextPage() {
+				while (next >= end) {
+					if (++interval >= precIntervals.size()) {
+						return null;
+					}
+					Interval precInterval = precIntervals.get(interval);
+					// do not revisit spectra shared with the previous interval
+					next = Math.max(next, fromIndex(precInterval.getLeftBorder()));
+					end = toIndex(precInterval.getRightBorder());
+				}
+				int to = Math.min(next + Math.max(pageSize, 1), end);
+				List<SpectralSearchCandidate> page = new ArrayList<SpectralSearchCandidate>(to - next);
+				for (; next < to; next++) {
+					page.add(get(next, withVector));
+				}
+				return page;
+			}
+
+			@Override
+			public void close() {
+				interval = precIntervals.size();
+				next = end;
+			}
+		};
+	}
+
+	/**
+	 * Decodes all library spectra inside the specified precursor m/z
+	 * intervals into a candidate index.
+	 * @param precIntervals the non-overlapping precursor m/z intervals in
+	 *  ascending order
+	 * @param settings the search settings
+	 * @return the candidate index
+	 */
+	public SpectralSearchCandidateIndex getCandidateIndex(List<Interval> precIntervals, SpecSimSettings settings) {
+		List<SpectralSearchCandidate> candidates = new ArrayList<SpectralSearchCandidate>();
+		SpectralSearchCandidateStream stream = this.stream(precIntervals, settings, Integer.MAX_VALUE);
+		List<SpectralSearchCandidate> page;
+		try {
+			while ((page = stream.nextPage()) != null) {
+				candidates.addAll(page);
+			}
+		} catch (Exception e) {
+			// file streams neither access the database nor block
+			throw new IllegalStateException(e);
+		}
+		return new SpectralSearchCandidateIndex(candidates);
+	}
+
+	/**
+	 * Closes the underlying file. Candidates must not be decoded afterwards.
+	 * @throws IOException if the file could not be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reads the specified section of the file.
+	 * @param offset the file offset
+	 * @param length the number of bytes
+	 * @return the buffer containing the section
+	 * @throws IOException if reading failed
+	 */
+	private ByteBuffer read(long offset, int length) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(length);
+		while (bb.hasRemaining()) {
+			if (channel.read(bb, offset + bb.position()) < 0) {
+				throw new IOException("End of spectral library file has been reached prematurely.");
+			}
+		}
+		bb.flip();
+		return bb;
+	}
+
+	/**
+	 * Encodes the specified string, treating <code>null</code> as empty.
+	 * @param string the string
+	 * @return the UTF-8 bytes
+	 */
+	private static byte[] getBytes(String string) {
+		return (string != null) ? string.getBytes(UTF8) : new byte[0];
+	}
+
+}
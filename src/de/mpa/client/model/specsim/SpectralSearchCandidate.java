@@ -2,10 +2,15 @@ package de.mpa.client.model.specsim;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 
+import de.mpa.algorithms.similarity.SpectrumSketch;
+import de.mpa.algorithms.similarity.SpectrumVector;
+import de.mpa.io.BinaryPeakSupport;
+import de.mpa.io.PeakList;
 import de.mpa.io.SixtyFourBitStringSupport;
 
 public class SpectralSearchCandidate {
@@ -14,13 +19,18 @@ public class SpectralSearchCandidate {
 	private String spectrumTitle;
 	private double precursorMz;
 	private int precursorCharge;
-	private Map<Double, Double> peaks;
-	private long peptideID;
-	private String sequence;
+	private double[] mzArray;
+	private double[] intensityArray;
+	private volatile Map<Double, Double> peaks;
+	private volatile SpectrumSketch sketch;
+	private SpectrumVector vector;
+	private List<Long> peptideIDs = new ArrayList<Long>(1);
+	private List<String> sequences = new ArrayList<String>(1);
 	
 	/**
 	 * This constructor allows the creation of a SpectralSearchCandidate object based on a ResultSet
 	 * obtained by a complex SELECT query. Refer to SpectrumExtractor class for further details.
+	 * Peptide annotations are attached separately using {@link #addAnnotation(long, String)}.
 	 *
 	 * @param	aResultSet	ResultSet with the required columns to initialize this object with.
 	 * @exception	SQLException	when the ResultSet could not be read.
@@ -30,10 +40,40 @@ public class SpectralSearchCandidate {
 		this.spectrumTitle = aResultSet.getString("title");
 		this.precursorMz = aResultSet.getDouble("precursor_mz");
 		this.precursorCharge = aResultSet.getInt("precursor_charge");
-		this.peaks = SixtyFourBitStringSupport.buildPeakMap(SixtyFourBitStringSupport.decodeBase64StringToDoubles(aResultSet.getString("mzarray")),
-															SixtyFourBitStringSupport.decodeBase64StringToDoubles(aResultSet.getString("intarray")));
-		this.peptideID = aResultSet.getLong("peptideid");
-		this.sequence = aResultSet.getString("sequence");
+		this.mzArray = BinaryPeakSupport.decodeDoubles(aResultSet.getBytes("mzarray"));
+		this.intensityArray = BinaryPeakSupport.decodeDoubles(aResultSet.getBytes("intarray"));
+	}
+
+	/**
+	 * This constructor allows the creation of a SpectralSearchCandidate object from
+	 * previously read values, e.g. from a spectral library file.
+	 *
+	 * @param	libspectrumID	the library spectrum ID
+	 * @param	spectrumTitle	the spectrum title
+	 * @param	precursorMz	the precursor m/z
+	 * @param	precursorCharge	the precursor charge
+	 * @param	mzArray	the peak m/z values in ascending order
+	 * @param	intensityArray	the peak intensities in the order of the m/z values
+	 */
+	public SpectralSearchCandidate(long libspectrumID, String spectrumTitle, double precursorMz,
+			int precursorCharge, double[] mzArray, double[] intensityArray) {
+		this.libspectrumID = libspectrumID;
+		this.spectrumTitle = spectrumTitle;
+		this.precursorMz = precursorMz;
+		this.precursorCharge = precursorCharge;
+		this.mzArray = mzArray;
+		this.intensityArray = intensityArray;
+	}
+
+	/**
+	 * Attaches a peptide annotation to this candidate. Candidates are loaded
+	 * once per library spectrum, so a candidate may carry several annotations.
+	 * @param peptideID the peptide ID
+	 * @param sequence the peptide sequence
+	 */
+	public void addAnnotation(long peptideID, String sequence) {
+		peptideIDs.add(peptideID);
+		sequences.add(sequence);
 	}
 
 	/**
@@ -65,46 +105,100 @@ public class SpectralSearchCandidate {
 	}
 
 	/**
-	 * @return the peaks
+	 * @return the peak m/z values in ascending order
+	 */
+	public double[] getMzArray() {
+		return mzArray;
+	}
+
+	/**
+	 * @return the peak intensities in the order of the m/z values
+	 */
+	public double[] getIntensityArray() {
+		return intensityArray;
+	}
+
+	/**
+	 * @return the peaks, the map is built from the peak arrays on first access
+	 *  (candidates may be shared by concurrent search threads)
 	 */
 	public Map<Double, Double> getPeaks() {
+		Map<Double, Double> peaks = this.peaks;
+		if (peaks == null) {
+			peaks = SixtyFourBitStringSupport.buildPeakMap(mzArray, intensityArray);
+			this.peaks = peaks;
+		}
 		return peaks;
 	}
 	
+	/**
+	 * @return the sketch of the specified number of most intensive peaks, the
+	 *  sketch is kept for subsequent calls using the same parameters
+	 *  (candidates may be shared by concurrent search threads)
+	 */
+	public SpectrumSketch getSketch(int peakCount, double binWidth, double binShift) {
+		SpectrumSketch sketch = this.sketch;
+		if ((sketch == null) || !sketch.matches(peakCount, binWidth, binShift, SpectrumSketch.DEFAULT_SIZE)) {
+			sketch = new SpectrumSketch(mzArray, intensityArray, peakCount, binWidth, binShift);
+			this.sketch = sketch;
+		}
+		return sketch;
+	}
+	
+	/**
+	 * @return the pre-vectorized peaks matching the settings of the current
+	 *  search or <code>null</code> if the peaks need to be vectorized
+	 */
+	public SpectrumVector getVector() {
+		return vector;
+	}
+
+	/**
+	 * Attaches pre-vectorized peaks, must be called before the candidate is
+	 * handed over to search threads.
+	 * @param vector the vectorized and transformed peaks
+	 */
+	public void setVector(SpectrumVector vector) {
+		this.vector = vector;
+	}
+	
 	/**
 	 * @return the peaks
 	 */
 	public Map<Double, Double> getHighestPeaks(int k) {
 		if (k == 0) {
-    		return peaks;
+    		return getPeaks();
     	} else {
-    		HashMap<Double, Double> res = new HashMap<Double, Double>(peaks);
-    		TreeSet sortedSet = null;
-    		try {
-    			sortedSet = new TreeSet<Double>(res.values());
-    		} catch (Exception e) {
-    			e.printStackTrace();
-    		}
-    		while (sortedSet.size() > k) {
-    			res.values().remove(sortedSet.first());
-    			sortedSet.remove(sortedSet.first());
-    		}
-    		return res;
+    		return PeakList.selectHighest(mzArray, intensityArray, k, null).toMap();
     	}
 	}
 
 	/**
-	 * @return the peptideID
+	 * @return the ID of the first peptide annotation or <code>0</code> if there is none
 	 */
 	public long getPeptideID() {
-		return peptideID;
+		return (peptideIDs.isEmpty()) ? 0L : peptideIDs.get(0);
 	}
 
 	/**
-	 * @return the sequence
+	 * @return the sequence of the first peptide annotation or <code>null</code> if there is none
 	 */
 	public String getSequence() {
-		return sequence;
+		return (sequences.isEmpty()) ? null : sequences.get(0);
+	}
+
+	/**
+	 * @return the IDs of all peptide annotations
+	 */
+	public List<Long> getPeptideIDs() {
+		return Collections.unmodifiableList(peptideIDs);
+	}
+
+	/**
+	 * @return the sequences of all peptide annotations in the order of their IDs
+	 */
+	public List<String> getSequences() {
+		return Collections.unmodifiableList(sequences);
 	}
 
 }
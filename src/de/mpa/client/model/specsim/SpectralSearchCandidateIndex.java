@@ -0,0 +1,121 @@
+package de.mpa.client.model.specsim;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Immutable index of spectral search candidates sorted by precursor m/z.
+ * Candidates inside a precursor tolerance window are located by binary search,
+ * so that queries only touch those candidates which can actually match. The
+ * index is safe to share between concurrent search threads and may be re-used
+ * for any number of queries against the same library.
+ *
+ * @author A. Behne
+ */
+public class SpectralSearchCandidateIndex {
+
+	/**
+	 * The candidates in ascending precursor m/z order.
+	 */
+	private final SpectralSearchCandidate[] candidates;
+
+	/**
+	 * The precursor m/z values of the candidates in ascending order.
+	 */
+	private final double[] precursorMzs;
+
+	/**
+	 * Creates an index of the specified candidates. Candidates need only be
+	 * sorted if they are not provided in ascending precursor m/z order already.
+	 * @param candidates the candidates
+	 */
+	public SpectralSearchCandidateIndex(Collection<SpectralSearchCandidate> candidates) {
+		this.candidates = candidates.toArray(new SpectralSearchCandidate[candidates.size()]);
+		boolean sorted = true;
+		for (int i = 1; (i < this.candidates.length) && sorted; i++) {
+			sorted = (this.candidates[i - 1].getPrecursorMz() <= this.candidates[i].getPrecursorMz());
+		}
+		if (!sorted) {
+			Arrays.sort(this.candidates, new Comparator<SpectralSearchCandidate>() {
+				@Override
+				public int compare(SpectralSearchCandidate o1, SpectralSearchCandidate o2) {
+					return Double.compare(o1.getPrecursorMz(), o2.getPrecursorMz());
+				}
+			});
+		}
+		this.precursorMzs = new double[this.candidates.length];
+		for (int i = 0; i < precursorMzs.length; i++) {
+			precursorMzs[i] = this.candidates[i].getPrecursorMz();
+		}
+	}
+
+	/**
+	 * Returns the number of indexed candidates.
+	 * @return the size
+	 */
+	public int size() {
+		return candidates.length;
+	}
+
+	/**
+	 * Returns the candidate at the specified position.
+	 * @param index the position
+	 * @return the candidate
+	 */
+	public SpectralSearchCandidate get(int index) {
+		return candidates[index];
+	}
+
+	/**
+	 * Returns the precursor m/z of the candidate at the specified position.
+	 * @param index the position
+	 * @return the precursor m/z
+	 */
+	public double getPrecursorMz(int index) {
+		return precursorMzs[index];
+	}
+
+	/**
+	 * Returns the position of the first candidate whose precursor m/z differs
+	 * from the specified value by less than the specified tolerance.
+	 * @param precursorMz the query precursor m/z
+	 * @param tolMz the precursor tolerance
+	 * @return the first position inside the tolerance window
+	 */
+	public int fromIndex(double precursorMz, double tolMz) {
+		// first position satisfying (precursorMz - candidateMz < tolMz)
+		int lo = 0, hi = precursorMzs.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (precursorMz - precursorMzs[mid] < tolMz) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the position past the last candidate whose precursor m/z differs
+	 * from the specified value by less than the specified tolerance.
+	 * @param precursorMz the query precursor m/z
+	 * @param tolMz the precursor tolerance
+	 * @return the end position (exclusive) of the tolerance window
+	 */
+	public int toIndex(double precursorMz, double tolMz) {
+		// first position violating (candidateMz - precursorMz < tolMz)
+		int lo = 0, hi = precursorMzs.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (precursorMzs[mid] - precursorMz < tolMz) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+}
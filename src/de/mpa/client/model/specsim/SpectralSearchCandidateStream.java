@@ -0,0 +1,29 @@
+package de.mpa.client.model.specsim;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Stream of spectral search candidates delivered page by page in ascending
+ * precursor m/z order, e.g. fetched from the database or read from a library
+ * file.
+ *
+ * @author A. Behne
+ */
+public interface SpectralSearchCandidateStream {
+
+	/**
+	 * Returns the next page of candidates.
+	 * @return the next page in ascending precursor m/z order or
+	 *  <code>null</code> if all candidates have been consumed
+	 * @throws SQLException if fetching candidates from the database failed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public List<SpectralSearchCandidate> nextPage() throws SQLException, InterruptedException;
+
+	/**
+	 * Stops delivering candidates and releases associated resources.
+	 */
+	public void close();
+
+}
@@ -10,7 +10,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -36,6 +35,7 @@ import de.mpa.client.Constants;
 import de.mpa.client.ui.ClientFrame;
 import de.mpa.io.MascotGenericFile;
 import de.mpa.io.MascotGenericFileReader;
+import de.mpa.io.MascotGenericFileReader.LoadMode;
 
 public class ClusterPanel extends JPanel {				
 	
@@ -131,7 +131,7 @@ public class ClusterPanel extends JPanel {
 								for (File file : slctdFls) {
 									int i = 1;
 									try {
-										MascotGenericFileReader reader = new MascotGenericFileReader(file);
+										MascotGenericFileReader reader = new MascotGenericFileReader(file, LoadMode.PARALLEL);
 										List<MascotGenericFile> mgfFiles = reader.getSpectrumFiles();
 										for (MascotGenericFile mgf : mgfFiles) {
 											tblMdl.addRow(new Object[] {"Spectrum " + i++, mgf, false});
@@ -266,10 +266,12 @@ public class ClusterPanel extends JPanel {
 	
 	private MascotGenericFile normalizeMGF(MascotGenericFile mgf) {
 		double maxInt = mgf.getHighestIntensity()/100.0;
-		MascotGenericFile mgfNrmlzd = new MascotGenericFile(mgf.getFilename(), mgf.getTitle(), new HashMap<Double, Double>(mgf.getPeaks()), mgf.getPrecursorMZ(), mgf.getIntensity(), mgf.getCharge());
-		for (Entry<Double, Double> peak : mgfNrmlzd.getPeaks().entrySet()) {
-			peak.setValue(peak.getValue()/maxInt); 
+		MascotGenericFile mgfNrmlzd = new MascotGenericFile(mgf.getFilename(), mgf.getTitle(), new HashMap<Double, Double>(), mgf.getPrecursorMZ(), mgf.getIntensity(), mgf.getCharge());
+		double[] intensities = mgf.getIntensityArray().clone();
+		for (int i = 0; i < intensities.length; i++) {
+			intensities[i] /= maxInt; 
 		}
+		mgfNrmlzd.setPeaks(mgf.getMzArray(), intensities, null);
 		return mgfNrmlzd;
 	}
 
@@ -116,6 +116,8 @@ import de.mpa.client.ui.icons.IconConstants;
 import de.mpa.db.extractor.SpectrumExtractor;
 import de.mpa.io.InputFileReader;
 import de.mpa.io.MascotGenericFile;
+import de.mpa.io.MascotGenericFileIndex;
+import de.mpa.io.MascotGenericFileReader;
 
 /**
  * Panel for importing spectrum files to be used for searches.
@@ -717,7 +719,11 @@ public class FilePanel extends JPanel implements Busyable {
 		if ((reader != null) && (!reader.getFilename().equals(file.getName()))) {
 			// TODO: process file switching using background worker linked to progress bar
 			reader = InputFileReader.createInputFileReader(file);
-			reader.survey();
+			if (reader instanceof MascotGenericFileReader) {
+				((MascotGenericFileReader) reader).index();
+			} else {
+				reader.survey();
+			}
 		}
 		int spectrumIndex = (Integer) spectrumNode.getUserObject() - 1;
 		
@@ -1050,7 +1056,13 @@ public class FilePanel extends JPanel implements Busyable {
 								}
 							}
 						});
-						reader.survey();
+						// use sidecar index for MGF files, build it if necessary
+						MascotGenericFileIndex mgfIndex = null;
+						if (reader instanceof MascotGenericFileReader) {
+							mgfIndex = ((MascotGenericFileReader) reader).index();
+						} else {
+							reader.survey();
+						}
 						
 						positions.addAll(reader.getSpectrumPositions(false));
 						specPosMap.put(file.getAbsolutePath(), positions);
@@ -1082,33 +1094,44 @@ public class FilePanel extends JPanel implements Busyable {
 						
 						client.firePropertyChange("resetcur", -1L, positions.size());
 	
-						int index = 1;
 						List<TreePath> toBeAdded = new ArrayList<TreePath>();
+						double noiseLvl = (Double) filterParams.get("noiselvl").getValue();
 						for (int j = 0; j < positions.size(); j++) {
-							MascotGenericFile mgf = reader.loadSpectrum(index - 1);
-							
-							Long spectrumID = mgf.getSpectrumID();
-							if (spectrumID != null) {
-								// this is just a dummy spectrum, fetch from database
-								mgf = new SpectrumExtractor(client.getDatabaseConnection()).getSpectrumBySpectrumID(spectrumID);
-							}
-	//							totalSpectraList.add(mgf);
-							ticList.add(mgf.getTotalIntensity());
-	
-							// examine spectrum regarding filter criteria
-							int numPeaks = 0;
-							double noiseLvl = (Double) filterParams.get("noiselvl").getValue();
-							for (double intensity : mgf.getPeaks().values()) {
-								if (intensity > noiseLvl) {
-									numPeaks++;
+							String title;
+							int numPeaks;
+							double TIC, SNR;
+							if ((mgfIndex != null) && (noiseLvl <= 0.0) && (mgfIndex.getSpectrumID(j) == null)) {
+								// without noise filtering all node values are available from the index
+								title = mgfIndex.getTitle(j);
+								numPeaks = mgfIndex.getPeakCount(j);
+								TIC = mgfIndex.getTotalIntensity(j);
+								SNR = TIC;
+							} else {
+								MascotGenericFile mgf = reader.loadSpectrum(j);
+								
+								Long spectrumID = mgf.getSpectrumID();
+								if (spectrumID != null) {
+									// this is just a dummy spectrum, fetch from database
+									mgf = new SpectrumExtractor(client.getDatabaseConnection()).getSpectrumBySpectrumID(spectrumID);
 								}
+		//							totalSpectraList.add(mgf);
+		
+								// examine spectrum regarding filter criteria
+								numPeaks = 0;
+								for (double intensity : mgf.getIntensityArray()) {
+									if (intensity > noiseLvl) {
+										numPeaks++;
+									}
+								}
+								title = mgf.getTitle();
+								TIC = mgf.getTotalIntensity();
+								SNR = mgf.getSNR(noiseLvl);
 							}
-							double TIC = mgf.getTotalIntensity();
-							double SNR = mgf.getSNR(noiseLvl);
+							ticList.add(TIC);
 	
 							// append new spectrum node to file node
 							SortableCheckBoxTreeTableNode spectrumNode = new SortableCheckBoxTreeTableNode(
-									index, mgf.getTitle(), numPeaks, TIC, SNR) {
+									j + 1, title, numPeaks, TIC, SNR) {
 								@Override
 								public Object getValueAt(int column) {
 									if (column == 0) {
@@ -1126,8 +1149,6 @@ public class FilePanel extends JPanel implements Busyable {
 							if ((numPeaks >= minPeaks) && (TIC >= minTIC) && (SNR >= minSNR)) {
 								toBeAdded.add(new TreePath(new Object[] {treeRoot, fileNode, spectrumNode}));
 							}
-							index++;
-							
 							client.firePropertyChange("progressmade", false, true);
 						}
 	
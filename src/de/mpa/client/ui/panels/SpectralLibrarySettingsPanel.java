@@ -113,6 +113,35 @@ public class SpectralLibrarySettingsPanel extends JPanel {
 	 */
 	private JSpinner threshScSpn;
 
+	/**
+	 * The check box for determining whether only a certain number of
+	 * best-scoring matches shall be kept per query spectrum.
+	 */
+	private JCheckBox maxMatchesChk;
+
+	/**
+	 * The spinner to define the amount of best-scoring matches kept per query
+	 * spectrum.
+	 */
+	private JSpinner maxMatchesSpn;
+
+	/**
+	 * The check box for determining whether candidates shall be pre-filtered
+	 * by comparing sketches of their most intensive peaks.
+	 */
+	private JCheckBox sketchChk;
+
+	/**
+	 * The spinner to define the amount of most intensive peaks to be sketched.
+	 */
+	private JSpinner sketchPeaksSpn;
+
+	/**
+	 * The spinner to define the minimum sketch similarity above which a
+	 * candidate spectrum is scored.
+	 */
+	private JSpinner sketchThreshSpn;
+
 	/**
 	 * Constructs a panel containing controls for spectral library search settings.
 	 */
@@ -351,7 +380,7 @@ public class SpectralLibrarySettingsPanel extends JPanel {
 		// sub-sub-panel for further scoring parameters
 		JPanel scorSubPnl = new JPanel();
 		scorSubPnl.setLayout(new FormLayout("5dlu:g, r:p, 2dlu, p, 2dlu, p",
-				"p, 5dlu, p"));
+				"p, 5dlu, p, 5dlu, p, 5dlu, p"));
 
 		final JLabel xCorrOffLbl = new JLabel("Correlation Offsets  \u00b1"); // +/- as unicode
 		xCorrOffLbl.setEnabled(false);
@@ -371,6 +400,61 @@ public class SpectralLibrarySettingsPanel extends JPanel {
 		scorSubPnl.add(xCorrOffLbl2, cc.xy(6, 1));
 		scorSubPnl.add(new JLabel("Score Threshold  \u2265"), cc.xy(2, 3)); // >= as unicode
 		scorSubPnl.add(threshScSpn, cc.xy(4, 3));
+
+		// sub-sub-sub panel for limiting the number of matches per query
+		final JPanel maxMatchesPnl = new JPanel();
+		maxMatchesPnl.setLayout(new BoxLayout(maxMatchesPnl, BoxLayout.X_AXIS));
+
+		maxMatchesChk = new JCheckBox("Keep only ");
+
+		maxMatchesSpn = new JSpinner(new SpinnerNumberModel(10, 1, null, 1));
+		maxMatchesSpn.setEnabled(false);
+
+		maxMatchesPnl.add(maxMatchesChk);
+		maxMatchesPnl.add(maxMatchesSpn);
+		maxMatchesPnl.add(new JLabel(" best matches per spectrum"));
+
+		// add action listener to match limit checkbox to synch enable state
+		// with spinner
+		maxMatchesChk.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				maxMatchesSpn.setEnabled(((JCheckBox) e.getSource()).isSelected());
+			}
+		});
+
+		scorSubPnl.add(maxMatchesPnl, cc.xyw(2, 5, 5));
+
+		// sub-sub-sub panel for sketch-based candidate pre-filtering
+		JPanel sketchPnl = new JPanel();
+		sketchPnl.setLayout(new BoxLayout(sketchPnl, BoxLayout.X_AXIS));
+
+		sketchChk = new JCheckBox("Pre-filter by ");
+
+		sketchPeaksSpn = new JSpinner(new SpinnerNumberModel(20, 1, null, 1));
+		sketchPeaksSpn.setEnabled(false);
+
+		sketchThreshSpn = new JSpinner(new SpinnerNumberModel(0.05, 0.0, 1.0, 0.01));
+		sketchThreshSpn.setEditor(new JSpinner.NumberEditor(sketchThreshSpn, "0.00"));
+		sketchThreshSpn.setEnabled(false);
+
+		sketchPnl.add(sketchChk);
+		sketchPnl.add(sketchPeaksSpn);
+		sketchPnl.add(new JLabel(" peaks, overlap \u2265 ")); // >= as unicode
+		sketchPnl.add(sketchThreshSpn);
+
+		// add action listener to pre-filter checkbox to synch enable state
+		// with spinners
+		sketchChk.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				boolean selected = ((JCheckBox) e.getSource()).isSelected();
+				sketchPeaksSpn.setEnabled(selected);
+				sketchThreshSpn.setEnabled(selected);
+			}
+		});
+
+		scorSubPnl.add(sketchPnl, cc.xyw(2, 7, 5));
 		scorSubPnl.setEnabled(false);
 
 		// add action listener to similarity measure combo box to disable/enable
@@ -432,6 +516,9 @@ public class SpectralLibrarySettingsPanel extends JPanel {
 		settings.setProfileIndex(proMethodCbx.getSelectedIndex());
 		settings.setBaseWidth((Double) proBaseWidthSpn.getValue());
 		settings.setXCorrOffset((Integer) xCorrOffSpn.getValue());
+		settings.setMaxMatches(maxMatchesSpn.isEnabled() ? (Integer) maxMatchesSpn.getValue() : 0);
+		settings.setSketchPeaks(sketchPeaksSpn.isEnabled() ? (Integer) sketchPeaksSpn.getValue() : 0);
+		settings.setSketchThreshold((Double) sketchThreshSpn.getValue());
 		return settings;
 	}
 	
@@ -445,6 +532,9 @@ public class SpectralLibrarySettingsPanel extends JPanel {
 		if (enabled) {	// restore proper enabled state by enforcing listener events
 			vectMethodCbx.setSelectedIndex(vectMethodCbx.getSelectedIndex());
 			pickSpn.setEnabled(pickChk.isSelected());
+			maxMatchesSpn.setEnabled(maxMatchesChk.isSelected());
+			sketchPeaksSpn.setEnabled(sketchChk.isSelected());
+			sketchThreshSpn.setEnabled(sketchChk.isSelected());
 			measureCbx.setSelectedIndex(measureCbx.getSelectedIndex());
 		}
 	}
@@ -21,13 +21,14 @@ import de.mpa.client.model.dbsearch.SearchEngineType;
 import de.mpa.client.model.specsim.SpectrumSpectrumMatch;
 import de.mpa.client.settings.ConnectionParameters;
 import de.mpa.client.settings.ParameterMap;
+import de.mpa.db.accessor.Spectrum;
 import de.mpa.db.accessor.Uniprotentry;
+import de.mpa.db.storager.BasicStorager;
 import de.mpa.db.storager.CruxStorager;
 import de.mpa.db.storager.InspectStorager;
 import de.mpa.db.storager.OmssaStorager;
 import de.mpa.db.storager.SpecSimStorager;
 import de.mpa.db.storager.SpectrumStorager;
-import de.mpa.db.storager.Storager;
 import de.mpa.db.storager.XTandemStorager;
 import de.mpa.util.Formatter;
 
@@ -100,55 +101,71 @@ public class DBManager {
 	 * This method stores the spectrum contents to the database.
 	 * @param spectrumFile The spectrum file.
 	 * @param experimentid The experiment id.
+	 * @param resolver The resolver receiving the searchspectrum IDs of the file's titles.
 	 * @throws SQLException  
 	 * @throws IOException 
 	 */
-	public SpectrumStorager storeSpectra(File spectrumFile, long experimentid) throws IOException, SQLException, InterruptedException {
+	public SpectrumStorager storeSpectra(File spectrumFile, long experimentid, SpectrumIdResolver resolver) throws IOException, SQLException, InterruptedException {
 		// Store the spectra from the spectrum file for a given experiment.	
-		SpectrumStorager specStorager = new SpectrumStorager(conn, spectrumFile, experimentid, false);
+		SpectrumStorager specStorager = new SpectrumStorager(conn, spectrumFile, experimentid, false, resolver);
 		spectraThread = new Thread(specStorager);
 		spectraThread.start();
 		spectraThread.join();
 		return specStorager;
 	}
 	
+	/**
+	 * This method converts spectrum peak arrays still stored as 64-bit Strings
+	 * into the binary format.
+	 * @return the number of converted spectra
+	 * @throws SQLException
+	 */
+	public int migratePeakArrays() throws SQLException {
+		return Spectrum.migratePeakArrays(conn, 1000);
+	}
+	
 	/**
 	 * This method is called to store the database search results to the SQL database.
 	 * @param searchEngineType SearchEngine type.
 	 * @param resultFilename Search engine result filename
 	 * @param qValueFile q-value result file
+	 * @param resolver The resolver of the searched spectrum file's titles.
+	 * @return the storager
 	 * @throws InterruptedException
 	 */
-	public void storeDatabaseSearchResults(SearchEngineType searchEngineType, String resultFilename, String qValueFilename) throws InterruptedException {
+	public BasicStorager storeDatabaseSearchResults(SearchEngineType searchEngineType, String resultFilename, String qValueFilename, SpectrumIdResolver resolver) throws InterruptedException {
 		// Wait for spectra to be stored to the database.
 		spectraThread.join();
-		Storager storager = null;
+		BasicStorager storager = null;
 		
 		if (searchEngineType == SearchEngineType.XTANDEM && qValueFilename != null) {
 			String targetScoreFilename = qValueFilename.substring(0, qValueFilename.lastIndexOf("_qvalued")) + "_target.out";;
-			storager = new XTandemStorager(conn, new File(resultFilename), new File(targetScoreFilename), new File(qValueFilename));
+			storager = new XTandemStorager(conn, new File(resultFilename), new File(targetScoreFilename), new File(qValueFilename), resolver);
 		}
-		else if (searchEngineType == SearchEngineType.XTANDEM && qValueFilename == null) storager = new XTandemStorager(conn, new File(resultFilename));
+		else if (searchEngineType == SearchEngineType.XTANDEM && qValueFilename == null) storager = new XTandemStorager(conn, new File(resultFilename), resolver);
 		else if (searchEngineType == SearchEngineType.OMSSA && qValueFilename != null) {
 			String targetScoreFilename = qValueFilename.substring(0, qValueFilename.lastIndexOf("_qvalued")) + "_target.out";;
-			storager = new OmssaStorager(conn, new File(resultFilename), new File (targetScoreFilename), new File(qValueFilename));
+			storager = new OmssaStorager(conn, new File(resultFilename), new File (targetScoreFilename), new File(qValueFilename), resolver);
 		}
-		else if (searchEngineType == SearchEngineType.OMSSA && qValueFilename == null) storager = new OmssaStorager(conn, new File(resultFilename));
+		else if (searchEngineType == SearchEngineType.OMSSA && qValueFilename == null) storager = new OmssaStorager(conn, new File(resultFilename), resolver);
 		else if (searchEngineType == SearchEngineType.CRUX ) storager = new CruxStorager(conn, new File(resultFilename));
 		else if (searchEngineType == SearchEngineType.INSPECT) storager = new InspectStorager(conn, new File(resultFilename));
 		storager.run();
+		return storager;
 	}
 
 	/**
 	 * Stores found spectrum-spectrum matches to the DB.
 	 * @param results List of SSMs.
+	 * @return the storager
 	 * @throws InterruptedException 
 	 */
-	public void storeSpecSimResults(List<SpectrumSpectrumMatch> results) throws InterruptedException {
+	public SpecSimStorager storeSpecSimResults(List<SpectrumSpectrumMatch> results) throws InterruptedException {
 		SpecSimStorager storager = new SpecSimStorager(conn, results);
 		Thread thread = new Thread(storager);
 		thread.start();
 		thread.join();
+		return storager;
 	}
 	
 	/**
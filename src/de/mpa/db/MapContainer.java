@@ -18,11 +18,6 @@ import de.mpa.io.fasta.FastaLoader;
  */
 public class MapContainer {
 	
-	/**
-	 * Map from spectrum title to spectrum id.
-	 */
-	 public static HashMap<String, Long> SpectrumTitle2IdMap;
-	 
 	 /**
 	  * Map from spectrum file name to spectrum id.
 	  */
@@ -0,0 +1,218 @@
+package de.mpa.db;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe resolver of spectrum titles to searchspectrum IDs, scoped to a
+ * single uploaded spectrum file. Titles are not kept in memory, instead 64-bit
+ * title fingerprints and IDs are stored in an off-heap open-addressing hash
+ * table, which is doubled in size whenever it fills up.<br>
+ * Titles repeated within the file resolve to the ID registered last. Titles
+ * of other files are never consulted, so results can only be linked to the
+ * spectra of the file they were searched for.
+ *
+ * @author T.Muth
+ */
+public class SpectrumIdResolver {
+
+	/**
+	 * The default initial number of table slots (16 bytes each).
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+
+	/**
+	 * The maximum table load factor.
+	 */
+	private static final double MAX_LOAD = 0.75;
+
+	/**
+	 * Reserved fingerprint denoting empty slots.
+	 */
+	private static final long EMPTY = 0L;
+
+	/**
+	 * The number of table slots, a power of two.
+	 */
+	private int capacity;
+
+	/**
+	 * The off-heap table of fingerprint/ID pairs, allocated on first use.
+	 */
+	private ByteBuffer table;
+
+	/**
+	 * The number of occupied slots.
+	 */
+	private int size;
+
+	/**
+	 * The lock guarding the table.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a resolver with the default initial capacity.
+	 */
+	public SpectrumIdResolver() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a resolver with the specified initial capacity.
+	 * @param capacity the initial number of table slots, rounded up to a power
+	 *  of two
+	 */
+	public SpectrumIdResolver(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+	}
+
+	/**
+	 * Returns the number of registered fingerprints.
+	 * @return the size
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Registers the searchspectrum ID of the specified spectrum title,
+	 * replacing the ID registered for the same title before.
+	 * @param title the spectrum title
+	 * @param searchspectrumid the searchspectrum ID
+	 */
+	public void put(CharSequence title, long searchspectrumid) {
+		long fingerprint = fingerprint(title, 0, title.length());
+		lock.writeLock().lock();
+		try {
+			if (table == null) {
+				table = ByteBuffer.allocateDirect(capacity * 16);
+			} else if (size >= capacity * MAX_LOAD) {
+				this.grow();
+			}
+			int pos = this.findSlot(fingerprint) * 16;
+			if (table.getLong(pos) == EMPTY) {
+				table.putLong(pos, fingerprint);
+				size++;
+			}
+			table.putLong(pos + 8, searchspectrumid);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the searchspectrum ID of the specified spectrum title.
+	 * @param title the spectrum title
+	 * @return the searchspectrum ID or <code>null</code> if the title is not
+	 *  registered
+	 */
+	public Long get(CharSequence title) {
+		return this.get(title, 0, title.length());
+	}
+
+	/**
+	 * Returns the searchspectrum ID of the spectrum title made up of the
+	 * specified range of characters, e.g. to ignore trailing annotations added
+	 * by search engines without creating substrings.
+	 * @param title the character sequence containing the spectrum title
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 * @return the searchspectrum ID or <code>null</code> if the title is not
+	 *  registered
+	 */
+	public Long get(CharSequence title, int start, int end) {
+		long fingerprint = fingerprint(title, start, end);
+		lock.readLock().lock();
+		try {
+			if (table != null) {
+				int pos = this.findSlot(fingerprint) * 16;
+				if (table.getLong(pos) != EMPTY) {
+					return table.getLong(pos + 8);
+				}
+			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes all entries and frees the off-heap table.
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			table = null;
+			size = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Doubles the number of table slots and re-inserts all entries.
+	 */
+	private void grow() {
+		ByteBuffer old = table;
+		int oldCapacity = capacity;
+		capacity <<= 1;
+		table = ByteBuffer.allocateDirect(capacity * 16);
+		for (int i = 0; i < oldCapacity; i++) {
+			long fingerprint = old.getLong(i * 16);
+			if (fingerprint != EMPTY) {
+				int pos = this.findSlot(fingerprint) * 16;
+				table.putLong(pos, fingerprint);
+				table.putLong(pos + 8, old.getLong(i * 16 + 8));
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot containing the specified fingerprint or the empty slot
+	 * at which it would have to be inserted.
+	 * @param fingerprint the fingerprint
+	 * @return the slot index
+	 */
+	private int findSlot(long fingerprint) {
+		int mask = capacity - 1;
+		int slot = (int) fingerprint & mask;
+		while (true) {
+			long stored = table.getLong(slot * 16);
+			if ((stored == EMPTY) || (stored == fingerprint)) {
+				return slot;
+			}
+			// linear probing
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Computes the 64-bit fingerprint of the specified range of characters
+	 * using FNV-1a followed by a MurmurHash3 finalization step.
+	 * @param title the character sequence
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 * @return the fingerprint, never {@link #EMPTY}
+	 */
+	protected static long fingerprint(CharSequence title, int start, int end) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = start; i < end; i++) {
+			h ^= title.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (h == EMPTY) ? 1L : h;
+	}
+
+}
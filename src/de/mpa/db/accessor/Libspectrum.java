@@ -8,8 +8,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
-import de.mpa.db.MapContainer;
-
 
 /**
  * Extends the standard accessor for the database.
@@ -72,16 +70,6 @@ public class Libspectrum extends LibspectrumTableAccessor {
         return temp;
     }
     
-    public static long getSpectrumIdFromSpectrumTitle(String spectrumName, boolean omssa) {
-    	String formatted = "";
-    	if(omssa){
-    		formatted = spectrumName.replace("\\\\", "/");
-    	} else {
-    		formatted = spectrumName.replace('\\', '/');
-    	}
-        return MapContainer.SpectrumTitle2IdMap.get(formatted);
-    }
-    
     /**
      * This method will find a spectrum file from the current connection, based on the filename.
      *
@@ -6,7 +6,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 
-import de.mpa.db.MapContainer;
+import de.mpa.io.BinaryPeakSupport;
 import de.mpa.io.MascotGenericFile;
 
 public class Spectrum extends SpectrumTableAccessor {
@@ -23,6 +23,79 @@ public class Spectrum extends SpectrumTableAccessor {
         super(params);
     }
 
+    /**
+     * Returns the decoded m/z values of this spectrum.
+     * @return the m/z values
+     */
+    public double[] getMzValues() {
+    	return BinaryPeakSupport.decodeDoubles(iMzarray);
+    }
+
+    /**
+     * Returns the decoded intensity values of this spectrum.
+     * @return the intensities
+     */
+    public double[] getIntensityValues() {
+    	return BinaryPeakSupport.decodeDoubles(iIntarray);
+    }
+
+    /**
+     * Returns the decoded peak charges of this spectrum.
+     * @return the charges or <code>null</code> if no charges are stored
+     */
+    public byte[] getChargeValues() {
+    	return BinaryPeakSupport.decodeCharges(iChargearray);
+    }
+
+    /**
+     * Converts peak arrays still stored as 64-bit Strings into the lossless
+     * binary format. Rows are processed in batches of ascending spectrum ID
+     * and each batch is committed separately, so the migration can be
+     * interrupted and resumed at any time.
+     * @param conn the database connection
+     * @param batchSize the number of rows to process per batch
+     * @return the number of converted rows
+     * @throws SQLException if the rows could not be read or updated
+     */
+    public static int migratePeakArrays(Connection conn, int batchSize) throws SQLException {
+    	PreparedStatement select = conn.prepareStatement("SELECT spectrumid, mzarray, intarray, chargearray" +
+    			" FROM spectrum WHERE spectrumid > ? ORDER BY spectrumid LIMIT ?");
+    	PreparedStatement update = conn.prepareStatement("UPDATE spectrum SET mzarray = ?, intarray = ?," +
+    			" chargearray = ?, modificationdate = CURRENT_TIMESTAMP WHERE spectrumid = ?");
+    	int converted = 0;
+    	long lastID = 0L;
+    	int rows;
+    	do {
+    		rows = 0;
+    		select.setLong(1, lastID);
+    		select.setInt(2, batchSize);
+    		ResultSet rs = select.executeQuery();
+    		while (rs.next()) {
+    			rows++;
+    			lastID = rs.getLong("spectrumid");
+    			byte[] mzs = rs.getBytes("mzarray");
+    			byte[] intensities = rs.getBytes("intarray");
+    			byte[] charges = rs.getBytes("chargearray");
+    			if ((mzs == null) || BinaryPeakSupport.isBinary(mzs)) {
+    				// already converted
+    				continue;
+    			}
+    			update.setBytes(1, BinaryPeakSupport.encodeDoubles(BinaryPeakSupport.decodeDoubles(mzs)));
+    			update.setBytes(2, BinaryPeakSupport.encodeDoubles(BinaryPeakSupport.decodeDoubles(intensities)));
+    			update.setBytes(3, BinaryPeakSupport.encodeCharges(BinaryPeakSupport.decodeCharges(charges)));
+    			update.setLong(4, lastID);
+    			update.addBatch();
+    			converted++;
+    		}
+    		rs.close();
+    		update.executeBatch();
+    		conn.commit();
+    	} while (rows == batchSize);
+    	select.close();
+    	update.close();
+    	return converted;
+    }
+
     /**
      * This method will find a spectrum file from the current connection, based on the spectrum name.
      *
@@ -74,15 +147,6 @@ public class Spectrum extends SpectrumTableAccessor {
         return res;
     }
     
-    /**
-     * Returns the spectrum id for a provided title.
-     * @param title
-     * @return
-     */
-    public static long getSpectrumIdFromTitle(String title) {
-    	return getSpectrumIdFromTitle(title, false);
-    }
-    
     /**
      * Finds the Spectrum from a given spectrum id.
      * @param spectrumid The spectrum id given from the actual spectrum.
@@ -102,15 +166,5 @@ public class Spectrum extends SpectrumTableAccessor {
          ps.close();
          return temp;
     }
-    
-    public static long getSpectrumIdFromTitle(String title, boolean omssa) {
-    	String formatted = "";
-    	if(omssa){
-    		formatted = title.replace("\\\\", "/");
-    	} else {
-    		formatted = title.replace('\\', '/');
-    	}
-        return MapContainer.SpectrumTitle2IdMap.get(formatted);
-    }
 
 }
@@ -77,19 +77,19 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 	/**
 	 * This variable represents the contents for the 'mzarray' column.
 	 */
-	protected String iMzarray = null;
+	protected byte[] iMzarray = null;
 
 
 	/**
 	 * This variable represents the contents for the 'intarray' column.
 	 */
-	protected String iIntarray = null;
+	protected byte[] iIntarray = null;
 
 
 	/**
 	 * This variable represents the contents for the 'chargearray' column.
 	 */
-	protected String iChargearray = null;
+	protected byte[] iChargearray = null;
 
 
 	/**
@@ -208,13 +208,13 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 			this.iPrecursor_charge = ((Long)aParams.get(PRECURSOR_CHARGE)).longValue();
 		}
 		if(aParams.containsKey(MZARRAY)) {
-			this.iMzarray = (String)aParams.get(MZARRAY);
+			this.iMzarray = (byte[])aParams.get(MZARRAY);
 		}
 		if(aParams.containsKey(INTARRAY)) {
-			this.iIntarray = (String)aParams.get(INTARRAY);
+			this.iIntarray = (byte[])aParams.get(INTARRAY);
 		}
 		if(aParams.containsKey(CHARGEARRAY)) {
-			this.iChargearray = (String)aParams.get(CHARGEARRAY);
+			this.iChargearray = (byte[])aParams.get(CHARGEARRAY);
 		}
 		if(aParams.containsKey(TOTAL_INT)) {
 			this.iTotal_int = (Number)aParams.get(TOTAL_INT);
@@ -245,9 +245,9 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 		this.iPrecursor_mz = (Number)aResultSet.getObject("precursor_mz");
 		this.iPrecursor_int = (Number)aResultSet.getObject("precursor_int");
 		this.iPrecursor_charge = aResultSet.getLong("precursor_charge");
-		this.iMzarray = (String)aResultSet.getObject("mzarray");
-		this.iIntarray = (String)aResultSet.getObject("intarray");
-		this.iChargearray = (String)aResultSet.getObject("chargearray");
+		this.iMzarray = aResultSet.getBytes("mzarray");
+		this.iIntarray = aResultSet.getBytes("intarray");
+		this.iChargearray = aResultSet.getBytes("chargearray");
 		this.iTotal_int = (Number)aResultSet.getObject("total_int");
 		this.iMaximum_int = (Number)aResultSet.getObject("maximum_int");
 		this.iCreationdate = (java.sql.Timestamp)aResultSet.getObject("creationdate");
@@ -305,27 +305,27 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 	/**
 	 * This method returns the value for the 'Mzarray' column
 	 * 
-	 * @return	String	with the value for the Mzarray column.
+	 * @return	byte[]	with the value for the Mzarray column.
 	 */
-	public String getMzarray() {
+	public byte[] getMzarray() {
 		return this.iMzarray;
 	}
 
 	/**
 	 * This method returns the value for the 'Intarray' column
 	 * 
-	 * @return	String	with the value for the Intarray column.
+	 * @return	byte[]	with the value for the Intarray column.
 	 */
-	public String getIntarray() {
+	public byte[] getIntarray() {
 		return this.iIntarray;
 	}
 
 	/**
 	 * This method returns the value for the 'Chargearray' column
 	 * 
-	 * @return	String	with the value for the Chargearray column.
+	 * @return	byte[]	with the value for the Chargearray column.
 	 */
-	public String getChargearray() {
+	public byte[] getChargearray() {
 		return this.iChargearray;
 	}
 
@@ -418,9 +418,9 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 	/**
 	 * This method sets the value for the 'Mzarray' column
 	 * 
-	 * @param	aMzarray	String with the value for the Mzarray column.
+	 * @param	aMzarray	byte[] with the value for the Mzarray column.
 	 */
-	public void setMzarray(String aMzarray) {
+	public void setMzarray(byte[] aMzarray) {
 		this.iMzarray = aMzarray;
 		this.iUpdated = true;
 	}
@@ -428,9 +428,9 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 	/**
 	 * This method sets the value for the 'Intarray' column
 	 * 
-	 * @param	aIntarray	String with the value for the Intarray column.
+	 * @param	aIntarray	byte[] with the value for the Intarray column.
 	 */
-	public void setIntarray(String aIntarray) {
+	public void setIntarray(byte[] aIntarray) {
 		this.iIntarray = aIntarray;
 		this.iUpdated = true;
 	}
@@ -438,9 +438,9 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 	/**
 	 * This method sets the value for the 'Chargearray' column
 	 * 
-	 * @param	aChargearray	String with the value for the Chargearray column.
+	 * @param	aChargearray	byte[] with the value for the Chargearray column.
 	 */
-	public void setChargearray(String aChargearray) {
+	public void setChargearray(byte[] aChargearray) {
 		this.iChargearray = aChargearray;
 		this.iUpdated = true;
 	}
@@ -527,9 +527,9 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 			iPrecursor_mz = (Number)lRS.getObject("precursor_mz");
 			iPrecursor_int = (Number)lRS.getObject("precursor_int");
 			iPrecursor_charge = lRS.getLong("precursor_charge");
-			iMzarray = (String)lRS.getObject("mzarray");
-			iIntarray = (String)lRS.getObject("intarray");
-			iChargearray = (String)lRS.getObject("chargearray");
+			iMzarray = lRS.getBytes("mzarray");
+			iIntarray = lRS.getBytes("intarray");
+			iChargearray = lRS.getBytes("chargearray");
 			iTotal_int = (Number)lRS.getObject("total_int");
 			iMaximum_int = (Number)lRS.getObject("maximum_int");
 			iCreationdate = (java.sql.Timestamp)lRS.getObject("creationdate");
@@ -589,9 +589,9 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 		lStat.setObject(3, iPrecursor_mz);
 		lStat.setObject(4, iPrecursor_int);
 		lStat.setLong(5, iPrecursor_charge);
-		lStat.setObject(6, iMzarray);
-		lStat.setObject(7, iIntarray);
-		lStat.setObject(8, iChargearray);
+		lStat.setBytes(6, iMzarray);
+		lStat.setBytes(7, iIntarray);
+		lStat.setBytes(8, iChargearray);
 		lStat.setObject(9, iTotal_int);
 		lStat.setObject(10, iMaximum_int);
 		lStat.setObject(11, iCreationdate);
@@ -638,19 +638,19 @@ public class SpectrumTableAccessor implements Deleteable, Retrievable, Updateabl
 			lStat.setLong(5, iPrecursor_charge);
 		}
 		if(iMzarray == null) {
-			lStat.setNull(6, -1);
+			lStat.setNull(6, -4);
 		} else {
-			lStat.setObject(6, iMzarray);
+			lStat.setBytes(6, iMzarray);
 		}
 		if(iIntarray == null) {
-			lStat.setNull(7, -1);
+			lStat.setNull(7, -4);
 		} else {
-			lStat.setObject(7, iIntarray);
+			lStat.setBytes(7, iIntarray);
 		}
 		if(iChargearray == null) {
-			lStat.setNull(8, -1);
+			lStat.setNull(8, -4);
 		} else {
-			lStat.setObject(8, iChargearray);
+			lStat.setBytes(8, iChargearray);
 		}
 		if(iTotal_int == null) {
 			lStat.setNull(9, 3);
@@ -0,0 +1,276 @@
+package de.mpa.db.extractor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import de.mpa.algorithms.Interval;
+import de.mpa.client.model.specsim.SpectralSearchCandidate;
+import de.mpa.client.model.specsim.SpectralSearchCandidateStream;
+
+/**
+ * Streaming source of spectral search candidates in ascending precursor m/z
+ * order. Candidates are fetched page by page on a background thread using
+ * keyset pagination on (precursor m/z, library spectrum ID), one precursor
+ * interval at a time. Fetched pages are handed over through a bounded queue,
+ * so that the fetching thread blocks while consumers lag behind and only a
+ * few pages are held in memory at any time.
+ *
+ * @author A. Behne
+ */
+public class SpectralSearchCandidateSource implements SpectralSearchCandidateStream {
+
+	/**
+	 * The default number of candidates per page.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+
+	/**
+	 * The default number of fetched pages waiting to be consumed.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 4;
+
+	/**
+	 * Marker page denoting the end of the stream.
+	 */
+	private static final List<SpectralSearchCandidate> END = Collections.emptyList();
+
+	/**
+	 * The database connection, used exclusively by the fetching thread.
+	 */
+	private final Connection conn;
+
+	/**
+	 * The precursor m/z intervals in ascending order.
+	 */
+	private final List<Interval> precIntervals;
+
+	/**
+	 * The experiment ID or <code>0</code> to query all experiments.
+	 */
+	private final long experimentID;
+
+	/**
+	 * The number of candidates per page.
+	 */
+	private final int pageSize;
+
+	/**
+	 * The queue of fetched pages.
+	 */
+	private final BlockingQueue<List<SpectralSearchCandidate>> pages;
+
+	/**
+	 * The fetching thread.
+	 */
+	private Thread fetcher;
+
+	/**
+	 * The statement currently executed by the fetching thread, if any.
+	 */
+	private volatile Statement running;
+
+	/**
+	 * The error which terminated the fetching thread, if any.
+	 */
+	private volatile SQLException error;
+
+	/**
+	 * Flag denoting whether the end of the stream has been reached.
+	 */
+	private boolean finished;
+
+	/**
+	 * Creates a candidate source.
+	 * @param conn the database connection, must not be used by other threads
+	 *  while candidates are being fetched
+	 * @param precIntervals the non-overlapping precursor m/z intervals in
+	 *  ascending order
+	 * @param experimentID the experiment ID or <code>0</code> to query all
+	 *  experiments
+	 * @param pageSize the number of candidates per page
+	 * @param queueSize the maximum number of fetched pages waiting to be consumed
+	 */
+	public SpectralSearchCandidateSource(Connection conn, List<Interval> precIntervals,
+			long experimentID, int pageSize, int queueSize) {
+		this.conn = conn;
+		this.precIntervals = precIntervals;
+		this.experimentID = experimentID;
+		this.pageSize = Math.max(pageSize, 1);
+		this.pages = new ArrayBlockingQueue<List<SpectralSearchCandidate>>(Math.max(queueSize, 1));
+	}
+
+	/**
+	 * Starts fetching candidates in the background.
+	 */
+	public synchronized void start() {
+		if (fetcher != null) {
+			return;
+		}
+		fetcher = new Thread("SpectralSearchCandidateSource") {
+			@Override
+			public void run() {
+				try {
+					fetch();
+				} catch (SQLException e) {
+					error = e;
+				} catch (InterruptedException e) {
+					// closed by consumer
+					return;
+				}
+				try {
+					pages.put(END);
+				} catch (InterruptedException e) {
+					// closed by consumer
+				}
+			}
+		};
+		fetcher.setDaemon(true);
+		fetcher.start();
+	}
+
+	/**
+	 * Returns the next page of candidates, blocking until it has been fetched.
+	 * @return the next page in ascending precursor m/z order or
+	 *  <code>null</code> if all candidates have been consumed
+	 * @throws SQLException if fetching candidates failed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Override
+	public List<SpectralSearchCandidate> nextPage() throws SQLException, InterruptedException {
+		if (finished) {
+			return null;
+		}
+		this.start();
+		List<SpectralSearchCandidate> page = pages.take();
+		if (page == END) {
+			finished = true;
+			if (error != null) {
+				throw error;
+			}
+			return null;
+		}
+		return page;
+	}
+
+	/**
+	 * Stops fetching candidates and discards pages not consumed yet. Returns
+	 * once the fetching thread has terminated, so that the connection may be
+	 * used by other threads again.
+	 */
+	@Override
+	public synchronized void close() {
+		finished = true;
+		if (fetcher != null) {
+			Statement statement = running;
+			if (statement != null) {
+				try {
+					statement.cancel();
+				} catch (SQLException e) {
+					// statement already finished or closed
+				}
+			}
+			fetcher.interrupt();
+			pages.clear();
+			try {
+				fetcher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			pages.clear();
+		}
+	}
+
+	/**
+	 * Fetches all candidates page by page.
+	 * @throws SQLException if a statement failed
+	 * @throws InterruptedException if interrupted while waiting for free queue slots
+	 */
+	private void fetch() throws SQLException, InterruptedException {
+		String expCondition = (experimentID != 0L) ? "AND ls.fk_experimentid = ? " : "";
+		PreparedStatement spectrumPs = conn.prepareStatement("SELECT ls.libspectrumid, s.* FROM spectrum s " +
+				"INNER JOIN libspectrum ls ON s.spectrumid = ls.fk_spectrumid " +
+				"WHERE s.precursor_mz BETWEEN ? AND ? " +
+				"AND (s.precursor_mz > ? OR (s.precursor_mz = ? AND ls.libspectrumid > ?)) " + expCondition +
+				"AND EXISTS (SELECT 1 FROM spec2pep s2p WHERE s2p.fk_spectrumid = s.spectrumid) " +
+				"ORDER BY s.precursor_mz, ls.libspectrumid LIMIT ?");
+		PreparedStatement peptidePs = conn.prepareStatement("SELECT ls.libspectrumid, p.peptideid, p.sequence FROM spectrum s " +
+				"INNER JOIN spec2pep s2p ON s.spectrumid = s2p.fk_spectrumid " +
+				"INNER JOIN peptide p ON s2p.fk_peptideid = p.peptideid " +
+				"INNER JOIN libspectrum ls ON s.spectrumid = ls.fk_spectrumid " +
+				"WHERE s.precursor_mz BETWEEN ? AND ? " + expCondition);
+		spectrumPs.setFetchSize(pageSize);
+		try {
+			for (Interval precInterval : precIntervals) {
+				double lastMz = precInterval.getLeftBorder();
+				long lastID = -1L;
+				while (true) {
+					// fetch next page of library spectra
+					spectrumPs.setDouble(1, precInterval.getLeftBorder());
+					spectrumPs.setDouble(2, precInterval.getRightBorder());
+					spectrumPs.setDouble(3, lastMz);
+					spectrumPs.setDouble(4, lastMz);
+					spectrumPs.setLong(5, lastID);
+					int index = 6;
+					if (experimentID != 0L) {
+						spectrumPs.setLong(index++, experimentID);
+					}
+					spectrumPs.setInt(index, pageSize);
+					List<SpectralSearchCandidate> page = new ArrayList<SpectralSearchCandidate>(pageSize);
+					Map<Long, SpectralSearchCandidate> candidates = new HashMap<Long, SpectralSearchCandidate>(pageSize * 4 / 3 + 1);
+					running = spectrumPs;
+					ResultSet rs = spectrumPs.executeQuery();
+					while (rs.next()) {
+						SpectralSearchCandidate candidate = new SpectralSearchCandidate(rs);
+						page.add(candidate);
+						candidates.put(candidate.getLibpectrumID(), candidate);
+					}
+					rs.close();
+					if (page.isEmpty()) {
+						break;
+					}
+					SpectralSearchCandidate last = page.get(page.size() - 1);
+					lastMz = last.getPrecursorMz();
+					lastID = last.getLibpectrumID();
+
+					// attach peptide annotations of the page's precursor range
+					peptidePs.setDouble(1, page.get(0).getPrecursorMz());
+					peptidePs.setDouble(2, lastMz);
+					if (experimentID != 0L) {
+						peptidePs.setLong(3, experimentID);
+					}
+					running = peptidePs;
+					rs = peptidePs.executeQuery();
+					while (rs.next()) {
+						SpectralSearchCandidate candidate = candidates.get(rs.getLong(1));
+						if (candidate != null) {
+							candidate.addAnnotation(rs.getLong(2), rs.getString(3));
+						}
+					}
+					rs.close();
+					running = null;
+
+					// blocks while consumers lag behind
+					pages.put(page);
+					if (page.size() < pageSize) {
+						break;
+					}
+				}
+			}
+		} finally {
+			running = null;
+			spectrumPs.close();
+			peptidePs.close();
+		}
+	}
+
+}
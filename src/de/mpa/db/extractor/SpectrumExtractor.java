@@ -13,6 +13,7 @@ import java.util.Map;
 import de.mpa.algorithms.Interval;
 import de.mpa.client.model.SpectrumMatch;
 import de.mpa.client.model.specsim.SpectralSearchCandidate;
+import de.mpa.client.model.specsim.SpectralSearchCandidateIndex;
 import de.mpa.client.settings.SpectrumFetchParameters.AnnotationType;
 import de.mpa.db.accessor.Spectrum;
 import de.mpa.io.MascotGenericFile;
@@ -105,6 +106,8 @@ public class SpectrumExtractor {
 	
 	/**
 	 * Returns the list of spectral search candidates that belong to a specific experiment and are bounded by specified precursor mass intervals.
+	 * Candidates are returned in ascending precursor m/z order. Each library spectrum is returned only once, carrying all of its peptide
+	 * annotations, so that its peaks are transferred and scored once regardless of the number of associated peptides.
 	 * @param precIntervals The list of precursor mass intervals.
 	 * @param experimentID The ID of the experiment to be queried.
 	 * @return
@@ -113,12 +116,8 @@ public class SpectrumExtractor {
 	public List<SpectralSearchCandidate> getCandidatesFromExperiment(List<Interval> precIntervals, long experimentID) throws SQLException {
 		ArrayList<SpectralSearchCandidate> res = new ArrayList<SpectralSearchCandidate>(precIntervals.size());
 		
-		// construct SQL statement
-		StringBuilder sb = new StringBuilder("SELECT ls.libspectrumid, s.*, p.peptideid, p.sequence FROM spectrum s " +
-				   							 "INNER JOIN spec2pep s2p ON s.spectrumid = s2p.fk_spectrumid " + 
-				   							 "INNER JOIN peptide p ON s2p.fk_peptideid = p.peptideid " +
-				   							 "INNER JOIN libspectrum ls ON s.spectrumid = ls.fk_spectrumid " +
-				   							 "WHERE (");
+		// construct SQL condition shared by both statements
+		StringBuilder sb = new StringBuilder("WHERE (");
 			for (Interval precInterval : precIntervals) {
 				sb.append("s.precursor_mz BETWEEN ");
 				sb.append(precInterval.getLeftBorder());
@@ -131,12 +130,35 @@ public class SpectrumExtractor {
 		if (experimentID != 0L) {
 			sb.append("AND ls.fk_experimentid = " + experimentID);
 		}
+		String condition = sb.toString();
 		
-		// execute SQL statement and build result list
-		PreparedStatement ps = conn.prepareStatement(sb.toString());
+		// fetch annotated library spectra, once per spectrum
+		PreparedStatement ps = conn.prepareStatement("SELECT ls.libspectrumid, s.* FROM spectrum s " +
+				 "INNER JOIN libspectrum ls ON s.spectrumid = ls.fk_spectrumid " +
+				 condition + " AND EXISTS (SELECT 1 FROM spec2pep s2p WHERE s2p.fk_spectrumid = s.spectrumid)" +
+				 " ORDER BY s.precursor_mz");
         ResultSet rs = ps.executeQuery();
+        Map<Long, SpectralSearchCandidate> candidates = new HashMap<Long, SpectralSearchCandidate>();
         while (rs.next()) {
-            res.add(new SpectralSearchCandidate(rs));
+        	SpectralSearchCandidate candidate = new SpectralSearchCandidate(rs);
+            res.add(candidate);
+            candidates.put(candidate.getLibpectrumID(), candidate);
+        }
+        rs.close();
+        ps.close();
+        
+        // attach peptide annotations
+        ps = conn.prepareStatement("SELECT ls.libspectrumid, p.peptideid, p.sequence FROM spectrum s " +
+				 "INNER JOIN spec2pep s2p ON s.spectrumid = s2p.fk_spectrumid " + 
+				 "INNER JOIN peptide p ON s2p.fk_peptideid = p.peptideid " +
+				 "INNER JOIN libspectrum ls ON s.spectrumid = ls.fk_spectrumid " +
+				 condition);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+        	SpectralSearchCandidate candidate = candidates.get(rs.getLong(1));
+        	if (candidate != null) {
+        		candidate.addAnnotation(rs.getLong(2), rs.getString(3));
+        	}
         }
         rs.close();
         ps.close();
@@ -144,6 +166,32 @@ public class SpectrumExtractor {
 		return res;
 	}
 
+	/**
+	 * Returns an index of spectral search candidates that belong to a specific experiment and are bounded by specified precursor mass intervals.
+	 * The index can be re-used for any number of queries falling into these intervals.
+	 * @param precIntervals The list of precursor mass intervals.
+	 * @param experimentID The ID of the experiment to be queried.
+	 * @return the precursor m/z sorted candidate index
+	 * @throws SQLException
+	 */
+	public SpectralSearchCandidateIndex getCandidateIndex(List<Interval> precIntervals, long experimentID) throws SQLException {
+		return new SpectralSearchCandidateIndex(getCandidatesFromExperiment(precIntervals, experimentID));
+	}
+
+	/**
+	 * Returns a streaming source of spectral search candidates that belong to a specific experiment and are bounded by specified
+	 * precursor mass intervals. Candidates are fetched in pages of bounded size and delivered in ascending precursor m/z order.
+	 * The connection of this extractor is used by the fetching thread of the source and must not be used elsewhere while the
+	 * source is being consumed, i.e. jobs streaming from the connection shared by all jobs have to occupy the database resource.
+	 * @param precIntervals The non-overlapping list of precursor mass intervals in ascending order.
+	 * @param experimentID The ID of the experiment to be queried.
+	 * @return the candidate source
+	 */
+	public SpectralSearchCandidateSource streamCandidatesFromExperiment(List<Interval> precIntervals, long experimentID) {
+		return new SpectralSearchCandidateSource(conn, precIntervals, experimentID,
+				SpectralSearchCandidateSource.DEFAULT_PAGE_SIZE, SpectralSearchCandidateSource.DEFAULT_QUEUE_SIZE);
+	}
+
 	/**
 	 * Method to extract spectrum titles belonging to a list of specified searchspectrum IDs. 
 	 * @param matches List of searchspectrum IDs.
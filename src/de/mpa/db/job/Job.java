@@ -3,10 +3,13 @@ package de.mpa.db.job;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Scanner;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 
+import de.mpa.db.job.ProcessRunner.ProgressListener;
 import de.mpa.webservice.Message;
 import de.mpa.webservice.MessageQueue;
 
@@ -67,51 +70,220 @@ public abstract class Job implements Executable {
      * The job properties.
      */
 	protected ServerProperties jobProperties = ServerProperties.getInstance();
+	
+	/**
+	 * The timing and resource figures of the job.
+	 */
+	protected JobMetrics metrics = new JobMetrics();
+    
+	/**
+	 * The maximum running time of the subprocess in milliseconds, non-positive for no limit.
+	 */
+	protected long timeout;
+	
+	/**
+	 * The runner of the subprocess.
+	 */
+	private volatile ProcessRunner runner;
+	
+	/**
+	 * The flag denoting whether the job has been canceled.
+	 */
+	private volatile boolean canceled;
+	
+	/**
+	 * The latest progress of the job.
+	 */
+	private volatile JobProgress progress;
+	
+	/**
+	 * The completed fraction last written to the log.
+	 */
+	private double loggedFraction = -1.0;
+	
+	/**
+	 * The listeners receiving progress events.
+	 */
+	private List<ProgressListener> progressListeners = new CopyOnWriteArrayList<ProgressListener>();
     
 	/**
-	 * Executes the job.
+	 * Executes the job. Standard output and error of the subprocess are
+	 * drained separately in the background by a {@link ProcessRunner}, output
+	 * lines are parsed into progress events. The subprocess is destroyed once
+	 * it exceeds the {@link #getTimeout() timeout}. A non-zero exit code fails
+	 * the job, reporting the last lines of the error output.
 	 */
 	public void run() {
-		proc = null;
+		if (canceled) {
+			setStatus(JobStatus.CANCELED);
+			return;
+		}
+		runner = new ProcessRunner(procBuilder, getProgressParser(), new ProgressListener() {
+			@Override
+			public void progressChanged(JobProgress progress) {
+				setProgress(progress);
+			}
+		}, log);
+		if (canceled) {
+			// canceled while setting up the runner
+			runner.cancel();
+		}
+		ProcessMonitor monitor = null;
 		try {
-			proc = procBuilder.start();
+			proc = runner.start();
+			// Sample resource usage of the subprocess while it is running
+			monitor = new ProcessMonitor(proc, metrics, ProcessMonitor.DEFAULT_INTERVAL);
+			monitor.start();
 			setStatus(JobStatus.RUNNING);
+			
+			int exitCode = runner.waitFor(timeout);
+			metrics.setExitCode(exitCode);
+			if (runner.isCanceled()) {
+				setStatus(JobStatus.CANCELED);
+			} else {
+				if (exitCode != 0) {
+					List<String> lines = runner.getErrors().isEmpty() ? runner.getOutput() : runner.getErrors();
+					setError(description + " exited with code " + exitCode + ":\n"
+							+ join(lines.subList(Math.max(0, lines.size() - 10), lines.size())));
+				} else {
+					done();
+				}
+			}
 		} catch (IOException ioe) {
 			setError(ioe);
-			ioe.printStackTrace();
+		} catch (TimeoutException te) {
+			setError(new Exception(description + " timed out after " + (timeout / 1000L) + " s.", te));
+		} catch (InterruptedException e) {
+			setError(e);
+			log.error("SUBPROCESS KILLED!");
+		} finally {
+			if (monitor != null) {
+				monitor.stop();
+			}
 		}
-
-		// Retrieve inputstream from process
-		Scanner scan = new Scanner(proc.getInputStream());
-		scan.useDelimiter(System.getProperty("line.separator"));
-		
-		// Temporary string variable
-		String temp;
-
-		// Get input from scanner and send to stdout
-		while (scan.hasNext()) {
-			temp = scan.next();
-
-			if (temp.endsWith("done.") || temp.endsWith("loaded.") || temp.endsWith("started.") || temp.endsWith("loaded.")) {
-				temp += "\n";
-			} else {
-				temp += " ";
+	}
+	
+	/**
+	 * Joins the specified lines.
+	 * @param lines The lines.
+	 * @return The joined string.
+	 */
+	private static String join(List<String> lines) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append("\n");
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Cancels the job. A running subprocess is destroyed, a job not started
+	 * yet will not be run.
+	 */
+	public void cancel() {
+		canceled = true;
+		ProcessRunner runner = this.runner;
+		if (runner != null) {
+			runner.cancel();
+		}
+	}
+	
+	/**
+	 * Returns whether the job has been canceled.
+	 * @return <code>true</code> if canceled, <code>false</code> otherwise
+	 */
+	public boolean isCanceled() {
+		return canceled;
+	}
+	
+	/**
+	 * Returns the maximum running time of the subprocess.
+	 * @return The timeout in milliseconds, non-positive for no limit.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * Sets the maximum running time of the subprocess.
+	 * @param timeout The timeout in milliseconds, non-positive for no limit.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Sets the timeout from the server properties <code>jobs.timeout.[name]</code>
+	 * or, if not set, <code>jobs.timeout</code>, given in seconds.
+	 * @param name The name of the job specific property.
+	 */
+	protected void initTimeout(String name) {
+		if (jobProperties == null) {
+			return;
+		}
+		String value = jobProperties.getProperty("jobs.timeout." + name);
+		if ((value == null) || value.trim().isEmpty()) {
+			value = jobProperties.getProperty("jobs.timeout");
+		}
+		if ((value != null) && !value.trim().isEmpty()) {
+			try {
+				timeout = Long.parseLong(value.trim()) * 1000L;
+			} catch (NumberFormatException e) {
+				e.printStackTrace();
 			}
-			System.out.print(temp);
 		}
-		scan.close();
-
-		try {
-			proc.waitFor();
-			done();
-		} catch (InterruptedException e) {
-			setError(e);
-			e.printStackTrace();
-			if (proc != null) {
-				log.error("SUBPROCESS KILLED!");
-				proc.destroy();
+	}
+	
+	/**
+	 * Returns the parser of the output of the subprocess into progress
+	 * events. Jobs running search engines with specific output override this.
+	 * @return The progress parser.
+	 */
+	protected ProgressParser getProgressParser() {
+		return ProgressParser.DEFAULT;
+	}
+	
+	/**
+	 * Returns the latest progress of the job.
+	 * @return The progress or <code>null</code> if none was reported.
+	 */
+	public JobProgress getProgress() {
+		return progress;
+	}
+	
+	/**
+	 * Sets the latest progress of the job and notifies the progress listeners.
+	 * Stages and advances of at least five percent are logged.
+	 * @param progress The progress.
+	 */
+	protected void setProgress(JobProgress progress) {
+		this.progress = progress;
+		double fraction = progress.getFraction();
+		synchronized (this) {
+			if ((fraction < 0.0) || (fraction < loggedFraction) || (fraction - loggedFraction >= 0.05)) {
+				log.info(description + ": " + progress);
+				loggedFraction = fraction;
 			}
-		}		
+		}
+		for (ProgressListener listener : progressListeners) {
+			listener.progressChanged(progress);
+		}
+	}
+	
+	/**
+	 * Adds a listener receiving the progress events of the job.
+	 * @param listener The listener.
+	 */
+	public void addProgressListener(ProgressListener listener) {
+		progressListeners.add(listener);
+	}
+	
+	/**
+	 * Removes a progress listener.
+	 * @param listener The listener.
+	 */
+	public void removeProgressListener(ProgressListener listener) {
+		progressListeners.remove(listener);
 	}
 	
 	/**
@@ -196,4 +368,21 @@ public abstract class Job implements Executable {
 	public void setFilename(String filename) {
 		this.filename = filename;
 	}
+	
+	/**
+	 * Returns the resource occupied by the job while running, which limits
+	 * the number of jobs running concurrently.
+	 * @return The resource.
+	 */
+	public JobResource getResource() {
+		return JobResource.CPU;
+	}
+	
+	/**
+	 * Returns the timing and resource figures of the job.
+	 * @return The metrics.
+	 */
+	public JobMetrics getMetrics() {
+		return metrics;
+	}
 }
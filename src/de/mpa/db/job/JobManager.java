@@ -1,11 +1,30 @@
 package de.mpa.db.job;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
 
 
 /**
- * The JobManager handles the execution of the various jobs.
+ * The JobManager handles the execution of the various jobs. Jobs may declare
+ * dependencies on previously added jobs, jobs are started as soon as all of
+ * their dependencies have completed, so that independent jobs run
+ * concurrently. The number of concurrently running jobs is limited per
+ * {@link JobResource resource}.
  * @author Thilo Muth
  *
  */
@@ -21,12 +40,40 @@ public class JobManager implements Runnable {
 	 */
 	private Queue<Job> jobQueue;
 	
+	/**
+	 * The dependencies of the queued jobs.
+	 */
+	private Map<Job, List<Job>> dependencies;
+	
+	/**
+	 * The queued jobs which also run after failed dependencies.
+	 */
+	private Set<Job> orderOnly;
+	
+	/**
+	 * The metrics of the most recently completed jobs, oldest first.
+	 */
+	private Queue<JobMetrics> metrics;
+	
+	/**
+	 * The maximum number of retained job metrics.
+	 */
+	private static final int MAX_METRICS = 1000;
+	
+	/**
+	 * The logger.
+	 */
+	private static Logger log = Logger.getLogger(JobManager.class);
+	
 	
 	/**
 	 * Constructor for the job manager.
 	 */
 	private JobManager() {
 		this.jobQueue = new ArrayDeque<Job>();
+		this.dependencies = new HashMap<Job, List<Job>>();
+		this.orderOnly = new HashSet<Job>();
+		this.metrics = new ArrayDeque<JobMetrics>();
 	}
 	
 	/**
@@ -42,11 +89,33 @@ public class JobManager implements Runnable {
 	}
 	
 	/**
-	 * Adds a job to the job queue.
-	 * @param job
+	 * Adds a job to the job queue. The job is started once all specified jobs
+	 * have finished. If one of them fails or is canceled, the job is canceled
+	 * without being run, as are the jobs depending on it. Dependencies which
+	 * are not queued are considered finished.
+	 * @param job The job to add.
+	 * @param dependencies The jobs which have to finish first.
+	 */
+	public void addJob(Job job, Job... dependencies){
+		synchronized (jobQueue) {
+			jobQueue.add(job);
+			this.dependencies.put(job, Arrays.asList(dependencies));
+		}
+	}
+	
+	/**
+	 * Adds a job to the job queue which is started once all specified jobs
+	 * have completed, regardless of whether these succeeded. This is meant for
+	 * jobs which only have to wait for others, e.g. for shared working files
+	 * to be released, but do not consume their results.
+	 * @param job The job to add.
+	 * @param predecessors The jobs which have to complete first.
 	 */
-	public void addJob(Job job){
-		jobQueue.add(job);
+	public void addJobAfter(Job job, Job... predecessors){
+		synchronized (jobQueue) {
+			this.addJob(job, predecessors);
+			orderOnly.add(job);
+		}
 	}
 	
 	/**
@@ -54,26 +123,223 @@ public class JobManager implements Runnable {
 	 * @param job
 	 */
 	public void deleteJob(Job job){
-		jobQueue.remove(job);
+		synchronized (jobQueue) {
+			jobQueue.remove(job);
+			dependencies.remove(job);
+			orderOnly.remove(job);
+		}
 	}
 	
 	/**
-	 * Executes the jobs from the queue.
+	 * Executes the jobs from the queue and returns once all of them have
+	 * completed. Jobs are started in queue order as soon as their dependencies
+	 * have completed and a slot of their resource is available. Jobs depending
+	 * on failed or canceled jobs are canceled.
 	 */
 	public void run() {
-		// Iterate the job queue
-		for (Job job : jobQueue) {			
-			job.run();
-			// Remove job from the queue after successful execution.
-			jobQueue.remove(job);
+		// snapshot the queue, jobs may still be added by other threads
+		List<Job> jobs;
+		Map<Job, List<Job>> jobDependencies;
+		Set<Job> runAfterFailure;
+		synchronized (jobQueue) {
+			jobs = new ArrayList<Job>(jobQueue);
+			jobDependencies = new HashMap<Job, List<Job>>(dependencies);
+			runAfterFailure = new HashSet<Job>(orderOnly);
+		}
+		if (jobs.isEmpty()) {
+			return;
+		}
+		
+		// count pending dependencies and link jobs to their dependents
+		Set<Job> queued = new HashSet<Job>(jobs);
+		Map<Job, Integer> pending = new HashMap<Job, Integer>();
+		Map<Job, List<Job>> dependents = new HashMap<Job, List<Job>>();
+		for (Job job : jobs) {
+			int count = 0;
+			for (Job dependency : jobDependencies.get(job)) {
+				if (queued.contains(dependency)) {
+					List<Job> list = dependents.get(dependency);
+					if (list == null) {
+						list = new ArrayList<Job>();
+						dependents.put(dependency, list);
+					}
+					list.add(job);
+					count++;
+				}
+			}
+			pending.put(job, count);
+		}
+		
+		// determine available slots per resource
+		ServerProperties properties = ServerProperties.getInstance();
+		Map<JobResource, Integer> slots = new EnumMap<JobResource, Integer>(JobResource.class);
+		int threads = 0;
+		for (JobResource resource : JobResource.values()) {
+			int count = resource.getSlots(properties);
+			slots.put(resource, count);
+			threads += count;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, jobs.size()));
+		CompletionService<Job> completion = new ExecutorCompletionService<Job>(executor);
+		List<Job> ready = new ArrayList<Job>();
+		for (Job job : jobs) {
+			if (pending.get(job) == 0) {
+				ready.add(job);
+			}
+		}
+		int running = 0;
+		boolean completed = false;
+		try {
+			while (true) {
+				// start ready jobs in queue order while their resources have free slots
+				for (int i = 0; i < ready.size(); i++) {
+					final Job job = ready.get(i);
+					JobResource resource = job.getResource();
+					int free = slots.get(resource);
+					if (free > 0) {
+						slots.put(resource, free - 1);
+						ready.remove(i--);
+						completion.submit(new Runnable() {
+							@Override
+							public void run() {
+								JobMetrics jobMetrics = job.getMetrics();
+								jobMetrics.start(job);
+								try {
+									if (job.isCanceled()) {
+										job.setStatus(JobStatus.CANCELED);
+									} else {
+										job.run();
+									}
+								} catch (Exception e) {
+									job.setError(e);
+								} catch (Throwable t) {
+									// errors like running out of memory must not stop the scheduling
+									job.setError(new Exception(t.toString(), t));
+								} finally {
+									jobMetrics.finish(job);
+									addMetrics(jobMetrics);
+								}
+							}
+						}, job);
+						running++;
+					}
+				}
+				if (running == 0) {
+					break;
+				}
+				
+				// wait for a job to complete and release its dependents
+				Job job = completion.take().get();
+				running--;
+				slots.put(job.getResource(), slots.get(job.getResource()) + 1);
+				
+				// dependents of failed jobs are canceled, which in turn completes them
+				Queue<Job> done = new ArrayDeque<Job>();
+				done.add(job);
+				while (!done.isEmpty()) {
+					job = done.poll();
+					this.deleteJob(job);
+					List<Job> list = dependents.get(job);
+					if (list == null) {
+						continue;
+					}
+					boolean failed = (job.getStatus() == JobStatus.ERROR) || (job.getStatus() == JobStatus.CANCELED);
+					for (Job dependent : list) {
+						if (!pending.containsKey(dependent)) {
+							// already canceled
+							continue;
+						}
+						if (failed && !runAfterFailure.contains(dependent)) {
+							log.warn("Canceling " + dependent.getDescription() + ", " + job.getDescription() + " did not finish.");
+							pending.remove(dependent);
+							dependent.cancel();
+							dependent.setStatus(JobStatus.CANCELED);
+							done.add(dependent);
+							continue;
+						}
+						int count = pending.get(dependent) - 1;
+						pending.put(dependent, count);
+						if (count == 0) {
+							ready.add(dependent);
+						}
+					}
+				}
+			}
+			completed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.error("Job execution interrupted.");
+		} catch (ExecutionException e) {
+			// job errors are caught inside the submitted tasks
+			log.error(e.getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+			// jobs left over have cyclic dependencies or were not run due to an
+			// aborted execution, they must not be run along with the next batch
+			for (Job job : jobs) {
+				boolean left;
+				synchronized (jobQueue) {
+					left = jobQueue.contains(job);
+				}
+				if (left) {
+					if (completed) {
+						log.error("Cyclic job dependency: " + job.getDescription());
+					}
+					job.cancel();
+					job.setStatus(JobStatus.CANCELED);
+					this.deleteJob(job);
+				}
+			}
 		}
 	}
     
+	/**
+	 * Retains the metrics of a completed job.
+	 * @param jobMetrics The job metrics.
+	 */
+	private void addMetrics(JobMetrics jobMetrics) {
+		synchronized (metrics) {
+			if (metrics.size() >= MAX_METRICS) {
+				metrics.poll();
+			}
+			metrics.add(jobMetrics);
+		}
+	}
+	
+	/**
+	 * Returns the metrics of the most recently completed jobs.
+	 * @return The job metrics, oldest first.
+	 */
+	public List<JobMetrics> getMetrics() {
+		synchronized (metrics) {
+			return new ArrayList<JobMetrics>(metrics);
+		}
+	}
+	
+	/**
+	 * Cancels the queued jobs. Running jobs destroy their subprocesses, jobs
+	 * not started yet complete as canceled without being run.
+	 */
+	public void cancel() {
+		List<Job> jobs;
+		synchronized (jobQueue) {
+			jobs = new ArrayList<Job>(jobQueue);
+		}
+		for (Job job : jobs) {
+			job.cancel();
+		}
+	}
+	
 	/**
 	 * This method deletes all the jobs from the queue.	
 	 */	
 	public void clear(){		
-		jobQueue.clear();
+		synchronized (jobQueue) {
+			jobQueue.clear();
+			dependencies.clear();
+			orderOnly.clear();
+		}
 	}
 	
 	/**
@@ -81,7 +347,9 @@ public class JobManager implements Runnable {
 	 * @return The number of remaining jobs.
 	 */
 	public int getRemainingJobs() {
-		return jobQueue.size();
+		synchronized (jobQueue) {
+			return jobQueue.size();
+		}
 	}
 	
 }
@@ -0,0 +1,278 @@
+package de.mpa.db.job;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Timing and resource figures of a single job execution. Wall times and the
+ * final status are recorded by the job manager, subprocess figures by the job
+ * running the subprocess and stored rows by storing jobs. Figures which do not
+ * apply to a job or could not be determined are reported as <code>-1</code>
+ * (<code>null</code> for the exit code).<br>
+ * Completed metrics are written to the <code>de.mpa.db.job.JobMetrics</code>
+ * logger as one JSON object per line.
+ *
+ * @author A. Behne
+ */
+public class JobMetrics {
+
+	/**
+	 * The logger receiving completed metrics as JSON objects.
+	 */
+	private static Logger log = Logger.getLogger(JobMetrics.class);
+
+	/**
+	 * The job description.
+	 */
+	private String description;
+
+	/**
+	 * The job class name.
+	 */
+	private String type;
+
+	/**
+	 * The final job status.
+	 */
+	private JobStatus status;
+
+	/**
+	 * The start time in milliseconds since the epoch.
+	 */
+	private long startTime = -1L;
+
+	/**
+	 * The end time in milliseconds since the epoch.
+	 */
+	private long endTime = -1L;
+
+	/**
+	 * The exit code of the subprocess.
+	 */
+	private Integer exitCode;
+
+	/**
+	 * The peak resident set size of the subprocess in kilobytes.
+	 */
+	private long peakRss = -1L;
+
+	/**
+	 * The number of bytes read by the subprocess.
+	 */
+	private long bytesRead = -1L;
+
+	/**
+	 * The number of bytes written by the subprocess.
+	 */
+	private long bytesWritten = -1L;
+
+	/**
+	 * The number of database rows stored.
+	 */
+	private long rowsStored = -1L;
+
+	/**
+	 * Marks the start of the specified job.
+	 * @param job the job
+	 */
+	public synchronized void start(Job job) {
+		this.description = job.getDescription();
+		this.type = job.getClass().getSimpleName();
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Marks the end of the specified job and logs the metrics.
+	 * @param job the job
+	 */
+	public void finish(Job job) {
+		synchronized (this) {
+			this.status = job.getStatus();
+			this.endTime = System.currentTimeMillis();
+		}
+		log.info(this.toJson());
+	}
+
+	/**
+	 * Returns the job description.
+	 * @return the description
+	 */
+	public synchronized String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Returns the final job status.
+	 * @return the status or <code>null</code> if the job has not finished
+	 */
+	public synchronized JobStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the wall time of the job.
+	 * @return the wall time in milliseconds
+	 */
+	public synchronized long getWallTime() {
+		if (startTime < 0L) {
+			return -1L;
+		}
+		return ((endTime < 0L) ? System.currentTimeMillis() : endTime) - startTime;
+	}
+
+	/**
+	 * Returns the exit code of the subprocess.
+	 * @return the exit code
+	 */
+	public synchronized Integer getExitCode() {
+		return exitCode;
+	}
+
+	/**
+	 * Sets the exit code of the subprocess.
+	 * @param exitCode the exit code
+	 */
+	public synchronized void setExitCode(Integer exitCode) {
+		this.exitCode = exitCode;
+	}
+
+	/**
+	 * Returns the peak resident set size of the subprocess.
+	 * @return the peak RSS in kilobytes
+	 */
+	public synchronized long getPeakRss() {
+		return peakRss;
+	}
+
+	/**
+	 * Sets the peak resident set size of the subprocess.
+	 * @param peakRss the peak RSS in kilobytes
+	 */
+	public synchronized void setPeakRss(long peakRss) {
+		this.peakRss = peakRss;
+	}
+
+	/**
+	 * Returns the number of bytes read by the subprocess.
+	 * @return the bytes read
+	 */
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Sets the number of bytes read by the subprocess.
+	 * @param bytesRead the bytes read
+	 */
+	public synchronized void setBytesRead(long bytesRead) {
+		this.bytesRead = bytesRead;
+	}
+
+	/**
+	 * Returns the number of bytes written by the subprocess.
+	 * @return the bytes written
+	 */
+	public synchronized long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Sets the number of bytes written by the subprocess.
+	 * @param bytesWritten the bytes written
+	 */
+	public synchronized void setBytesWritten(long bytesWritten) {
+		this.bytesWritten = bytesWritten;
+	}
+
+	/**
+	 * Returns the number of database rows stored.
+	 * @return the rows stored
+	 */
+	public synchronized long getRowsStored() {
+		return rowsStored;
+	}
+
+	/**
+	 * Sets the number of database rows stored.
+	 * @param rowsStored the rows stored
+	 */
+	public synchronized void setRowsStored(long rowsStored) {
+		this.rowsStored = rowsStored;
+	}
+
+	/**
+	 * Returns the metrics as JSON object.
+	 * @return the JSON string
+	 */
+	public synchronized String toJson() {
+		StringBuilder sb = new StringBuilder("{");
+		sb.append("\"description\":").append(quote(description));
+		sb.append(",\"type\":").append(quote(type));
+		sb.append(",\"status\":").append((status != null) ? quote(status.name()) : "null");
+		sb.append(",\"start\":").append(startTime);
+		sb.append(",\"wallTime\":").append(this.getWallTime());
+		sb.append(",\"exitCode\":").append(exitCode);
+		sb.append(",\"peakRss\":").append(peakRss);
+		sb.append(",\"bytesRead\":").append(bytesRead);
+		sb.append(",\"bytesWritten\":").append(bytesWritten);
+		sb.append(",\"rowsStored\":").append(rowsStored);
+		return sb.append("}").toString();
+	}
+
+	/**
+	 * Returns the specified metrics as JSON array.
+	 * @param metrics the metrics
+	 * @return the JSON string
+	 */
+	public static String toJson(List<JobMetrics> metrics) {
+		StringBuilder sb = new StringBuilder("[");
+		for (JobMetrics jobMetrics : metrics) {
+			if (sb.length() > 1) {
+				sb.append(",");
+			}
+			sb.append(jobMetrics.toJson());
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Returns the specified string as JSON string literal.
+	 * @param string the string, may be <code>null</code>
+	 * @return the literal
+	 */
+	private static String quote(String string) {
+		if (string == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder(string.length() + 2).append('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+}
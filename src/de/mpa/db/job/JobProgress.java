@@ -0,0 +1,58 @@
+package de.mpa.db.job;
+
+/**
+ * Progress event of a running job, parsed from the output of its subprocess.
+ * An event either marks the completion of a processing stage or reports the
+ * completed fraction of the job, or both.
+ *
+ * @author A. Behne
+ */
+public class JobProgress {
+
+	/**
+	 * The output line the event was parsed from.
+	 */
+	private final String message;
+
+	/**
+	 * The completed fraction between <code>0</code> and <code>1</code>.
+	 */
+	private final double fraction;
+
+	/**
+	 * Creates a progress event.
+	 * @param message the output line the event was parsed from
+	 * @param fraction the completed fraction between <code>0</code> and
+	 *  <code>1</code> or <code>-1</code> if unknown
+	 */
+	public JobProgress(String message, double fraction) {
+		this.message = message;
+		this.fraction = (fraction < 0.0) ? -1.0 : Math.min(fraction, 1.0);
+	}
+
+	/**
+	 * Returns the output line the event was parsed from.
+	 * @return the message
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Returns the completed fraction of the job.
+	 * @return the fraction between <code>0</code> and <code>1</code> or
+	 *  <code>-1</code> if unknown
+	 */
+	public double getFraction() {
+		return fraction;
+	}
+
+	@Override
+	public String toString() {
+		if (fraction < 0.0) {
+			return message;
+		}
+		return String.format("%s (%.0f%%)", message, fraction * 100.0);
+	}
+
+}
@@ -0,0 +1,61 @@
+package de.mpa.db.job;
+
+/**
+ * Resources occupied by running jobs. The job manager limits the number of
+ * concurrently running jobs per resource, the limits are configured by server
+ * properties:
+ *
+ * 	CPU - compute-bound jobs, e.g. search engines and scoring
+ * 	(<code>jobs.slots.cpu</code>, all processors by default).
+ *
+ * 	DATABASE - jobs writing to the database (<code>jobs.slots.database</code>,
+ * 	one by default as jobs share the database connection).
+ *
+ * 	FILE - light-weight file operations (<code>jobs.slots.file</code>, one by
+ * 	default).
+ *
+ * @author A. Behne
+ */
+public enum JobResource {
+	CPU("jobs.slots.cpu", 0), DATABASE("jobs.slots.database", 1), FILE("jobs.slots.file", 1);
+
+	/**
+	 * The server property configuring the limit.
+	 */
+	private final String property;
+
+	/**
+	 * The default limit, all available processors if not positive.
+	 */
+	private final int defaultSlots;
+
+	/**
+	 * Constructs a resource.
+	 * @param property the server property configuring the limit
+	 * @param defaultSlots the default limit
+	 */
+	private JobResource(String property, int defaultSlots) {
+		this.property = property;
+		this.defaultSlots = defaultSlots;
+	}
+
+	/**
+	 * Returns the maximum number of jobs occupying this resource at once.
+	 * @param properties the server properties, may be <code>null</code>
+	 * @return the number of slots
+	 */
+	public int getSlots(ServerProperties properties) {
+		int slots = defaultSlots;
+		if (properties != null) {
+			String value = properties.getProperty(property);
+			if ((value != null) && !value.trim().isEmpty()) {
+				try {
+					slots = Integer.parseInt(value.trim());
+				} catch (NumberFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return (slots > 0) ? slots : Runtime.getRuntime().availableProcessors();
+	}
+}
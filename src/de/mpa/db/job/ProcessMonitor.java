@@ -0,0 +1,181 @@
+package de.mpa.db.job;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Samples the resource usage of a subprocess from the Linux <code>/proc</code>
+ * file system while it is running: the peak resident set size
+ * (<code>VmHWM</code> of <code>/proc/[pid]/status</code>) and the bytes read
+ * and written by system calls (<code>rchar</code>/<code>wchar</code> of
+ * <code>/proc/[pid]/io</code>, including pipes). As the figures vanish with
+ * the process, the last sample taken before it exited is reported, i.e. up to
+ * one sampling interval of I/O may be missing. On other platforms nothing is
+ * sampled.
+ *
+ * @author A. Behne
+ */
+public class ProcessMonitor implements Runnable {
+
+	/**
+	 * The default sampling interval in milliseconds.
+	 */
+	public static final long DEFAULT_INTERVAL = 500L;
+
+	/**
+	 * The process directory or <code>null</code> if not available.
+	 */
+	private final File procDir;
+
+	/**
+	 * The metrics receiving the samples.
+	 */
+	private final JobMetrics metrics;
+
+	/**
+	 * The sampling interval in milliseconds.
+	 */
+	private final long interval;
+
+	/**
+	 * The sampling thread.
+	 */
+	private Thread thread;
+
+	/**
+	 * Creates a monitor of the specified process.
+	 * @param proc the process
+	 * @param metrics the metrics receiving the samples
+	 * @param interval the sampling interval in milliseconds
+	 */
+	public ProcessMonitor(Process proc, JobMetrics metrics, long interval) {
+		long pid = getPid(proc);
+		File dir = (pid > 0L) ? new File("/proc/" + pid) : null;
+		this.procDir = ((dir != null) && dir.isDirectory()) ? dir : null;
+		this.metrics = metrics;
+		this.interval = interval;
+	}
+
+	/**
+	 * Starts sampling in a background thread.
+	 */
+	public void start() {
+		if (procDir != null) {
+			thread = new Thread(this, "ProcessMonitor-" + procDir.getName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops sampling. Should be called once the process has exited.
+	 */
+	public void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (this.sample()) {
+				Thread.sleep(interval);
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * Takes a single sample.
+	 * @return <code>true</code> if the process was still alive,
+	 *  <code>false</code> otherwise
+	 */
+	boolean sample() {
+		try {
+			long peakRss = -1L;
+			BufferedReader reader = new BufferedReader(new FileReader(new File(procDir, "status")));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("VmHWM:")) {
+						peakRss = parseValue(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			long read = -1L, written = -1L;
+			reader = new BufferedReader(new FileReader(new File(procDir, "io")));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("rchar:")) {
+						read = parseValue(line);
+					} else if (line.startsWith("wchar:")) {
+						written = parseValue(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			// figures only grow, exited processes not reaped yet may report less
+			metrics.setPeakRss(Math.max(peakRss, metrics.getPeakRss()));
+			metrics.setBytesRead(Math.max(read, metrics.getBytesRead()));
+			metrics.setBytesWritten(Math.max(written, metrics.getBytesWritten()));
+			return true;
+		} catch (IOException e) {
+			// process has exited or /proc/[pid]/io is not readable
+			return false;
+		}
+	}
+
+	/**
+	 * Parses the numeric value of a <code>/proc</code> line of the form
+	 * <code>key: value [unit]</code>.
+	 * @param line the line
+	 * @return the value or <code>-1</code> if the line could not be parsed
+	 */
+	static long parseValue(String line) {
+		String[] tokens = line.substring(line.indexOf(':') + 1).trim().split("\\s+");
+		try {
+			return Long.parseLong(tokens[0]);
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	/**
+	 * Returns the operating system process ID of the specified process.
+	 * @param proc the process
+	 * @return the process ID or <code>-1</code> if it could not be determined
+	 */
+	static long getPid(Process proc) {
+		try {
+			// Java 9 and later
+			Method method = Process.class.getMethod("pid");
+			return ((Number) method.invoke(proc)).longValue();
+		} catch (Exception e) {
+			// fall through
+		}
+		try {
+			// UNIX process implementations up to Java 8
+			Field field = proc.getClass().getDeclaredField("pid");
+			field.setAccessible(true);
+			return field.getLong(proc);
+		} catch (Exception e) {
+			return -1L;
+		}
+	}
+
+}
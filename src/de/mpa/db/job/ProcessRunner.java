@@ -0,0 +1,339 @@
+package de.mpa.db.job;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs a subprocess while draining its standard output and error streams in
+ * background threads, so that a process writing lots of output never blocks
+ * on a full pipe. Only the most recent lines of each stream are retained in
+ * bounded ring buffers. Output lines are parsed into progress events passed to
+ * an optional listener. The process may be canceled at any time and is
+ * destroyed if it exceeds a timeout.
+ *
+ * @author A. Behne
+ */
+public class ProcessRunner {
+
+	/**
+	 * The default number of lines retained per stream.
+	 */
+	public static final int DEFAULT_CAPACITY = 200;
+
+	/**
+	 * The interval in milliseconds in which a process with timeout is polled.
+	 */
+	private static final long POLL_INTERVAL = 100L;
+
+	/**
+	 * The time in milliseconds to wait for the output of an exited process to
+	 * be drained. Child processes left running may keep the streams open.
+	 */
+	private static final long DRAIN_TIMEOUT = 5000L;
+
+	/**
+	 * Listener receiving the progress events of a running process.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * Invoked from a draining thread when an output line reports
+		 * progress.
+		 * @param progress the progress event
+		 */
+		public void progressChanged(JobProgress progress);
+	}
+
+	/**
+	 * The process builder.
+	 */
+	private final ProcessBuilder builder;
+
+	/**
+	 * The progress parser or <code>null</code>.
+	 */
+	private final ProgressParser parser;
+
+	/**
+	 * The progress listener or <code>null</code>.
+	 */
+	private final ProgressListener listener;
+
+	/**
+	 * The most recent lines of the standard output stream.
+	 */
+	private final LineBuffer output;
+
+	/**
+	 * The most recent lines of the standard error stream.
+	 */
+	private final LineBuffer errors;
+
+	/**
+	 * The logger receiving the output lines at debug level.
+	 */
+	private final Logger log;
+
+	/**
+	 * The running process.
+	 */
+	private Process proc;
+
+	/**
+	 * The stream draining threads.
+	 */
+	private List<Thread> drainers = new ArrayList<Thread>();
+
+	/**
+	 * The flag denoting whether the process has been canceled.
+	 */
+	private volatile boolean canceled;
+
+	/**
+	 * Creates a process runner retaining {@link #DEFAULT_CAPACITY} lines per
+	 * stream.
+	 * @param builder the process builder
+	 * @param parser the progress parser, may be <code>null</code>
+	 * @param listener the progress listener, may be <code>null</code>
+	 * @param log the logger receiving the output lines at debug level
+	 */
+	public ProcessRunner(ProcessBuilder builder, ProgressParser parser, ProgressListener listener, Logger log) {
+		this(builder, parser, listener, log, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a process runner.
+	 * @param builder the process builder
+	 * @param parser the progress parser, may be <code>null</code>
+	 * @param listener the progress listener, may be <code>null</code>
+	 * @param log the logger receiving the output lines at debug level
+	 * @param capacity the number of lines retained per stream
+	 */
+	public ProcessRunner(ProcessBuilder builder, ProgressParser parser, ProgressListener listener, Logger log, int capacity) {
+		this.builder = builder;
+		this.parser = parser;
+		this.listener = listener;
+		this.log = log;
+		this.output = new LineBuffer(capacity);
+		this.errors = new LineBuffer(capacity);
+	}
+
+	/**
+	 * Starts the process and the threads draining its output.
+	 * @return the process
+	 * @throws IOException if the process could not be started
+	 */
+	public synchronized Process start() throws IOException {
+		proc = builder.start();
+		drain(proc.getInputStream(), output, "stdout");
+		if (!builder.redirectErrorStream()) {
+			drain(proc.getErrorStream(), errors, "stderr");
+		}
+		if (canceled) {
+			// canceled while starting
+			proc.destroy();
+		}
+		return proc;
+	}
+
+	/**
+	 * Starts a daemon thread reading the specified stream line by line.
+	 * @param in the stream
+	 * @param buffer the buffer receiving the lines
+	 * @param name the stream name
+	 */
+	private void drain(final InputStream in, final LineBuffer buffer, String name) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						buffer.add(line);
+						if (log.isDebugEnabled()) {
+							log.debug(line);
+						}
+						if ((parser != null) && (listener != null)) {
+							JobProgress progress = parser.parse(line);
+							if (progress != null) {
+								listener.progressChanged(progress);
+							}
+						}
+					}
+				} catch (IOException e) {
+					// stream closed by destroying the process
+				} finally {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}, "ProcessRunner-" + name);
+		thread.setDaemon(true);
+		thread.start();
+		drainers.add(thread);
+	}
+
+	/**
+	 * Waits for the process to exit and its output to be drained. Output still
+	 * not drained {@link #DRAIN_TIMEOUT} after the exit is discarded.
+	 * @param timeout the maximum time to wait in milliseconds, non-positive
+	 *  for no limit
+	 * @return the exit code of the process
+	 * @throws InterruptedException if the current thread was interrupted
+	 *  while waiting, the process is destroyed
+	 * @throws TimeoutException if the process did not exit in time, the
+	 *  process is destroyed
+	 */
+	public int waitFor(long timeout) throws InterruptedException, TimeoutException {
+		int exitCode;
+		try {
+			if (timeout > 0L) {
+				long deadline = System.currentTimeMillis() + timeout;
+				while (true) {
+					try {
+						exitCode = proc.exitValue();
+						break;
+					} catch (IllegalThreadStateException e) {
+						// still running
+					}
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0L) {
+						proc.destroy();
+						throw new TimeoutException("Process did not exit within " + timeout + " ms.");
+					}
+					Thread.sleep(Math.min(remaining, POLL_INTERVAL));
+				}
+			} else {
+				exitCode = proc.waitFor();
+			}
+		} catch (InterruptedException e) {
+			proc.destroy();
+			throw e;
+		}
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+		for (Thread drainer : drainers) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining > 0L) {
+				drainer.join(remaining);
+			}
+		}
+		this.closeStreams();
+		return exitCode;
+	}
+
+	/**
+	 * Closes the streams of the process, so that draining threads still
+	 * blocked in reading output do not keep them open.
+	 */
+	private void closeStreams() {
+		try {
+			proc.getOutputStream().close();
+			proc.getInputStream().close();
+			proc.getErrorStream().close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Cancels the process by destroying it. If the process has not been
+	 * started yet it is destroyed right after starting.
+	 */
+	public synchronized void cancel() {
+		canceled = true;
+		if (proc != null) {
+			proc.destroy();
+		}
+	}
+
+	/**
+	 * Returns whether the process has been canceled.
+	 * @return <code>true</code> if canceled, <code>false</code> otherwise
+	 */
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	/**
+	 * Returns the most recent lines of the standard output stream, including
+	 * the error stream if redirected.
+	 * @return the lines, oldest first
+	 */
+	public List<String> getOutput() {
+		return output.toList();
+	}
+
+	/**
+	 * Returns the most recent lines of the standard error stream.
+	 * @return the lines, oldest first
+	 */
+	public List<String> getErrors() {
+		return errors.toList();
+	}
+
+	/**
+	 * Ring buffer retaining a fixed number of the most recently added lines.
+	 */
+	static class LineBuffer {
+
+		/**
+		 * The lines.
+		 */
+		private final String[] lines;
+
+		/**
+		 * The index of the next line to write.
+		 */
+		private int next;
+
+		/**
+		 * The number of retained lines.
+		 */
+		private int size;
+
+		/**
+		 * Creates a line buffer.
+		 * @param capacity the number of lines to retain
+		 */
+		LineBuffer(int capacity) {
+			this.lines = new String[Math.max(capacity, 1)];
+		}
+
+		/**
+		 * Adds a line, overwriting the oldest line if the buffer is full.
+		 * @param line the line
+		 */
+		synchronized void add(String line) {
+			lines[next] = line;
+			next = (next + 1) % lines.length;
+			if (size < lines.length) {
+				size++;
+			}
+		}
+
+		/**
+		 * Returns the retained lines.
+		 * @return the lines, oldest first
+		 */
+		synchronized List<String> toList() {
+			List<String> list = new ArrayList<String>(size);
+			int start = (next - size + lines.length) % lines.length;
+			for (int i = 0; i < size; i++) {
+				list.add(lines[(start + i) % lines.length]);
+			}
+			return list;
+		}
+	}
+
+}
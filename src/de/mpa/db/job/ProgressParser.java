@@ -0,0 +1,105 @@
+package de.mpa.db.job;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses output lines of search engine subprocesses into progress events.
+ * Lines matching a progress pattern report a completed fraction, taken from
+ * either a percentage (one group) or a count and a total (two groups). Lines
+ * matching the stage pattern mark the completion of a processing stage. Any
+ * other line is ignored.
+ *
+ * @author A. Behne
+ */
+public class ProgressParser {
+
+	/**
+	 * Pattern of percentages, e.g. <code>42%</code>.
+	 */
+	public static final Pattern PERCENT = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*%");
+
+	/**
+	 * Pattern of counts out of totals, e.g. <code>100 of 2000</code> or
+	 * <code>100/2000</code>.
+	 */
+	public static final Pattern COUNT_OF_TOTAL = Pattern.compile("(\\d+)\\s*(?:of|/)\\s*(\\d+)");
+
+	/**
+	 * Pattern of completed stages, e.g. <code>Loading spectra ... loaded.</code>.
+	 */
+	public static final Pattern STAGE = Pattern.compile(".*\\b(?:done|loaded|started|finished|complete)\\.?\\s*$",
+			Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * The default parser recognizing percentages, counts out of totals and
+	 * completed stages.
+	 */
+	public static final ProgressParser DEFAULT = new ProgressParser(STAGE, PERCENT, COUNT_OF_TOTAL);
+
+	/**
+	 * The pattern of completed stages or <code>null</code>.
+	 */
+	private final Pattern stagePattern;
+
+	/**
+	 * The patterns of completed fractions, tried in order.
+	 */
+	private final Pattern[] progressPatterns;
+
+	/**
+	 * Creates a progress parser.
+	 * @param stagePattern the pattern of lines marking completed stages, may
+	 *  be <code>null</code>
+	 * @param progressPatterns the patterns of lines reporting completed
+	 *  fractions, capturing either a percentage or a count and a total
+	 */
+	public ProgressParser(Pattern stagePattern, Pattern... progressPatterns) {
+		this.stagePattern = stagePattern;
+		this.progressPatterns = progressPatterns;
+	}
+
+	/**
+	 * Parses the specified output line.
+	 * @param line the output line
+	 * @return the progress event or <code>null</code> if the line does not
+	 *  report progress
+	 */
+	public JobProgress parse(String line) {
+		String trimmed = line.trim();
+		if (trimmed.isEmpty()) {
+			return null;
+		}
+		for (Pattern pattern : progressPatterns) {
+			Matcher matcher = pattern.matcher(trimmed);
+			if (matcher.find()) {
+				double fraction = getFraction(matcher);
+				if (fraction >= 0.0) {
+					return new JobProgress(trimmed, fraction);
+				}
+			}
+		}
+		if ((stagePattern != null) && stagePattern.matcher(trimmed).matches()) {
+			return new JobProgress(trimmed, -1.0);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the completed fraction captured by the specified matcher.
+	 * @param matcher the matcher of a progress pattern
+	 * @return the fraction or <code>-1</code> if it could not be determined
+	 */
+	private static double getFraction(Matcher matcher) {
+		try {
+			if (matcher.groupCount() >= 2) {
+				double total = Double.parseDouble(matcher.group(2));
+				return (total > 0.0) ? Double.parseDouble(matcher.group(1)) / total : -1.0;
+			}
+			return Double.parseDouble(matcher.group(1)) / 100.0;
+		} catch (NumberFormatException e) {
+			return -1.0;
+		}
+	}
+
+}
@@ -133,8 +133,7 @@ public class CruxJob extends Job {
 		setDescription("CRUX");
 		
 		procBuilder.directory(cruxFile);
-		// set error out and std out to same stream
-		procBuilder.redirectErrorStream(true);
+		initTimeout("crux");
 	}
 	
 	/**
@@ -1,8 +1,11 @@
 package de.mpa.db.job.instances;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
 
 /**
  * Delete job class for removing X!Tandem and OMSSA result files.
@@ -11,40 +14,58 @@ import de.mpa.db.job.Job;
  * 
  */
 public class DeleteJob extends Job {	
-private String filename;
 	
-	public DeleteJob() {}
+	/**
+	 * The files to delete.
+	 */
+	private List<File> files;
 	
-	public DeleteJob(String filename) {
-		this.filename = filename;
+	/**
+	 * Constructs a job deleting the specified files, e.g. the result files of
+	 * a search or the shards of a spectrum file.
+	 * @param files The files to delete.
+	 */
+	public DeleteJob(List<File> files) {
+		this.files = files;
+		setDescription("DELETE " + files.size() + " FILE(S)");
+	}
+	
+	/**
+	 * Returns the files written by an X!Tandem or OMSSA search and its
+	 * scoring, i.e. the target and decoy result files, the extracted scores
+	 * and the q-values. Only files of this very search are listed, searches of
+	 * other spectrum files sharing a filename prefix are left untouched.
+	 * @param targetFilename The target result filename.
+	 * @param decoyFilename The decoy result filename, <code>null</code> if no
+	 *  decoy search has been run.
+	 * @return The result files.
+	 */
+	public static List<File> getSearchResultFiles(String targetFilename, String decoyFilename) {
+		List<File> files = new ArrayList<File>();
+		String targetPrefix = targetFilename.substring(0, targetFilename.lastIndexOf("_target"));
+		files.add(new File(targetFilename));
+		files.add(new File(targetPrefix + "_target.out"));
+		if (decoyFilename != null) {
+			files.add(new File(decoyFilename));
+			files.add(new File(decoyFilename.substring(0, decoyFilename.lastIndexOf("_decoy")) + "_decoy.out"));
+			files.add(new File(targetPrefix + "_qvalued.out"));
+		}
+		return files;
 	}
 
 	@Override
 	public void run() {
-		
-		// Wait for 10 seconds before removing of files starts... to account for other processes to finish first.
-		try {
-			Thread.sleep(10000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		
-		String parent = new File(filename).getParent();
-		String filenamePrefix = "";
-		
-		if (filename.endsWith("xml")) {
-			filenamePrefix = filename.substring(0, filename.indexOf("_target"));
-		} else if (filename.endsWith("omx")) {
-			filenamePrefix = filename.substring(0, filename.indexOf("_target"));
-		}
-		File parentFolder = new File(parent);
-		// Iterate the files in the directory
-		if (parentFolder.isDirectory()){
-			for (File file : parentFolder.listFiles()) {
-				if (file.getAbsolutePath().startsWith(filenamePrefix) && file.isFile()) {
-					file.delete();
-				}
+		// Delete jobs are queued after the jobs reading the files
+		for (File file : files) {
+			if (file.isFile()) {
+				file.delete();
 			}
 		}
+		done();
+	}
+	
+	@Override
+	public JobResource getResource() {
+		return JobResource.FILE;
 	}
 }
@@ -52,7 +52,8 @@ public class InspectJob extends Job {
 	 * Constructs the input.xml file needed for the Inspect process. 
 	 */
 	private void buildInputFile(){		
-	        inputFile = new File(inspectFile, jobProperties.getProperty("file.input.inspect"));
+	        // Input files are specific to the spectrum file, so that searches of several files may be queued at once
+	        inputFile = new File(inspectFile, mgfFile.getName() + "_" + jobProperties.getProperty("file.input.inspect").trim());
 	        try {
 	            BufferedWriter bw = new BufferedWriter(new FileWriter(inputFile));
 	            
@@ -94,7 +95,6 @@ public class InspectJob extends Job {
 		procBuilder = new ProcessBuilder(procCommands);
 
 		procBuilder.directory(inspectFile);
-		// set error out and std out to same stream
-		procBuilder.redirectErrorStream(true);
+		initTimeout("inspect");
 	}
 }
@@ -137,8 +137,7 @@ public class OmssaJob extends Job {
         procBuilder.directory(omssaFile);
         
         
-        // Set error out and std out to same stream
-        procBuilder.redirectErrorStream(true);
+        initTimeout("omssa");
 	}
 	
 	/**
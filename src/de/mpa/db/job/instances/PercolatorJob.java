@@ -2,13 +2,21 @@ package de.mpa.db.job.instances;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.regex.Pattern;
 
 import de.mpa.db.job.Job;
+import de.mpa.db.job.ProgressParser;
 
 public class PercolatorJob extends Job{
 	
 	private final File cruxFile;
 	private final String filename;
+	
+	/**
+	 * Percolator reports its training iterations and q-value calculation, but no totals.
+	 */
+	private final static ProgressParser PROGRESS_PARSER = new ProgressParser(Pattern.compile(
+			"(?:Iteration \\d+|Selecting|Calculating|Estimating|Writing).*", Pattern.CASE_INSENSITIVE));
 	 
 	/**
 	 * Constructor for the XTandemJob retrieving the MGF file as the only
@@ -56,8 +64,12 @@ public class PercolatorJob extends Job{
 		
 		procBuilder = new ProcessBuilder(procCommands);
 		procBuilder.directory(cruxFile);
-		// set error out and std out to same stream
-		procBuilder.redirectErrorStream(true);
+		initTimeout("percolator");
+	}
+	
+	@Override
+	protected ProgressParser getProgressParser() {
+		return PROGRESS_PARSER;
 	}
 	
 	/**
@@ -65,8 +65,7 @@ public class QvalityJob extends Job {
 		log.info(procCommands);
 		procBuilder = new ProcessBuilder(procCommands);
 		
-		// set error out and std out to same stream
-		procBuilder.redirectErrorStream(true);
+		initTimeout("qvality");
 	}
 	
 	public String getQValuedOutput(){
@@ -1,6 +1,7 @@
 package de.mpa.db.job.instances;
 
 import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
 
 public class RenameJob extends Job {
 	protected String oldname; 
@@ -37,5 +38,9 @@ public class RenameJob extends Job {
 		// set error out and std out to same stream
 		procBuilder.redirectErrorStream(true);
 	}
-
+	
+	@Override
+	public JobResource getResource() {
+		return JobResource.FILE;
+	}
 }
@@ -0,0 +1,78 @@
+package de.mpa.db.job.instances;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.Collections;
+
+import de.mpa.algorithms.Interval;
+import de.mpa.algorithms.similarity.BinningVectorization;
+import de.mpa.algorithms.similarity.Vectorization;
+import de.mpa.client.SpecSimSettings;
+import de.mpa.client.model.specsim.SpectralLibraryFile;
+import de.mpa.client.model.specsim.SpectralSearchCandidateStream;
+import de.mpa.db.DBManager;
+import de.mpa.db.extractor.SpectrumExtractor;
+import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
+import de.mpa.db.job.JobStatus;
+
+/**
+ * Job class for exporting the spectral library of an experiment into a
+ * spectral library file, which may be searched afterwards without accessing
+ * the database.
+ *
+ * @author A. Behne
+ */
+public class SpecLibExportJob extends Job {
+
+	/**
+	 * The library file to write.
+	 */
+	private File file;
+
+	/**
+	 * The spectral similarity search settings reference.
+	 */
+	private SpecSimSettings settings;
+
+	/**
+	 * Constructs a spectral library export job. The library spectra of the
+	 * experiment specified by the search settings are exported, their peaks
+	 * are stored vectorized using the search settings if possible.
+	 * @param file The library file to write.
+	 * @param settings The spectral similarity search settings.
+	 */
+	public SpecLibExportJob(File file, SpecSimSettings settings) {
+		this.file = file;
+		this.settings = settings;
+		// Set the description
+		setDescription("SPECTRAL LIBRARY EXPORT");
+	}
+
+	@Override
+	public void run() {
+		try {
+			setStatus(JobStatus.RUNNING);
+			Connection conn = DBManager.getInstance().getConnection();
+			Vectorization vect = SpecSimJob.getVectorizationMethod(settings);
+			// write library spectra page by page while they are being fetched
+			SpectralSearchCandidateStream source = new SpectrumExtractor(conn).streamCandidatesFromExperiment(
+					Collections.singletonList(new Interval(0.0, Double.MAX_VALUE)), settings.getExperimentID());
+			try {
+				SpectralLibraryFile.write(file, source, settings,
+						(vect instanceof BinningVectorization) ? (BinningVectorization) vect : null,
+						SpecSimJob.getTransformationMethod(settings));
+			} finally {
+				source.close();
+			}
+			done();
+		} catch (Exception e) {
+			setError(e);
+		}
+	}
+	
+	@Override
+	public JobResource getResource() {
+		return JobResource.DATABASE;
+	}
+}
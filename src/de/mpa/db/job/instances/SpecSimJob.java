@@ -1,28 +1,54 @@
 package de.mpa.db.job.instances;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.mpa.algorithms.Interval;
+import de.mpa.algorithms.similarity.BinningVectorization;
 import de.mpa.algorithms.similarity.CrossCorrelation;
 import de.mpa.algorithms.similarity.EuclideanDistance;
 import de.mpa.algorithms.similarity.NormalizedDotProduct;
 import de.mpa.algorithms.similarity.PearsonCorrelation;
 import de.mpa.algorithms.similarity.SpectrumComparator;
+import de.mpa.algorithms.similarity.SpectrumSketch;
+import de.mpa.algorithms.similarity.SpectrumVector;
 import de.mpa.algorithms.similarity.Transformation;
 import de.mpa.algorithms.similarity.Vectorization;
 import de.mpa.algorithms.similarity.VectorizationFactory;
 import de.mpa.client.SpecSimSettings;
+import de.mpa.client.model.specsim.SpectralLibraryCache;
+import de.mpa.client.model.specsim.SpectralLibraryFile;
 import de.mpa.client.model.specsim.SpectralSearchCandidate;
+import de.mpa.client.model.specsim.SpectralSearchCandidateIndex;
+import de.mpa.client.model.specsim.SpectralSearchCandidateStream;
 import de.mpa.client.model.specsim.SpectrumSpectrumMatch;
 import de.mpa.db.DBManager;
-import de.mpa.db.MapContainer;
+import de.mpa.db.SpectrumIdResolver;
+import de.mpa.db.extractor.SpectralSearchCandidateSource;
 import de.mpa.db.extractor.SpectrumExtractor;
 import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
 import de.mpa.db.job.JobStatus;
+import de.mpa.db.job.ServerProperties;
+import de.mpa.db.storager.SpecSimStorager;
 import de.mpa.io.MascotGenericFile;
+import de.mpa.io.PeakList;
 
 /**
  * Job implementation for spectral similarity searching.
@@ -45,87 +71,569 @@ public class SpecSimJob extends Job {
 	 * The list of spectrum-spectrum matches.
 	 */
 	private List<SpectrumSpectrumMatch> ssmList;
+	
+	/**
+	 * The resolver linking query spectrum titles to searchspectrum IDs of their file.
+	 */
+	private SpectrumIdResolver resolver;
+	
+	/**
+	 * The number of worker threads, determined automatically if not positive.
+	 */
+	private int threadCount;
+	
+	/**
+	 * The precursor m/z sorted index of pre-fetched library candidates, if any.
+	 */
+	private SpectralSearchCandidateIndex candidateIndex;
+	
+	/**
+	 * The spectral library file to be searched instead of the database, if any.
+	 */
+	private SpectralLibraryFile libraryFile;
+	
+	/**
+	 * The searchspectrum IDs of the query spectra, resolved by title if not set.
+	 */
+	private long[] searchspectrumIDs;
+	
+	/**
+	 * The cache of vectorized library spectra.
+	 */
+	private SpectralLibraryCache libraryCache;
+	
+	/**
+	 * The library cache shared by all jobs of this process.
+	 */
+	private static SpectralLibraryCache sharedLibraryCache;
+	
+	/**
+	 * The storager receiving batches of matches while the search is running, if any.
+	 */
+	private SpecSimStorager storager;
+	
+	/**
+	 * The number of matches handed over to the storager at once.
+	 */
+	private int batchSize;
+	
+	/**
+	 * Placeholder ID of query spectra not stored from their file, which are skipped.
+	 */
+	private static final long UNRESOLVED = -1L;
+	
+	/**
+	 * Orders spectrum-spectrum matches by ascending similarity.
+	 */
+	private static final Comparator<SpectrumSpectrumMatch> SIMILARITY_ORDER = new Comparator<SpectrumSpectrumMatch>() {
+		@Override
+		public int compare(SpectrumSpectrumMatch o1, SpectrumSpectrumMatch o2) {
+			return Double.compare(o1.getSimilarity(), o2.getSimilarity());
+		}
+	};
 
 	/**
 	 * Constructs a spectral similarity search job from the specified list of
 	 * spetrum files and search settings.
 	 * @param mgfList the list of spectrum files
 	 * @param settings the spectral similarity search settings
+	 * @param resolver the resolver of the titles of the spectrum file the query
+	 *  spectra were stored from
 	 */
-	public SpecSimJob(List<MascotGenericFile> mgfList, SpecSimSettings settings) {
+	public SpecSimJob(List<MascotGenericFile> mgfList, SpecSimSettings settings, SpectrumIdResolver resolver) {
 		this.mgfList = mgfList;
 		this.settings = settings;
+		this.resolver = resolver;
 		setDescription("SPECTRAL SIMILARITY SEARCH");
 	}
 
+	/**
+	 * Sets the number of worker threads scoring query spectra concurrently.
+	 * @param threadCount the number of threads, all available processors are
+	 *  used if not positive
+	 */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Sets a previously fetched candidate index to be searched instead of
+	 * streaming candidates from the database, e.g. to re-use the same index
+	 * for several jobs. The index must cover the precursor tolerance windows
+	 * of all query spectra.
+	 * @param candidateIndex the candidate index
+	 */
+	public void setCandidateIndex(SpectralSearchCandidateIndex candidateIndex) {
+		this.candidateIndex = candidateIndex;
+	}
+
+	/**
+	 * Sets a spectral library file to be searched instead of streaming
+	 * candidates from the database. Vectors stored in the file are scored
+	 * directly if they match the search settings.
+	 * @param libraryFile the library file
+	 */
+	public void setLibraryFile(SpectralLibraryFile libraryFile) {
+		this.libraryFile = libraryFile;
+	}
+	
+	/**
+	 * Sets the searchspectrum IDs of the query spectra, so that these need not
+	 * be resolved by title. Together with a {@link
+	 * #setLibraryFile(SpectralLibraryFile) library file} and no storager the
+	 * search runs without any database access.
+	 * @param searchspectrumIDs the IDs in the order of the query spectra
+	 */
+	public void setSearchSpectrumIDs(long[] searchspectrumIDs) {
+		this.searchspectrumIDs = searchspectrumIDs;
+	}
+	
+	/**
+	 * Sets the cache of vectorized library spectra to be used instead of the
+	 * cache shared by all jobs of this process.
+	 * @param libraryCache the library cache
+	 */
+	public void setLibraryCache(SpectralLibraryCache libraryCache) {
+		this.libraryCache = libraryCache;
+	}
+
+	/**
+	 * Sets a storager to which matches are handed over in batches while the
+	 * search is running instead of collecting all of them in memory. Matches
+	 * passed to the storager are not contained in the {@link #getResults()
+	 * results} of this job.
+	 * @param storager the storager, should use its own database connection
+	 * @param batchSize the number of matches handed over at once
+	 */
+	public void setStorager(SpecSimStorager storager, int batchSize) {
+		this.storager = storager;
+		this.batchSize = Math.max(batchSize, 1);
+	}
+
 	@Override
 	public void run() {
 		setStatus(JobStatus.RUNNING);
 		
-		// store list of results in HashMap (with spectrum title as key)
-		ssmList = new ArrayList<SpectrumSpectrumMatch>();
-		
-		List<Interval> intervals = this.buildMzIntervals();
-
+		ExecutorService executor = null;
 		try {
-			// extract list of candidates
-			DBManager manager = DBManager.getInstance();
-			SpectrumExtractor specEx = new SpectrumExtractor(manager.getConnection());
-			List<SpectralSearchCandidate> candidates = 
-					specEx.getCandidatesFromExperiment(intervals, settings.getExperimentID());
-//			System.out.flush();
-//			System.out.print("Fetching candidates... ");
-//			List<SpectralSearchCandidate> candidates = 
-//					specEx.getCandidatesFromExperiment(settings.getExperimentID());
-//			System.out.flush();
-//			System.out.println("done.\nIterating query spectra... ");
-//			
-//			int total = mgfList.size();
-//			int i = 0;
-			
-			// iterate query spectra to determine similarity scores
-			for (MascotGenericFile mgfQuery : mgfList) {
-				String title = mgfQuery.getTitle().trim();
-				long searchspectrumID = MapContainer.SpectrumTitle2IdMap.get(title);
-				
-				// Spectrum comparator method
-				SpectrumComparator specComp = getComparatorMethod(settings);
-				
-				// Comparison preparation
-				specComp.prepare(mgfQuery.getHighestPeaks(settings.getPickCount()));
-				
-				// iterate candidates
-				for (SpectralSearchCandidate candidate : candidates) {
-					// (re-)check precursor tolerance criterion to determine proper candidates
-					if (Math.abs(mgfQuery.getPrecursorMZ() - candidate.getPrecursorMz()) < settings.getTolMz()) {
-						// TODO: redundancy check in candidates (e.g. same spectrum from multiple peptide associations)
-						// Score query and library spectra
-						specComp.compareTo(candidate.getPeaks());
-						double score = specComp.getSimilarity();
-						
-						// store result if score is above specified threshold
-						if (score >= settings.getThreshScore()) {
-							ssmList.add(new SpectrumSpectrumMatch(searchspectrumID, candidate.getLibpectrumID(), score));
-						}
+			long[] searchspectrumIDs = this.searchspectrumIDs;
+			if (searchspectrumIDs == null) {
+				// resolve query spectrum IDs up front
+				searchspectrumIDs = new long[mgfList.size()];
+				for (int i = 0; i < searchspectrumIDs.length; i++) {
+					String title = mgfList.get(i).getTitle().trim();
+					Long searchspectrumID = resolver.get(title);
+					if (searchspectrumID == null) {
+						// matches could not be stored
+						log.warn("Query spectrum not found, skipping: " + title);
+						searchspectrumIDs[i] = UNRESOLVED;
+					} else {
+						searchspectrumIDs[i] = searchspectrumID;
 					}
 				}
-				specComp.getVectorization().cleanup();
-				
-//				if ((i%100) == 0) {
-//					System.out.println("" + i + " / " + total);
-//				}
-//				i++;
-				
-				// TODO: re-implement progress event handling
-//				pSupport.firePropertyChange("progressmade", 0, 1);
 			}
+			
+			// visit queries in ascending precursor order, consecutive queries share candidates
+			final int[] order = this.sortByPrecursorMz();
+			
+			MatchCollector results = new MatchCollector();
+			int threads = Math.min(this.getThreadCount(), Math.max(mgfList.size(), 1));
+			executor = Executors.newFixedThreadPool(threads);
+			if (candidateIndex != null) {
+				// search pre-fetched candidates
+				this.searchBlock(executor, threads, order, 0, order.length, candidateIndex, searchspectrumIDs, results);
+			} else {
+				// search candidates while they are being read from file or fetched
+				SpectralSearchCandidateStream source;
+				if (libraryFile != null) {
+					source = libraryFile.stream(this.buildMzIntervals(), settings,
+							SpectralSearchCandidateSource.DEFAULT_PAGE_SIZE);
+				} else {
+					Connection conn = DBManager.getInstance().getConnection();
+					source = new SpectrumExtractor(conn).streamCandidatesFromExperiment(
+							this.buildMzIntervals(), settings.getExperimentID());
+				}
+				try {
+					this.searchStream(executor, threads, order, source, searchspectrumIDs, results);
+				} finally {
+					source.close();
+				}
+			}
+			if (storager != null) {
+				// hand over remaining matches
+				results.drain(1);
+			}
+			ssmList = new ArrayList<SpectrumSpectrumMatch>(results.queue);
+			
+			// TODO: re-implement progress event handling
+//			pSupport.firePropertyChange("progressmade", 0, 1);
 			System.out.println("... done.");
 			done();
 		} catch (SQLException e) {
 			setError(e);
+		} catch (InterruptedException e) {
+			setError(e);
+		} catch (ExecutionException e) {
+			setError(e);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 		}
 	}
 	
+	/**
+	 * Scores query spectra against a stream of candidates. Candidates arrive
+	 * in ascending precursor m/z order and are kept in a sliding window.
+	 * Whenever the window covers the complete precursor tolerance range of
+	 * pending queries these are scored, afterwards candidates not needed by
+	 * any remaining query are dropped from the window.
+	 * @param executor the worker pool
+	 * @param threads the number of workers
+	 * @param order the indices of the query spectra in ascending precursor m/z order
+	 * @param source the candidate stream
+	 * @param searchspectrumIDs the searchspectrum IDs of the query spectra
+	 * @param results the collector of spectrum-spectrum matches
+	 * @throws SQLException if fetching candidates failed
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if a worker failed
+	 */
+	private void searchStream(ExecutorService executor, int threads, int[] order,
+			SpectralSearchCandidateStream source, long[] searchspectrumIDs,
+			MatchCollector results) throws SQLException, InterruptedException, ExecutionException {
+		double tolMz = settings.getTolMz();
+		List<SpectralSearchCandidate> window = new ArrayList<SpectralSearchCandidate>();
+		int from = 0;
+		while (from < order.length) {
+			List<SpectralSearchCandidate> page = source.nextPage();
+			if (page != null) {
+				window.addAll(page);
+			}
+			SpectralSearchCandidateIndex index = new SpectralSearchCandidateIndex(window);
+			
+			// determine pending queries whose tolerance ranges are covered by the window
+			int to = from;
+			if (page == null) {
+				to = order.length;
+			} else {
+				double lastMz = index.getPrecursorMz(index.size() - 1);
+				while ((to < order.length) && !(lastMz - mgfList.get(order[to]).getPrecursorMZ() < tolMz)) {
+					to++;
+				}
+			}
+			if (to > from) {
+				this.searchBlock(executor, threads, order, from, to, index, searchspectrumIDs, results);
+				from = to;
+				if (from < order.length) {
+					// drop candidates below the tolerance range of the next pending query
+					int drop = index.fromIndex(mgfList.get(order[from]).getPrecursorMZ(), tolMz);
+					window = new ArrayList<SpectralSearchCandidate>(window.subList(drop, window.size()));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Scores a block of query spectra on the worker pool.
+	 * @param executor the worker pool
+	 * @param threads the number of workers
+	 * @param order the indices of the query spectra in processing order
+	 * @param from the first position in the processing order (inclusive)
+	 * @param to the last position in the processing order (exclusive)
+	 * @param index the candidates covering the tolerance ranges of the queries
+	 * @param searchspectrumIDs the searchspectrum IDs of the query spectra
+	 * @param results the collector of spectrum-spectrum matches
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if a worker failed
+	 */
+	private void searchBlock(ExecutorService executor, int threads, final int[] order, int from, final int to,
+			final SpectralSearchCandidateIndex index, final long[] searchspectrumIDs,
+			final MatchCollector results) throws InterruptedException, ExecutionException {
+		// workers pull queries off a shared counter
+		final AtomicInteger next = new AtomicInteger(from);
+		threads = Math.min(threads, to - from);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+		for (int i = 0; i < threads; i++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws SQLException {
+					searchQueries(next, to, order, index, searchspectrumIDs, results);
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+	}
+	
+	/**
+	 * Scores query spectra against their candidates until all queries of a
+	 * block have been claimed. Comparator, vectorization and buffers are
+	 * confined to the calling thread and re-used for every query.
+	 * @param next the position of the next unclaimed query spectrum
+	 * @param to the end position of the block (exclusive)
+	 * @param order the indices of the query spectra in processing order
+	 * @param index the candidates covering the tolerance ranges of the queries
+	 * @param searchspectrumIDs the searchspectrum IDs of the query spectra
+	 * @param results the collector of spectrum-spectrum matches
+	 * @throws SQLException if handing over matches to the storager failed
+	 */
+	private void searchQueries(AtomicInteger next, int to, int[] order, SpectralSearchCandidateIndex index,
+			long[] searchspectrumIDs, MatchCollector results) throws SQLException {
+		
+		// Spectrum comparator method
+		SpectrumComparator specComp = getComparatorMethod(settings);
+		Transformation trafo = getTransformationMethod(settings);
+		BinningVectorization binning = (specComp.getVectorization() instanceof BinningVectorization) ?
+				(BinningVectorization) specComp.getVectorization() : null;
+		
+		// re-usable buffers for binning vectorization methods
+		PeakList queryPeaks = new PeakList();
+		SpectrumVector queryVector = new SpectrumVector();
+		SpectrumVector candidateVector = new SpectrumVector();
+		SpectralLibraryCache cache = (binning != null) ? this.getLibraryCache() : null;
+		List<SpectrumSpectrumMatch> matches = new ArrayList<SpectrumSpectrumMatch>();
+		
+		// bounded min-heap retaining the best matches of a query, if limited
+		int maxMatches = settings.getMaxMatches();
+		PriorityQueue<SpectrumSpectrumMatch> best = (maxMatches > 0) ?
+				new PriorityQueue<SpectrumSpectrumMatch>(maxMatches, SIMILARITY_ORDER) : null;
+		
+		// sketch parameters of the candidate pre-filter, if enabled
+		int sketchPeaks = settings.getSketchPeaks();
+		double sketchThreshold = settings.getSketchThreshold();
+		double binWidth = settings.getBinWidth();
+		double binShift = settings.getBinShift();
+		
+		double tolMz = settings.getTolMz();
+		int pos;
+		while ((pos = next.getAndIncrement()) < to) {
+			int query = order[pos];
+			if (searchspectrumIDs[query] == UNRESOLVED) {
+				continue;
+			}
+			MascotGenericFile mgfQuery = mgfList.get(query);
+			double precursorMz = mgfQuery.getPrecursorMZ();
+			
+			// Comparison preparation
+			if (binning != null) {
+				// score sparse vectors directly, bypassing peak maps
+				mgfQuery.getHighestPeaks(settings.getPickCount(), queryPeaks);
+				specComp.prepare(binning.vectorize(queryPeaks.getMzArray(), queryPeaks.getIntensityArray(),
+						queryPeaks.size(), trafo, queryVector));
+			} else {
+				specComp.prepare(mgfQuery.getHighestPeaks(settings.getPickCount()));
+			}
+			SpectrumSketch querySketch = (sketchPeaks > 0) ? new SpectrumSketch(
+					mgfQuery.getMzArray(), mgfQuery.getIntensityArray(), sketchPeaks, binWidth, binShift) : null;
+			
+			// iterate candidates inside precursor tolerance window
+			int end = index.toIndex(precursorMz, tolMz);
+			for (int i = index.fromIndex(precursorMz, tolMz); i < end; i++) {
+				SpectralSearchCandidate candidate = index.get(i);
+				// skip candidates whose sketches are too dissimilar
+				if ((querySketch != null) && (querySketch.similarity(
+						candidate.getSketch(sketchPeaks, binWidth, binShift)) < sketchThreshold)) {
+					continue;
+				}
+				// Score query and library spectra
+				if (binning != null) {
+					// re-use stored or cached vectorized library spectrum if possible
+					SpectrumVector vector = candidate.getVector();
+					if ((vector == null) && (cache != null)) {
+						vector = cache.get(candidate.getLibpectrumID(), settings);
+					}
+					if (vector == null) {
+						double[] mzs = candidate.getMzArray();
+						vector = binning.vectorize(mzs, candidate.getIntensityArray(),
+								mzs.length, trafo, candidateVector);
+						if (cache != null) {
+							cache.put(candidate.getLibpectrumID(), settings, vector);
+						}
+					}
+					specComp.compareTo(vector);
+				} else {
+					specComp.compareTo(candidate.getPeaks());
+				}
+				double score = specComp.getSimilarity();
+				
+				// store result if score is above specified threshold
+				if (score >= settings.getThreshScore()) {
+					if (best == null) {
+						matches.add(new SpectrumSpectrumMatch(searchspectrumIDs[query], candidate.getLibpectrumID(), score));
+					} else if (best.size() < maxMatches) {
+						best.add(new SpectrumSpectrumMatch(searchspectrumIDs[query], candidate.getLibpectrumID(), score));
+					} else if (score > best.peek().getSimilarity()) {
+						// replace worst retained match
+						best.poll();
+						best.add(new SpectrumSpectrumMatch(searchspectrumIDs[query], candidate.getLibpectrumID(), score));
+					}
+				}
+			}
+			// release reference spectrum of stateful vectorization methods
+			specComp.getVectorization().cleanup();
+			
+			if (best != null) {
+				matches.addAll(best);
+				best.clear();
+			}
+			
+			// hand over matches of this query in one go
+			if (!matches.isEmpty()) {
+				results.addAll(matches);
+				matches.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Thread-safe collector of spectrum-spectrum matches, optionally handing
+	 * them over to the storager in batches.
+	 */
+	private class MatchCollector {
+		
+		/**
+		 * The collected matches not handed over yet.
+		 */
+		private final Queue<SpectrumSpectrumMatch> queue = new ConcurrentLinkedQueue<SpectrumSpectrumMatch>();
+		
+		/**
+		 * The number of collected matches not handed over yet.
+		 */
+		private final AtomicInteger pending = new AtomicInteger();
+		
+		/**
+		 * Adds the specified matches, handing over a batch to the storager if
+		 * enough matches have accumulated.
+		 * @param matches the matches to add
+		 * @throws SQLException if handing over matches failed
+		 */
+		public void addAll(List<SpectrumSpectrumMatch> matches) throws SQLException {
+			queue.addAll(matches);
+			if ((storager != null) && (pending.addAndGet(matches.size()) >= batchSize)) {
+				this.drain(batchSize);
+			}
+		}
+		
+		/**
+		 * Hands over batches to the storager as long as at least the specified
+		 * number of matches is pending. Only one thread writes at a time, so
+		 * that workers producing matches faster than they can be stored are
+		 * held back.
+		 * @param minSize the minimum number of pending matches
+		 * @throws SQLException if handing over matches failed
+		 */
+		public synchronized void drain(int minSize) throws SQLException {
+			while (pending.get() >= minSize) {
+				List<SpectrumSpectrumMatch> batch = new ArrayList<SpectrumSpectrumMatch>(batchSize);
+				SpectrumSpectrumMatch ssm;
+				while ((batch.size() < batchSize) && ((ssm = queue.poll()) != null)) {
+					batch.add(ssm);
+				}
+				if (batch.isEmpty()) {
+					break;
+				}
+				pending.addAndGet(-batch.size());
+				storager.storeBatch(batch);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the cache of vectorized library spectra, falling back to the
+	 * cache shared by all jobs of this process.
+	 * @return the library cache or <code>null</code> if caching is disabled
+	 */
+	private SpectralLibraryCache getLibraryCache() {
+		if (libraryCache == null) {
+			libraryCache = getSharedLibraryCache(jobProperties);
+		}
+		return libraryCache;
+	}
+	
+	/**
+	 * Returns the library cache shared by all jobs of this process, creating
+	 * it on first access. Its capacity and optional spill file are configured
+	 * by the <code>specsim.cache.capacity</code> and
+	 * <code>specsim.cache.spill</code> server properties.
+	 * @param properties the server properties, may be <code>null</code>
+	 * @return the shared library cache or <code>null</code> if caching is disabled
+	 */
+	private static synchronized SpectralLibraryCache getSharedLibraryCache(ServerProperties properties) {
+		if (sharedLibraryCache == null) {
+			int capacity = SpectralLibraryCache.DEFAULT_CAPACITY;
+			File spillFile = null;
+			if (properties != null) {
+				String property = properties.getProperty("specsim.cache.capacity");
+				if (property != null) {
+					try {
+						capacity = Integer.parseInt(property.trim());
+					} catch (NumberFormatException e) {
+						e.printStackTrace();
+					}
+				}
+				property = properties.getProperty("specsim.cache.spill");
+				if ((property != null) && !property.trim().isEmpty()) {
+					spillFile = new File(property.trim());
+				}
+			}
+			if (capacity <= 0) {
+				return null;
+			}
+			try {
+				sharedLibraryCache = new SpectralLibraryCache(capacity, spillFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+		return sharedLibraryCache;
+	}
+	
+	/**
+	 * Returns the number of worker threads, falling back to the
+	 * <code>specsim.threads</code> server property and the number of available
+	 * processors.
+	 * @return the number of worker threads
+	 */
+	private int getThreadCount() {
+		int threads = threadCount;
+		if ((threads <= 0) && (jobProperties != null)) {
+			String property = jobProperties.getProperty("specsim.threads");
+			if (property != null) {
+				try {
+					threads = Integer.parseInt(property.trim());
+				} catch (NumberFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Returns the indices of the query spectra sorted by ascending precursor m/z.
+	 * @return the sorted query indices
+	 */
+	private int[] sortByPrecursorMz() {
+		Integer[] indices = new Integer[mgfList.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		Arrays.sort(indices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(mgfList.get(o1).getPrecursorMZ(), mgfList.get(o2).getPrecursorMZ());
+			}
+		});
+		int[] order = new int[indices.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = indices[i];
+		}
+		return order;
+	}
+	
 	/**
 	 * Method to build an interval tree from a list of precursor m/z's.
 	 * @return
@@ -168,7 +676,7 @@ public class SpecSimJob extends Job {
 	 * @param baseWidth
 	 * @return
 	 */
-	private Vectorization getVectorizationMethod(SpecSimSettings settings) {
+	static Vectorization getVectorizationMethod(SpecSimSettings settings) {
 		Vectorization vect = null;
 		switch (settings.getVectIndex()) {
 		case 0:
@@ -190,7 +698,7 @@ public class SpecSimJob extends Job {
 	 * @param index The specified index.
 	 * @return The transformation method.
 	 */
-	private Transformation getTransformationMethod(SpecSimSettings settings) {
+	static Transformation getTransformationMethod(SpecSimSettings settings) {
 		Transformation trafo = null;
 		switch (settings.getTrafoIndex()) {
 		case 0:
@@ -244,4 +752,17 @@ public class SpecSimJob extends Job {
 		return ssmList;
 	}
 	
+	/**
+	 * Returns the database resource if candidates are streamed using the
+	 * database connection shared with the storing jobs, so that these do not
+	 * run concurrently. Searches of {@link #setLibraryFile(SpectralLibraryFile)
+	 * library files} or {@link #setCandidateIndex(SpectralSearchCandidateIndex)
+	 * pre-fetched candidates} are compute-bound.
+	 * @return the resource
+	 */
+	@Override
+	public JobResource getResource() {
+		return ((candidateIndex == null) && (libraryFile == null)) ? JobResource.DATABASE : JobResource.CPU;
+	}
+	
 }
@@ -4,6 +4,7 @@ import java.sql.SQLException;
 
 import de.mpa.db.DBManager;
 import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
 import de.mpa.db.job.JobStatus;
 
 /**
@@ -42,10 +43,15 @@ public class SpecSimStoreJob extends Job {
 	public void run() {
 		try {
 			setStatus(JobStatus.RUNNING);
-			dbManager.storeSpecSimResults(specSimJob.getResults());
+			metrics.setRowsStored(dbManager.storeSpecSimResults(specSimJob.getResults()).getStoredRows());
 			done();
 		} catch (Exception e) {
 			setError(e);
 		}
 	}
+	
+	@Override
+	public JobResource getResource() {
+		return JobResource.DATABASE;
+	}
 }
@@ -0,0 +1,72 @@
+package de.mpa.db.job.instances;
+
+import java.io.File;
+
+import de.mpa.db.DBManager;
+import de.mpa.db.SpectrumIdResolver;
+import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
+import de.mpa.db.job.JobStatus;
+
+/**
+ * Job class for storing uploaded spectra to the database. Search engines read
+ * the spectrum file directly, only the storing of their results has to wait
+ * for this job.
+ *
+ * @author A. Behne
+ */
+public class SpectrumStoreJob extends Job {
+
+	/**
+	 * The spectrum file.
+	 */
+	private File file;
+
+	/**
+	 * The experiment ID.
+	 */
+	private long experimentid;
+
+	/**
+	 * The resolver receiving the searchspectrum IDs of the file's spectrum titles.
+	 */
+	private SpectrumIdResolver resolver = new SpectrumIdResolver();
+
+	/**
+	 * Constructs a spectrum storing job.
+	 * @param file The spectrum file.
+	 * @param experimentid The experiment ID.
+	 */
+	public SpectrumStoreJob(File file, long experimentid) {
+		this.file = file;
+		this.experimentid = experimentid;
+		setFilename(file.getPath());
+		// Set the description
+		setDescription("SPECTRUM STORING: " + file.getName());
+	}
+
+	@Override
+	public void run() {
+		try {
+			setStatus(JobStatus.RUNNING);
+			metrics.setRowsStored(DBManager.getInstance().storeSpectra(file, experimentid, resolver).getStoredRows());
+			done();
+		} catch (Exception e) {
+			setError(e);
+		}
+	}
+
+	/**
+	 * Returns the resolver of the file's spectrum titles, which is filled while
+	 * this job is running.
+	 * @return the resolver
+	 */
+	public SpectrumIdResolver getResolver() {
+		return resolver;
+	}
+
+	@Override
+	public JobResource getResource() {
+		return JobResource.DATABASE;
+	}
+}
@@ -4,7 +4,9 @@ import java.sql.SQLException;
 
 import de.mpa.client.model.dbsearch.SearchEngineType;
 import de.mpa.db.DBManager;
+import de.mpa.db.SpectrumIdResolver;
 import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
 
 public class StoreJob extends Job {
 	
@@ -28,14 +30,19 @@ public class StoreJob extends Job {
 	 */
 	private String resultFilename;
 
+	/**
+	 * The resolver of the searched spectrum file's titles.
+	 */
+	private SpectrumIdResolver resolver;
 	
 	/**
 	 * Constructs an results storing job (without q-value file).
 	 * @param searchEngineType
 	 * @param resultsFileName
+	 * @param resolver
 	 */
-	public StoreJob(SearchEngineType searchEngineType, String resultsFileName) {
-		this(searchEngineType, resultsFileName, null);
+	public StoreJob(SearchEngineType searchEngineType, String resultsFileName, SpectrumIdResolver resolver) {
+		this(searchEngineType, resultsFileName, null, resolver);
 	}
 	
 	/**
@@ -43,8 +50,9 @@ public class StoreJob extends Job {
 	 * @param searchEngineType The search engine type.
 	 * @param resultFilename The results filename.
 	 * @param qValueFilename The q-value results filename.
+	 * @param resolver The resolver of the searched spectrum file's titles.
 	 */
-	public StoreJob(SearchEngineType searchEngineType, String resultFilename, String qValueFilename) {
+	public StoreJob(SearchEngineType searchEngineType, String resultFilename, String qValueFilename, SpectrumIdResolver resolver) {
 		try {
 			this.dbManager = DBManager.getInstance();
 		} catch (SQLException e) {
@@ -53,6 +61,7 @@ public class StoreJob extends Job {
 		this.resultFilename = resultFilename;
 		this.qValueFilename = qValueFilename;
 		this.searchEngineType = searchEngineType;
+		this.resolver = resolver;
 		// Set the description
 		setFilename(resultFilename);
 		setDescription(searchEngineType.name().toUpperCase() + " RESULTS STORING");
@@ -61,10 +70,14 @@ public class StoreJob extends Job {
 	@Override
 	public void run() {
 		try {
-			dbManager.storeDatabaseSearchResults(searchEngineType, resultFilename, qValueFilename);
+			metrics.setRowsStored(dbManager.storeDatabaseSearchResults(searchEngineType, resultFilename, qValueFilename, resolver).getStoredRows());
 		} catch (Exception e) {
 			setError(e);
 		}
 	}
-
+	
+	@Override
+	public JobResource getResource() {
+		return JobResource.DATABASE;
+	}
 }
@@ -4,6 +4,7 @@ import java.sql.SQLException;
 
 import de.mpa.db.DBManager;
 import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
 import de.mpa.db.job.JobStatus;
 
 public class UniProtJob extends Job {
@@ -37,4 +38,9 @@ public class UniProtJob extends Job {
 		}
 		setStatus(JobStatus.FINISHED);
 	}
+	
+	@Override
+	public JobResource getResource() {
+		return JobResource.DATABASE;
+	}
 }
@@ -4,8 +4,10 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 import de.mpa.db.job.Job;
+import de.mpa.db.job.ProgressParser;
 import de.mpa.db.job.SearchType;
 
 /**
@@ -20,6 +22,12 @@ public class XTandemJob extends Job {
     private final static String PARAMETER_FILE = "parameters.xml";   
     private final static String TAXONOMY_FILE = "taxonomy.xml";
     private final static String TAXONOMY_DECOY_FILE = "taxonomy_decoy.xml";
+    /**
+     * X!Tandem reports the start of its processing steps and the completion of their sub-steps.
+     */
+    private final static ProgressParser PROGRESS_PARSER = new ProgressParser(Pattern.compile(
+    		"(?:Loading spectra|Spectra matching criteria|Computing models|Model refinement|Merging results|Creating report|Valid models).*"
+    		+ "|.*\\b(?:done|loaded|started)\\.$"));
     private String filename; 
 	private File xTandemFile;
     private File inputFile;
@@ -62,14 +70,16 @@ public class XTandemJob extends Job {
 		}
 		this.searchType = searchType;
 		this.xTandemFile = new File(jobProperties.getProperty("path.xtandem"));
+		// Input files are specific to the spectrum file, so that searches of several files may be queued at once
+		String prefix = mgfFile.getName().substring(0, mgfFile.getName().length() - 4) + "_";
 		if(searchType == SearchType.TARGET){
-			this.inputFile = new File(xTandemFile, INPUT_TARGET_FILE);
+			this.inputFile = new File(xTandemFile, prefix + INPUT_TARGET_FILE);
 			this.filename = jobProperties.getProperty("path.xtandem.output") + mgfFile.getName().substring(0, mgfFile.getName().length() - 4) + "_target.xml";
 			buildTaxonomyFile();
 			buildInputFile();
 			
 		} else if (searchType == SearchType.DECOY){
-			this.inputFile = new File(xTandemFile, INPUT_DECOY_FILE);
+			this.inputFile = new File(xTandemFile, prefix + INPUT_DECOY_FILE);
 			this.filename = jobProperties.getProperty("path.xtandem.output") + mgfFile.getName().substring(0, mgfFile.getName().length() - 4) + "_decoy.xml";
 			buildTaxonomyDecoyFile();
 			buildInputDecoyFile();
@@ -373,8 +383,12 @@ public class XTandemJob extends Job {
 		procBuilder = new ProcessBuilder(procCommands);
 		procBuilder.directory(xTandemFile);
 		
-		// set error out and std out to same stream
-		procBuilder.redirectErrorStream(true);
+		initTimeout("xtandem");
+	}
+	
+	@Override
+	protected ProgressParser getProgressParser() {
+		return PROGRESS_PARSER;
 	}
 	
 	/**
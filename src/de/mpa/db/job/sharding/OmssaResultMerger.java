@@ -0,0 +1,99 @@
+package de.mpa.db.job.sharding;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Merges OMSSA result files (<code>.omx</code>). The searched spectra are
+ * listed in the <code>MSSpectrumset</code> of the request, their hit sets in
+ * the <code>MSResponse_hitsets</code> of the response. Both are linked by
+ * their zero-based spectrum numbers, which are shifted for all but the first
+ * shard. The contents of these containers of all shards are appended to the
+ * containers of the first shard.
+ *
+ * @author A. Behne
+ */
+public class OmssaResultMerger extends ResultMerger {
+
+	/**
+	 * The elements whose children are merged.
+	 */
+	private static final Set<String> CONTAINERS = new HashSet<String>(Arrays.asList(
+			"MSSpectrumset", "MSResponse_hitsets"));
+
+	/**
+	 * The elements holding spectrum numbers.
+	 */
+	private static final Set<String> NUMBERS = new HashSet<String>(Arrays.asList(
+			"MSSpectrum_number", "MSHitSet_number"));
+
+	@Override
+	protected void merge(XMLEventReader first, List<File> shardFiles, int[] offsets, XMLEventWriter writer)
+			throws XMLStreamException, IOException {
+		while (first.hasNext()) {
+			XMLEvent event = first.nextEvent();
+			if (event.isEndElement()) {
+				String name = event.asEndElement().getName().getLocalPart();
+				if (CONTAINERS.contains(name)) {
+					for (int i = 1; i < shardFiles.size(); i++) {
+						this.insertChildren(shardFiles.get(i), name, offsets[i], writer);
+					}
+				}
+			}
+			writer.add(event);
+		}
+	}
+
+	/**
+	 * Copies the children of a container element of a shard, shifting their
+	 * spectrum numbers.
+	 * @param shardFile the result file of the shard
+	 * @param container the local name of the container element
+	 * @param offset the number of spectra preceding the shard
+	 * @param writer the writer of the merged result file
+	 * @throws XMLStreamException if the file is not well-formed
+	 * @throws IOException if the file could not be read
+	 */
+	private void insertChildren(File shardFile, String container, int offset, XMLEventWriter writer)
+			throws XMLStreamException, IOException {
+		InputStream in = open(shardFile);
+		try {
+			XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+			while (reader.hasNext()) {
+				if (isStart(reader.nextEvent(), container)) {
+					boolean number = false;
+					while (true) {
+						XMLEvent event = reader.nextEvent();
+						if (isEnd(event, container)) {
+							break;
+						}
+						if (event.isStartElement()) {
+							number = NUMBERS.contains(event.asStartElement().getName().getLocalPart());
+						} else if (event.isEndElement()) {
+							number = false;
+						} else if (number && event.isCharacters()) {
+							int shifted = Integer.parseInt(event.asCharacters().getData().trim()) + offset;
+							event = EVENT_FACTORY.createCharacters(String.valueOf(shifted));
+						}
+						writer.add(event);
+					}
+					break;
+				}
+			}
+			reader.close();
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package de.mpa.db.job.sharding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Merges the XML result files of a search engine run on the shards of a
+ * spectrum file into a single result file equivalent to a run on the whole
+ * spectrum file. The first shard's result file is streamed to the output,
+ * spectrum-related elements of the remaining shards are inserted at the
+ * appropriate positions with their spectrum numbers shifted by the number of
+ * spectra in the preceding shards. Everything else, e.g. search parameters
+ * and statistics, is taken from the first shard.
+ *
+ * @author A. Behne
+ */
+public abstract class ResultMerger {
+
+	/**
+	 * The factory of XML event readers.
+	 */
+	protected static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	/**
+	 * The factory of XML event writers.
+	 */
+	protected static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	/**
+	 * The factory of XML events.
+	 */
+	protected static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	/**
+	 * Merges the specified shard result files.
+	 * @param shardFiles the result files of the shards in shard order
+	 * @param offsets the number of spectra preceding each shard
+	 * @param outputFile the merged result file to write
+	 * @throws IOException if a file could not be read or written or is not
+	 *  well-formed
+	 */
+	public void merge(List<File> shardFiles, int[] offsets, File outputFile) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+		InputStream in = open(shardFiles.get(0));
+		try {
+			XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+			XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(out, "UTF-8");
+			this.merge(reader, shardFiles, offsets, writer);
+			writer.flush();
+			writer.close();
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not merge " + shardFiles.get(0).getName() + ": " + e.getMessage(), e);
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Streams the result of the first shard to the specified writer, inserting
+	 * the spectrum-related elements of the remaining shards.
+	 * @param first the reader of the first shard's result file
+	 * @param shardFiles the result files of the shards in shard order
+	 * @param offsets the number of spectra preceding each shard
+	 * @param writer the writer of the merged result file
+	 * @throws XMLStreamException if a file is not well-formed
+	 * @throws IOException if a file could not be read
+	 */
+	protected abstract void merge(XMLEventReader first, List<File> shardFiles, int[] offsets, XMLEventWriter writer)
+			throws XMLStreamException, IOException;
+
+	/**
+	 * Opens the specified file for reading.
+	 * @param file the file
+	 * @return the input stream
+	 * @throws IOException if the file could not be opened
+	 */
+	protected static InputStream open(File file) throws IOException {
+		return new BufferedInputStream(new FileInputStream(file));
+	}
+
+	/**
+	 * Returns whether the specified event is a start element of the
+	 * specified local name.
+	 * @param event the event
+	 * @param localName the local name
+	 * @return <code>true</code> if the event starts such an element,
+	 *  <code>false</code> otherwise
+	 */
+	protected static boolean isStart(XMLEvent event, String localName) {
+		return event.isStartElement() && event.asStartElement().getName().getLocalPart().equals(localName);
+	}
+
+	/**
+	 * Returns whether the specified event is an end element of the
+	 * specified local name.
+	 * @param event the event
+	 * @param localName the local name
+	 * @return <code>true</code> if the event ends such an element,
+	 *  <code>false</code> otherwise
+	 */
+	protected static boolean isEnd(XMLEvent event, String localName) {
+		return event.isEndElement() && event.asEndElement().getName().getLocalPart().equals(localName);
+	}
+
+}
@@ -0,0 +1,94 @@
+package de.mpa.db.job.sharding;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.mpa.client.model.dbsearch.SearchEngineType;
+import de.mpa.db.job.Job;
+import de.mpa.db.job.JobStatus;
+import de.mpa.db.job.SearchType;
+
+/**
+ * Job class for merging the result files of the searches of the shards of a
+ * spectrum file. The merged result file is named like the result of a search
+ * of the whole spectrum file, so that score extraction and storing are
+ * unaffected by sharding. The shard result files are deleted afterwards.
+ *
+ * @author A. Behne
+ */
+public class ShardMergeJob extends Job {
+
+	/**
+	 * The job splitting the spectrum file.
+	 */
+	private ShardSplitJob splitJob;
+
+	/**
+	 * The result files of the shards in shard order.
+	 */
+	private List<File> shardFiles;
+
+	/**
+	 * The result merger.
+	 */
+	private ResultMerger merger;
+
+	/**
+	 * Constructs a shard result merging job.
+	 * @param splitJob The job splitting the spectrum file.
+	 * @param shardFilenames The result filenames of the shards in shard order.
+	 * @param searchEngineType The search engine type, X!Tandem or OMSSA.
+	 * @param searchType The search type.
+	 */
+	public ShardMergeJob(ShardSplitJob splitJob, List<String> shardFilenames, SearchEngineType searchEngineType, SearchType searchType) {
+		this.splitJob = splitJob;
+		this.shardFiles = new ArrayList<File>(shardFilenames.size());
+		for (String shardFilename : shardFilenames) {
+			shardFiles.add(new File(shardFilename));
+		}
+		switch (searchEngineType) {
+		case XTANDEM:
+			merger = new XTandemResultMerger();
+			break;
+		case OMSSA:
+			merger = new OmssaResultMerger();
+			break;
+		default:
+			throw new IllegalArgumentException("Merging " + searchEngineType + " results is not supported.");
+		}
+		// The merged file replaces the shard suffix of the first shard's result
+		String first = shardFilenames.get(0);
+		String suffix = splitJob.getShardSuffix(0);
+		int index = first.lastIndexOf(suffix);
+		setFilename(first.substring(0, index) + first.substring(index + suffix.length()));
+		// Set the description
+		setDescription(searchEngineType.name() + " " + searchType.name() + " RESULT MERGING");
+	}
+
+	@Override
+	public void run() {
+		try {
+			setStatus(JobStatus.RUNNING);
+			int[] offsets = splitJob.getOffsets();
+			if (offsets == null) {
+				setError("Spectrum file has not been split.");
+				return;
+			}
+			for (File shardFile : shardFiles) {
+				if (!shardFile.exists()) {
+					setError("Missing shard result file " + shardFile.getName());
+					return;
+				}
+			}
+			merger.merge(shardFiles, offsets, new File(filename));
+			for (File shardFile : shardFiles) {
+				shardFile.delete();
+			}
+			done();
+		} catch (Exception e) {
+			setError(e);
+		}
+	}
+
+}
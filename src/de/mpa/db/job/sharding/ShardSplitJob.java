@@ -0,0 +1,166 @@
+package de.mpa.db.job.sharding;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.mpa.db.job.Job;
+import de.mpa.db.job.JobResource;
+import de.mpa.db.job.JobStatus;
+import de.mpa.db.job.ServerProperties;
+import de.mpa.io.MascotGenericFileSplitter;
+
+/**
+ * Job class for splitting a spectrum file into shards of consecutive spectra,
+ * which are searched by separate search engine processes in parallel. The
+ * shard files are written next to the spectrum file, their names carry the
+ * {@link #getShardSuffix(int) shard suffix}.
+ *
+ * @author A. Behne
+ */
+public class ShardSplitJob extends Job {
+
+	/**
+	 * The spectrum file.
+	 */
+	private File mgfFile;
+
+	/**
+	 * The shard files.
+	 */
+	private List<File> shardFiles;
+
+	/**
+	 * The number of spectra per shard, <code>null</code> until split.
+	 */
+	private int[] spectrumCounts;
+
+	/**
+	 * Constructs a spectrum file splitting job.
+	 * @param mgfFile The spectrum file.
+	 * @param shardCount The number of shards.
+	 */
+	public ShardSplitJob(File mgfFile, int shardCount) {
+		this.mgfFile = mgfFile;
+		String name = mgfFile.getName();
+		int dot = name.lastIndexOf('.');
+		String base = (dot > 0) ? name.substring(0, dot) : name;
+		String extension = (dot > 0) ? name.substring(dot) : "";
+		this.shardFiles = new ArrayList<File>(shardCount);
+		for (int i = 0; i < shardCount; i++) {
+			shardFiles.add(new File(mgfFile.getParentFile(), base + getShardSuffix(i, shardCount) + extension));
+		}
+		setFilename(mgfFile.getPath());
+		// Set the description
+		setDescription("SPECTRUM FILE SPLITTING: " + name + " INTO " + shardCount + " SHARDS");
+	}
+
+	@Override
+	public void run() {
+		try {
+			setStatus(JobStatus.RUNNING);
+			spectrumCounts = MascotGenericFileSplitter.split(mgfFile, shardFiles);
+			done();
+		} catch (Exception e) {
+			setError(e);
+		}
+	}
+
+	/**
+	 * Returns the shard files.
+	 * @return The shard files.
+	 */
+	public List<File> getShardFiles() {
+		return shardFiles;
+	}
+
+	/**
+	 * Returns the suffix distinguishing the files of the specified shard.
+	 * @param index The shard index.
+	 * @return The shard suffix, e.g. <code>_shard1of4</code>.
+	 */
+	public String getShardSuffix(int index) {
+		return getShardSuffix(index, shardFiles.size());
+	}
+
+	/**
+	 * Returns the suffix distinguishing the files of the specified shard.
+	 * @param index The shard index.
+	 * @param shardCount The number of shards.
+	 * @return The shard suffix.
+	 */
+	private static String getShardSuffix(int index, int shardCount) {
+		return "_shard" + (index + 1) + "of" + shardCount;
+	}
+
+	/**
+	 * Returns the number of spectra preceding each shard, i.e. the offsets of
+	 * the spectrum numbers of the shards.
+	 * @return The offsets or <code>null</code> if the file has not been split.
+	 */
+	public int[] getOffsets() {
+		if (spectrumCounts == null) {
+			return null;
+		}
+		int[] offsets = new int[spectrumCounts.length];
+		for (int i = 1; i < offsets.length; i++) {
+			offsets[i] = offsets[i - 1] + spectrumCounts[i - 1];
+		}
+		return offsets;
+	}
+
+	@Override
+	public JobResource getResource() {
+		return JobResource.FILE;
+	}
+
+	/**
+	 * Returns the number of shards the specified spectrum file is to be split
+	 * into. Up to <code>jobs.shards</code> shards (0 = all processors) are
+	 * used, each containing at least <code>jobs.shards.minspectra</code>
+	 * spectra.
+	 * @param mgfFile The spectrum file.
+	 * @param properties The server properties, may be <code>null</code>.
+	 * @return The number of shards, <code>1</code> if the file is not to be split.
+	 */
+	public static int getShardCount(File mgfFile, ServerProperties properties) {
+		int shards = getIntProperty(properties, "jobs.shards", 1);
+		if (shards <= 0) {
+			shards = Runtime.getRuntime().availableProcessors();
+		}
+		if (shards == 1) {
+			return 1;
+		}
+		int minSpectra = Math.max(1, getIntProperty(properties, "jobs.shards.minspectra", 1));
+		try {
+			int spectra = MascotGenericFileSplitter.countSpectra(mgfFile);
+			return Math.max(1, Math.min(shards, spectra / minSpectra));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return 1;
+		}
+	}
+
+	/**
+	 * Returns the integer value of a server property.
+	 * @param properties The server properties, may be <code>null</code>.
+	 * @param key The property key.
+	 * @param defaultValue The value used if the property is not set.
+	 * @return The property value.
+	 */
+	private static int getIntProperty(ServerProperties properties, String key, int defaultValue) {
+		if (properties != null) {
+			String value = properties.getProperty(key);
+			if ((value != null) && !value.trim().isEmpty()) {
+				try {
+					return Integer.parseInt(value.trim());
+				} catch (NumberFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+}
@@ -0,0 +1,168 @@
+package de.mpa.db.job.sharding;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Merges X!Tandem result files. Each identified spectrum is reported as a
+ * top-level <code>group</code> element of type <code>model</code>, whose
+ * <code>id</code> is the spectrum number. Nested proteins, domains and traces
+ * derive their <code>id</code>s (and trace <code>label</code>s) from it, e.g.
+ * <code>12.1.1</code> or <code>12.spectrum</code>. The models of all shards
+ * are placed ahead of the parameter groups of the first shard.
+ *
+ * @author A. Behne
+ */
+public class XTandemResultMerger extends ResultMerger {
+
+	/**
+	 * The prefix of the X!Tandem GAML namespace.
+	 */
+	private static final String GAML_PREFIX = "GAML";
+
+	/**
+	 * The name of identifier attributes.
+	 */
+	private static final QName ID = new QName("id");
+
+	/**
+	 * The name of group type attributes.
+	 */
+	private static final QName TYPE = new QName("type");
+
+	@Override
+	protected void merge(XMLEventReader first, List<File> shardFiles, int[] offsets, XMLEventWriter writer)
+			throws XMLStreamException, IOException {
+		boolean inserted = (shardFiles.size() < 2);
+		int depth = 0;
+		while (first.hasNext()) {
+			XMLEvent event = first.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+				if ((depth == 2) && !inserted && !isModel(event.asStartElement())) {
+					this.insertModels(shardFiles, offsets, writer);
+					inserted = true;
+				}
+			} else if (event.isEndElement()) {
+				if ((depth == 1) && !inserted) {
+					this.insertModels(shardFiles, offsets, writer);
+					inserted = true;
+				}
+				depth--;
+			}
+			writer.add(event);
+		}
+	}
+
+	/**
+	 * Copies the models of all but the first shard.
+	 * @param shardFiles the result files of the shards in shard order
+	 * @param offsets the number of spectra preceding each shard
+	 * @param writer the writer of the merged result file
+	 * @throws XMLStreamException if a file is not well-formed
+	 * @throws IOException if a file could not be read
+	 */
+	private void insertModels(List<File> shardFiles, int[] offsets, XMLEventWriter writer)
+			throws XMLStreamException, IOException {
+		for (int i = 1; i < shardFiles.size(); i++) {
+			InputStream in = open(shardFiles.get(i));
+			try {
+				XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+				int depth = 0;
+				while (reader.hasNext()) {
+					XMLEvent event = reader.nextEvent();
+					if (event.isStartElement()) {
+						depth++;
+						if ((depth == 2) && isModel(event.asStartElement())) {
+							this.copyModel(reader, event.asStartElement(), offsets[i], writer);
+							depth--;
+						}
+					} else if (event.isEndElement()) {
+						depth--;
+					}
+				}
+				reader.close();
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Copies a model, shifting its spectrum number.
+	 * @param reader the reader positioned behind the start of the model
+	 * @param start the start element of the model
+	 * @param offset the number of spectra preceding the shard
+	 * @param writer the writer of the merged result file
+	 * @throws XMLStreamException if the file is not well-formed
+	 */
+	private void copyModel(XMLEventReader reader, StartElement start, int offset, XMLEventWriter writer)
+			throws XMLStreamException {
+		String number = start.getAttributeByName(ID).getValue();
+		String shifted = String.valueOf(Integer.parseInt(number.trim()) + offset);
+		writer.add(renumber(start, number, shifted));
+		int depth = 1;
+		while (depth > 0) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+				event = renumber(event.asStartElement(), number, shifted);
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+			writer.add(event);
+		}
+		writer.add(EVENT_FACTORY.createCharacters("\n"));
+	}
+
+	/**
+	 * Replaces the spectrum number in the identifiers of the specified element.
+	 * @param start the start element
+	 * @param number the original spectrum number
+	 * @param shifted the shifted spectrum number
+	 * @return the renumbered start element
+	 */
+	private static StartElement renumber(StartElement start, String number, String shifted) {
+		boolean gaml = GAML_PREFIX.equals(start.getName().getPrefix());
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		@SuppressWarnings("unchecked")
+		Iterator<Attribute> iter = start.getAttributes();
+		while (iter.hasNext()) {
+			Attribute attribute = iter.next();
+			String name = attribute.getName().getLocalPart();
+			String value = attribute.getValue();
+			if ((name.equals("id") || (gaml && name.equals("label")))
+					&& (value.equals(number) || value.startsWith(number + "."))) {
+				attribute = EVENT_FACTORY.createAttribute(attribute.getName(), shifted + value.substring(number.length()));
+			}
+			attributes.add(attribute);
+		}
+		return EVENT_FACTORY.createStartElement(start.getName(), attributes.iterator(), start.getNamespaces());
+	}
+
+	/**
+	 * Returns whether the specified element is a model group.
+	 * @param start the start element
+	 * @return <code>true</code> if the element is a model, <code>false</code> otherwise
+	 */
+	private static boolean isModel(StartElement start) {
+		if (!start.getName().getLocalPart().equals("group")) {
+			return false;
+		}
+		Attribute type = start.getAttributeByName(TYPE);
+		return (type != null) && type.getValue().equals("model");
+	}
+
+}
@@ -46,6 +46,11 @@ public class BasicStorager implements Storager {
      */
     protected SearchEngineType searchEngineType;
     
+    /**
+     * The number of database rows stored.
+     */
+    protected long storedRows;
+    
 	@Override
 	public void run() {
 		this.load();
@@ -64,6 +69,14 @@ public class BasicStorager implements Storager {
 		log.info(searchEngineType.name() + " results stored to the DB.");
 	}
 
+	/**
+	 * Returns the number of database rows stored so far.
+	 * @return the number of stored rows
+	 */
+	public long getStoredRows() {
+		return storedRows;
+	}
+
 	@Override
 	public void load() { }
 
@@ -87,6 +100,7 @@ public class BasicStorager implements Storager {
 			data.put(PeptideAccessor.SEQUENCE, sequence);
 			peptide = new PeptideAccessor(data);
 			peptide.persist(conn);
+			storedRows++;
 			// return generated peptide identifier
 			return (Long) peptide.getGeneratedKeys()[0];
 		} else {
@@ -123,6 +137,7 @@ public class BasicStorager implements Storager {
 			data.put(Spec2pep.FK_PEPTIDEID, peptideID);
 			spec2pep = new Spec2pep(data);
 			spec2pep.persist(conn);
+			storedRows++;
 			return (Long) spec2pep.getGeneratedKeys()[0];
 		}
 		return spec2pep.getSpec2pepid();
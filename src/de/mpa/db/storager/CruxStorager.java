@@ -99,6 +99,7 @@ public class CruxStorager extends BasicStorager {
                 // Create the database object.
                 Cruxhit cruxhit = new Cruxhit(hitdata);
                 cruxhit.persist(conn);
+                storedRows++;
                 
                 // Get the cruxhitid
                 Long cruxhitid = (Long) cruxhit.getGeneratedKeys()[0];
@@ -125,6 +126,7 @@ public class CruxStorager extends BasicStorager {
                     // Cruxhit2prot: Save the protein ids separately. 
                     Cruxhit2protTableAccessor cruxhit2prot = new Cruxhit2protTableAccessor(cruxhitdata);
                     cruxhit2prot.persist(conn);
+                    storedRows++;
                 }
                 scanNumberMap.put(hit.getScanNumber(), cruxhitid);      
                 counter++;
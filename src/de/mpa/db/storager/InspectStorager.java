@@ -112,6 +112,7 @@ public class InspectStorager extends BasicStorager {
             // Create the database object.
             Inspecthit inspecthit = new Inspecthit(hitdata);
             inspecthit.persist(conn);
+            storedRows++;
             counter++;
             
             // Get the cruxhitid
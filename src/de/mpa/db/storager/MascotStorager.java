@@ -49,8 +49,8 @@ import de.mpa.db.accessor.Searchspectrum;
 import de.mpa.db.accessor.Spectrum;
 import de.mpa.db.accessor.Uniprotentry;
 import de.mpa.db.extractor.SpectrumExtractor;
+import de.mpa.io.BinaryPeakSupport;
 import de.mpa.io.MascotGenericFile;
-import de.mpa.io.SixtyFourBitStringSupport;
 import de.mpa.util.Formatter;
 
 public class MascotStorager extends BasicStorager {
@@ -178,6 +178,7 @@ public class MascotStorager extends BasicStorager {
 						data.put(Searchspectrum.FK_EXPERIMENTID, searchSettings.getExpID());
 						Searchspectrum searchSpectrum = new Searchspectrum(data);
 						searchSpectrum.persist(conn);
+						storedRows++;
 						searchspectrumID = (Long) searchSpectrum.getGeneratedKeys()[0];
 						// Add new spectrum to map with title and spectrum IDs
 						specTitleMap.put(query.getTitle(),spectrumId);
@@ -406,27 +407,26 @@ public class MascotStorager extends BasicStorager {
 		chargeString = chargeString.replaceAll("[^\\d]", "");
 		data.put(Spectrum.PRECURSOR_CHARGE, Long.valueOf(chargeString));
 		Peak[] peakList = query.getPeakList();
-		Double[] mzArray = new Double[peakList.length];
-		Double[] intArray = new Double[peakList.length];
-		Double[] chargeArray = new Double[peakList.length];
+		double[] mzArray = new double[peakList.length];
+		double[] intArray = new double[peakList.length];
 		double totalInt = 0.0;
 		if (peakList != null && peakList.length > 0) {
 			for (int j = 0; j < peakList.length; j++) {
 				Peak peak = peakList[j];
 				mzArray[j] = peak.getMZ();
 				intArray[j] = peak.getIntensity();
-				chargeArray[j] = 0.0;
 				totalInt += peak.getIntensity();
 			}
 		}
-		data.put(Spectrum.MZARRAY,SixtyFourBitStringSupport.encodeDoublesToBase64String(mzArray));
-		data.put(Spectrum.INTARRAY, SixtyFourBitStringSupport.encodeDoublesToBase64String(intArray));
-		data.put(Spectrum.CHARGEARRAY,SixtyFourBitStringSupport.encodeDoublesToBase64String(chargeArray) );
+		data.put(Spectrum.MZARRAY, BinaryPeakSupport.encodeDoubles(mzArray));
+		data.put(Spectrum.INTARRAY, BinaryPeakSupport.encodeDoubles(intArray));
+		data.put(Spectrum.CHARGEARRAY, BinaryPeakSupport.encodeCharges(null));
 		data.put(Spectrum.TOTAL_INT, totalInt); // Add
 		data.put(Spectrum.MAXIMUM_INT, query.getMaxIntensity());
 		// Save spectrum in database
 		Spectrum spec = new Spectrum(data);
 		spec.persist(conn);
+		storedRows++;
 		spectrumid = (Long) spec.getGeneratedKeys()[0];
 		return spectrumid;
 	}
@@ -513,6 +513,7 @@ public class MascotStorager extends BasicStorager {
 		// Save spectrum in database
 		Mascothit mascotHit	 = new Mascothit(data);
 		mascotHit.persist(conn);
+		storedRows++;
 		mascotHitID = (Long) mascotHit.getGeneratedKeys()[0];
 		return mascotHitID;
 	}
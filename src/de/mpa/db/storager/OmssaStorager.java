@@ -16,7 +16,7 @@ import java.util.StringTokenizer;
 import com.compomics.util.protein.Header;
 
 import de.mpa.client.model.dbsearch.SearchEngineType;
-import de.mpa.db.MapContainer;
+import de.mpa.db.SpectrumIdResolver;
 import de.mpa.db.accessor.OmssahitTableAccessor;
 import de.mpa.db.job.scoring.ValidatedPSMScore;
 import de.proteinms.omxparser.OmssaOmxFile;
@@ -56,13 +56,22 @@ public class OmssaStorager extends BasicStorager {
 	 * Mapping for the original PSM scores to the validated ones.
 	 */
 	private HashMap<Double, ValidatedPSMScore> validatedPSMScores;    
+	
+	/**
+	 * Resolver linking spectrum titles to searchspectrum IDs.
+	 */
+	private SpectrumIdResolver resolver;
    
     /**
      * Constructor for storing results from a target-only search with OMSSA.
+     * @param conn Database connection
+     * @param file OMSSA file
+     * @param resolver The resolver of the searched spectrum file's titles.
      */
-	public OmssaStorager(Connection conn, File file) {
+	public OmssaStorager(Connection conn, File file, SpectrumIdResolver resolver) {
 		this.conn = conn;
 		this.file = file;
+		this.resolver = resolver;
 		this.searchEngineType = SearchEngineType.OMSSA;
 	}
     
@@ -72,10 +81,12 @@ public class OmssaStorager extends BasicStorager {
      * @param file OMSSA file
      * @param targetScoreFile File containing the original PSM scores.
      * @param qValueFile File containing the validated PSM scores.
+     * @param resolver The resolver of the searched spectrum file's titles.
      */
-	public OmssaStorager(Connection conn, File file, File targetScoreFile, File qValueFile) {
+	public OmssaStorager(Connection conn, File file, File targetScoreFile, File qValueFile, SpectrumIdResolver resolver) {
 		this.conn = conn;
 		this.file = file;
+		this.resolver = resolver;
 		this.targetScoreFile = targetScoreFile;
 		this.qValueFile = qValueFile;
 		this.searchEngineType = SearchEngineType.OMSSA;
@@ -115,8 +126,8 @@ public class OmssaStorager extends BasicStorager {
     	    	String spectrumTitle = msSpectrum.MSSpectrum_ids.MSSpectrum_ids_E.get(0).toString();
     	    	
     	    	spectrumTitle = formatSpectrumTitle(spectrumTitle); 
-    	    	if(MapContainer.SpectrumTitle2IdMap.get(spectrumTitle) != null) {
-          	      	long searchspectrumID = MapContainer.SpectrumTitle2IdMap.get(spectrumTitle);
+    	    	Long searchspectrumID = resolver.get(spectrumTitle);
+    	    	if(searchspectrumID != null) {
           		  	
           	        Double qValue = 1.0;
     	            Double pep = 1.0;
@@ -162,6 +173,7 @@ public class OmssaStorager extends BasicStorager {
 						// Create the database object.
 						OmssahitTableAccessor omssahit = new OmssahitTableAccessor(	hitdata);
 						omssahit.persist(conn);
+						storedRows++;
 						counter++;
 						// Get the omssahitid
 						Long omssahitid = (Long) omssahit.getGeneratedKeys()[0];
@@ -82,6 +82,7 @@ public class ProjectStorager extends BasicStorager {
                 // Create the project database object.
                 final ProjectAccessor newProject = new ProjectAccessor(projectdata);
                 newProject.persist(conn);
+                storedRows++;
                 projectid = (Long) newProject.getGeneratedKeys()[0];
             } else {
             	projectid = project.getProjectid();
@@ -24,6 +24,11 @@ public class SpecSimStorager extends BasicStorager {
 	 * The list of SSMs to store.
 	 */
 	private List<SpectrumSpectrumMatch> results;
+	
+	/**
+	 * The number of SSMs stored in batches so far.
+	 */
+	private int storedCount;
 
 	/**
 	 * Constructs a storager instance with the specified database connection and
@@ -36,6 +41,39 @@ public class SpecSimStorager extends BasicStorager {
 		this.results = results;
 	}
 	
+	/**
+	 * Constructs a storager instance with the specified database connection
+	 * which persists batches of SSMs handed over by a running search.
+	 * @param conn the database connection instance, should not be shared with
+	 *  the search
+	 * @see #storeBatch(List)
+	 */
+	public SpecSimStorager(Connection conn) {
+		this(conn, null);
+	}
+	
+	/**
+	 * Immediately stores the specified batch of SSMs. Concurrent callers are
+	 * serialized.
+	 * @param batch the SSMs to store
+	 * @throws SQLException if a database error occurs
+	 */
+	public synchronized void storeBatch(List<SpectrumSpectrumMatch> batch) throws SQLException {
+		if (!batch.isEmpty()) {
+			SpecSearchHit.batchPersist(batch, batch.size(), conn);
+			storedCount += batch.size();
+			storedRows += batch.size();
+		}
+	}
+	
+	/**
+	 * Returns the number of SSMs stored in batches so far.
+	 * @return the number of stored SSMs
+	 */
+	public synchronized int getStoredCount() {
+		return storedCount;
+	}
+	
 	@Override
 	public void store() throws IOException, SQLException {
 //		int i = 0;
@@ -48,7 +86,10 @@ public class SpecSimStorager extends BasicStorager {
 //				conn.commit();
 //			}
 //		}
-		SpecSearchHit.batchPersist(results, 10000, conn);
+		if (results != null) {
+			SpecSearchHit.batchPersist(results, 10000, conn);
+			storedRows += results.size();
+		}
 	}
 
 }
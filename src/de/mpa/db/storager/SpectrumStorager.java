@@ -5,15 +5,18 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.List;
-import java.util.TreeMap;
 
 import de.mpa.db.MapContainer;
+import de.mpa.db.SpectrumIdResolver;
+import de.mpa.db.accessor.ExpProperty;
 import de.mpa.db.accessor.Searchspectrum;
 import de.mpa.db.accessor.Spectrum;
+import de.mpa.io.BinaryPeakSupport;
 import de.mpa.io.MascotGenericFile;
+import de.mpa.io.MascotGenericFileIterator;
 import de.mpa.io.MascotGenericFileReader;
-import de.mpa.io.SixtyFourBitStringSupport;
+import de.mpa.io.MascotGenericFileReader.LoadMode;
+import de.mpa.io.PeakCodec;
 
 /**
  * This class handles the storage of the spectrum files.
@@ -29,9 +32,9 @@ public class SpectrumStorager extends BasicStorager {
     private MascotGenericFileReader reader;
 
     /**
-     * Map to link spectrum titles to their database searchspectrum ID.
+     * Resolver linking spectrum titles to their database searchspectrum ID.
      */
-    private HashMap<String, Long> title2SearchIdMap;
+    private SpectrumIdResolver resolver;
     
     /**
      * Map to link spectrum filenames to their database searchspectrum ID.
@@ -43,16 +46,21 @@ public class SpectrumStorager extends BasicStorager {
      */
     private long experimentid;
 
-    /**
-     * The list of spectra.
-     */
-	private List<MascotGenericFile> spectra;
-
 	/**
 	 * Flag denoting whether the database shall be searched to determine whether
 	 * a certain spectrum is already stored in it.
 	 */
 	private boolean redundancyCheck;
+
+	/**
+	 * The codec used for storing m/z values.
+	 */
+	private PeakCodec mzCodec;
+
+	/**
+	 * The codec used for storing intensity values.
+	 */
+	private PeakCodec intensityCodec;
 	
     /**
      * Constructor with experiment id as additional parameter:
@@ -61,155 +69,192 @@ public class SpectrumStorager extends BasicStorager {
      * @param conn The database connection.
      * @param file The spectrum search file.
      * @param experimentid The experiment id.
+     * @param resolver The resolver receiving the searchspectrum IDs of the file's titles.
      */
-    public SpectrumStorager(Connection conn, File file, long experimentid, boolean redundancyCheck) {
+    public SpectrumStorager(Connection conn, File file, long experimentid, boolean redundancyCheck, SpectrumIdResolver resolver) {
     	this.conn = conn;
     	this.file = file;
     	this.experimentid = experimentid;
     	this.redundancyCheck = redundancyCheck;
+    	this.resolver = resolver;
     }
 
     /**
-     * Loads the MGF-file.
+     * Opens the MGF-file. Spectra are not parsed until they are streamed in {@link #store()}.
      *
      * @param file
      */
     public void load() {
         try {
-            reader = new MascotGenericFileReader(file);
+            reader = new MascotGenericFileReader(file, LoadMode.NONE);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Stores the MGF-file to the database.
+     * Stores the MGF-file to the database. Spectra are streamed from the file one at a time.
      *
      * @param conn
      * @throws SQLException
      */
     public void store() throws IOException, SQLException {
-        // Get all spectra from the reader.
-        spectra = reader.getSpectrumFiles();
-        
         // Init cache maps.
-        title2SearchIdMap = new HashMap<String, Long>();
         fileName2IdMap = new HashMap<String, Long>();
         
-        // Iterate over all spectra.
-        for (MascotGenericFile mgf : spectra) {
+        // Determine peak codecs, if not specified explicitly
+        if ((mzCodec == null) || (intensityCodec == null)) {
+        	this.findPeakCodecs();
+        }
+        
+        // Stream over all spectra.
+        MascotGenericFileIterator iterator = reader.iterator();
+        try {
+            while (iterator.hasNext()) {
+                MascotGenericFile mgf = iterator.next();
             
-            // The filename, remove leading and trailing whitespace.
-            String title = mgf.getTitle().trim();
+                // The filename, remove leading and trailing whitespace.
+                String title = mgf.getTitle().trim();
 
-            Spectrum query = (redundancyCheck) ? Spectrum.findFromTitle(title, conn) : generateQuery(mgf);
+                Spectrum query = (redundancyCheck) ? Spectrum.findFromTitle(title, conn) : generateQuery(mgf);
             
-            Long searchspectrumid;
-			if (query == null) {
-	            /* New spectrum section */
-	            HashMap<Object, Object> data = new HashMap<Object, Object>(12);
+                Long searchspectrumid;
+    			if (query == null) {
+    	            /* New spectrum section */
+    	            HashMap<Object, Object> data = new HashMap<Object, Object>(12);
             
-	            // The spectrum title
-                data.put(Spectrum.TITLE, title);
-                
-                // The precursor mass.
-                data.put(Spectrum.PRECURSOR_MZ, mgf.getPrecursorMZ());
+    	            // The spectrum title
+                    data.put(Spectrum.TITLE, title);
                 
-                // The precursor intensity
-                data.put(Spectrum.PRECURSOR_INT, mgf.getIntensity());
+                    // The precursor mass.
+                    data.put(Spectrum.PRECURSOR_MZ, mgf.getPrecursorMZ());
                 
-                // The precursor charge
-                data.put(Spectrum.PRECURSOR_CHARGE, Long.valueOf(mgf.getCharge()));
+                    // The precursor intensity
+                    data.put(Spectrum.PRECURSOR_INT, mgf.getIntensity());
                 
-                // The m/z array
-                TreeMap<Double, Double> peakMap = new TreeMap<Double, Double>(mgf.getPeaks());
-				Double[] mzDoubles = peakMap.keySet().toArray(new Double[0]);
-                data.put(Spectrum.MZARRAY, SixtyFourBitStringSupport.encodeDoublesToBase64String(mzDoubles));
+                    // The precursor charge
+                    data.put(Spectrum.PRECURSOR_CHARGE, Long.valueOf(mgf.getCharge()));
                 
-                // The intensity array
-				Double[] inDoubles = peakMap.values().toArray(new Double[0]);
-                data.put(Spectrum.INTARRAY, SixtyFourBitStringSupport.encodeDoublesToBase64String(inDoubles));
+                    // The m/z array (peaks are sorted by m/z already)
+                    data.put(Spectrum.MZARRAY, BinaryPeakSupport.encode(mgf.getMzArray(), mzCodec));
                 
-                // The charge array
-                TreeMap<Double, Integer> chargeMap = new TreeMap<Double, Integer>(mgf.getCharges());
-                for (Double mz : peakMap.keySet()) {
-					if (!chargeMap.containsKey(mz)) {
-						chargeMap.put(mz, 0);
-					}
-				}
-				Integer[] chInts = chargeMap.values().toArray(new Integer[0]);
-				data.put(Spectrum.CHARGEARRAY, SixtyFourBitStringSupport.encodeIntsToBase64String(chInts));
+                    // The intensity array
+                    data.put(Spectrum.INTARRAY, BinaryPeakSupport.encode(mgf.getIntensityArray(), intensityCodec));
                 
-                // The total intensity.
-                data.put(Spectrum.TOTAL_INT, mgf.getTotalIntensity());
+                    // The charge array
+    				data.put(Spectrum.CHARGEARRAY, BinaryPeakSupport.encodeCharges(mgf.getChargeArray()));
                 
-                // The highest intensity.
-                data.put(Spectrum.MAXIMUM_INT, mgf.getHighestIntensity());
-
-                // Create the database object.
-                query = new Spectrum(data);
-                query.persist(conn);
-
-                // Get the spectrumid from the generated keys.
-                Long spectrumid = (Long) query.getGeneratedKeys()[0];
+                    // The total intensity.
+                    data.put(Spectrum.TOTAL_INT, mgf.getTotalIntensity());
                 
-                /* Searchspectrum storager*/
-                HashMap<Object, Object> searchData = new HashMap<Object, Object>(5);
-
-                searchData.put(Searchspectrum.FK_SPECTRUMID, spectrumid);
-                searchData.put(Searchspectrum.FK_EXPERIMENTID, experimentid);
+                    // The highest intensity.
+                    data.put(Spectrum.MAXIMUM_INT, mgf.getHighestIntensity());
 
-                Searchspectrum searchSpectrum = new Searchspectrum(searchData);
-                searchSpectrum.persist(conn);
+                    // Create the database object.
+                    query = new Spectrum(data);
+                    query.persist(conn);
+                    storedRows++;
 
-                // Get the search spectrum id from the generated keys.
-                searchspectrumid = (Long) searchSpectrum.getGeneratedKeys()[0];
+                    // Get the spectrumid from the generated keys.
+                    Long spectrumid = (Long) query.getGeneratedKeys()[0];
                 
-            } else {
-            	/* Redundant spectrum section */
-            	long spectrumid = query.getSpectrumid();
-            	
-            	// Find possibly already existing search spectrum for this experiment
-                Searchspectrum searchspectrum = Searchspectrum.findFromSpectrumIDAndExperimentID(spectrumid, experimentid, conn);
-                
-				if (searchspectrum == null) {
                     /* Searchspectrum storager*/
-					// No search spectrum exists for this query, generate a new one
                     HashMap<Object, Object> searchData = new HashMap<Object, Object>(5);
+
                     searchData.put(Searchspectrum.FK_SPECTRUMID, spectrumid);
                     searchData.put(Searchspectrum.FK_EXPERIMENTID, experimentid);
+
                     Searchspectrum searchSpectrum = new Searchspectrum(searchData);
                     searchSpectrum.persist(conn);
-                    
+                    storedRows++;
+
                     // Get the search spectrum id from the generated keys.
                     searchspectrumid = (Long) searchSpectrum.getGeneratedKeys()[0];
-                    
+                
                 } else {
-                	// A search spectrum already exists, grab its ID
-                	searchspectrumid = searchspectrum.getSearchspectrumid();
-                }
+                	/* Redundant spectrum section */
+                	long spectrumid = query.getSpectrumid();
+            	
+                	// Find possibly already existing search spectrum for this experiment
+                    Searchspectrum searchspectrum = Searchspectrum.findFromSpectrumIDAndExperimentID(spectrumid, experimentid, conn);
                 
-            }
-            // Fill the cache maps
-            title2SearchIdMap.put(query.getTitle(), searchspectrumid);
-            fileName2IdMap.put(mgf.getFilename(), searchspectrumid);
+    				if (searchspectrum == null) {
+                        /* Searchspectrum storager*/
+    					// No search spectrum exists for this query, generate a new one
+                        HashMap<Object, Object> searchData = new HashMap<Object, Object>(5);
+                        searchData.put(Searchspectrum.FK_SPECTRUMID, spectrumid);
+                        searchData.put(Searchspectrum.FK_EXPERIMENTID, experimentid);
+                        Searchspectrum searchSpectrum = new Searchspectrum(searchData);
+                        searchSpectrum.persist(conn);
+                        storedRows++;
+                    
+                        // Get the search spectrum id from the generated keys.
+                        searchspectrumid = (Long) searchSpectrum.getGeneratedKeys()[0];
+                    
+                    } else {
+                    	// A search spectrum already exists, grab its ID
+                    	searchspectrumid = searchspectrum.getSearchspectrumid();
+                    }
+                
+                }
+                // Fill the cache maps
+                resolver.put(query.getTitle(), searchspectrumid);
+                fileName2IdMap.put(mgf.getFilename(), searchspectrumid);
             
-            conn.commit();			
+                conn.commit();			
+            }
+        } finally {
+            iterator.close();
         }
         
-        MapContainer.SpectrumTitle2IdMap = title2SearchIdMap;
-        log.debug("No. of spectra: " + title2SearchIdMap.size());
-        MapContainer.FileName2IdMap = fileName2IdMap;
+        log.debug("No. of spectra: " + resolver.size());
+        // Spectrum files of a batch are stored ahead of the results of earlier files, keep their entries
+        if (MapContainer.FileName2IdMap == null) {
+        	MapContainer.FileName2IdMap = fileName2IdMap;
+        } else {
+        	MapContainer.FileName2IdMap.putAll(fileName2IdMap);
+        }
         
         reader.close();
     }
 
 	/**
-	 * Returns the parsed spectra.
-	 * @return the spectra
+	 * Sets the codecs used for storing peaks. If not specified, the codecs are
+	 * looked up among the experiment's properties, defaulting to lossless
+	 * 64-bit floating point values.
+	 * @param mzCodec the codec for m/z values
+	 * @param intensityCodec the codec for intensity values
+	 */
+	public void setPeakCodecs(PeakCodec mzCodec, PeakCodec intensityCodec) {
+		this.mzCodec = mzCodec;
+		this.intensityCodec = intensityCodec;
+	}
+
+	/**
+	 * Determines the unspecified peak codecs from the properties of the
+	 * experiment.
+	 * @throws SQLException if the properties could not be retrieved
 	 */
-	public List<MascotGenericFile> getSpectra() {
-		return spectra;
+	private void findPeakCodecs() throws SQLException {
+		PeakCodec mzCodec = PeakCodec.FLOAT64;
+		PeakCodec intensityCodec = PeakCodec.FLOAT64;
+		for (ExpProperty property : ExpProperty.findAllPropertiesOfExperiment(experimentid, conn)) {
+			try {
+				if (PeakCodec.MZ_CODEC_PROPERTY.equals(property.getName())) {
+					mzCodec = PeakCodec.valueOf(property.getValue().trim());
+				} else if (PeakCodec.INTENSITY_CODEC_PROPERTY.equals(property.getName())) {
+					intensityCodec = PeakCodec.valueOf(property.getValue().trim());
+				}
+			} catch (IllegalArgumentException e) {
+				log.warn("Unknown peak codec: " + property.getValue());
+			}
+		}
+		if (this.mzCodec == null) {
+			this.mzCodec = mzCodec;
+		}
+		if (this.intensityCodec == null) {
+			this.intensityCodec = intensityCodec;
+		}
 	}
 
 	/**
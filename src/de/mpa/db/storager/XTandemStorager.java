@@ -22,7 +22,7 @@ import org.xml.sax.SAXException;
 import com.compomics.util.protein.Header;
 
 import de.mpa.client.model.dbsearch.SearchEngineType;
-import de.mpa.db.MapContainer;
+import de.mpa.db.SpectrumIdResolver;
 import de.mpa.db.accessor.XtandemhitTableAccessor;
 import de.mpa.db.job.scoring.ValidatedPSMScore;
 import de.proteinms.xtandemparser.xtandem.Domain;
@@ -60,12 +60,21 @@ public class XTandemStorager extends BasicStorager {
 
 	private Map<String, Long> domainMap;
 	
+	/**
+	 * Resolver linking spectrum titles to searchspectrum IDs.
+	 */
+	private SpectrumIdResolver resolver;
+	
     /**
      * Constructor for storing results from a target-only search with X!Tandem.
+     * @param conn Database connection
+     * @param file X!Tandem file
+     * @param resolver The resolver of the searched spectrum file's titles.
      */
-    public XTandemStorager(final Connection conn, final File file){
+    public XTandemStorager(final Connection conn, final File file, SpectrumIdResolver resolver){
     	this.conn = conn;
     	this.file = file;
+    	this.resolver = resolver;
     	this.searchEngineType = SearchEngineType.XTANDEM;
     }
     
@@ -75,10 +84,12 @@ public class XTandemStorager extends BasicStorager {
      * @param file OMSSA file
      * @param targetScoreFile File containing the original PSM scores.
      * @param qValueFile File containing the validated PSM scores.
+     * @param resolver The resolver of the searched spectrum file's titles.
      */
-	public XTandemStorager(final Connection conn, final File file, File targetScoreFile, File qValueFile) {
+	public XTandemStorager(final Connection conn, final File file, File targetScoreFile, File qValueFile, SpectrumIdResolver resolver) {
 		this.conn = conn;
 		this.file = file;
+		this.resolver = resolver;
 		this.targetScoreFile = targetScoreFile;
 		this.qValueFile = qValueFile;
 		this.searchEngineType = SearchEngineType.XTANDEM;
@@ -127,7 +138,7 @@ public class XTandemStorager extends BasicStorager {
             int spectrumNumber = spectrum.getSpectrumNumber();
             
             String spectrumTitle = xTandemFile.getSupportData(spectrumNumber).getFragIonSpectrumDescription();
-            spectrumTitle = formatSpectrumTitle(spectrumTitle);
+            Long searchspectrumID = resolver.get(spectrumTitle, 0, getSpectrumTitleEnd(spectrumTitle));
             // Get all identifications from the spectrum
             ArrayList<Peptide> pepList = pepMap.getAllPeptides(spectrumNumber);
             List<String> peptides = new ArrayList<String>();
@@ -143,8 +154,7 @@ public class XTandemStorager extends BasicStorager {
                 	    HashMap<Object, Object> hitdata = new HashMap<Object, Object>(17);
                 	      
                 	    // Only store if the search spectrum id is referenced.
-                	    if(MapContainer.SpectrumTitle2IdMap.containsKey(spectrumTitle)) {
-                	    	long searchspectrumID = MapContainer.SpectrumTitle2IdMap.get(spectrumTitle);
+                	    if(searchspectrumID != null) {
                 	    	
                 	        Double qValue = 1.0;
             	            Double pep = 1.0;
@@ -188,6 +198,7 @@ public class XTandemStorager extends BasicStorager {
                                 hitdata.put(XtandemhitTableAccessor.FK_PROTEINID, proteinID);
                            	    XtandemhitTableAccessor xtandemhit = new XtandemhitTableAccessor(hitdata);     
                                 xtandemhit.persist(conn);
+                                storedRows++;
                                 counter++;
                                 // Get the xtandemhitid
                                 Long xtandemhitid = (Long) xtandemhit.getGeneratedKeys()[0];
@@ -208,11 +219,15 @@ public class XTandemStorager extends BasicStorager {
      * @param spectrumTitle Unformatted spectrum title
      * @return Formatted spectrumTitle
      */
-    private String formatSpectrumTitle(String spectrumTitle) {
-    	if (spectrumTitle.contains("RTINSECONDS")) {
-    		spectrumTitle = spectrumTitle.substring(0, spectrumTitle.indexOf("RTINSECONDS") - 1);
-    	}
-		return spectrumTitle;
+    /**
+     * Returns the end index of the actual spectrum title inside the specified
+     * spectrum description, i.e. ignoring a trailing retention time annotation.
+     * @param spectrumTitle the spectrum description
+     * @return the end index of the spectrum title (exclusive)
+     */
+    private int getSpectrumTitleEnd(String spectrumTitle) {
+    	int index = spectrumTitle.indexOf("RTINSECONDS");
+		return (index > 0) ? index - 1 : spectrumTitle.length();
 	}
     
     private void processQValues() {
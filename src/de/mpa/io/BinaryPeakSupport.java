@@ -0,0 +1,182 @@
+package de.mpa.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Auxiliary class for encoding peak arrays into compact binary blobs, e.g. for
+ * storage in the BLOB columns of the spectrum table.<br>
+ * Every blob starts with a 6-byte header consisting of a zero marker byte, a
+ * format byte identifying the {@link PeakCodec} and the number of encoded
+ * values (big endian). Since the zero byte cannot occur in Base64 text, blobs
+ * holding legacy 64-bit Strings are recognized and decoded transparently.
+ *
+ * @author A. Behne
+ */
+public class BinaryPeakSupport {
+
+	/**
+	 * The marker byte starting each binary blob.
+	 */
+	public static final byte MARKER = 0;
+
+	/**
+	 * Format identifier for 8-bit integer values.
+	 */
+	public static final byte INT8 = 4;
+
+	/**
+	 * The size of the blob header in bytes.
+	 */
+	public static final int HEADER_SIZE = 6;
+
+	/**
+	 * The character set of legacy 64-bit Strings.
+	 */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/**
+	 * Encodes an array of values using the specified codec.
+	 * @param values the values to encode
+	 * @param codec the codec
+	 * @return the encoded blob
+	 */
+	public static byte[] encode(double[] values, PeakCodec codec) {
+		ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + codec.getMaxEncodedLength(values.length));
+		writeHeader(bb, codec.getId(), values.length);
+		codec.encode(values, bb);
+		byte[] res = bb.array();
+		return (bb.position() == res.length) ? res : Arrays.copyOf(res, bb.position());
+	}
+
+	/**
+	 * Encodes an array of double values losslessly as 64-bit floating point
+	 * values.
+	 * @param values the values to encode
+	 * @return the encoded blob
+	 */
+	public static byte[] encodeDoubles(double[] values) {
+		return encode(values, PeakCodec.FLOAT64);
+	}
+
+	/**
+	 * Encodes an array of charges as 8-bit integers. Arrays not containing any
+	 * non-zero charges are encoded as empty blobs.
+	 * @param charges the charges, may be <code>null</code>
+	 * @return the encoded blob
+	 */
+	public static byte[] encodeCharges(byte[] charges) {
+		boolean empty = true;
+		if (charges != null) {
+			for (byte charge : charges) {
+				if (charge != 0) {
+					empty = false;
+					break;
+				}
+			}
+		}
+		int count = (empty) ? 0 : charges.length;
+		ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + count);
+		writeHeader(bb, INT8, count);
+		if (!empty) {
+			bb.put(charges);
+		}
+		return bb.array();
+	}
+
+	/**
+	 * Decodes a blob of values encoded by any {@link PeakCodec}.
+	 * @param data the blob, may also contain a legacy 64-bit String
+	 * @return a double array or <code>null</code> if the blob is <code>null</code>
+	 */
+	public static double[] decodeDoubles(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (!isBinary(data)) {
+			return SixtyFourBitStringSupport.decodeBase64ToDoubles(data);
+		}
+		return decodeBinaryDoubles(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Decodes a blob of values encoded by any {@link PeakCodec}.
+	 * @param bb the buffer containing the blob, starting at its current position
+	 * @return a double array
+	 */
+	protected static double[] decodeBinaryDoubles(ByteBuffer bb) {
+		int start = bb.position();
+		byte format = bb.get(start + 1);
+		PeakCodec codec = PeakCodec.valueOf(format);
+		if (codec == null) {
+			throw new IllegalArgumentException("Unsupported peak array format: " + format);
+		}
+		int count = bb.getInt(start + 2);
+		bb.position(start + HEADER_SIZE);
+		return codec.decode(bb, count);
+	}
+
+	/**
+	 * Decodes a blob of charges.
+	 * @param data the blob, may also contain a legacy 64-bit String of integers
+	 * @return a byte array or <code>null</code> if the blob is <code>null</code>
+	 *  or does not contain any charges
+	 */
+	public static byte[] decodeCharges(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (!isBinary(data)) {
+			return SixtyFourBitStringSupport.decodeBase64StringToBytes(new String(data, ASCII));
+		}
+		ByteBuffer bb = ByteBuffer.wrap(data);
+		byte format = bb.get(1);
+		if (format != INT8) {
+			throw new IllegalArgumentException("Unsupported charge array format: " + format);
+		}
+		int count = bb.getInt(2);
+		if (count == 0) {
+			return null;
+		}
+		byte[] res = new byte[count];
+		bb.position(HEADER_SIZE);
+		bb.get(res);
+		return res;
+	}
+
+	/**
+	 * Returns whether the specified blob is in binary format as opposed to a
+	 * legacy 64-bit String or legacy raw 64-bit values.
+	 * @param data the blob
+	 * @return <code>true</code> if the blob is binary, <code>false</code> otherwise
+	 */
+	public static boolean isBinary(byte[] data) {
+		return isBinary(data, data.length);
+	}
+
+	/**
+	 * Returns whether the first bytes of the specified array contain a blob in
+	 * binary format.
+	 * @param data the array
+	 * @param length the number of valid bytes
+	 * @return <code>true</code> if the blob is binary, <code>false</code> otherwise
+	 */
+	protected static boolean isBinary(byte[] data, int length) {
+		return (length >= HEADER_SIZE) && (data[0] == MARKER)
+				&& ((data[1] == INT8) || (PeakCodec.valueOf(data[1]) != null));
+	}
+
+	/**
+	 * Writes the blob header into the specified buffer.
+	 * @param bb the target buffer
+	 * @param format the format identifier
+	 * @param count the number of values
+	 */
+	private static void writeHeader(ByteBuffer bb, byte format, int count) {
+		bb.put(MARKER);
+		bb.put(format);
+		bb.putInt(count);
+	}
+
+}
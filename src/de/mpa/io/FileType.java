@@ -11,7 +11,7 @@ public enum FileType {
 	MGF_FILE {
 		@Override
 		public InputFileReader createInputFileReader(File file) throws IOException {
-			return new MascotGenericFileReader(file, LoadMode.NONE);
+			return new MappedMascotGenericFileReader(file, LoadMode.NONE);
 		}
 	},
 	DAT_FILE {
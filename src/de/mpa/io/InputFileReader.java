@@ -7,7 +7,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import de.mpa.io.MascotGenericFileReader.LoadMode;
 import de.mpa.io.parser.mascot.dat.MascotDatFileReader;
@@ -17,7 +19,7 @@ import de.mpa.io.parser.mascot.dat.MascotDatFileReader;
  * 
  * @author heyer
  */
-public abstract class InputFileReader {
+public abstract class InputFileReader implements Iterable<MascotGenericFile> {
 
     /**
      * The file descriptor of the mergefile.
@@ -66,7 +68,7 @@ public abstract class InputFileReader {
 	public static InputFileReader createInputFileReader(File file) throws IOException {
 		String fileName = file.getName().toLowerCase();
 		if (fileName.endsWith(".mgf")) {
-			return new MascotGenericFileReader(file, LoadMode.NONE);
+			return new MappedMascotGenericFileReader(file, LoadMode.NONE);
 		} else if (fileName.endsWith(".dat")) {
 			return new MascotDatFileReader(file);
 		}
@@ -206,6 +208,50 @@ public abstract class InputFileReader {
 	 */
 	public abstract MascotGenericFile loadSpectrum(int index, long pos1, long pos2) throws IOException;
 	
+	/**
+	 * Returns an iterator parsing the spectra of the input file one at a time
+	 * without keeping previously returned spectra in memory. The file is
+	 * surveyed first if spectrum positions are not known yet.
+	 * 
+	 * @return an iterator over the spectra of the file
+	 */
+	@Override
+	public Iterator<MascotGenericFile> iterator() {
+		if (spectrumPositions == null) {
+			try {
+				this.survey();
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not survey " + getFilename(), e);
+			}
+		}
+		return new Iterator<MascotGenericFile>() {
+			/** The index of the next spectrum. */
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return (index < spectrumPositions.size());
+			}
+
+			@Override
+			public MascotGenericFile next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				try {
+					return loadSpectrum(index++);
+				} catch (IOException e) {
+					throw new IllegalStateException("Could not read spectrum from " + getFilename(), e);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
 	/**
 	 * 
 	 * @throws IOException
@@ -0,0 +1,252 @@
+package de.mpa.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+
+/**
+ * Mascot generic file reader which maps the underlying file into memory and
+ * determines spectrum positions by scanning the raw bytes of the mapping
+ * instead of reading the file line by line. Spectra are only parsed on demand
+ * from the mapped region between two spectrum positions.
+ *
+ * @author A. Behne
+ */
+public class MappedMascotGenericFileReader extends MascotGenericFileReader {
+
+	/**
+	 * The size of a single mapped file segment in bytes. Files larger than this
+	 * are mapped in several consecutive segments.
+	 */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The bit shift corresponding to the segment size.
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+
+	/**
+	 * The file channel backing the memory mapping.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The memory-mapped segments of the file.
+	 */
+	private MappedByteBuffer[] segments;
+
+	/**
+	 * The length of the mapped file in bytes.
+	 */
+	private long length;
+
+	/**
+	 * Creates a memory-mapped reader for the specified mergefile without
+	 * surveying or loading its contents.
+	 * @param file the input MGF file
+	 * @throws IOException if the file could not be mapped
+	 */
+	public MappedMascotGenericFileReader(File file) throws IOException {
+		this(file, LoadMode.NONE);
+	}
+
+	/**
+	 * Creates a memory-mapped reader for the specified mergefile and
+	 * optionally surveys or loads its contents.
+	 * @param file the input MGF file
+	 * @param mode the load mode
+	 * @throws IOException if the file could not be mapped
+	 */
+	public MappedMascotGenericFileReader(File file, LoadMode mode) throws IOException {
+		super(file, mode);
+	}
+
+	/**
+	 * Maps the file into memory, if not already done.
+	 * @throws IOException if the file could not be mapped
+	 */
+	private void map() throws IOException {
+		if (segments == null) {
+			channel = raf.getChannel();
+			length = channel.size();
+			int numSegments = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+			segments = new MappedByteBuffer[numSegments];
+			for (int i = 0; i < numSegments; i++) {
+				long offset = (long) i << SEGMENT_SHIFT;
+				long size = Math.min(SEGMENT_SIZE, length - offset);
+				segments[i] = channel.map(MapMode.READ_ONLY, offset, size);
+			}
+		}
+	}
+
+	/**
+	 * Returns the byte at the specified absolute file position.
+	 * @param pos the file position
+	 * @return the byte value
+	 */
+	private byte byteAt(long pos) {
+		return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Returns whether the bytes at the specified position match the specified
+	 * ASCII prefix.
+	 * @param pos the file position
+	 * @param end the position at which the current line ends
+	 * @param prefix the prefix to test
+	 * @return <code>true</code> if the line starts with the prefix, <code>false</code> otherwise
+	 */
+	private boolean startsWith(long pos, long end, String prefix) {
+		if (end - pos < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (byteAt(pos + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the specified byte is a space, tab or carriage return.
+	 * @param b the byte to test
+	 * @return <code>true</code> if the byte is whitespace, <code>false</code> otherwise
+	 */
+	private static boolean isBlank(byte b) {
+		return (b == ' ') || (b == '\t') || (b == '\r');
+	}
+
+	/**
+	 * Scans the mapped file contents for the byte offsets of spectrum blocks.
+	 * Follows the same rules as {@link MascotGenericFileReader#survey()}, i.e.
+	 * a spectrum starts either at a spectrum-specific comment line or at a
+	 * <code>BEGIN IONS</code> line.
+	 *
+	 * @throws IOException if the file could not be mapped
+	 */
+	@Override
+	public void survey() throws IOException {
+		this.map();
+		spectrumPositions = new ArrayList<Long>();
+
+		boolean inSpectrum = false;
+		long lineStart = 0L;
+		while (lineStart < length) {
+			// Find end of line
+			long lineEnd = lineStart;
+			while ((lineEnd < length) && (byteAt(lineEnd) != '\n')) {
+				lineEnd++;
+			}
+			// Skip leading whitespace
+			long pos = lineStart;
+			while ((pos < lineEnd) && isBlank(byteAt(pos))) {
+				pos++;
+			}
+
+			if (pos == lineEnd) {
+				// Skip empty lines
+			} else if ((lineStart == 0L) && startsWith(pos, lineEnd, "CHARGE")) {
+				// Skip file-level charge statement
+			} else if (!inSpectrum && (byteAt(pos) == '#')) {
+				// Strip comment marks
+				long cleanPos = pos;
+				while ((cleanPos < lineEnd) && (byteAt(cleanPos) == '#')) {
+					cleanPos++;
+				}
+				long trimmedPos = cleanPos;
+				while ((trimmedPos < lineEnd) && isBlank(byteAt(trimmedPos))) {
+					trimmedPos++;
+				}
+				if ((trimmedPos < lineEnd) && (trimmedPos == cleanPos)) {
+					// Spectrum comment detected, start a new spectrum
+					this.fireProgressMade(lineStart, lineEnd);
+					spectrumPositions.add(lineStart);
+					inSpectrum = true;
+				}
+				// Empty and header comments are skipped
+			} else if (inSpectrum) {
+				if (startsWith(pos, lineEnd, "END")) {
+					// End of spectrum reached
+					inSpectrum = false;
+				}
+			} else if (startsWith(pos, lineEnd, "BEGIN")) {
+				// New spectrum found, store byte position of start of line
+				this.fireProgressMade(lineStart, lineEnd);
+				spectrumPositions.add(lineStart);
+				inSpectrum = true;
+			}
+			lineStart = lineEnd + 1L;
+		}
+
+		// Fire final progress event
+		this.fireProgressMade(-1L, length);
+	}
+
+	/**
+	 * Surveys the mapped file and parses all spectra it contains.
+	 *
+	 * @throws IOException if the file could not be mapped or read
+	 */
+	@Override
+	public void load() throws IOException {
+		this.survey();
+		spectrumFiles = new ArrayList<MascotGenericFile>(spectrumPositions.size());
+		for (int i = 0; i < spectrumPositions.size(); i++) {
+			spectrumFiles.add(this.loadSpectrum(i));
+		}
+		if (runName == null) {
+			String filename = getFilename();
+			int location = filename.lastIndexOf(".");
+			runName = (location > 0) ? filename.substring(0, location) : filename;
+		}
+	}
+
+	@Override
+	public MascotGenericFile loadSpectrum(int index, long pos1, long pos2) throws IOException {
+		this.map();
+		if ((pos1 < 0L) || (pos2 > length) || (pos1 > pos2)) {
+			throw new IOException("Invalid spectrum byte range [" + pos1 + ", " + pos2 + "].");
+		}
+		byte[] bytes = new byte[(int) (pos2 - pos1)];
+
+		// Copy spectrum block out of the mapping, possibly spanning several segments
+		int offset = 0;
+		long pos = pos1;
+		while (offset < bytes.length) {
+			ByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)].duplicate();
+			segment.position((int) (pos & (SEGMENT_SIZE - 1)));
+			int len = Math.min(segment.remaining(), bytes.length - offset);
+			segment.get(bytes, offset, len);
+			offset += len;
+			pos += len;
+		}
+
+		return new MascotGenericFile(createSpectrumFilename(index), new String(bytes));
+	}
+
+	@Override
+	public boolean isReaderFor(File file) {
+		return super.isReaderFor(file) && ((segments == null) || (length == file.length()));
+	}
+
+	/**
+	 * Releases the memory mapping and closes the underlying file stream.
+	 *
+	 * @throws IOException when the closing operation failed
+	 */
+	@Override
+	public void close() throws IOException {
+		segments = null;
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+		super.close();
+	}
+
+}
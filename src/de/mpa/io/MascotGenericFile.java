@@ -16,14 +16,12 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.SortedSet;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 
 import com.compomics.util.interfaces.SpectrumFile;
 
@@ -53,9 +51,30 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
     private String iTitle = null;
 
     /**
-     * This HashMap holds all the peaks in the spectrum file.
+     * Empty peak array shared by all spectra without peaks.
      */
-    protected HashMap<Double,Double> iPeaks = new HashMap<Double, Double>();
+    private static final double[] NO_PEAKS = new double[0];
+
+    /**
+     * This array holds the m/z values of all peaks in the spectrum file in ascending order.
+     */
+    protected double[] iMzArray = NO_PEAKS;
+
+    /**
+     * This array holds the intensities of all peaks in the spectrum file, in the order of the m/z array.
+     */
+    protected double[] iIntensityArray = NO_PEAKS;
+
+    /**
+     * This array holds the charges of all peaks in the spectrum file, in the order of the m/z array, with '0'
+     * denoting an unknown charge. Is <code>null</code> if no charge is known for any peak.
+     */
+    protected byte[] iChargeArray = null;
+
+    /**
+     * This HashMap is a lazily built view on the peak arrays, kept for compatibility with map-based code.
+     */
+    private transient HashMap<Double,Double> iPeaks = null;
 
     /**
      * The spectrum's database ID. Used to mark spectrum as already stored. 
@@ -78,9 +97,9 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
     protected double iIntensity = -1.0;
 
     /**
-     * This HashMap will hold the charges for those ions for which a charge is known.
+     * This HashMap is a lazily built view on the charges of those ions for which a charge is known.
      */
-    private HashMap<Double, Integer> iCharges = new HashMap<Double,Integer>();
+    private transient HashMap<Double, Integer> iCharges = null;
 
     /**
      * This constant defines the key in the spectrum header for the title.
@@ -168,7 +187,7 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
     public MascotGenericFile(String aFileName, String aTitle, HashMap<Double, Double> aPeaks, double aPrecursorMz, double aIntensity, int aCharge) {
     	this.iFilename = aFileName;
         this.iTitle = aTitle;
-        this.iPeaks = aPeaks;
+        this.setPeaks(aPeaks);
         this.iPrecursorMz = aPrecursorMz;
         this.iIntensity = aIntensity;
         this.iCharge = aCharge;
@@ -183,8 +202,7 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
 		this.iPrecursorMz = spectrum.getPrecursor_mz().doubleValue();
 		this.iIntensity = spectrum.getPrecursor_int().doubleValue();
 		this.iCharge = (int) spectrum.getPrecursor_charge();
-		this.iPeaks = SixtyFourBitStringSupport.buildPeakMap(SixtyFourBitStringSupport.decodeBase64StringToDoubles(spectrum.getMzarray()),
-				   											 SixtyFourBitStringSupport.decodeBase64StringToDoubles(spectrum.getIntarray()));
+		this.setPeaks(spectrum.getMzValues(), spectrum.getIntensityValues(), spectrum.getChargeValues());
 	}
     /**
      * This constructor takes a result set from an SQL query.
@@ -197,10 +215,9 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
 		this.iPrecursorMz = aResultSet.getDouble("precursor_mz");
 		this.iIntensity = aResultSet.getDouble("precursor_int");
 		this.iCharge = aResultSet.getInt("precursor_charge");
-		this.iPeaks = SixtyFourBitStringSupport.buildPeakMap(SixtyFourBitStringSupport.decodeBase64StringToDoubles(aResultSet.getString("mzarray")),
-				   											 SixtyFourBitStringSupport.decodeBase64StringToDoubles(aResultSet.getString("intarray")));
-		this.iCharges = SixtyFourBitStringSupport.buildChargeMap(SixtyFourBitStringSupport.decodeBase64StringToDoubles(aResultSet.getString("mzarray")),
-																 SixtyFourBitStringSupport.decodeBase64StringToInts(aResultSet.getString("chargearray")));
+		this.setPeaks(BinaryPeakSupport.decodeDoubles(aResultSet.getBytes("mzarray")),
+				BinaryPeakSupport.decodeDoubles(aResultSet.getBytes("intarray")),
+				BinaryPeakSupport.decodeCharges(aResultSet.getBytes("chargearray")));
 	}
 
 	/**
@@ -350,8 +367,9 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
         if (anObject != null && anObject instanceof MascotGenericFile) {
             MascotGenericFile other = (MascotGenericFile) anObject;
             if (this.iFilename.equals(other.iFilename) && this.iCharge == other.iCharge &&
-                    this.iTitle.equals(other.iTitle) && this.iPeaks.equals(other.iPeaks) &&
-                    this.iCharges.equals(other.iCharges)) {
+                    this.iTitle.equals(other.iTitle) && Arrays.equals(this.iMzArray, other.iMzArray) &&
+                    Arrays.equals(this.iIntensityArray, other.iIntensityArray) &&
+                    Arrays.equals(this.getChargeArray(), other.getChargeArray())) {
                 result = true;
             }
         }
@@ -472,6 +490,10 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
             boolean inSpectrum = false;
             boolean titleFound = false;
             StringBuffer comments = new StringBuffer();
+            int peakCount = 0;
+            double[] mzs = new double[64];
+            double[] intensities = new double[64];
+            byte[] charges = null;
             while ((line = br.readLine()) != null) {
                 // Advance line count.
                 lineCount++;
@@ -553,21 +575,29 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
                     StringTokenizer st = new StringTokenizer(line, " \t");
                     int count = st.countTokens();
                     if (count == 2 || count == 3) {
-                        String temp = st.nextToken().trim();
-                        Double mass = new Double(temp);
-                        temp = st.nextToken().trim();
-                        Double intensity = new Double(temp);
-                        
-                        this.iPeaks.put(mass, intensity);
+                        if (peakCount == mzs.length) {
+                            mzs = Arrays.copyOf(mzs, peakCount * 2);
+                            intensities = Arrays.copyOf(intensities, peakCount * 2);
+                            if (charges != null) {
+                                charges = Arrays.copyOf(charges, peakCount * 2);
+                            }
+                        }
+                        mzs[peakCount] = Double.parseDouble(st.nextToken().trim());
+                        intensities[peakCount] = Double.parseDouble(st.nextToken().trim());
                         if (st.hasMoreTokens()) {
-                            int charge = extractCharge(st.nextToken());
-                            iCharges.put(mass, new Integer(charge));
-                        }                     
+                            if (charges == null) {
+                                charges = new byte[mzs.length];
+                            }
+                            charges[peakCount] = (byte) extractCharge(st.nextToken());
+                        }
+                        peakCount++;
                     } else {
                         System.out.println("\n\nUnrecognized line at line number " + lineCount + ": '" + line + "'!\n");
                     }
                 }
             }
+            // Store the peaks.
+            this.setPeaks(mzs, intensities, charges, peakCount);
             // Last but not least: add the comments.
             this.iComments = comments.toString();
             // That's it.
@@ -628,19 +658,15 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
         }
         // After the header, it is customary to leave an empty line.
         bw.write("\n");
-        // Next up the ions themselves.
-        SortedSet<Double> ss = new TreeSet<Double>(this.getPeaks().keySet());
-        Iterator<Double> it = ss.iterator();
-        while (it.hasNext()) {
-            Double tempKey = it.next();
-            BigDecimal lDouble = new BigDecimal(tempKey.doubleValue()).setScale(4, BigDecimal.ROUND_HALF_UP);
+        // Next up the ions themselves, in ascending m/z order.
+        for (int i = 0; i < iMzArray.length; i++) {
+            BigDecimal lDouble = new BigDecimal(iMzArray[i]).setScale(4, BigDecimal.ROUND_HALF_UP);
             // We need to check whether a charge is known for this peak.
             String charge = "";
-            if (iCharges.containsKey(tempKey)) {
-                int chargeState = ((Integer) iCharges.get(tempKey)).intValue();
-                charge = "\t" + this.processCharge(chargeState);
+            if ((iChargeArray != null) && (iChargeArray[i] != 0)) {
+                charge = "\t" + this.processCharge(iChargeArray[i]);
             }
-            bw.write(lDouble.toString() + " " + new BigDecimal(((Double) this.iPeaks.get(tempKey)).doubleValue()).setScale(4, BigDecimal.ROUND_HALF_UP).toString() + charge + "\n");
+            bw.write(lDouble.toString() + " " + new BigDecimal(iIntensityArray[i]).setScale(4, BigDecimal.ROUND_HALF_UP).toString() + charge + "\n");
         }
 
         bw.write(IONS_END);
@@ -655,10 +681,9 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
      * @return Intensity total rounded.
      */
     public double getTotalIntensity() {
-        Iterator<Double> iter = this.iPeaks.values().iterator();
         double totalIntensity = 0.0;
-        while (iter.hasNext()) {
-            totalIntensity += iter.next();
+        for (double intensity : iIntensityArray) {
+            totalIntensity += intensity;
         }
         return round(totalIntensity);
     }
@@ -668,12 +693,10 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
      * @return Highest intensity rounded
      */
     public double getHighestIntensity() {
-        Iterator<Double> iter = this.iPeaks.values().iterator();
         double highestIntensity = -1.0;
-        while (iter.hasNext()) {
-            double temp = iter.next();
-            if (temp > highestIntensity) {
-                highestIntensity = temp;
+        for (double intensity : iIntensityArray) {
+            if (intensity > highestIntensity) {
+                highestIntensity = intensity;
             }
         }
         return round(highestIntensity);
@@ -701,7 +724,7 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
     	
     	double signal = 0.0;
     	double noise = 0.0;
-    	for (double intensity : iPeaks.values()) {
+    	for (double intensity : iIntensityArray) {
     		if (intensity > noiseLvl) {
     			signal += intensity;
     		} else {
@@ -745,13 +768,167 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
 
     /**
      * This method reports on the peaks in the spectrum, with the Doubles for the masses as keys in the HashMap, and the
-     * intensities for each peak as Double value for that mass key.
+     * intensities for each peak as Double value for that mass key.<br>
+     * Note that the map is a view built on first access from the peak arrays of this spectrum, changes to it are not
+     * reflected by the peak arrays. Prefer the array-based methods such as {@link #getMzArray()} where possible.
      *
      * @return HashMap with Doubles as keys (the masses) and Doubles as values (the intensities).
      */
     public HashMap<Double, Double> getPeaks() {
+        if (iPeaks == null) {
+            iPeaks = SixtyFourBitStringSupport.buildPeakMap(iMzArray, iIntensityArray);
+        }
         return iPeaks;
     }
+
+    /**
+     * This method reports on the number of peaks in the spectrum.
+     *
+     * @return int with the number of peaks.
+     */
+    public int getPeakCount() {
+        return iMzArray.length;
+    }
+
+    /**
+     * This method reports on the m/z values of the peaks in the spectrum in ascending order. The returned array is
+     * the backing array of this spectrum and must not be modified.
+     *
+     * @return double array with the peak m/z values.
+     */
+    public double[] getMzArray() {
+        return iMzArray;
+    }
+
+    /**
+     * This method reports on the intensities of the peaks in the spectrum, in the order of the m/z array. The
+     * returned array is the backing array of this spectrum and must not be modified.
+     *
+     * @return double array with the peak intensities.
+     */
+    public double[] getIntensityArray() {
+        return iIntensityArray;
+    }
+
+    /**
+     * This method reports on the charges of the peaks in the spectrum, in the order of the m/z array, with '0'
+     * denoting an unknown charge.
+     *
+     * @return byte array with the peak charges.
+     */
+    public byte[] getChargeArray() {
+        if (iChargeArray == null) {
+            return new byte[iMzArray.length];
+        }
+        return iChargeArray;
+    }
+
+    /**
+     * This method sets the peaks of the spectrum from parallel arrays of m/z values, intensities and optional
+     * charges. The arrays are sorted by m/z if necessary, for duplicate m/z values the last peak is kept.
+     *
+     * @param aMzs double array with the peak m/z values.
+     * @param aIntensities double array with the peak intensities.
+     * @param aCharges byte array with the peak charges or <code>null</code> if no charges are known.
+     */
+    public void setPeaks(double[] aMzs, double[] aIntensities, byte[] aCharges) {
+        this.setPeaks(aMzs, aIntensities, aCharges, aMzs.length);
+    }
+
+    /**
+     * This method sets the peaks of the spectrum from the first <code>aLength</code> elements of parallel arrays of
+     * m/z values, intensities and optional charges.
+     *
+     * @param aMzs double array with the peak m/z values.
+     * @param aIntensities double array with the peak intensities.
+     * @param aCharges byte array with the peak charges or <code>null</code> if no charges are known.
+     * @param aLength the number of peaks.
+     */
+    private void setPeaks(double[] aMzs, double[] aIntensities, byte[] aCharges, int aLength) {
+        iPeaks = null;
+        iCharges = null;
+        // Check whether the peaks are strictly ascending already, which is the common case.
+        boolean sorted = true;
+        for (int i = 1; i < aLength; i++) {
+            if (!(aMzs[i - 1] < aMzs[i])) {
+                sorted = false;
+                break;
+            }
+        }
+        if (sorted) {
+            iMzArray = (aLength == aMzs.length) ? aMzs : Arrays.copyOf(aMzs, aLength);
+            iIntensityArray = (aLength == aIntensities.length) ? aIntensities : Arrays.copyOf(aIntensities, aLength);
+            iChargeArray = (aCharges == null || aLength == aCharges.length) ? aCharges : Arrays.copyOf(aCharges, aLength);
+        } else {
+            // Stable sort of peak indices by m/z.
+            int[] order = new int[aLength];
+            for (int i = 0; i < aLength; i++) {
+                order[i] = i;
+            }
+            sortIndices(order, new int[aLength], 0, aLength, aMzs);
+            // Copy peaks in sorted order, a later duplicate m/z overwrites an earlier one.
+            double[] mzs = new double[aLength];
+            double[] intensities = new double[aLength];
+            byte[] charges = (aCharges != null) ? new byte[aLength] : null;
+            int count = 0;
+            for (int i = 0; i < aLength; i++) {
+                int j = order[i];
+                if ((count == 0) || (mzs[count - 1] != aMzs[j])) {
+                    count++;
+                }
+                mzs[count - 1] = aMzs[j];
+                intensities[count - 1] = aIntensities[j];
+                if (charges != null) {
+                    charges[count - 1] = aCharges[j];
+                }
+            }
+            iMzArray = (count == aLength) ? mzs : Arrays.copyOf(mzs, count);
+            iIntensityArray = (count == aLength) ? intensities : Arrays.copyOf(intensities, count);
+            iChargeArray = (charges == null || count == aLength) ? charges : Arrays.copyOf(charges, count);
+        }
+        if (iChargeArray != null) {
+            // Drop the charge array if no charge is known at all.
+            boolean anyCharge = false;
+            for (byte charge : iChargeArray) {
+                if (charge != 0) {
+                    anyCharge = true;
+                    break;
+                }
+            }
+            if (!anyCharge) {
+                iChargeArray = null;
+            }
+        }
+    }
+
+    /**
+     * Helper method to stably merge sort the specified range of an index array by the m/z values it points to.
+     *
+     * @param aOrder the index array to sort.
+     * @param aBuffer a scratch array of the same length.
+     * @param aFrom the first position (inclusive).
+     * @param aTo the last position (exclusive).
+     * @param aMzs the m/z values.
+     */
+    private static void sortIndices(int[] aOrder, int[] aBuffer, int aFrom, int aTo, double[] aMzs) {
+        if (aTo - aFrom < 2) {
+            return;
+        }
+        int mid = (aFrom + aTo) >>> 1;
+        sortIndices(aOrder, aBuffer, aFrom, mid, aMzs);
+        sortIndices(aOrder, aBuffer, mid, aTo, aMzs);
+        int i = aFrom, j = mid, k = aFrom;
+        while (i < mid && j < aTo) {
+            aBuffer[k++] = (aMzs[aOrder[j]] < aMzs[aOrder[i]]) ? aOrder[j++] : aOrder[i++];
+        }
+        while (i < mid) {
+            aBuffer[k++] = aOrder[i++];
+        }
+        while (j < aTo) {
+            aBuffer[k++] = aOrder[j++];
+        }
+        System.arraycopy(aBuffer, aFrom, aOrder, aFrom, aTo - aFrom);
+    }
     
     /**
      * Returns the k highest peaks of the spectrum.
@@ -760,25 +937,32 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
      */
     public HashMap<Double, Double> getHighestPeaks(int k) {
     	if (k == 0) {
-    		return iPeaks;
+    		return getPeaks();
     	} else {
-    		HashMap<Double, Double> res = new HashMap<Double, Double>(iPeaks);
-    		ArrayList<Double> sortedList = new ArrayList<Double>(res.values());
-    		Collections.sort(sortedList);
-    		Iterator<Double> iter = sortedList.listIterator();
-    		while (res.size() > k) {
-    			res.values().remove(iter.next());
-    			iter.remove();
-    		}
-    		return res;
+    		return getHighestPeaks(k, null).toMap();
     	}
     }
+
+    /**
+     * Returns the k highest peaks of the spectrum in ascending m/z order, stored inside the specified peak list.
+     * Peaks are picked in linear time without boxing, so re-using the same peak list for many spectra avoids
+     * allocations altogether.
+     * @param k The amount of peaks to be picked, all peaks are picked if zero.
+     * @param res The peak list to re-use, may be <code>null</code>.
+     * @return the peak list containing the picked peaks.
+     */
+    public PeakList getHighestPeaks(int k, PeakList res) {
+    	return PeakList.selectHighest(iMzArray, iIntensityArray, k, res);
+    }
     
     /**
      * Returns the charges map.
      * @return Map containing fragment m/z-to-charge pairs.
      */
 	public HashMap<Double, Integer> getCharges() {
+		if (iCharges == null) {
+			iCharges = SixtyFourBitStringSupport.buildChargeMap(iMzArray, getChargeArray());
+		}
 		return iCharges;
 	}
     
@@ -852,7 +1036,17 @@ public class MascotGenericFile implements SpectrumFile, Serializable {
 	@SuppressWarnings("unchecked")
 	@Override
 	public void setPeaks(HashMap aPeaks) {
-		this.iPeaks = aPeaks;
+		HashMap<Double, Double> peaks = aPeaks;
+		double[] mzs = new double[peaks.size()];
+		double[] intensities = new double[peaks.size()];
+		int i = 0;
+		for (Entry<Double, Double> peak : peaks.entrySet()) {
+			mzs[i] = peak.getKey();
+			intensities[i] = peak.getValue();
+			i++;
+		}
+		this.setPeaks(mzs, intensities, null);
+		this.iPeaks = peaks;
 	}
 
 }
\ No newline at end of file
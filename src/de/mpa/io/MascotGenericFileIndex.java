@@ -0,0 +1,343 @@
+package de.mpa.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Binary sidecar index of a Mascot generic file. Stores the byte offsets of
+ * all spectrum blocks together with a few per-spectrum summary values (title,
+ * precursor m/z and charge, peak count, total ion current and database ID) so
+ * that re-opening a known file requires neither surveying it nor parsing any
+ * peaks.<br>
+ * The index is written next to the MGF file using the extension
+ * <code>.mgfidx</code> and is considered outdated as soon as size or
+ * modification time of the MGF file differ from the recorded values.
+ *
+ * @author A. Behne
+ */
+public class MascotGenericFileIndex {
+
+	/**
+	 * The file extension of index files.
+	 */
+	public static final String EXTENSION = ".mgfidx";
+
+	/**
+	 * The magic number identifying index files ('MGFI').
+	 */
+	private static final int MAGIC = 0x4D474649;
+
+	/**
+	 * The index format version.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The size of the indexed MGF file in bytes.
+	 */
+	private long fileSize;
+
+	/**
+	 * The modification time of the indexed MGF file.
+	 */
+	private long lastModified;
+
+	/**
+	 * The byte offsets of the spectrum blocks.
+	 */
+	private long[] positions;
+
+	/**
+	 * The spectrum titles.
+	 */
+	private String[] titles;
+
+	/**
+	 * The precursor m/z values.
+	 */
+	private double[] precursorMzs;
+
+	/**
+	 * The precursor charges.
+	 */
+	private byte[] charges;
+
+	/**
+	 * The numbers of peaks.
+	 */
+	private int[] peakCounts;
+
+	/**
+	 * The total ion currents.
+	 */
+	private double[] totalIntensities;
+
+	/**
+	 * The database spectrum IDs, <code>-1</code> if undefined.
+	 */
+	private long[] spectrumIDs;
+
+	/**
+	 * Creates an empty index for the specified MGF file with room for the
+	 * specified number of spectra.
+	 * @param mgfFile the MGF file
+	 * @param size the number of spectra
+	 */
+	public MascotGenericFileIndex(File mgfFile, int size) {
+		this(mgfFile.length(), mgfFile.lastModified(), size);
+	}
+
+	/**
+	 * Creates an empty index for a file of the specified size and modification
+	 * time with room for the specified number of spectra.
+	 * @param fileSize the MGF file size
+	 * @param lastModified the MGF file modification time
+	 * @param size the number of spectra
+	 */
+	private MascotGenericFileIndex(long fileSize, long lastModified, int size) {
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+		this.positions = new long[size];
+		this.titles = new String[size];
+		this.precursorMzs = new double[size];
+		this.charges = new byte[size];
+		this.peakCounts = new int[size];
+		this.totalIntensities = new double[size];
+		this.spectrumIDs = new long[size];
+	}
+
+	/**
+	 * Stores the summary values of the specified spectrum at the specified
+	 * index position.
+	 * @param index the spectrum index
+	 * @param position the byte offset of the spectrum block
+	 * @param mgf the parsed spectrum
+	 */
+	public void set(int index, long position, MascotGenericFile mgf) {
+		positions[index] = position;
+		titles[index] = (mgf.getTitle() != null) ? mgf.getTitle() : "";
+		precursorMzs[index] = mgf.getPrecursorMZ();
+		charges[index] = (byte) mgf.getCharge();
+		peakCounts[index] = mgf.getPeakCount();
+		totalIntensities[index] = mgf.getTotalIntensity();
+		Long spectrumID = mgf.getSpectrumID();
+		spectrumIDs[index] = (spectrumID != null) ? spectrumID : -1L;
+	}
+
+	/**
+	 * Returns the index file belonging to the specified MGF file.
+	 * @param mgfFile the MGF file
+	 * @return the index file
+	 */
+	public static File getIndexFile(File mgfFile) {
+		String name = mgfFile.getName();
+		int extensionStart = name.lastIndexOf(".");
+		if (extensionStart > 0) {
+			name = name.substring(0, extensionStart);
+		}
+		return new File(mgfFile.getAbsoluteFile().getParentFile(), name + EXTENSION);
+	}
+
+	/**
+	 * Returns whether this index matches the current size and modification
+	 * time of the specified MGF file.
+	 * @param mgfFile the MGF file
+	 * @return <code>true</code> if the index is up to date, <code>false</code> otherwise
+	 */
+	public boolean isValid(File mgfFile) {
+		return (mgfFile.length() == fileSize) && (mgfFile.lastModified() == lastModified);
+	}
+
+	/**
+	 * Reads the sidecar index of the specified MGF file.
+	 * @param mgfFile the MGF file
+	 * @return the index or <code>null</code> if no index file exists or if it
+	 *  is outdated or unreadable
+	 */
+	public static MascotGenericFileIndex read(File mgfFile) {
+		File indexFile = getIndexFile(mgfFile);
+		if (!indexFile.exists()) {
+			return null;
+		}
+		DataInputStream dis = null;
+		try {
+			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16));
+			if ((dis.readInt() != MAGIC) || (dis.readInt() != VERSION)) {
+				return null;
+			}
+			long fileSize = dis.readLong();
+			long lastModified = dis.readLong();
+			if ((mgfFile.length() != fileSize) || (mgfFile.lastModified() != lastModified)) {
+				return null;
+			}
+			int size = dis.readInt();
+			MascotGenericFileIndex index = new MascotGenericFileIndex(fileSize, lastModified, size);
+			for (int i = 0; i < size; i++) {
+				index.positions[i] = dis.readLong();
+			}
+			for (int i = 0; i < size; i++) {
+				index.precursorMzs[i] = dis.readDouble();
+			}
+			dis.readFully(index.charges);
+			for (int i = 0; i < size; i++) {
+				index.peakCounts[i] = dis.readInt();
+			}
+			for (int i = 0; i < size; i++) {
+				index.totalIntensities[i] = dis.readDouble();
+			}
+			for (int i = 0; i < size; i++) {
+				index.spectrumIDs[i] = dis.readLong();
+			}
+			for (int i = 0; i < size; i++) {
+				index.titles[i] = dis.readUTF();
+			}
+			return index;
+		} catch (IOException e) {
+			// corrupt or truncated index, will be rebuilt
+			return null;
+		} finally {
+			if (dis != null) {
+				try {
+					dis.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes this index next to the specified MGF file.
+	 * @param mgfFile the MGF file
+	 * @throws IOException if the index file could not be written
+	 */
+	public void write(File mgfFile) throws IOException {
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(getIndexFile(mgfFile)), 1 << 16));
+		try {
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeLong(fileSize);
+			dos.writeLong(lastModified);
+			dos.writeInt(this.size());
+			for (long position : positions) {
+				dos.writeLong(position);
+			}
+			for (double precursorMz : precursorMzs) {
+				dos.writeDouble(precursorMz);
+			}
+			dos.write(charges);
+			for (int peakCount : peakCounts) {
+				dos.writeInt(peakCount);
+			}
+			for (double totalIntensity : totalIntensities) {
+				dos.writeDouble(totalIntensity);
+			}
+			for (long spectrumID : spectrumIDs) {
+				dos.writeLong(spectrumID);
+			}
+			for (String title : titles) {
+				dos.writeUTF(title);
+			}
+		} finally {
+			dos.close();
+		}
+	}
+
+	/**
+	 * Returns the number of indexed spectra.
+	 * @return the number of spectra
+	 */
+	public int size() {
+		return positions.length;
+	}
+
+	/**
+	 * Returns a list view of the spectrum byte offsets.
+	 * @return the spectrum positions
+	 */
+	public List<Long> getPositions() {
+		return new AbstractList<Long>() {
+			@Override
+			public Long get(int index) {
+				return positions[index];
+			}
+			@Override
+			public int size() {
+				return positions.length;
+			}
+		};
+	}
+
+	/**
+	 * Returns the byte offset of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the byte offset
+	 */
+	public long getPosition(int index) {
+		return positions[index];
+	}
+
+	/**
+	 * Returns the title of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the title
+	 */
+	public String getTitle(int index) {
+		return titles[index];
+	}
+
+	/**
+	 * Returns the precursor m/z of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the precursor m/z
+	 */
+	public double getPrecursorMz(int index) {
+		return precursorMzs[index];
+	}
+
+	/**
+	 * Returns the precursor charge of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the precursor charge
+	 */
+	public int getCharge(int index) {
+		return charges[index];
+	}
+
+	/**
+	 * Returns the number of peaks of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the peak count
+	 */
+	public int getPeakCount(int index) {
+		return peakCounts[index];
+	}
+
+	/**
+	 * Returns the total ion current of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the total intensity
+	 */
+	public double getTotalIntensity(int index) {
+		return totalIntensities[index];
+	}
+
+	/**
+	 * Returns the database ID of the spectrum at the specified index.
+	 * @param index the spectrum index
+	 * @return the spectrum ID or <code>null</code> if undefined
+	 */
+	public Long getSpectrumID(int index) {
+		return (spectrumIDs[index] >= 0L) ? spectrumIDs[index] : null;
+	}
+
+}
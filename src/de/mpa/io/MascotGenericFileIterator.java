@@ -0,0 +1,274 @@
+package de.mpa.io;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Forward-only iterator over the spectra of a Mascot generic file. The file is
+ * read through a fixed-size buffer from its own file channel and only a single
+ * spectrum block is held in memory at any time, i.e. memory consumption does
+ * not depend on the size of the file.<br>
+ * Spectrum blocks are recognized using the same rules as
+ * {@link MascotGenericFileReader#load()}. The underlying channel is closed
+ * automatically once the last spectrum has been returned; callers aborting
+ * iteration early should invoke {@link #close()}.
+ *
+ * @author A. Behne
+ */
+public class MascotGenericFileIterator implements Iterator<MascotGenericFile>, Closeable {
+
+	/**
+	 * The size of the read buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The reader which created this iterator.
+	 */
+	private MascotGenericFileReader reader;
+
+	/**
+	 * The file channel to read from.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The read buffer.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * The current line.
+	 */
+	private byte[] line = new byte[256];
+
+	/**
+	 * The length of the current line.
+	 */
+	private int lineLength;
+
+	/**
+	 * The contents of the spectrum block currently being read.
+	 */
+	private byte[] block = new byte[8192];
+
+	/**
+	 * The length of the current spectrum block.
+	 */
+	private int blockLength;
+
+	/**
+	 * The number of lines read so far.
+	 */
+	private int lineCounter;
+
+	/**
+	 * The byte position of the start of the current line.
+	 */
+	private long oldPos;
+
+	/**
+	 * The byte position of the end of the current line.
+	 */
+	private long newPos;
+
+	/**
+	 * The number of spectra parsed so far.
+	 */
+	private int spectrumCounter;
+
+	/**
+	 * The next spectrum to be returned.
+	 */
+	private MascotGenericFile next;
+
+	/**
+	 * Creates an iterator over the spectra of the file of the specified
+	 * reader.
+	 * @param reader the reader
+	 * @throws IOException if the file could not be opened
+	 */
+	protected MascotGenericFileIterator(MascotGenericFileReader reader) throws IOException {
+		this.reader = reader;
+		this.channel = new FileInputStream(reader.file).getChannel();
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.flip();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if ((next == null) && (channel != null)) {
+			try {
+				next = this.readSpectrum();
+				if (next == null) {
+					this.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read spectrum from " + reader.getFilename(), e);
+			}
+		}
+		return (next != null);
+	}
+
+	@Override
+	public MascotGenericFile next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		MascotGenericFile mgf = next;
+		next = null;
+		return mgf;
+	}
+
+	/**
+	 * Not supported.
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Closes the underlying file channel.
+	 * @throws IOException if the channel could not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Reads lines until the next spectrum block has been completed.
+	 * @return the parsed spectrum or <code>null</code> if the end of the file
+	 *  has been reached
+	 * @throws IOException if the file could not be read
+	 */
+	private MascotGenericFile readSpectrum() throws IOException {
+		boolean inSpectrum = false;
+		blockLength = 0;
+		while (this.readLine()) {
+			lineCounter++;
+			// Trim whitespace
+			int start = 0, end = lineLength;
+			while ((start < end) && ((line[start] & 0xFF) <= ' ')) {
+				start++;
+			}
+			while ((end > start) && ((line[end - 1] & 0xFF) <= ' ')) {
+				end--;
+			}
+			// Skip empty lines and file-level charge statement
+			if ((start == end) || ((lineCounter == 1) && startsWith(start, end, "CHARGE"))) {
+				// do nothing
+			} else if (!inSpectrum && (line[start] == '#')) {
+				int cleanStart = start;
+				while ((cleanStart < end) && (line[cleanStart] == '#')) {
+					cleanStart++;
+				}
+				// Empty and header comments are skipped
+				if ((cleanStart < end) && (line[cleanStart] != ' ') && (line[cleanStart] != '\t')) {
+					// Spectrum comment detected, start a new spectrum
+					reader.fireProgressMade(oldPos, newPos);
+					inSpectrum = true;
+					this.append(start, end);
+				}
+			} else if (inSpectrum) {
+				this.append(start, end);
+				if (startsWith(start, end, "END")) {
+					// End of spectrum reached
+					spectrumCounter++;
+					return new MascotGenericFile(reader.createSpectrumFilename(spectrumCounter),
+							new String(block, 0, blockLength));
+				}
+			} else if (startsWith(start, end, "BEGIN")) {
+				// New spectrum found
+				reader.fireProgressMade(oldPos, newPos);
+				inSpectrum = true;
+				this.append(start, end);
+			}
+		}
+		// Fire final progress event
+		reader.fireProgressMade(-1L, newPos);
+		return null;
+	}
+
+	/**
+	 * Reads the next line from the channel into the line buffer. The line
+	 * break itself is not stored.
+	 * @return <code>true</code> if a line was read, <code>false</code> if the
+	 *  end of the file has been reached
+	 * @throws IOException if the file could not be read
+	 */
+	private boolean readLine() throws IOException {
+		oldPos = newPos;
+		lineLength = 0;
+		boolean read = false;
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				buffer.clear();
+				int res = channel.read(buffer);
+				buffer.flip();
+				if (res < 0) {
+					return read;
+				}
+			}
+			read = true;
+			byte b = buffer.get();
+			newPos++;
+			if (b == '\n') {
+				return true;
+			}
+			if (lineLength == line.length) {
+				line = Arrays.copyOf(line, lineLength << 1);
+			}
+			line[lineLength++] = b;
+		}
+	}
+
+	/**
+	 * Appends the specified range of the current line followed by a line
+	 * break to the spectrum block.
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 */
+	private void append(int start, int end) {
+		int len = end - start;
+		if (blockLength + len + 1 > block.length) {
+			block = Arrays.copyOf(block, Math.max(block.length << 1, blockLength + len + 1));
+		}
+		System.arraycopy(line, start, block, blockLength, len);
+		blockLength += len;
+		block[blockLength++] = '\n';
+	}
+
+	/**
+	 * Returns whether the specified range of the current line starts with the
+	 * specified ASCII prefix.
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 * @param prefix the prefix to test
+	 * @return <code>true</code> if the range starts with the prefix, <code>false</code> otherwise
+	 */
+	private boolean startsWith(int start, int end, String prefix) {
+		if (end - start < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (line[start + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -7,8 +7,13 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class holds the I/O-read functionality for Mascot generic files.
@@ -33,6 +38,11 @@ public class MascotGenericFileReader extends InputFileReader {
      */
     protected RandomAccessFile raf;
 
+    /**
+     * The sidecar index holding spectrum positions and summary values of the mergefile.
+     */
+    protected MascotGenericFileIndex index;
+
 	// experimental!
 	/**
 	 * List of registered property change listeners.
@@ -47,7 +57,7 @@ public class MascotGenericFileReader extends InputFileReader {
 		listeners.remove(listener);
 	}
 	
-	private void fireProgressMade(long oldProgress, long newProgress) {
+	protected void fireProgressMade(long oldProgress, long newProgress) {
 		for (PropertyChangeListener listener : listeners) {
 			listener.propertyChange(new PropertyChangeEvent(this, "progress", oldProgress, newProgress));
 		}
@@ -59,9 +69,15 @@ public class MascotGenericFileReader extends InputFileReader {
      */
     public enum LoadMode {
     	LOAD,
+    	PARALLEL,
     	SURVEY,
     	NONE;
     }
+
+    /**
+     * The maximum number of bytes parsed in a single parallel loading task.
+     */
+    private static final int CHUNK_SIZE = 1 << 22;
     
 	/**
      * This constructor opens the specified mergefile and maps it to memory.
@@ -85,6 +101,8 @@ public class MascotGenericFileReader extends InputFileReader {
         this.raf = new RandomAccessFile(file, "r");
         if (mode == LoadMode.LOAD) {
         	this.load();
+        } else if (mode == LoadMode.PARALLEL) {
+        	this.loadParallel();
         } else if (mode == LoadMode.SURVEY) {
         	this.survey();
         }
@@ -342,7 +360,184 @@ public class MascotGenericFileReader extends InputFileReader {
         // Fire final progress event
         fireProgressMade(oldPos, newPos);
 	}
-    
+
+    /**
+     * This method loads the specified file using all available processors.
+     *
+     * @throws java.io.IOException when the loading operation failed.
+     * @see #loadParallel(int)
+     */
+    public void loadParallel() throws IOException {
+    	this.loadParallel(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This method loads the specified file in parallel. The file is surveyed first (unless spectrum
+     * positions are known already) and then split into byte ranges aligned on spectrum block
+     * boundaries which are read and parsed concurrently. Parsed spectra are stored in their
+     * original order. Progress is reported as the number of bytes parsed so far.
+     *
+     * @param parallelism the number of worker threads
+     * @throws java.io.IOException when the loading operation failed.
+     */
+    public void loadParallel(int parallelism) throws IOException {
+    	if (spectrumPositions == null) {
+    		this.survey();
+    	}
+    	final int size = spectrumPositions.size();
+    	final long[] positions = new long[size + 1];
+    	for (int i = 0; i < size; i++) {
+    		positions[i] = spectrumPositions.get(i);
+    	}
+    	positions[size] = file.length();
+    	// aim for a few tasks per worker thread, but keep tasks reasonably small
+    	parallelism = Math.max(parallelism, 1);
+    	final long threshold = Math.min(CHUNK_SIZE, (positions[size] - positions[0]) / (parallelism * 4L) + 1L);
+
+    	final MascotGenericFile[] spectra = new MascotGenericFile[size];
+    	final FileChannel channel = raf.getChannel();
+    	final long[] progress = new long[1];
+    	final IOException[] error = new IOException[1];
+
+    	// Task reading and parsing a range of consecutive spectra, split in halves
+    	// while the range exceeds the chunk size
+    	class ParseTask extends RecursiveAction {
+    		private static final long serialVersionUID = 1L;
+    		private int from;
+    		private int to;
+    		public ParseTask(int from, int to) {
+    			this.from = from;
+    			this.to = to;
+    		}
+    		@Override
+    		protected void compute() {
+    			if ((to - from > 1) && (positions[to] - positions[from] > threshold)) {
+    				int mid = (from + to) >>> 1;
+    				invokeAll(new ParseTask(from, mid), new ParseTask(mid, to));
+    				return;
+    			}
+    			long start = positions[from];
+    			int len = (int) (positions[to] - start);
+    			ByteBuffer buffer = ByteBuffer.allocate(len);
+    			try {
+    				// positional reads do not affect the shared file pointer
+    				while (buffer.hasRemaining()) {
+    					if (channel.read(buffer, start + buffer.position()) < 0) {
+    						throw new IOException("End of file has been reached prematurely.");
+    					}
+    				}
+    			} catch (IOException e) {
+    				error[0] = e;
+    				return;
+    			}
+    			byte[] bytes = buffer.array();
+    			for (int i = from; i < to; i++) {
+    				int offset = (int) (positions[i] - start);
+    				spectra[i] = new MascotGenericFile(createSpectrumFilename(i + 1),
+    						new String(bytes, offset, (int) (positions[i + 1] - positions[i])));
+    			}
+    			synchronized (progress) {
+    				progress[0] += len;
+    				fireProgressMade(-1L, progress[0]);
+    			}
+    		}
+    	}
+
+    	ForkJoinPool pool = new ForkJoinPool(parallelism);
+    	try {
+    		if (size > 0) {
+    			pool.invoke(new ParseTask(0, size));
+    		}
+    	} finally {
+    		pool.shutdown();
+    	}
+    	if (error[0] != null) {
+    		throw error[0];
+    	}
+    	spectrumFiles = new ArrayList<MascotGenericFile>(Arrays.asList(spectra));
+
+    	// If we do not have a run name by now, we just take the filename, minus the extension.
+    	if (runName == null) {
+    		int location = getFilename().lastIndexOf(".");
+    		runName = (location > 0) ? getFilename().substring(0, location) : getFilename();
+    	}
+
+    	// Fire final progress event
+    	fireProgressMade(-1L, file.length());
+    }
+
+    /**
+     * This method retrieves the spectrum positions and summary values of the specified file from its
+     * sidecar index. If no up-to-date index exists the file is surveyed, its spectra are parsed once
+     * and a new index is written next to the file.
+     *
+     * @return the sidecar index of the file
+     * @throws java.io.IOException when the file could not be surveyed or parsed.
+     */
+    public MascotGenericFileIndex index() throws IOException {
+    	if ((index != null) && index.isValid(file)) {
+    		spectrumPositions = index.getPositions();
+    		return index;
+    	}
+    	index = MascotGenericFileIndex.read(file);
+    	if (index != null) {
+    		spectrumPositions = index.getPositions();
+    		fireProgressMade(-1L, file.length());
+    	} else {
+    		this.survey();
+    		int size = spectrumPositions.size();
+    		index = new MascotGenericFileIndex(file, size);
+    		for (int i = 0; i < size; i++) {
+    			long pos = spectrumPositions.get(i);
+    			index.set(i, pos, this.loadSpectrum(i));
+    			fireProgressMade(-1L, pos);
+    		}
+    		try {
+    			index.write(file);
+    		} catch (IOException e) {
+    			// index is merely a cache, e.g. the directory may be read-only
+    			e.printStackTrace();
+    		}
+    		fireProgressMade(-1L, file.length());
+    	}
+    	return index;
+    }
+
+    /**
+     * Returns the sidecar index of the file if it has been retrieved before.
+     *
+     * @return the index or <code>null</code> if {@link #index()} has not been called yet
+     */
+    public MascotGenericFileIndex getIndex() {
+    	return index;
+    }
+
+    /**
+     * This method returns an iterator which streams the spectra of the file through its own buffered
+     * file channel. Neither a survey nor a full load is performed beforehand and only a single
+     * spectrum block is held in memory at a time, so files of arbitrary size can be processed.
+     *
+     * @return an iterator over the spectra of the file
+     */
+    @Override
+    public MascotGenericFileIterator iterator() {
+    	try {
+    		return new MascotGenericFileIterator(this);
+    	} catch (IOException e) {
+    		throw new IllegalStateException("Could not open " + getFilename(), e);
+    	}
+    }
+
+    /**
+     * This method reports on whether this reader is still open and reads from the specified file.
+     *
+     * @param file File to check against the reader's file.
+     * @return boolean indicating whether this reader can be used to read from the specified file.
+     */
+    public boolean isReaderFor(File file) {
+    	return this.file.getAbsoluteFile().equals(file.getAbsoluteFile()) && raf.getChannel().isOpen();
+    }
+
     /**
      * This method closes the reader's file stream.
      * 
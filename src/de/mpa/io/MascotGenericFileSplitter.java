@@ -0,0 +1,131 @@
+package de.mpa.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Splits a Mascot generic file into shards of consecutive spectra containing
+ * (almost) equal numbers of spectra. As the order of spectra is retained, the
+ * number of a spectrum in the original file equals its number in its shard
+ * plus the number of spectra in all preceding shards. Global parameters
+ * preceding the first spectrum are copied to every shard.
+ *
+ * @author A. Behne
+ */
+public class MascotGenericFileSplitter {
+
+	/**
+	 * The line starting a spectrum block.
+	 */
+	private static final String BEGIN_IONS = "BEGIN IONS";
+
+	/**
+	 * The byte-preserving character set used for copying lines.
+	 */
+	private static final String CHARSET = "ISO-8859-1";
+
+	/**
+	 * Counts the spectra of the specified file.
+	 * @param mgfFile the Mascot generic file
+	 * @return the number of spectra
+	 * @throws IOException if the file could not be read
+	 */
+	public static int countSpectra(File mgfFile) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mgfFile), CHARSET));
+		try {
+			int count = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(BEGIN_IONS)) {
+					count++;
+				}
+			}
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Splits the specified file into the specified shard files. The first
+	 * <code>n % shards</code> shards receive one spectrum more than the others.
+	 * @param mgfFile the Mascot generic file
+	 * @param shardFiles the shard files to write
+	 * @return the number of spectra per shard
+	 * @throws IOException if the file could not be read or a shard file
+	 *  could not be written
+	 */
+	public static int[] split(File mgfFile, List<File> shardFiles) throws IOException {
+		int shards = shardFiles.size();
+		int count = countSpectra(mgfFile);
+		int[] sizes = new int[shards];
+		for (int i = 0; i < shards; i++) {
+			sizes[i] = count / shards + ((i < count % shards) ? 1 : 0);
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mgfFile), CHARSET));
+		Writer writer = null;
+		try {
+			StringBuilder header = new StringBuilder();
+			int shard = -1;
+			int remaining = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(BEGIN_IONS)) {
+					// advance to the next non-empty shard once the current one is full
+					while (remaining == 0) {
+						if (writer != null) {
+							writer.close();
+						}
+						shard++;
+						writer = createWriter(shardFiles.get(shard));
+						writer.write(header.toString());
+						remaining = sizes[shard];
+					}
+					remaining--;
+				}
+				if (writer == null) {
+					header.append(line).append('\n');
+				} else {
+					writer.write(line);
+					writer.write('\n');
+				}
+			}
+			if (writer != null) {
+				writer.close();
+				writer = null;
+			}
+			// shards not reached contain the header only
+			for (shard++; shard < shards; shard++) {
+				Writer empty = createWriter(shardFiles.get(shard));
+				empty.write(header.toString());
+				empty.close();
+			}
+		} finally {
+			reader.close();
+			if (writer != null) {
+				writer.close();
+			}
+		}
+		return sizes;
+	}
+
+	/**
+	 * Creates a buffered writer of the specified file.
+	 * @param file the file
+	 * @return the writer
+	 * @throws IOException if the file could not be created
+	 */
+	private static Writer createWriter(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET));
+	}
+
+}
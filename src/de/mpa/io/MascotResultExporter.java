@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import de.mpa.io.MascotGenericFileReader.LoadMode;
 import de.mpa.io.parser.mascot.xml.MascotPeptideHit;
 import de.mpa.io.parser.mascot.xml.MascotRecord;
 import de.mpa.io.parser.mascot.xml.MascotXMLParser;
@@ -26,7 +27,7 @@ public class MascotResultExporter {
 		
 		parser = new MascotXMLParser(xmlFile);
 		
-		MascotGenericFileReader reader = new MascotGenericFileReader(mgfFile);
+		MascotGenericFileReader reader = new MascotGenericFileReader(mgfFile, LoadMode.PARALLEL);
 		List<MascotGenericFile> mgfList = reader.getSpectrumFiles();
 		
 		// MascotRecord
@@ -0,0 +1,389 @@
+package de.mpa.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Enumeration of codecs for peak value arrays. Each codec is identified by a
+ * unique format byte which is stored in the header of encoded blobs (see
+ * {@link BinaryPeakSupport}), so that blobs can be decoded regardless of the
+ * codec that has been used to create them.<br>
+ * Apart from plain 64-bit and 32-bit floating point encodings this includes
+ * two numpress-style compression schemes: linear prediction of fixed-point
+ * values with variable-length residuals (suitable for ascending m/z values)
+ * and short logged floats (suitable for intensities).
+ *
+ * @author A. Behne
+ */
+public enum PeakCodec {
+
+	/**
+	 * Lossless 64-bit floating point values.
+	 */
+	FLOAT64((byte) 1) {
+		@Override
+		protected int getMaxEncodedLength(int count) {
+			return count * 8;
+		}
+		@Override
+		protected void encode(double[] values, ByteBuffer bb) {
+			bb.asDoubleBuffer().put(values);
+			bb.position(bb.position() + values.length * 8);
+		}
+		@Override
+		protected double[] decode(ByteBuffer bb, int count) {
+			double[] res = new double[count];
+			bb.asDoubleBuffer().get(res);
+			return res;
+		}
+	},
+	/**
+	 * 32-bit floating point values.
+	 */
+	FLOAT32((byte) 2) {
+		@Override
+		protected int getMaxEncodedLength(int count) {
+			return count * 4;
+		}
+		@Override
+		protected void encode(double[] values, ByteBuffer bb) {
+			for (double value : values) {
+				bb.putFloat((float) value);
+			}
+		}
+		@Override
+		protected double[] decode(ByteBuffer bb, int count) {
+			double[] res = new double[count];
+			for (int i = 0; i < count; i++) {
+				res[i] = bb.getFloat();
+			}
+			return res;
+		}
+	},
+	/**
+	 * 32-bit floating point differences between consecutive values. Deltas
+	 * are computed against the previously reconstructed value so that rounding
+	 * errors do not accumulate along the array.
+	 */
+	DELTA_FLOAT32((byte) 3) {
+		@Override
+		protected int getMaxEncodedLength(int count) {
+			return count * 4;
+		}
+		@Override
+		protected void encode(double[] values, ByteBuffer bb) {
+			double previous = 0.0;
+			for (double value : values) {
+				float delta = (float) (value - previous);
+				bb.putFloat(delta);
+				previous += delta;
+			}
+		}
+		@Override
+		protected double[] decode(ByteBuffer bb, int count) {
+			double[] res = new double[count];
+			double value = 0.0;
+			for (int i = 0; i < count; i++) {
+				value += bb.getFloat();
+				res[i] = value;
+			}
+			return res;
+		}
+	},
+	/**
+	 * Fixed-point values of which all but the first two are predicted by
+	 * linear extrapolation of their predecessors. The residuals are stored as
+	 * variable-length integers made up of half-bytes. The fixed-point factor
+	 * is chosen such that the largest value still fits into a signed 32-bit
+	 * integer, which keeps the absolute error below 1e-6 for m/z values of up
+	 * to 2000.
+	 */
+	NUMPRESS_LINEAR((byte) 5) {
+		@Override
+		protected int getMaxEncodedLength(int count) {
+			// fixed point, two full integers and up to 9 half-bytes per residual
+			return 16 + (count * 9 + 1) / 2;
+		}
+		@Override
+		protected void encode(double[] values, ByteBuffer bb) {
+			double max = 0.0;
+			for (double value : values) {
+				max = Math.max(max, Math.abs(value));
+			}
+			double fixedPoint = (max > 0.0) ? Math.floor(Integer.MAX_VALUE / max) : 1.0;
+			bb.putDouble(fixedPoint);
+			HalfByteWriter writer = new HalfByteWriter(bb);
+			// integer arithmetic wraps around consistently in encoder and decoder
+			int previous = 0, beforePrevious = 0;
+			for (int i = 0; i < values.length; i++) {
+				int current = (int) Math.round(values[i] * fixedPoint);
+				if (i < 2) {
+					bb.putInt(current);
+				} else {
+					writer.writeInt(current - (2 * previous - beforePrevious));
+				}
+				beforePrevious = previous;
+				previous = current;
+			}
+			writer.flush();
+		}
+		@Override
+		protected double[] decode(ByteBuffer bb, int count) {
+			double fixedPoint = bb.getDouble();
+			double[] res = new double[count];
+			HalfByteReader reader = null;
+			int previous = 0, beforePrevious = 0;
+			for (int i = 0; i < count; i++) {
+				int current;
+				if (i < 2) {
+					current = bb.getInt();
+				} else {
+					if (reader == null) {
+						reader = new HalfByteReader(bb);
+					}
+					current = 2 * previous - beforePrevious + reader.readInt();
+				}
+				res[i] = current / fixedPoint;
+				beforePrevious = previous;
+				previous = current;
+			}
+			return res;
+		}
+	},
+	/**
+	 * Logarithms of the values stored as unsigned 16-bit fixed-point numbers.
+	 * The fixed-point factor is chosen such that the largest value still fits
+	 * into 16 bits, which yields a relative error of approximately 2e-4 for
+	 * typical intensity ranges. Only suitable for non-negative values.
+	 */
+	NUMPRESS_SLOF((byte) 6) {
+		@Override
+		protected int getMaxEncodedLength(int count) {
+			return 8 + count * 2;
+		}
+		@Override
+		protected void encode(double[] values, ByteBuffer bb) {
+			double max = 0.0;
+			for (double value : values) {
+				max = Math.max(max, Math.log(value + 1.0));
+			}
+			double fixedPoint = (max > 0.0) ? Math.floor(0xFFFF / max) : 1.0;
+			bb.putDouble(fixedPoint);
+			for (double value : values) {
+				bb.putShort((short) (int) (Math.log(value + 1.0) * fixedPoint + 0.5));
+			}
+		}
+		@Override
+		protected double[] decode(ByteBuffer bb, int count) {
+			double fixedPoint = bb.getDouble();
+			double[] res = new double[count];
+			for (int i = 0; i < count; i++) {
+				res[i] = Math.exp((bb.getShort() & 0xFFFF) / fixedPoint) - 1.0;
+			}
+			return res;
+		}
+	};
+
+	/**
+	 * The name of the experiment property selecting the codec of m/z values.
+	 */
+	public static final String MZ_CODEC_PROPERTY = "m/z codec";
+
+	/**
+	 * The name of the experiment property selecting the codec of intensities.
+	 */
+	public static final String INTENSITY_CODEC_PROPERTY = "intensity codec";
+
+	/**
+	 * The format identifier stored in encoded blobs.
+	 */
+	private byte id;
+
+	/**
+	 * Creates a codec using the specified format identifier.
+	 * @param id the format identifier
+	 */
+	private PeakCodec(byte id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the format identifier of this codec.
+	 * @return the format identifier
+	 */
+	public byte getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the codec belonging to the specified format identifier.
+	 * @param id the format identifier
+	 * @return the codec or <code>null</code> if no codec uses the identifier
+	 */
+	public static PeakCodec valueOf(byte id) {
+		for (PeakCodec codec : values()) {
+			if (codec.id == id) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the maximum number of bytes needed to encode the specified
+	 * number of values.
+	 * @param count the number of values
+	 * @return the maximum encoded length in bytes
+	 */
+	protected abstract int getMaxEncodedLength(int count);
+
+	/**
+	 * Encodes the specified values into the specified buffer, starting at its
+	 * current position. The position is advanced past the encoded data.
+	 * @param values the values to encode
+	 * @param bb the target buffer
+	 */
+	protected abstract void encode(double[] values, ByteBuffer bb);
+
+	/**
+	 * Decodes the specified number of values from the specified buffer,
+	 * starting at its current position.
+	 * @param bb the source buffer
+	 * @param count the number of values
+	 * @return the decoded values
+	 */
+	protected abstract double[] decode(ByteBuffer bb, int count);
+
+	/**
+	 * Writer of variable-length integers consisting of half-bytes. Each
+	 * integer is prefixed by a half-byte denoting the number of omitted
+	 * leading zero half-bytes (0-8) or, for negative numbers, the number of
+	 * omitted leading 0xF half-bytes plus 8 (9-15); the remaining half-bytes
+	 * follow in ascending significance.
+	 */
+	private static class HalfByteWriter {
+
+		/**
+		 * The target buffer.
+		 */
+		private ByteBuffer bb;
+
+		/**
+		 * The pending upper half-byte or <code>-1</code> if none.
+		 */
+		private int pending = -1;
+
+		/**
+		 * Creates a writer appending to the specified buffer.
+		 * @param bb the target buffer
+		 */
+		public HalfByteWriter(ByteBuffer bb) {
+			this.bb = bb;
+		}
+
+		/**
+		 * Writes the specified integer.
+		 * @param x the integer
+		 */
+		public void writeInt(int x) {
+			int leading = 0;
+			int mask = (x < 0) ? 0xF : 0x0;
+			while ((leading < 8) && (((x >>> ((7 - leading) * 4)) & 0xF) == mask)) {
+				leading++;
+			}
+			if ((x < 0) && (leading > 0)) {
+				// keep at least one half-byte of negative numbers
+				leading = Math.min(leading, 7);
+				this.write(leading + 8);
+			} else {
+				// negative numbers without leading 0xF half-bytes are written in full
+				this.write(leading);
+			}
+			for (int i = 0; i < 8 - leading; i++) {
+				this.write((x >>> (i * 4)) & 0xF);
+			}
+		}
+
+		/**
+		 * Writes a single half-byte.
+		 * @param halfByte the half-byte
+		 */
+		private void write(int halfByte) {
+			if (pending < 0) {
+				pending = halfByte;
+			} else {
+				bb.put((byte) ((pending << 4) | halfByte));
+				pending = -1;
+			}
+		}
+
+		/**
+		 * Writes a pending half-byte, if any.
+		 */
+		public void flush() {
+			if (pending >= 0) {
+				bb.put((byte) (pending << 4));
+				pending = -1;
+			}
+		}
+	}
+
+	/**
+	 * Reader of variable-length integers written by {@link HalfByteWriter}.
+	 */
+	private static class HalfByteReader {
+
+		/**
+		 * The source buffer.
+		 */
+		private ByteBuffer bb;
+
+		/**
+		 * The pending lower half-byte or <code>-1</code> if none.
+		 */
+		private int pending = -1;
+
+		/**
+		 * Creates a reader consuming the specified buffer.
+		 * @param bb the source buffer
+		 */
+		public HalfByteReader(ByteBuffer bb) {
+			this.bb = bb;
+		}
+
+		/**
+		 * Reads the next integer.
+		 * @return the integer
+		 */
+		public int readInt() {
+			int header = this.read();
+			boolean negative = (header > 8);
+			int leading = (negative) ? header - 8 : header;
+			int x = 0;
+			int count = 8 - leading;
+			for (int i = 0; i < count; i++) {
+				x |= this.read() << (i * 4);
+			}
+			if (negative) {
+				// restore omitted leading 0xF half-bytes
+				x |= -1 << (count * 4);
+			}
+			return x;
+		}
+
+		/**
+		 * Reads a single half-byte.
+		 * @return the half-byte
+		 */
+		private int read() {
+			if (pending >= 0) {
+				int res = pending;
+				pending = -1;
+				return res;
+			}
+			int b = bb.get() & 0xFF;
+			pending = b & 0xF;
+			return b >>> 4;
+		}
+	}
+
+}
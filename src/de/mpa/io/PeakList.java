@@ -0,0 +1,205 @@
+package de.mpa.io;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Reusable list of peaks backed by primitive arrays, sorted by m/z. Used as a
+ * light-weight view on subsets of spectrum peaks, e.g. the k most intense
+ * peaks, whose buffers are recycled across many spectra.
+ *
+ * @author A. Behne
+ */
+public class PeakList {
+
+	/**
+	 * The m/z values.
+	 */
+	private double[] mzs;
+
+	/**
+	 * The intensities.
+	 */
+	private double[] intensities;
+
+	/**
+	 * Scratch buffer of peak indices used during selection.
+	 */
+	private int[] indices;
+
+	/**
+	 * The number of peaks.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty peak list.
+	 */
+	public PeakList() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty peak list with the specified initial capacity.
+	 * @param capacity the initial capacity
+	 */
+	public PeakList(int capacity) {
+		mzs = new double[capacity];
+		intensities = new double[capacity];
+		indices = new int[capacity];
+	}
+
+	/**
+	 * Makes sure the buffers can hold at least the specified number of
+	 * elements.
+	 * @param capacity the minimum capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		if (mzs.length < capacity) {
+			mzs = new double[capacity];
+			intensities = new double[capacity];
+		}
+		if (indices.length < capacity) {
+			indices = new int[capacity];
+		}
+	}
+
+	/**
+	 * Returns the number of peaks.
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the m/z value of the peak at the specified index.
+	 * @param index the peak index
+	 * @return the m/z value
+	 */
+	public double getMz(int index) {
+		return mzs[index];
+	}
+
+	/**
+	 * Returns the intensity of the peak at the specified index.
+	 * @param index the peak index
+	 * @return the intensity
+	 */
+	public double getIntensity(int index) {
+		return intensities[index];
+	}
+
+	/**
+	 * Returns the backing m/z array. Only the first {@link #size()} elements
+	 * are valid.
+	 * @return the m/z array
+	 */
+	public double[] getMzArray() {
+		return mzs;
+	}
+
+	/**
+	 * Returns the backing intensity array. Only the first {@link #size()}
+	 * elements are valid.
+	 * @return the intensity array
+	 */
+	public double[] getIntensityArray() {
+		return intensities;
+	}
+
+	/**
+	 * Builds a peak map from the contents of this list.
+	 * @return a map of m/z keys and intensity values
+	 */
+	public HashMap<Double, Double> toMap() {
+		HashMap<Double, Double> peaks = new HashMap<Double, Double>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			peaks.put(mzs[i], intensities[i]);
+		}
+		return peaks;
+	}
+
+	/**
+	 * Fills the specified peak list with the <code>k</code> most intense
+	 * peaks of the specified m/z-sorted peak arrays. Peaks are selected in
+	 * linear expected time and stored in ascending m/z order. If
+	 * <code>k</code> is not positive or not smaller than the number of peaks,
+	 * all peaks are stored.
+	 * @param mzs the m/z values in ascending order
+	 * @param intensities the intensities
+	 * @param k the number of peaks to select
+	 * @param res the peak list to fill, may be <code>null</code>
+	 * @return the filled peak list
+	 */
+	public static PeakList selectHighest(double[] mzs, double[] intensities, int k, PeakList res) {
+		int n = mzs.length;
+		if ((k <= 0) || (k > n)) {
+			k = n;
+		}
+		if (res == null) {
+			res = new PeakList(Math.max(k, 1));
+		}
+		res.ensureCapacity(Math.max(k, n));
+		int[] indices = res.indices;
+		for (int i = 0; i < n; i++) {
+			indices[i] = i;
+		}
+		if (k < n) {
+			// partition indices such that the first k point to the most intense peaks
+			select(indices, 0, n - 1, k - 1, intensities);
+			// restore m/z order of selected peaks
+			Arrays.sort(indices, 0, k);
+		}
+		for (int i = 0; i < k; i++) {
+			res.mzs[i] = mzs[indices[i]];
+			res.intensities[i] = intensities[indices[i]];
+		}
+		res.size = k;
+		return res;
+	}
+
+	/**
+	 * Rearranges the specified index range such that the element at position
+	 * <code>nth</code> is the one that would be there if the range was sorted
+	 * by descending intensity, with all elements before it having greater or
+	 * equal intensities.
+	 * @param indices the peak indices
+	 * @param left the first position (inclusive)
+	 * @param right the last position (inclusive)
+	 * @param nth the position to select
+	 * @param intensities the intensities
+	 */
+	private static void select(int[] indices, int left, int right, int nth, double[] intensities) {
+		while (right > left) {
+			// median-of-three pivot
+			int mid = (left + right) >>> 1;
+			double a = intensities[indices[left]], b = intensities[indices[mid]], c = intensities[indices[right]];
+			double pivot = (a > b) ? ((b > c) ? b : ((a > c) ? c : a)) : ((a > c) ? a : ((b > c) ? c : b));
+			int i = left, j = right;
+			while (i <= j) {
+				while (intensities[indices[i]] > pivot) {
+					i++;
+				}
+				while (intensities[indices[j]] < pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = indices[i];
+					indices[i] = indices[j];
+					indices[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (nth <= j) {
+				right = j;
+			} else if (nth >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+}
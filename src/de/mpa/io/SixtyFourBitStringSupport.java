@@ -2,6 +2,8 @@ package de.mpa.io;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import org.apache.commons.codec.binary.Base64;
@@ -13,6 +15,33 @@ import org.apache.commons.codec.binary.Base64;
  */
 public class SixtyFourBitStringSupport {
 	
+	/**
+	 * Lookup table mapping ASCII characters to their 6-bit Base64 values or
+	 * <code>-1</code> if they do not belong to the (standard or URL-safe)
+	 * Base64 alphabet.
+	 */
+	private static final byte[] DECODE_TABLE = new byte[128];
+	static {
+		Arrays.fill(DECODE_TABLE, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+		}
+		DECODE_TABLE['-'] = 62;
+		DECODE_TABLE['_'] = 63;
+	}
+	
+	/**
+	 * Per-thread scratch buffers for encoded characters and decoded bytes,
+	 * which are reused across decoding calls.
+	 */
+	private static final ThreadLocal<byte[][]> SCRATCH = new ThreadLocal<byte[][]>() {
+		@Override
+		protected byte[][] initialValue() {
+			return new byte[][] { new byte[4096], new byte[3072] };
+		}
+	};
+	
 	/**
 	 * Builds a peak HashMap from 64-bit-encoded m/z and intensity arrays.
 	 * @param mzArray the encoded array of m/z values
@@ -53,6 +82,22 @@ public class SixtyFourBitStringSupport {
 		return peaks;
 	}
 
+	/**
+	 * Builds a peak HashMap from double and byte arrays representing m/z and charge pairs.
+	 * @param mzArray the array of m/z values
+	 * @param chArray the array of charge values
+	 * @return a charge map
+	 */
+	public static HashMap<Double, Integer> buildChargeMap(double[] mzArray, byte[] chArray) {
+		HashMap<Double, Integer> peaks = new HashMap<Double, Integer>();
+		for (int i = 0; i < mzArray.length; i++) {
+			if (chArray[i] != 0) {
+				peaks.put(mzArray[i], (int) chArray[i]);
+			}
+		}
+		return peaks;
+	}
+
 	/**
 	 * Decodes a 64-bit String into an array of doubles.<br>
 	 * Will use default byte order (big endian).
@@ -65,22 +110,103 @@ public class SixtyFourBitStringSupport {
 	
 	/**
 	 * Decodes a 64-bit String into an array of doubles using a specified byte order.
+	 * Strings containing blobs created by a {@link PeakCodec} are decoded
+	 * transparently, regardless of the specified byte order.
 	 * @param encodedString the encoded String
 	 * @param byteOrder the byte order
 	 * @return a double array
 	 */
 	public static double[] decodeBase64StringToDoubles(String encodedString, ByteOrder byteOrder) {
-		byte[] byteArray = Base64.decodeBase64(encodedString);
-
-        ByteBuffer bb = ByteBuffer.wrap(byteArray);
-        bb.order(byteOrder);
-
-        double[] res = new double[byteArray.length/8];
-        for (int i = 0; i < res.length; i++) {
-        	res[i] = bb.getDouble(i*8);
-        }
+		int length = encodedString.length();
+		byte[][] scratch = SCRATCH.get();
+		if (scratch[0].length < length) {
+			scratch[0] = new byte[length];
+		}
+		byte[] chars = scratch[0];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (byte) encodedString.charAt(i);
+		}
+		return decodeBase64ToDoubles(chars, length, byteOrder);
+	}
+	
+	/**
+	 * Decodes the ASCII bytes of a 64-bit String into an array of doubles.<br>
+	 * Will use default byte order (big endian). Blobs created by a
+	 * {@link PeakCodec} are decoded transparently.
+	 * @param encodedBytes the encoded String's ASCII bytes
+	 * @return a double array
+	 */
+	public static double[] decodeBase64ToDoubles(byte[] encodedBytes) {
+		return decodeBase64ToDoubles(encodedBytes, encodedBytes.length, ByteOrder.BIG_ENDIAN);
+	}
+	
+	/**
+	 * Decodes the ASCII bytes of a 64-bit String into an array of doubles
+	 * using a specified byte order. The bytes are decoded into a reusable
+	 * scratch buffer from which the doubles are bulk-copied through a
+	 * {@link DoubleBuffer} view.
+	 * @param encodedBytes the encoded String's ASCII bytes
+	 * @param length the number of encoded bytes
+	 * @param byteOrder the byte order
+	 * @return a double array
+	 */
+	private static double[] decodeBase64ToDoubles(byte[] encodedBytes, int length, ByteOrder byteOrder) {
+		byte[][] scratch = SCRATCH.get();
+		int maxLength = length / 4 * 3 + 2;
+		if (scratch[1].length < maxLength) {
+			scratch[1] = new byte[maxLength];
+		}
+		byte[] decoded = scratch[1];
+		int decodedLength = decodeBase64(encodedBytes, length, decoded);
+		
+		if (BinaryPeakSupport.isBinary(decoded, decodedLength)) {
+			return BinaryPeakSupport.decodeBinaryDoubles(ByteBuffer.wrap(decoded, 0, decodedLength));
+		}
+		DoubleBuffer db = ByteBuffer.wrap(decoded, 0, decodedLength).order(byteOrder).asDoubleBuffer();
+		double[] res = new double[db.remaining()];
+		db.get(res);
 		return res;
 	}
+	
+	/**
+	 * Decodes Base64 characters into the specified byte array. Characters
+	 * outside the Base64 alphabet (e.g. line breaks) are skipped, decoding
+	 * stops at the first padding character.
+	 * @param src the encoded characters
+	 * @param length the number of encoded characters
+	 * @param dst the target array, must be able to hold
+	 *  <code>length / 4 * 3 + 2</code> bytes
+	 * @return the number of decoded bytes
+	 */
+	private static int decodeBase64(byte[] src, int length, byte[] dst) {
+		int bits = 0, count = 0, pos = 0;
+		for (int i = 0; i < length; i++) {
+			int c = src[i] & 0xFF;
+			if (c == '=') {
+				break;
+			}
+			int value = (c < 128) ? DECODE_TABLE[c] : -1;
+			if (value < 0) {
+				continue;
+			}
+			bits = (bits << 6) | value;
+			if (++count == 4) {
+				dst[pos++] = (byte) (bits >> 16);
+				dst[pos++] = (byte) (bits >> 8);
+				dst[pos++] = (byte) bits;
+				bits = 0;
+				count = 0;
+			}
+		}
+		// Trailing partial quantum
+		if (count == 2) {
+			dst[pos++] = (byte) (bits >> 4);
+		} else if (count == 3) {
+			dst[pos++] = (byte) (bits >> 10);
+			dst[pos++] = (byte) (bits >> 2);
+		}
+		return pos;
+	}
 
 	/**
 	 * Decodes a 64-bit String into an array of integers.<br>
@@ -111,6 +237,64 @@ public class SixtyFourBitStringSupport {
 		return res;
 	}
 	
+	/**
+	 * Decodes a 64-bit String of integers into an array of bytes, e.g. for
+	 * fragment ion charges.<br>
+	 * Will use default byte order (big endian).
+	 * @param encodedString the encoded String
+	 * @return a byte array or <code>null</code> if the String is <code>null</code>
+	 */
+	public static byte[] decodeBase64StringToBytes(String encodedString) {
+		if (encodedString == null) {
+			return null;
+		}
+		int[] ints = decodeBase64StringToInts(encodedString);
+		byte[] res = new byte[ints.length];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = (byte) ints[i];
+		}
+		return res;
+	}
+	
+	/**
+	 * Encodes an array of double values to a 64-bit String.
+	 * @param doubles the values to encode
+	 * @return a 64-bit String representation of the values
+	 */
+	public static String encodeDoublesToBase64String(double[] doubles) {
+		byte[] bytes = new byte[doubles.length*8];
+		ByteBuffer bb = ByteBuffer.wrap(bytes);
+	    for (double dbl : doubles) {
+	        bb.putDouble(dbl);
+	    }
+		return Base64.encodeBase64String(bytes);
+	}
+	
+	/**
+	 * Encodes an array of double values to a 64-bit String using the specified
+	 * codec.
+	 * @param doubles the values to encode
+	 * @param codec the codec
+	 * @return a 64-bit String representation of the encoded values
+	 */
+	public static String encodeDoublesToBase64String(double[] doubles, PeakCodec codec) {
+		return Base64.encodeBase64String(BinaryPeakSupport.encode(doubles, codec));
+	}
+	
+	/**
+	 * Encodes an array of byte values as 32-bit integers to a 64-bit String.
+	 * @param bytes the values to encode
+	 * @return a 64-bit String representation of the values
+	 */
+	public static String encodeBytesAsIntsToBase64String(byte[] bytes) {
+		byte[] ints = new byte[bytes.length*4];
+		ByteBuffer bb = ByteBuffer.wrap(ints);
+	    for (byte b : bytes) {
+	        bb.putInt(b);
+	    }
+		return Base64.encodeBase64String(ints);
+	}
+	
 	/**
 	 * Encodes an array of double values to a 64-bit String.
 	 * @param doubles the values to encode
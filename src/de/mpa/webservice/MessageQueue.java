@@ -42,7 +42,7 @@ public class MessageQueue extends ArrayDeque<String> {
 	 * @param log The logger.
 	 * @return <code>true</code> if this collection changed as a result of the call.
 	 */
-	public boolean add(Message msg, Logger log) {
+	public synchronized boolean add(Message msg, Logger log) {
 		String composedMessage;
 		if (msg.getStatus() == JobStatus.ERROR) {
 			composedMessage = JobStatus.ERROR.toString() + ": " + msg.getDescription() + " " + msg.getError();
@@ -53,4 +53,14 @@ public class MessageQueue extends ArrayDeque<String> {
 		return super.add(composedMessage);
 	}
 	
+	/**
+	 * Retrieves and removes the first message of this deque. Jobs running
+	 * concurrently may add messages at the same time.
+	 * @return The first message or <code>null</code> if this deque is empty.
+	 */
+	@Override
+	public synchronized String poll() {
+		return super.poll();
+	}
+	
 }
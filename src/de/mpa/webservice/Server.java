@@ -24,6 +24,17 @@ public interface Server {
 	  * @return The message string.
 	  */
 	 @WebMethod String sendMessage();
+	 
+	 /**
+	  * Returns the timing and resource metrics of the most recently completed jobs.
+	  * @return The metrics as JSON array.
+	  */
+	 @WebMethod String getJobMetrics();
+	 
+	 /**
+	  * Cancels the running searches, destroying running search engine processes.
+	  */
+	 @WebMethod void cancelSearches();
 
 	 /**
 	  * Runs searches on the specified files with the specified settings.
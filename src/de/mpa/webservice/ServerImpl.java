@@ -8,9 +8,10 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 import javax.jws.WebService;
@@ -26,9 +27,9 @@ import de.mpa.client.model.dbsearch.SearchEngineType;
 import de.mpa.db.DBManager;
 import de.mpa.db.MapContainer;
 import de.mpa.db.extractor.SpectrumExtractor;
-import de.mpa.db.extractor.SpectrumUtilities;
 import de.mpa.db.job.Job;
 import de.mpa.db.job.JobManager;
+import de.mpa.db.job.JobMetrics;
 import de.mpa.db.job.JobStatus;
 import de.mpa.db.job.SearchType;
 import de.mpa.db.job.ServerProperties;
@@ -40,13 +41,17 @@ import de.mpa.db.job.instances.InspectProcessingJob;
 import de.mpa.db.job.instances.OmssaJob;
 import de.mpa.db.job.instances.PercolatorJob;
 import de.mpa.db.job.instances.RenameJob;
+import de.mpa.db.job.instances.SpectrumStoreJob;
 import de.mpa.db.job.instances.StoreJob;
 import de.mpa.db.job.instances.UniProtJob;
 import de.mpa.db.job.instances.XTandemJob;
 import de.mpa.db.job.scoring.OmssaScoreJob;
 import de.mpa.db.job.scoring.XTandemScoreJob;
+import de.mpa.db.job.sharding.ShardMergeJob;
+import de.mpa.db.job.sharding.ShardSplitJob;
 import de.mpa.io.MascotGenericFile;
 import de.mpa.io.MascotGenericFileReader;
+import de.mpa.io.MascotGenericFileReader.LoadMode;
 import de.mpa.io.fasta.FastaLoader;
 
 
@@ -97,6 +102,16 @@ public class ServerImpl implements Server {
 		return (msg == null) ? "" : msg;
 	}
 
+	@Override
+	public String getJobMetrics() {
+		return JobMetrics.toJson(JobManager.getInstance().getMetrics());
+	}
+
+	@Override
+	public void cancelSearches() {
+		JobManager.getInstance().cancel();
+	}
+
 	@Override
 	public File downloadFile(String filename) { 
 		File file = new File(filename);		
@@ -107,10 +122,17 @@ public class ServerImpl implements Server {
 	 * Adds database search jobs. 
 	 * @param filename The spectrum filename.
 	 * @param dbSearchSettings The database search settings.
-	 * @throws Exception
+	 * @param spectrumJob The job storing the spectra, results are stored afterwards
+	 *  using the job's title resolver.
+	 * @param sharedFileJobs The last jobs of engines using working files shared by
+	 *  all spectrum files, later jobs of the same engine wait for these. Updated
+	 *  with the jobs added for this file.
+	 * @return The added jobs.
 	 */
-	private void addDbSearchJobs(String filename, DbSearchSettings dbSearchSettings) {	
+	private List<Job> addDbSearchJobs(String filename, DbSearchSettings dbSearchSettings,
+			SpectrumStoreJob spectrumJob, Map<SearchEngineType, Job> sharedFileJobs) {	
 		File file = new File(ServerProperties.getInstance().getProperty("path.transfer") + filename);
+		List<Job> jobs = new ArrayList<Job>();
 		
 		// Get general parameters.
 		ServerProperties jobProperties = ServerProperties.getInstance();
@@ -136,90 +158,208 @@ public class ServerImpl implements Server {
 		}
 		MapContainer.FastaLoader = fastaLoader;
 		
-		// Init protein map for UniProt entry retrieval.
-		MapContainer.UniprotQueryProteins = new HashMap<String, Long>();
+		// Engine chains are independent of each other, UniProt retrieval waits for all stores
+		List<Job> storeJobs = new ArrayList<Job>();
+		
+		// Large spectrum files are split into shards searched by parallel X!Tandem and OMSSA processes
+		ShardSplitJob splitJob = null;
+		List<Job> shardSearchJobs = new ArrayList<Job>();
+		if (dbSearchSettings.isXTandem() || dbSearchSettings.isOmssa()) {
+			int shardCount = ShardSplitJob.getShardCount(file, jobProperties);
+			if (shardCount > 1) {
+				splitJob = new ShardSplitJob(file, shardCount);
+				addJob(jobs, splitJob);
+			}
+		}
 		
 		// X!Tandem job
 		if (dbSearchSettings.isXTandem()) {
-			Job xTandemJob = new XTandemJob(file, searchDB, dbSearchSettings.getXtandemParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm, SearchType.TARGET);
-			jobManager.addJob(xTandemJob);
+			Job xTandemJob = addSearchJobs(jobs, SearchEngineType.XTANDEM, SearchType.TARGET, file, dbSearchSettings, splitJob, shardSearchJobs);
+			String decoyFilename = null;
+			Job storeJob;
 			// Decoy search only
 			if (dbSearchSettings.isDecoy()) {
-				// The X!Tandem decoy search is added here
-				Job xTandemDecoyJob = new XTandemJob(file, searchDB, dbSearchSettings.getXtandemParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm, SearchType.DECOY);
-				jobManager.addJob(xTandemDecoyJob);
+				// The X!Tandem decoy search is added here, it runs alongside the target search
+				Job xTandemDecoyJob = addSearchJobs(jobs, SearchEngineType.XTANDEM, SearchType.DECOY, file, dbSearchSettings, splitJob, shardSearchJobs);
+				decoyFilename = xTandemDecoyJob.getFilename();
 
 				// The score job evaluates X!Tandem target + decoy results
 				Job xTandemScoreJob = new XTandemScoreJob(xTandemJob.getFilename(), xTandemDecoyJob.getFilename());
-				jobManager.addJob(xTandemScoreJob);
+				addJob(jobs, xTandemScoreJob, xTandemJob, xTandemDecoyJob);
 				
 				// Add store job
-				jobManager.addJob(new StoreJob(SearchEngineType.XTANDEM, xTandemJob.getFilename(), xTandemScoreJob.getFilename()));
+				storeJob = new StoreJob(SearchEngineType.XTANDEM, xTandemJob.getFilename(), xTandemScoreJob.getFilename(), spectrumJob.getResolver());
+				addJob(jobs, storeJob, xTandemScoreJob, spectrumJob);
 			} else {
 				// Add store job
-				jobManager.addJob(new StoreJob(SearchEngineType.XTANDEM, xTandemJob.getFilename()));
+				storeJob = new StoreJob(SearchEngineType.XTANDEM, xTandemJob.getFilename(), spectrumJob.getResolver());
+				addJob(jobs, storeJob, xTandemJob, spectrumJob);
 			}
-			// Clear the folders
-			jobManager.addJob(new DeleteJob(xTandemJob.getFilename()));
+			storeJobs.add(storeJob);
+			// Remove the result files of this search only, other spectrum files may share their prefix
+			addJob(jobs, new DeleteJob(DeleteJob.getSearchResultFiles(xTandemJob.getFilename(), decoyFilename)), storeJob);
 		}
 		
 		// OMSSA job
 		if (dbSearchSettings.isOmssa()) {
-			Job omssaJob = new OmssaJob(file, searchDB, dbSearchSettings.getOmssaParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm, SearchType.TARGET);
-			jobManager.addJob(omssaJob);
-			
+			Job omssaJob = addSearchJobs(jobs, SearchEngineType.OMSSA, SearchType.TARGET, file, dbSearchSettings, splitJob, shardSearchJobs);
+			String decoyFilename = null;
+			Job storeJob;
 			// Condition if decoy search is done here
 			if (dbSearchSettings.isDecoy()) {
-				// The Omssa decoy search is added here.
-				Job omssaDecoyJob = new OmssaJob(file, searchDB + "_decoy", dbSearchSettings.getOmssaParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm, SearchType.DECOY);
-				jobManager.addJob(omssaDecoyJob);
+				// The Omssa decoy search is added here, it runs alongside the target search
+				Job omssaDecoyJob = addSearchJobs(jobs, SearchEngineType.OMSSA, SearchType.DECOY, file, dbSearchSettings, splitJob, shardSearchJobs);
+				decoyFilename = omssaDecoyJob.getFilename();
 				
 				// The score job evaluates Omssa target + decoy results.
 				Job omssaScoreJob = new OmssaScoreJob(omssaJob.getFilename(), omssaDecoyJob.getFilename());
-				jobManager.addJob(omssaScoreJob);
+				addJob(jobs, omssaScoreJob, omssaJob, omssaDecoyJob);
 				
 				// Add store job.
-				jobManager.addJob(new StoreJob(SearchEngineType.OMSSA, omssaJob.getFilename(), omssaScoreJob.getFilename()));
+				storeJob = new StoreJob(SearchEngineType.OMSSA, omssaJob.getFilename(), omssaScoreJob.getFilename(), spectrumJob.getResolver());
+				addJob(jobs, storeJob, omssaScoreJob, spectrumJob);
 			} else {
 				// Add store job.
-				jobManager.addJob(new StoreJob(SearchEngineType.OMSSA, omssaJob.getFilename()));
+				storeJob = new StoreJob(SearchEngineType.OMSSA, omssaJob.getFilename(), spectrumJob.getResolver());
+				addJob(jobs, storeJob, omssaJob, spectrumJob);
 			}
-			// Clear the folders
-			jobManager.addJob(new DeleteJob(omssaJob.getFilename()));
+			storeJobs.add(storeJob);
+			// Remove the result files of this search only
+			addJob(jobs, new DeleteJob(DeleteJob.getSearchResultFiles(omssaJob.getFilename(), decoyFilename)), storeJob);
+		}
+		
+		// Remove the shards once searched
+		if (splitJob != null) {
+			addJobAfter(jobs, new DeleteJob(splitJob.getShardFiles()), shardSearchJobs.toArray(new Job[shardSearchJobs.size()]));
 		}
 		
 		// Crux job
 		if (dbSearchSettings.isCrux()) {
 			Job cruxJob = new CruxJob(file, searchDB, dbSearchSettings.getCruxParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm);
-			jobManager.addJob(cruxJob);
+			// Crux and Percolator write fixed output file names
+			addJobAfter(jobs, cruxJob, sharedFileJobs.get(SearchEngineType.CRUX));
 			Job percolatorJob = new PercolatorJob(file);
-			jobManager.addJob(percolatorJob);
+			addJob(jobs, percolatorJob, cruxJob);
 			String percolatorfile = jobProperties.getProperty("path.crux.output") + file.getName().substring(0, file.getName().length() - 4) + "_percolated.txt";
 			Job renameJob = new RenameJob(jobProperties.getProperty("path.crux.output") + "percolator.target.psms.txt", percolatorfile);
-			jobManager.addJob(renameJob);
-			jobManager.addJob(new StoreJob(SearchEngineType.CRUX, cruxJob.getFilename()));
+			addJob(jobs, renameJob, percolatorJob);
+			sharedFileJobs.put(SearchEngineType.CRUX, renameJob);
+			Job storeJob = new StoreJob(SearchEngineType.CRUX, cruxJob.getFilename(), spectrumJob.getResolver());
+			addJob(jobs, storeJob, renameJob, spectrumJob);
+			storeJobs.add(storeJob);
 		}
 		
 		// InsPecT job
 		if (dbSearchSettings.isInspect()) {
 			Job inspectJob = new InspectJob(file, searchDB, dbSearchSettings.getInspectParams(), precIonTol, isPrecIonTolPpm, fragIonTol);			
-			jobManager.addJob(inspectJob);			
+			// The post-processing covers all raw output files at once
+			addJobAfter(jobs, inspectJob, sharedFileJobs.get(SearchEngineType.INSPECT));			
 			Job postProcessorJob = new InspectProcessingJob(file);			
-			jobManager.addJob(postProcessorJob);			
-			jobManager.addJob(new StoreJob(SearchEngineType.INSPECT, postProcessorJob.getFilename()));
+			addJob(jobs, postProcessorJob, inspectJob);			
+			sharedFileJobs.put(SearchEngineType.INSPECT, postProcessorJob);
+			Job storeJob = new StoreJob(SearchEngineType.INSPECT, postProcessorJob.getFilename(), spectrumJob.getResolver());
+			addJob(jobs, storeJob, postProcessorJob, spectrumJob);
+			storeJobs.add(storeJob);
 		}		
-		jobManager.addJob(new UniProtJob());
+		// UniProt entries are retrieved for the proteins of all successful stores
+		addJobAfter(jobs, new UniProtJob(), storeJobs.toArray(new Job[storeJobs.size()]));
+		return jobs;
+	}
+	
+	/**
+	 * Adds the X!Tandem or OMSSA search of a spectrum file. If the spectrum file
+	 * is split, one search per shard is added, followed by a job merging the
+	 * shard results. Target and decoy searches of the same shard search the
+	 * same spectra, so that the merged results remain paired.
+	 * @param jobs The list of jobs.
+	 * @param searchEngineType The search engine type.
+	 * @param searchType The search type.
+	 * @param file The spectrum file.
+	 * @param dbSearchSettings The database search settings.
+	 * @param splitJob The job splitting the spectrum file or <code>null</code> if not split.
+	 * @param shardSearchJobs The searches of shards, updated with the added ones.
+	 * @return The job providing the result file of the whole spectrum file.
+	 */
+	private Job addSearchJobs(List<Job> jobs, SearchEngineType searchEngineType, SearchType searchType, File file,
+			DbSearchSettings dbSearchSettings, ShardSplitJob splitJob, List<Job> shardSearchJobs) {
+		if (splitJob == null) {
+			Job searchJob = createSearchJob(searchEngineType, searchType, file, dbSearchSettings);
+			addJob(jobs, searchJob);
+			return searchJob;
+		}
+		List<File> shardFiles = splitJob.getShardFiles();
+		List<Job> shardJobs = new ArrayList<Job>();
+		List<String> shardFilenames = new ArrayList<String>();
+		for (int i = 0; i < shardFiles.size(); i++) {
+			Job searchJob = createSearchJob(searchEngineType, searchType, shardFiles.get(i), dbSearchSettings);
+			searchJob.setDescription(searchJob.getDescription() + " " + (i + 1) + "/" + shardFiles.size());
+			addJob(jobs, searchJob, splitJob);
+			shardJobs.add(searchJob);
+			shardFilenames.add(searchJob.getFilename());
+		}
+		shardSearchJobs.addAll(shardJobs);
+		Job mergeJob = new ShardMergeJob(splitJob, shardFilenames, searchEngineType, searchType);
+		addJob(jobs, mergeJob, shardJobs.toArray(new Job[shardJobs.size()]));
+		return mergeJob;
+	}
+	
+	/**
+	 * Creates an X!Tandem or OMSSA search job.
+	 * @param searchEngineType The search engine type.
+	 * @param searchType The search type.
+	 * @param file The spectrum file.
+	 * @param dbSearchSettings The database search settings.
+	 * @return The search job.
+	 */
+	private Job createSearchJob(SearchEngineType searchEngineType, SearchType searchType, File file, DbSearchSettings dbSearchSettings) {
+		String searchDB = dbSearchSettings.getFastaFile();
+		double fragIonTol = dbSearchSettings.getFragmentIonTol();
+		double precIonTol = dbSearchSettings.getPrecursorIonTol();
+		int nMissedCleavages = dbSearchSettings.getNumMissedCleavages();
+		boolean isPrecIonTolPpm = dbSearchSettings.isPrecursorIonUnitPpm();
+		if (searchEngineType == SearchEngineType.XTANDEM) {
+			return new XTandemJob(file, searchDB, dbSearchSettings.getXtandemParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm, searchType);
+		}
+		// OMSSA decoy searches use the decoy database
+		if (searchType == SearchType.DECOY) {
+			searchDB += "_decoy";
+		}
+		return new OmssaJob(file, searchDB, dbSearchSettings.getOmssaParams(), fragIonTol, precIonTol, nMissedCleavages, isPrecIonTolPpm, searchType);
+	}
+	
+	/**
+	 * Adds a job to the job manager queue and to the specified list.
+	 * @param jobs The list of jobs.
+	 * @param job The job to add.
+	 * @param dependencies The jobs which have to complete first.
+	 */
+	private void addJob(List<Job> jobs, Job job, Job... dependencies) {
+		jobManager.addJob(job, dependencies);
+		jobs.add(job);
+	}
+	
+	/**
+	 * Adds a job to the job manager queue and to the specified list, which is
+	 * run after the specified jobs regardless of whether these succeeded.
+	 * @param jobs The list of jobs.
+	 * @param job The job to add.
+	 * @param predecessors The jobs which have to complete first.
+	 */
+	private void addJobAfter(List<Job> jobs, Job job, Job... predecessors) {
+		jobManager.addJobAfter(job, predecessors);
+		jobs.add(job);
 	}
 
 //	/**
 //	 * Adds spectral similarity searching and storing jobs to the job queue.
 //	 * @param mgfList the list of spectrum files to search
 //	 * @param sss the spectral similarity search settings
+//	 * @param spectrumJob the job storing the query spectra
 //	 */
-//	private void addSpecSimSearchJob(List<MascotGenericFile> mgfList, SpecSimSettings sss) {
-//		SpecSimJob specSimJob = new SpecSimJob(mgfList, sss);
-//		jobManager.addJob(specSimJob);
-//		jobManager.addJob(new SpecSimStoreJob(specSimJob));
+//	private void addSpecSimSearchJob(List<MascotGenericFile> mgfList, SpecSimSettings sss, SpectrumStoreJob spectrumJob) {
+//		SpecSimJob specSimJob = new SpecSimJob(mgfList, sss, spectrumJob.getResolver());
+//		addJob(jobs, specSimJob);
+//		addJob(jobs, new SpecSimStoreJob(specSimJob));
 //	}	
 
 	
@@ -255,7 +395,12 @@ public class ServerImpl implements Server {
 				jobManager = JobManager.getInstance();
 				List<String> filenames = settings.getFilenames();
 				
-				// Iterate uploaded files
+				// Init protein map for UniProt entry retrieval.
+				MapContainer.UniprotQueryProteins = new HashMap<String, Long>();
+				
+				// Queue the jobs of all uploaded files at once, so that storing spectra and
+				// results of one file overlaps with searches of others
+				Map<SearchEngineType, Job> sharedFileJobs = new EnumMap<SearchEngineType, Job>(SearchEngineType.class);
 				int i = 1;
 				for (String filename : filenames) {
 					// Store uploaded spectrum files to DB
@@ -264,23 +409,36 @@ public class ServerImpl implements Server {
 					// Repair spectra
 //					repairSpectra(file, dbManager.getConnection());
 					
-					dbManager.storeSpectra(file, settings.getExpID());
+					final SpectrumStoreJob spectrumJob = new SpectrumStoreJob(file, settings.getExpID());
+					jobManager.addJob(spectrumJob);
+					List<Job> jobs = new ArrayList<Job>();
+					jobs.add(spectrumJob);
 
 					// Add search jobs to job manager queue
 					if (settings.isDatabase()) {
-						addDbSearchJobs(filename, settings.getDbss());
+						jobs.addAll(addDbSearchJobs(filename, settings.getDbss(), spectrumJob, sharedFileJobs));
 					}
 //					if (settings.isSpecSim()) {
 //						addSpecSimSearchJob(storager.getSpectra(), settings.getSss());
 //					}
-
-					msgQueue.add(new Message(new CommonJob(JobStatus.RUNNING, "BATCH SEARCH " + i + "/" + filenames.size()), new Date()), log);
-					jobManager.run();
 					
-					msgQueue.add(new Message(new CommonJob(JobStatus.FINISHED, "BATCH SEARCH " + i + "/" + filenames.size()), new Date()), log);
+					// Report the file as finished once all of its jobs have completed
+					jobManager.addJobAfter(new CommonJob(JobStatus.WAITING, "BATCH SEARCH " + i + "/" + filenames.size()) {
+						@Override
+						public void run() {
+							// Free title lookup table of the file
+							spectrumJob.getResolver().clear();
+							done();
+						}
+					}, jobs.toArray(new Job[jobs.size()]));
 					i++;
-					runOptions.setRunCount(1);
 				}
+				msgQueue.add(new Message(new CommonJob(JobStatus.RUNNING, "BATCH SEARCH " + filenames.size() + " FILE(S)"), new Date()), log);
+				jobManager.run();
+				runOptions.setRunCount(1);
+				
+				// Free spectrum file name lookup table
+				MapContainer.FileName2IdMap = null;
 
 			}
 		} catch (Exception e) {
@@ -312,32 +470,49 @@ public class ServerImpl implements Server {
 	 * @throws SQLException
 	 */
 	public static void repairSpectra(File file, Connection conn, String path) throws IOException, SQLException {
-		MascotGenericFileReader reader = new MascotGenericFileReader(file);
-		List<MascotGenericFile> spectra = reader.getSpectrumFiles(true);
+		MascotGenericFileReader reader = new MascotGenericFileReader(file, LoadMode.NONE);
 		
+		// stream over spectra once to collect IDs of dummy entries
 		List<Long> spectrumIDs = new ArrayList<Long>();
-		Iterator<MascotGenericFile> iterator = spectra.iterator();
-		while (iterator.hasNext()) {
-			MascotGenericFile mgf = (MascotGenericFile) iterator.next();
+		for (MascotGenericFile mgf : reader) {
 			if (mgf.getSpectrumID() != null) {
 				spectrumIDs.add(mgf.getSpectrumID());
-				iterator.remove();
 			}
 		}
 		if (!spectrumIDs.isEmpty()) {
+			File target = new File(path);
+			// write to temporary file first if the spectrum file shall be replaced
+			File output = target;
 			if (path.equals(file.getPath())) {
-				// remove old mgf file
-				file.delete();
+				output = File.createTempFile("repair", ".mgf", file.getAbsoluteFile().getParentFile());
 			}
-			file = new File(path);
 			
-			// download whole spectra for identified dummies
-			SpectrumExtractor specEx = new SpectrumExtractor(conn);
-			List<MascotGenericFile> newSpectra = specEx.getSpectraBySpectrumIDs(spectrumIDs);
+			BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(output));
+			try {
+				// stream over spectra again to copy all complete spectra
+				for (MascotGenericFile mgf : reader) {
+					if (mgf.getSpectrumID() == null) {
+						mgf.writeToStream(bos);
+					}
+				}
+				
+				// download whole spectra for identified dummies and append them
+				SpectrumExtractor specEx = new SpectrumExtractor(conn);
+				List<MascotGenericFile> newSpectra = specEx.getSpectraBySpectrumIDs(spectrumIDs);
+				for (MascotGenericFile mgf : newSpectra) {
+					mgf.writeToStream(bos);
+				}
+			} finally {
+				bos.close();
+			}
 			
-			// write all spectra to new mgf file
-			spectra.addAll(newSpectra);
-			SpectrumUtilities.writeToFile(spectra, path);
+			if (output != target) {
+				// replace old mgf file
+				file.delete();
+				if (!output.renameTo(target)) {
+					throw new IOException("Could not replace spectrum file " + path);
+				}
+			}
 		}
 		reader.close();
 	}
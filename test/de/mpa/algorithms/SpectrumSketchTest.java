@@ -0,0 +1,70 @@
+package de.mpa.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.algorithms.similarity.SpectrumSketch;
+import de.mpa.io.MascotGenericFile;
+import de.mpa.io.MascotGenericFileReader;
+
+public class SpectrumSketchTest extends TestCase {
+
+	MascotGenericFile spectrumA, spectrumB;
+
+	@Before
+	public void setUp() {
+		try {
+			File mgfFile = new File("test/de/mpa/resources/Test_30.mgf");
+			MascotGenericFileReader mgfReader = new MascotGenericFileReader(mgfFile);
+			List<MascotGenericFile> spectrumFiles = mgfReader.getSpectrumFiles();
+			spectrumA = spectrumFiles.get(1);
+			spectrumB = spectrumFiles.get(10);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testExactJaccard() {
+		double[] ints = new double[] { 1.0, 2.0, 3.0, 4.0 };
+		SpectrumSketch sketchA = new SpectrumSketch(new double[] { 100.0, 200.0, 300.0, 400.0 }, ints, 0, 1.0, 0.0);
+		SpectrumSketch sketchB = new SpectrumSketch(new double[] { 300.2, 399.9, 500.0, 600.0 }, ints, 0, 1.0, 0.0);
+		assertEquals(4, sketchA.size());
+		assertEquals(2.0 / 6.0, sketchA.similarity(sketchB), 1e-12);
+		assertEquals(sketchA.similarity(sketchB), sketchB.similarity(sketchA));
+	}
+
+	@Test
+	public void testIdenticalAndDisjoint() {
+		double[] mzs = spectrumA.getMzArray();
+		double[] shifted = new double[mzs.length];
+		for (int i = 0; i < mzs.length; i++) {
+			shifted[i] = mzs[i] + 5000.0;
+		}
+		SpectrumSketch sketch = new SpectrumSketch(mzs, spectrumA.getIntensityArray(), 0, 1.0, 0.0);
+		SpectrumSketch same = new SpectrumSketch(mzs, spectrumA.getIntensityArray(), 0, 1.0, 0.0);
+		SpectrumSketch disjoint = new SpectrumSketch(shifted, spectrumA.getIntensityArray(), 0, 1.0, 0.0);
+		assertTrue(sketch.size() <= SpectrumSketch.DEFAULT_SIZE);
+		assertEquals(1.0, sketch.similarity(same));
+		assertEquals(0.0, sketch.similarity(disjoint));
+	}
+
+	@Test
+	public void testTopPeaks() {
+		SpectrumSketch sketchA = new SpectrumSketch(spectrumA.getMzArray(), spectrumA.getIntensityArray(), 20, 1.0, 0.0);
+		SpectrumSketch sketchB = new SpectrumSketch(spectrumB.getMzArray(), spectrumB.getIntensityArray(), 20, 1.0, 0.0);
+		assertTrue(sketchA.size() <= 20);
+		double similarity = sketchA.similarity(sketchB);
+		assertTrue((similarity >= 0.0) && (similarity < 1.0));
+		assertTrue(sketchA.matches(20, 1.0, 0.0, SpectrumSketch.DEFAULT_SIZE));
+		assertFalse(sketchA.matches(10, 1.0, 0.0, SpectrumSketch.DEFAULT_SIZE));
+		assertFalse(sketchA.matches(20, 0.5, 0.0, SpectrumSketch.DEFAULT_SIZE));
+	}
+
+}
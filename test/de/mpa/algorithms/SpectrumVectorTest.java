@@ -0,0 +1,112 @@
+package de.mpa.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.algorithms.similarity.AbstractSpectrumComparator;
+import de.mpa.algorithms.similarity.BinningVectorization;
+import de.mpa.algorithms.similarity.CrossCorrelation;
+import de.mpa.algorithms.similarity.EuclideanDistance;
+import de.mpa.algorithms.similarity.NormalizedDotProduct;
+import de.mpa.algorithms.similarity.PearsonCorrelation;
+import de.mpa.algorithms.similarity.SpectrumComparator;
+import de.mpa.algorithms.similarity.SpectrumVector;
+import de.mpa.algorithms.similarity.Transformation;
+import de.mpa.algorithms.similarity.VectorizationFactory;
+import de.mpa.io.MascotGenericFile;
+import de.mpa.io.MascotGenericFileReader;
+
+public class SpectrumVectorTest extends TestCase {
+	
+	MascotGenericFile spectrumA, spectrumB;
+	
+	@Before
+	public void setUp() {
+		try {
+			File mgfFile = new File("test/de/mpa/resources/Test_30.mgf");
+			MascotGenericFileReader mgfReader = new MascotGenericFileReader(mgfFile);
+			List<MascotGenericFile> spectrumFiles = mgfReader.getSpectrumFiles();
+			spectrumA = spectrumFiles.get(1);
+			spectrumB = spectrumFiles.get(10);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	@Test
+	public void testAddUnsorted() {
+		SpectrumVector vector = new SpectrumVector(2);
+		vector.add(5, 1.0);
+		vector.add(5, 2.0);
+		vector.add(2, 4.0);
+		vector.add(9, 1.0);
+		vector.add(2, 0.5);
+		vector.sort();
+		assertEquals(3, vector.size());
+		assertEquals(2, vector.getIndex(0));
+		assertEquals(4.5, vector.getValue(0));
+		assertEquals(5, vector.getIndex(1));
+		assertEquals(3.0, vector.getValue(1));
+		assertEquals(9, vector.getIndex(2));
+	}
+	
+	@Test
+	public void testMapAdapter() {
+		BinningVectorization[] vects = new BinningVectorization[] {
+				VectorizationFactory.createDirectBinning(1.0, 0.3),
+				VectorizationFactory.createProfiling(1.0, 0.0, 0, 2.0) };
+		Transformation trafo = Transformation.SQRT;
+		for (BinningVectorization vect : vects) {
+			SpectrumComparator[] mapComps = new SpectrumComparator[] {
+					new NormalizedDotProduct(vect, trafo), new PearsonCorrelation(vect, trafo),
+					new EuclideanDistance(vect, trafo), new CrossCorrelation(vect, trafo, 1.0, 5) };
+			SpectrumComparator[] vectorComps = new SpectrumComparator[] {
+					new NormalizedDotProduct(vect, trafo), new PearsonCorrelation(vect, trafo),
+					new EuclideanDistance(vect, trafo), new CrossCorrelation(vect, trafo, 1.0, 5) };
+			
+			double[] mzsA = spectrumA.getMzArray(), mzsB = spectrumB.getMzArray();
+			SpectrumVector vectorA = vect.vectorize(mzsA, spectrumA.getIntensityArray(), mzsA.length, trafo, null);
+			SpectrumVector vectorB = vect.vectorize(mzsB, spectrumB.getIntensityArray(), mzsB.length, trafo, null);
+			
+			for (int i = 0; i < mapComps.length; i++) {
+				mapComps[i].prepare(spectrumA.getPeaks());
+				mapComps[i].compareTo(spectrumB.getPeaks());
+				vectorComps[i].prepare(vectorA);
+				vectorComps[i].compareTo(vectorB);
+				assertEquals(mapComps[i].getSimilarity(), vectorComps[i].getSimilarity(), 1e-9);
+			}
+		}
+	}
+	
+	@Test
+	public void testDenseDotProduct() {
+		BinningVectorization vect = VectorizationFactory.createDirectBinning(0.5, 0.0);
+		Transformation trafo = Transformation.SQRT;
+		double[] mzsA = spectrumA.getMzArray(), mzsB = spectrumB.getMzArray();
+		SpectrumVector vectorA = vect.vectorize(mzsA, spectrumA.getIntensityArray(), mzsA.length, trafo, null);
+		SpectrumVector vectorB = vect.vectorize(mzsB, spectrumB.getIntensityArray(), mzsB.length, trafo, null);
+		
+		AbstractSpectrumComparator[] sparseComps = new AbstractSpectrumComparator[] {
+				new NormalizedDotProduct(vect, trafo), new CrossCorrelation(vect, trafo, 0.5, 75) };
+		AbstractSpectrumComparator[] denseComps = new AbstractSpectrumComparator[] {
+				new NormalizedDotProduct(vect, trafo), new CrossCorrelation(vect, trafo, 0.5, 75) };
+		for (int i = 0; i < sparseComps.length; i++) {
+			sparseComps[i].setMaxDenseBins(0);
+			denseComps[i].setMaxDenseBins(Integer.MAX_VALUE);
+			sparseComps[i].prepare(vectorA);
+			sparseComps[i].compareTo(vectorB);
+			denseComps[i].prepare(vectorA);
+			denseComps[i].compareTo(vectorB);
+			assertTrue(sparseComps[i].getSimilarity() > 0.0);
+			// both modes sum up products in the same order
+			assertEquals(sparseComps[i].getSimilarity(), denseComps[i].getSimilarity());
+		}
+	}
+
+}
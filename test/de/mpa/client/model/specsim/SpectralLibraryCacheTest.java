@@ -0,0 +1,80 @@
+package de.mpa.client.model.specsim;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.algorithms.similarity.SpectrumVector;
+import de.mpa.client.SpecSimSettings;
+
+public class SpectralLibraryCacheTest extends TestCase {
+	
+	private SpecSimSettings settings;
+	
+	@Before
+	public void setUp() {
+		settings = new SpecSimSettings();
+		settings.setVectIndex(1);
+		settings.setBinWidth(1.0);
+		settings.setBinShift(0.3);
+		settings.setTrafoIndex(1);
+	}
+	
+	@Test
+	public void testSettingsKey() throws IOException {
+		SpectralLibraryCache cache = new SpectralLibraryCache(100, null);
+		cache.put(1L, settings, createVector(1));
+		assertNotNull(cache.get(1L, settings));
+		assertNull(cache.get(2L, settings));
+		settings.setTrafoIndex(2);
+		assertNull(cache.get(1L, settings));
+	}
+	
+	@Test
+	public void testEviction() throws IOException {
+		SpectralLibraryCache cache = new SpectralLibraryCache(16, null);
+		for (long id = 0L; id < 1000L; id++) {
+			cache.put(id, settings, createVector((int) id));
+		}
+		assertTrue(cache.size() <= 16);
+		assertNotNull(cache.get(999L, settings));
+	}
+	
+	@Test
+	public void testSpill() throws IOException {
+		File spillFile = File.createTempFile("specsim", ".cache");
+		SpectralLibraryCache cache = new SpectralLibraryCache(16, spillFile);
+		for (long id = 0L; id < 1000L; id++) {
+			cache.put(id, settings, createVector((int) id));
+		}
+		assertTrue(spillFile.length() > 0L);
+		for (long id = 0L; id < 1000L; id++) {
+			SpectrumVector expected = createVector((int) id);
+			SpectrumVector actual = cache.get(id, settings);
+			assertNotNull(actual);
+			assertEquals(expected.size(), actual.size());
+			assertEquals(expected.getBinShift(), actual.getBinShift());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.getIndex(i), actual.getIndex(i));
+				assertEquals(expected.getValue(i), actual.getValue(i));
+			}
+		}
+		cache.clear();
+		assertNull(cache.get(0L, settings));
+		spillFile.delete();
+	}
+	
+	private SpectrumVector createVector(int seed) {
+		SpectrumVector vector = new SpectrumVector();
+		vector.setBinning(1.0, 0.3);
+		for (int i = 0; i < seed % 50; i++) {
+			vector.add(seed + i * 3, Math.sqrt(seed + i));
+		}
+		return vector;
+	}
+
+}
@@ -0,0 +1,165 @@
+package de.mpa.client.model.specsim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.algorithms.Interval;
+import de.mpa.algorithms.similarity.BinningVectorization;
+import de.mpa.algorithms.similarity.SpectrumVector;
+import de.mpa.algorithms.similarity.Transformation;
+import de.mpa.algorithms.similarity.VectorizationFactory;
+import de.mpa.client.SpecSimSettings;
+import de.mpa.io.MascotGenericFile;
+import de.mpa.io.MascotGenericFileReader;
+
+public class SpectralLibraryFileTest extends TestCase {
+
+	private SpecSimSettings settings;
+
+	private List<SpectralSearchCandidate> candidates;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		settings = new SpecSimSettings();
+		settings.setVectIndex(1);
+		settings.setBinWidth(1.0);
+		settings.setBinShift(0.3);
+		settings.setTrafoIndex(1);
+
+		List<MascotGenericFile> spectra = new MascotGenericFileReader(
+				new File("test/de/mpa/resources/Test_30.mgf")).getSpectrumFiles();
+		candidates = new ArrayList<SpectralSearchCandidate>();
+		for (int i = 0; i < spectra.size(); i++) {
+			MascotGenericFile mgf = spectra.get(i);
+			SpectralSearchCandidate candidate = new SpectralSearchCandidate(i + 1L, mgf.getTitle(),
+					mgf.getPrecursorMZ(), mgf.getCharge(), mgf.getMzArray(), mgf.getIntensityArray());
+			candidate.addAnnotation(100L + i, "PEPTIDE");
+			if ((i % 3) == 0) {
+				candidate.addAnnotation(200L + i, "PEPTIDEK");
+			}
+			candidates.add(candidate);
+		}
+
+		file = File.createTempFile("specsim", SpectralLibraryFile.EXTENSION);
+		file.deleteOnExit();
+		SpectralLibraryFile.write(file, candidates, settings,
+				VectorizationFactory.createDirectBinning(1.0, 0.3), Transformation.SQRT);
+	}
+
+	@Test
+	public void testReadBack() throws IOException {
+		SpectralLibraryFile libraryFile = new SpectralLibraryFile(file);
+		assertEquals(candidates.size(), libraryFile.size());
+		for (int i = 0; i < libraryFile.size(); i++) {
+			SpectralSearchCandidate actual = libraryFile.get(i, false);
+			SpectralSearchCandidate expected = candidates.get((int) actual.getLibpectrumID() - 1);
+			if (i > 0) {
+				assertTrue(libraryFile.getPrecursorMz(i - 1) <= libraryFile.getPrecursorMz(i));
+			}
+			assertEquals(expected.getSpectrumTitle(), actual.getSpectrumTitle());
+			assertEquals(expected.getPrecursorMz(), actual.getPrecursorMz());
+			assertEquals(expected.getPrecursorCharge(), actual.getPrecursorCharge());
+			assertTrue(Arrays.equals(expected.getMzArray(), actual.getMzArray()));
+			assertTrue(Arrays.equals(expected.getIntensityArray(), actual.getIntensityArray()));
+			assertEquals(expected.getPeptideIDs(), actual.getPeptideIDs());
+			assertEquals(expected.getSequences(), actual.getSequences());
+			assertNull(actual.getVector());
+		}
+		libraryFile.close();
+	}
+
+	@Test
+	public void testVectors() throws IOException {
+		SpectralLibraryFile libraryFile = new SpectralLibraryFile(file);
+		assertTrue(libraryFile.isVectorized(settings));
+		BinningVectorization binning = VectorizationFactory.createDirectBinning(1.0, 0.3);
+		for (int i = 0; i < libraryFile.size(); i++) {
+			SpectralSearchCandidate candidate = libraryFile.get(i, true);
+			double[] mzs = candidate.getMzArray();
+			SpectrumVector expected = binning.vectorize(mzs, candidate.getIntensityArray(),
+					mzs.length, Transformation.SQRT, null);
+			SpectrumVector actual = candidate.getVector();
+			assertNotNull(actual);
+			assertEquals(expected.size(), actual.size());
+			assertEquals(expected.getBinWidth(), actual.getBinWidth());
+			assertEquals(expected.getBinShift(), actual.getBinShift());
+			for (int j = 0; j < expected.size(); j++) {
+				assertEquals(expected.getIndex(j), actual.getIndex(j));
+				assertEquals(expected.getValue(j), actual.getValue(j));
+			}
+		}
+		settings.setTrafoIndex(2);
+		assertFalse(libraryFile.isVectorized(settings));
+		libraryFile.close();
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		SpectralLibraryFile libraryFile = new SpectralLibraryFile(file);
+		double lo = libraryFile.getPrecursorMz(5), mid = libraryFile.getPrecursorMz(15);
+		List<Interval> intervals = Arrays.asList(new Interval(lo, mid), new Interval(mid, Double.MAX_VALUE));
+		SpectralSearchCandidateStream stream = libraryFile.stream(intervals, settings, 4);
+		List<SpectralSearchCandidate> streamed = new ArrayList<SpectralSearchCandidate>();
+		List<SpectralSearchCandidate> page;
+		while ((page = stream.nextPage()) != null) {
+			assertTrue(page.size() <= 4);
+			streamed.addAll(page);
+		}
+		stream.close();
+		// candidates on shared interval borders are delivered once
+		assertEquals(libraryFile.size() - libraryFile.fromIndex(lo), streamed.size());
+		for (int i = 1; i < streamed.size(); i++) {
+			assertTrue(streamed.get(i - 1).getPrecursorMz() <= streamed.get(i).getPrecursorMz());
+			assertNotNull(streamed.get(i).getVector());
+		}
+		libraryFile.close();
+	}
+
+	@Test
+	public void testStreamedWrite() throws Exception {
+		SpectralLibraryFile libraryFile = new SpectralLibraryFile(file);
+		File streamedFile = File.createTempFile("specsim", SpectralLibraryFile.EXTENSION);
+		streamedFile.deleteOnExit();
+		List<Interval> intervals = Arrays.asList(new Interval(0.0, Double.MAX_VALUE));
+		SpectralLibraryFile.write(streamedFile, libraryFile.stream(intervals, settings, 4), settings,
+				VectorizationFactory.createDirectBinning(1.0, 0.3), Transformation.SQRT);
+		libraryFile.close();
+		// writing page by page yields the same file
+		assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(streamedFile.toPath())));
+
+		// unordered streams are rejected
+		final List<SpectralSearchCandidate> unordered = new ArrayList<SpectralSearchCandidate>(candidates);
+		Collections.reverse(unordered);
+		try {
+			SpectralLibraryFile.write(streamedFile, new SpectralSearchCandidateStream() {
+				private boolean delivered;
+				@Override
+				public List<SpectralSearchCandidate> nextPage() {
+					List<SpectralSearchCandidate> page = delivered ? null : unordered;
+					delivered = true;
+					return page;
+				}
+				@Override
+				public void close() {
+				}
+			}, settings, null, Transformation.SQRT);
+			fail("Unordered library spectra written.");
+		} catch (IOException e) {
+			// expected
+		}
+		streamedFile.delete();
+	}
+
+}
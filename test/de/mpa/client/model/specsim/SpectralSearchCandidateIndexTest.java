@@ -0,0 +1,84 @@
+package de.mpa.client.model.specsim;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.io.BinaryPeakSupport;
+import de.mpa.io.MascotGenericFile;
+import de.mpa.io.MascotGenericFileReader;
+
+public class SpectralSearchCandidateIndexTest extends TestCase {
+	
+	private List<MascotGenericFile> spectra;
+	
+	private List<SpectralSearchCandidate> candidates;
+	
+	@Before
+	public void setUp() throws Exception {
+		File mgfFile = new File("test/de/mpa/resources/Test_30.mgf");
+		spectra = new MascotGenericFileReader(mgfFile).getSpectrumFiles();
+		candidates = new ArrayList<SpectralSearchCandidate>();
+		for (int i = 0; i < spectra.size(); i++) {
+			candidates.add(new SpectralSearchCandidate(createRow(spectra.get(i), i)));
+		}
+	}
+	
+	@Test
+	public void testToleranceWindows() {
+		SpectralSearchCandidateIndex index = new SpectralSearchCandidateIndex(candidates);
+		assertEquals(candidates.size(), index.size());
+		for (int i = 1; i < index.size(); i++) {
+			assertTrue(index.getPrecursorMz(i - 1) <= index.getPrecursorMz(i));
+		}
+		for (double tolMz : new double[] { 0.0, 0.5, 10.0, 250.0 }) {
+			for (MascotGenericFile query : spectra) {
+				double precursorMz = query.getPrecursorMZ();
+				// count candidates inside tolerance window using linear scan
+				int expected = 0;
+				for (SpectralSearchCandidate candidate : candidates) {
+					if (Math.abs(precursorMz - candidate.getPrecursorMz()) < tolMz) {
+						expected++;
+					}
+				}
+				int from = index.fromIndex(precursorMz, tolMz);
+				int to = index.toIndex(precursorMz, tolMz);
+				assertEquals(expected, Math.max(to - from, 0));
+				for (int i = from; i < to; i++) {
+					assertTrue(Math.abs(precursorMz - index.getPrecursorMz(i)) < tolMz);
+				}
+			}
+		}
+	}
+	
+	private static ResultSet createRow(MascotGenericFile mgf, long id) {
+		final Map<String, Object> row = new HashMap<String, Object>();
+		row.put("libspectrumid", id);
+		row.put("title", mgf.getTitle());
+		row.put("precursor_mz", mgf.getPrecursorMZ());
+		row.put("precursor_charge", mgf.getCharge());
+		row.put("mzarray", BinaryPeakSupport.encodeDoubles(mgf.getMzArray()));
+		row.put("intarray", BinaryPeakSupport.encodeDoubles(mgf.getIntensityArray()));
+		row.put("peptideid", id);
+		row.put("sequence", "PEPTIDE");
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return row.get(args[0]);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,66 @@
+package de.mpa.db;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpectrumIdResolverTest extends TestCase {
+
+	private SpectrumIdResolver resolver;
+
+	@Before
+	public void setUp() {
+		resolver = new SpectrumIdResolver(1024);
+		for (int i = 0; i < 500; i++) {
+			resolver.put("Cmpd " + i + ", +MSn(409.6854), 11.9 min", 1000L + i);
+		}
+	}
+
+	@Test
+	public void testLookup() {
+		assertEquals(500, resolver.size());
+		for (int i = 0; i < 500; i++) {
+			assertEquals(Long.valueOf(1000L + i), resolver.get("Cmpd " + i + ", +MSn(409.6854), 11.9 min"));
+		}
+		assertNull(resolver.get("Cmpd 500, +MSn(409.6854), 11.9 min"));
+
+		// lookup of title ranges
+		String description = "Cmpd 42, +MSn(409.6854), 11.9 min RTINSECONDS=714";
+		assertEquals(Long.valueOf(1042L), resolver.get(description, 0, description.indexOf("RTINSECONDS") - 1));
+	}
+
+	@Test
+	public void testRepeatedTitle() {
+		// the spectrum stored last is linked
+		resolver.put("Cmpd 0, +MSn(409.6854), 11.9 min", 2000L);
+		assertEquals(500, resolver.size());
+		assertEquals(Long.valueOf(2000L), resolver.get("Cmpd 0, +MSn(409.6854), 11.9 min"));
+	}
+
+	@Test
+	public void testScoping() {
+		// titles of other files are not resolved
+		SpectrumIdResolver other = new SpectrumIdResolver();
+		other.put("Cmpd 1000", 1L);
+		assertNull(resolver.get("Cmpd 1000"));
+		assertEquals(Long.valueOf(1L), other.get("Cmpd 1000"));
+
+		other.clear();
+		assertEquals(0, other.size());
+		assertNull(other.get("Cmpd 1000"));
+	}
+
+	@Test
+	public void testGrowth() {
+		SpectrumIdResolver small = new SpectrumIdResolver(16);
+		for (int i = 0; i < 100; i++) {
+			small.put("Cmpd " + i, i);
+		}
+		assertEquals(100, small.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Long.valueOf(i), small.get("Cmpd " + i));
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package de.mpa.db.extractor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.mpa.algorithms.Interval;
+
+public class SpectralSearchCandidateSourceTest extends TestCase {
+
+	@Test
+	public void testCloseCancelsQuery() throws Exception {
+		final CountDownLatch executing = new CountDownLatch(1);
+		final CountDownLatch canceled = new CountDownLatch(1);
+		// statement stub blocking in executeQuery() until it is canceled
+		final PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("executeQuery")) {
+					executing.countDown();
+					while (!canceled.await(10L, TimeUnit.MILLISECONDS)) {
+						// ignore interrupts like a driver blocked in socket I/O
+						Thread.interrupted();
+					}
+					throw new SQLException("Query execution was interrupted");
+				} else if (method.getName().equals("cancel")) {
+					canceled.countDown();
+				}
+				return null;
+			}
+		});
+		Connection conn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("prepareStatement") ? ps : null;
+			}
+		});
+
+		SpectralSearchCandidateSource source = new SpectralSearchCandidateSource(
+				conn, Arrays.asList(new Interval(400.0, 500.0)), 1L, 10, 1);
+		source.start();
+		assertTrue(executing.await(5L, TimeUnit.SECONDS));
+		source.close();
+		assertEquals(0L, canceled.getCount());
+		assertNull(source.nextPage());
+	}
+
+}
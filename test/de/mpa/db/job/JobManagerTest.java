@@ -0,0 +1,216 @@
+package de.mpa.db.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobManagerTest extends TestCase {
+
+	private JobManager jobManager;
+
+	private List<String> events;
+
+	private AtomicInteger running;
+
+	private AtomicInteger maxRunning;
+
+	@Before
+	public void setUp() {
+		jobManager = JobManager.getInstance();
+		jobManager.clear();
+		events = Collections.synchronizedList(new ArrayList<String>());
+		running = new AtomicInteger();
+		maxRunning = new AtomicInteger();
+	}
+
+	@Test
+	public void testDependencies() {
+		Job search = new TestJob("search", JobResource.CPU);
+		Job decoy = new TestJob("decoy", JobResource.CPU);
+		Job score = new TestJob("score", JobResource.CPU);
+		Job store = new TestJob("store", JobResource.DATABASE);
+		Job other = new TestJob("other", JobResource.CPU);
+		Job otherStore = new TestJob("otherStore", JobResource.DATABASE);
+		Job uniprot = new TestJob("uniprot", JobResource.DATABASE);
+		jobManager.addJob(search);
+		jobManager.addJob(decoy);
+		jobManager.addJob(score, search, decoy);
+		jobManager.addJob(store, score);
+		jobManager.addJob(other);
+		jobManager.addJob(otherStore, other);
+		jobManager.addJob(uniprot, store, otherStore);
+		jobManager.run();
+
+		assertEquals(0, jobManager.getRemainingJobs());
+		assertEquals(14, events.size());
+		assertBefore("search end", "score start");
+		assertBefore("decoy end", "score start");
+		assertBefore("score end", "store start");
+		assertBefore("other end", "otherStore start");
+		assertBefore("store end", "uniprot start");
+		assertBefore("otherStore end", "uniprot start");
+		for (Job job : new Job[] { search, decoy, score, store, other, otherStore, uniprot }) {
+			assertEquals(JobStatus.FINISHED, job.getStatus());
+		}
+		if (Runtime.getRuntime().availableProcessors() > 1) {
+			// independent compute jobs overlap
+			assertTrue(maxRunning.get() > 1);
+		}
+	}
+
+	@Test
+	public void testDatabaseWriters() {
+		for (int i = 0; i < 4; i++) {
+			jobManager.addJob(new TestJob("store" + i, JobResource.DATABASE));
+		}
+		jobManager.run();
+		assertEquals(8, events.size());
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	public void testPipelining() {
+		Job previous = null;
+		for (int i = 1; i <= 2; i++) {
+			Job spectra = new TestJob("spectra" + i, JobResource.DATABASE);
+			Job search = new TestJob("search" + i, JobResource.CPU, 200L);
+			jobManager.addJob(spectra);
+			jobManager.addJob(search, previous);
+			jobManager.addJob(new TestJob("store" + i, JobResource.DATABASE), search, spectra);
+			previous = search;
+		}
+		jobManager.run();
+		assertEquals(12, events.size());
+		// storing spectra of the second file overlaps with searching the first one
+		assertBefore("spectra2 end", "search1 end");
+		assertBefore("search1 end", "store1 start");
+		assertBefore("search2 end", "store2 start");
+	}
+
+	@Test
+	public void testCycle() {
+		TestJob first = new TestJob("first", JobResource.CPU);
+		TestJob second = new TestJob("second", JobResource.CPU);
+		jobManager.addJob(first, second);
+		jobManager.addJob(second, first);
+		jobManager.addJob(new TestJob("third", JobResource.CPU));
+		jobManager.run();
+		assertEquals(0, jobManager.getRemainingJobs());
+		assertEquals(2, events.size());
+		assertEquals(JobStatus.CANCELED, first.getStatus());
+	}
+
+	@Test
+	public void testFailedDependency() {
+		Job search = new FailingJob("search", new RuntimeException("search failed"));
+		Job score = new TestJob("score", JobResource.CPU);
+		Job store = new TestJob("store", JobResource.DATABASE);
+		Job other = new TestJob("other", JobResource.CPU);
+		Job uniprot = new TestJob("uniprot", JobResource.DATABASE);
+		jobManager.addJob(search);
+		jobManager.addJob(score, search);
+		jobManager.addJob(store, score);
+		jobManager.addJob(other);
+		jobManager.addJobAfter(uniprot, store, other);
+		jobManager.run();
+
+		assertEquals(0, jobManager.getRemainingJobs());
+		assertEquals(JobStatus.ERROR, search.getStatus());
+		// dependents of the failed search are canceled transitively
+		assertEquals(JobStatus.CANCELED, score.getStatus());
+		assertEquals(JobStatus.CANCELED, store.getStatus());
+		assertFalse(events.contains("score start"));
+		assertFalse(events.contains("store start"));
+		// jobs only waiting for others still run
+		assertEquals(JobStatus.FINISHED, uniprot.getStatus());
+		assertBefore("other end", "uniprot start");
+	}
+
+	@Test
+	public void testError() {
+		Job search = new FailingJob("search", new OutOfMemoryError("Java heap space"));
+		Job score = new TestJob("score", JobResource.CPU);
+		Job other = new TestJob("other", JobResource.CPU);
+		jobManager.addJob(search);
+		jobManager.addJob(score, search);
+		jobManager.addJob(other, search);
+		jobManager.run();
+
+		assertEquals(0, jobManager.getRemainingJobs());
+		assertEquals(JobStatus.ERROR, search.getStatus());
+		assertEquals(JobStatus.CANCELED, score.getStatus());
+		assertEquals(JobStatus.CANCELED, other.getStatus());
+		assertTrue(events.isEmpty());
+	}
+
+	private void assertBefore(String first, String second) {
+		int i = events.indexOf(first), j = events.indexOf(second);
+		assertTrue(first + " missing", i >= 0);
+		assertTrue(second + " missing", j >= 0);
+		assertTrue(first + " not before " + second, i < j);
+	}
+
+	private class FailingJob extends Job {
+
+		private Throwable throwable;
+
+		public FailingJob(String description, Throwable throwable) {
+			this.throwable = throwable;
+			setDescription(description);
+		}
+
+		@Override
+		public void run() {
+			if (throwable instanceof Error) {
+				throw (Error) throwable;
+			}
+			throw (RuntimeException) throwable;
+		}
+	}
+
+	private class TestJob extends Job {
+
+		private JobResource resource;
+
+		private long duration;
+
+		public TestJob(String description, JobResource resource) {
+			this(description, resource, 50L);
+		}
+
+		public TestJob(String description, JobResource resource, long duration) {
+			this.resource = resource;
+			this.duration = duration;
+			setDescription(description);
+		}
+
+		@Override
+		public void run() {
+			int count = running.incrementAndGet();
+			synchronized (maxRunning) {
+				maxRunning.set(Math.max(maxRunning.get(), count));
+			}
+			events.add(description + " start");
+			try {
+				Thread.sleep(duration);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			events.add(description + " end");
+			running.decrementAndGet();
+			done();
+		}
+
+		@Override
+		public JobResource getResource() {
+			return resource;
+		}
+	}
+
+}
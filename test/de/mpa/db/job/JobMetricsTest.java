@@ -0,0 +1,89 @@
+package de.mpa.db.job;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobMetricsTest extends TestCase {
+
+	private JobManager jobManager;
+
+	@Before
+	public void setUp() {
+		jobManager = JobManager.getInstance();
+		jobManager.clear();
+	}
+
+	@Test
+	public void testJson() {
+		JobMetrics metrics = new JobMetrics();
+		assertEquals("{\"description\":null,\"type\":null,\"status\":null,\"start\":-1,\"wallTime\":-1,"
+				+ "\"exitCode\":null,\"peakRss\":-1,\"bytesRead\":-1,\"bytesWritten\":-1,\"rowsStored\":-1}",
+				metrics.toJson());
+
+		Job job = new TestJob("SEARCH: \"a\\b\"\n");
+		job.getMetrics().setExitCode(0);
+		job.getMetrics().setRowsStored(42L);
+		jobManager.addJob(job);
+		jobManager.run();
+		String json = job.getMetrics().toJson();
+		assertTrue(json, json.startsWith("{\"description\":\"SEARCH: \\\"a\\\\b\\\"\\n\",\"type\":\"TestJob\",\"status\":\"FINISHED\""));
+		assertTrue(json, json.contains("\"exitCode\":0,"));
+		assertTrue(json, json.endsWith("\"rowsStored\":42}"));
+		assertTrue(job.getMetrics().getWallTime() >= 50L);
+
+		List<JobMetrics> history = jobManager.getMetrics();
+		assertSame(job.getMetrics(), history.get(history.size() - 1));
+		assertEquals("[" + json + "," + json + "]", JobMetrics.toJson(Arrays.asList(job.getMetrics(), job.getMetrics())));
+	}
+
+	@Test
+	public void testParseValue() {
+		assertEquals(1234L, ProcessMonitor.parseValue("VmHWM:\t    1234 kB"));
+		assertEquals(98765L, ProcessMonitor.parseValue("rchar: 98765"));
+		assertEquals(-1L, ProcessMonitor.parseValue("State:\tS (sleeping)"));
+	}
+
+	@Test
+	public void testProcessMonitor() throws Exception {
+		if (!new File("/proc/self/status").exists()) {
+			return;
+		}
+		JobMetrics metrics = new JobMetrics();
+		Process proc = new ProcessBuilder("sleep", "1").start();
+		ProcessMonitor monitor = new ProcessMonitor(proc, metrics, 100L);
+		try {
+			assertTrue(ProcessMonitor.getPid(proc) > 0L);
+			assertTrue(monitor.sample());
+			monitor.start();
+			metrics.setExitCode(proc.waitFor());
+		} finally {
+			monitor.stop();
+		}
+		assertEquals(Integer.valueOf(0), metrics.getExitCode());
+		assertTrue(metrics.getPeakRss() > 0L);
+	}
+
+	private class TestJob extends Job {
+
+		public TestJob(String description) {
+			setDescription(description);
+		}
+
+		@Override
+		public void run() {
+			try {
+				Thread.sleep(50L);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			done();
+		}
+	}
+
+}
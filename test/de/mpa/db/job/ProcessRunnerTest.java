@@ -0,0 +1,162 @@
+package de.mpa.db.job;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+import de.mpa.db.job.ProcessRunner.ProgressListener;
+
+public class ProcessRunnerTest extends TestCase {
+
+	private static Logger log = Logger.getLogger(ProcessRunnerTest.class);
+
+	private List<JobProgress> events = Collections.synchronizedList(new ArrayList<JobProgress>());
+
+	private ProgressListener listener = new ProgressListener() {
+		@Override
+		public void progressChanged(JobProgress progress) {
+			events.add(progress);
+		}
+	};
+
+	@Test
+	public void testLineBuffer() {
+		ProcessRunner.LineBuffer buffer = new ProcessRunner.LineBuffer(3);
+		assertTrue(buffer.toList().isEmpty());
+		buffer.add("a");
+		buffer.add("b");
+		assertEquals("[a, b]", buffer.toList().toString());
+		buffer.add("c");
+		buffer.add("d");
+		buffer.add("e");
+		assertEquals("[c, d, e]", buffer.toList().toString());
+	}
+
+	@Test
+	public void testProgressParser() {
+		ProgressParser parser = ProgressParser.DEFAULT;
+		assertNull(parser.parse(""));
+		assertNull(parser.parse("Spectra matching criteria"));
+		assertEquals(0.42, parser.parse("Search progress: 42%").getFraction(), 1e-9);
+		assertEquals(0.25, parser.parse("INFO: Searched 250 of 1000 spectra").getFraction(), 1e-9);
+		JobProgress stage = parser.parse("Loading spectra (mgf). loaded.");
+		assertEquals(-1.0, stage.getFraction());
+		assertEquals("Loading spectra (mgf). loaded.", stage.getMessage());
+	}
+
+	@Test
+	public void testDrainingAndProgress() throws Exception {
+		if (!isUnix()) {
+			return;
+		}
+		// far more error output than fits into a pipe buffer
+		ProcessRunner runner = new ProcessRunner(new ProcessBuilder("sh", "-c",
+				"i=0; while [ $i -lt 20000 ]; do echo \"error line $i of 20000\" >&2; i=$((i+1)); done;"
+				+ " echo 'Loading spectra. loaded.'; echo '50%'; exit 3"), ProgressParser.DEFAULT, listener, log, 10);
+		runner.start();
+		assertEquals(3, runner.waitFor(60000L));
+
+		List<String> errors = runner.getErrors();
+		assertEquals(10, errors.size());
+		assertEquals("error line 19999 of 20000", errors.get(9));
+		assertEquals("[Loading spectra. loaded., 50%]", runner.getOutput().toString());
+		assertEquals(20002, events.size());
+		assertEquals(1.0, events.get(19999).getFraction(), 1e-3);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		if (!isUnix()) {
+			return;
+		}
+		ProcessRunner runner = new ProcessRunner(new ProcessBuilder("sleep", "30"), null, null, log);
+		runner.start();
+		long start = System.currentTimeMillis();
+		try {
+			runner.waitFor(200L);
+			fail("timeout expected");
+		} catch (TimeoutException e) {
+			// expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 10000L);
+	}
+
+	@Test
+	public void testOrphanedOutput() throws Exception {
+		if (!isUnix()) {
+			return;
+		}
+		// a background child inherits the output stream and keeps it open
+		ProcessRunner runner = new ProcessRunner(new ProcessBuilder("sh", "-c", "echo done; sleep 30 &"), null, null, log);
+		runner.start();
+		long start = System.currentTimeMillis();
+		assertEquals(0, runner.waitFor(0L));
+		assertTrue(System.currentTimeMillis() - start < 20000L);
+		assertEquals("[done]", runner.getOutput().toString());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		if (!isUnix()) {
+			return;
+		}
+		final TestJob job = new TestJob("sleep", "30");
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				job.run();
+			}
+		});
+		thread.start();
+		while (job.getStatus() != JobStatus.RUNNING) {
+			Thread.sleep(10L);
+		}
+		job.cancel();
+		thread.join(10000L);
+		assertFalse(thread.isAlive());
+		assertEquals(JobStatus.CANCELED, job.getStatus());
+
+		TestJob notStarted = new TestJob("true");
+		notStarted.cancel();
+		notStarted.run();
+		assertEquals(JobStatus.CANCELED, notStarted.getStatus());
+		assertNull(notStarted.getMetrics().getExitCode());
+	}
+
+	@Test
+	public void testExitCode() {
+		if (!isUnix()) {
+			return;
+		}
+		TestJob failing = new TestJob("sh", "-c", "echo 'Loading spectra.'; echo 'Segmentation fault' >&2; exit 139");
+		failing.run();
+		assertEquals(JobStatus.ERROR, failing.getStatus());
+		assertTrue(failing.getError(), failing.getError().contains("exited with code 139"));
+		assertTrue(failing.getError(), failing.getError().contains("Segmentation fault"));
+		assertEquals(Integer.valueOf(139), failing.getMetrics().getExitCode());
+
+		TestJob succeeding = new TestJob("true");
+		succeeding.run();
+		assertEquals(JobStatus.FINISHED, succeeding.getStatus());
+	}
+
+	private static boolean isUnix() {
+		return new File("/bin/sh").exists();
+	}
+
+	private class TestJob extends Job {
+
+		public TestJob(String... command) {
+			procBuilder = new ProcessBuilder(command);
+			setDescription("TEST");
+		}
+	}
+
+}
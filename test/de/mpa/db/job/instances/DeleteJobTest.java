@@ -0,0 +1,68 @@
+package de.mpa.db.job.instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.db.job.JobStatus;
+
+public class DeleteJobTest extends TestCase {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("delete", "");
+		dir.delete();
+		dir.mkdir();
+		// results of two uploaded files sharing a filename prefix
+		for (String name : Arrays.asList("sample1", "sample10")) {
+			for (String suffix : Arrays.asList("_target.xml", "_decoy.xml", "_target.out", "_decoy.out", "_qvalued.out",
+					".mgf_target.omx", ".mgf_decoy.omx", ".mgf_target.out", ".mgf_decoy.out", ".mgf_qvalued.out")) {
+				new File(dir, name + suffix).createNewFile();
+			}
+		}
+	}
+
+	@Override
+	protected void tearDown() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testSharedPrefix() {
+		String prefix = dir.getPath() + File.separator;
+		DeleteJob xTandem = new DeleteJob(DeleteJob.getSearchResultFiles(prefix + "sample1_target.xml", prefix + "sample1_decoy.xml"));
+		xTandem.run();
+		DeleteJob omssa = new DeleteJob(DeleteJob.getSearchResultFiles(prefix + "sample1.mgf_target.omx", prefix + "sample1.mgf_decoy.omx"));
+		omssa.run();
+		assertEquals(JobStatus.FINISHED, xTandem.getStatus());
+
+		// only the results of the second file remain
+		List<String> remaining = Arrays.asList(dir.list());
+		assertEquals(10, remaining.size());
+		for (String name : remaining) {
+			assertTrue(name, name.startsWith("sample10"));
+		}
+	}
+
+	@Test
+	public void testTargetOnly() {
+		String prefix = dir.getPath() + File.separator;
+		new DeleteJob(DeleteJob.getSearchResultFiles(prefix + "sample1_target.xml", null)).run();
+		assertFalse(new File(dir, "sample1_target.xml").exists());
+		assertFalse(new File(dir, "sample1_target.out").exists());
+		assertTrue(new File(dir, "sample1_decoy.xml").exists());
+		assertEquals(18, dir.list().length);
+	}
+
+}
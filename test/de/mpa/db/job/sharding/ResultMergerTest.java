@@ -0,0 +1,159 @@
+package de.mpa.db.job.sharding;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class ResultMergerTest extends TestCase {
+
+	private List<File> files = new ArrayList<File>();
+
+	@Override
+	protected void tearDown() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testXTandem() throws Exception {
+		File first = write("<?xml version=\"1.0\"?>\n"
+				+ "<bioml xmlns:GAML=\"http://www.bioml.com/gaml/\" label=\"models\">\n"
+				+ model(1, "first")
+				+ "<group label=\"input parameters\" type=\"parameters\">\n"
+				+ "<note type=\"input\" label=\"spectrum, path\">shard1.mgf</note>\n"
+				+ "</group>\n"
+				+ "</bioml>\n");
+		File second = write("<?xml version=\"1.0\"?>\n"
+				+ "<bioml xmlns:GAML=\"http://www.bioml.com/gaml/\" label=\"models\">\n"
+				+ model(1, "second")
+				+ model(2, "third")
+				+ "<group label=\"input parameters\" type=\"parameters\">\n"
+				+ "<note type=\"input\" label=\"spectrum, path\">shard2.mgf</note>\n"
+				+ "</group>\n"
+				+ "</bioml>\n");
+		File merged = createFile();
+		new XTandemResultMerger().merge(Arrays.asList(first, second), new int[] { 0, 3 }, merged);
+
+		Document document = parse(merged);
+		NodeList groups = document.getDocumentElement().getChildNodes();
+		List<Element> children = new ArrayList<Element>();
+		for (int i = 0; i < groups.getLength(); i++) {
+			if (groups.item(i) instanceof Element) {
+				children.add((Element) groups.item(i));
+			}
+		}
+		assertEquals(4, children.size());
+		assertEquals("1", children.get(0).getAttribute("id"));
+		assertEquals("4", children.get(1).getAttribute("id"));
+		assertEquals("second", children.get(1).getAttribute("label"));
+		assertEquals("5", children.get(2).getAttribute("id"));
+		// parameters of the first shard follow the models
+		assertEquals("parameters", children.get(3).getAttribute("type"));
+		assertEquals("shard1.mgf", children.get(3).getElementsByTagName("note").item(0).getTextContent());
+
+		Element domain = (Element) children.get(2).getElementsByTagName("domain").item(0);
+		assertEquals("5.1.1", domain.getAttribute("id"));
+		assertEquals("PEPTIDER", domain.getAttribute("seq"));
+		Element trace = (Element) children.get(2).getElementsByTagNameNS("http://www.bioml.com/gaml/", "trace").item(0);
+		assertEquals("5", trace.getAttribute("id"));
+		assertEquals("5.spectrum", trace.getAttribute("label"));
+		assertEquals("third spectrum", ((Element) children.get(2).getElementsByTagName("note").item(0)).getTextContent());
+		assertEquals("1 2 3", trace.getTextContent().trim());
+	}
+
+	@Test
+	public void testOmssa() throws Exception {
+		File first = write(omx(new int[] { 0, 1 }, "a"));
+		File second = write(omx(new int[] { 0, 1 }, "b"));
+		File merged = createFile();
+		new OmssaResultMerger().merge(Arrays.asList(first, second), new int[] { 0, 2 }, merged);
+
+		Document document = parse(merged);
+		assertEquals("http://www.ncbi.nlm.nih.gov", document.getDocumentElement().getNamespaceURI());
+		assertEquals("[0, 1, 2, 3]", getTexts(document, "MSSpectrum_number").toString());
+		assertEquals("[0, 1, 2, 3]", getTexts(document, "MSHitSet_number").toString());
+		assertEquals("[a0, a1, b0, b1]", getTexts(document, "MSSpectrum_ids_E").toString());
+		assertEquals("[a0, a1, b0, b1]", getTexts(document, "MSHitSet_ids_E").toString());
+		assertEquals(1, document.getElementsByTagName("MSResponse_scale").getLength());
+	}
+
+	private String model(int id, String label) {
+		return "<group id=\"" + id + "\" mh=\"1000.5\" z=\"2\" expect=\"0.01\" label=\"" + label + "\" type=\"model\">\n"
+				+ "<protein expect=\"-2.0\" id=\"" + id + ".1\" uid=\"42\" label=\"PROT\">\n"
+				+ "<peptide start=\"1\" end=\"8\">\n"
+				+ "<domain id=\"" + id + ".1.1\" start=\"1\" end=\"8\" expect=\"0.01\" seq=\"PEPTIDER\"/>\n"
+				+ "</peptide>\n"
+				+ "</protein>\n"
+				+ "<group label=\"fragment ion mass spectrum\" type=\"support\">\n"
+				+ "<note label=\"Description\">" + label + " spectrum</note>\n"
+				+ "<GAML:trace id=\"" + id + "\" label=\"" + id + ".spectrum\" type=\"tandem mass spectrum\">\n"
+				+ "<GAML:values>1 2 3</GAML:values>\n"
+				+ "</GAML:trace>\n"
+				+ "</group>\n"
+				+ "</group>\n";
+	}
+
+	private String omx(int[] numbers, String prefix) {
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?>\n"
+				+ "<MSSearch xmlns=\"http://www.ncbi.nlm.nih.gov\">\n"
+				+ "<MSSearch_request><MSRequest><MSRequest_spectra><MSSpectrumset>\n");
+		for (int number : numbers) {
+			sb.append("<MSSpectrum><MSSpectrum_number>").append(number).append("</MSSpectrum_number>")
+					.append("<MSSpectrum_ids><MSSpectrum_ids_E>").append(prefix + number)
+					.append("</MSSpectrum_ids_E></MSSpectrum_ids></MSSpectrum>\n");
+		}
+		sb.append("</MSSpectrumset></MSRequest_spectra></MSRequest></MSSearch_request>\n"
+				+ "<MSSearch_response><MSResponse><MSResponse_hitsets>\n");
+		for (int number : numbers) {
+			sb.append("<MSHitSet><MSHitSet_number>").append(number).append("</MSHitSet_number>")
+					.append("<MSHitSet_ids><MSHitSet_ids_E>").append(prefix + number)
+					.append("</MSHitSet_ids_E></MSHitSet_ids></MSHitSet>\n");
+		}
+		sb.append("</MSResponse_hitsets><MSResponse_scale>100</MSResponse_scale></MSResponse></MSSearch_response>\n"
+				+ "</MSSearch>\n");
+		return sb.toString();
+	}
+
+	private List<String> getTexts(Document document, String tagName) {
+		List<String> texts = new ArrayList<String>();
+		NodeList nodes = document.getElementsByTagName(tagName);
+		for (int i = 0; i < nodes.getLength(); i++) {
+			texts.add(nodes.item(i).getTextContent());
+		}
+		return texts;
+	}
+
+	private Document parse(File file) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newDocumentBuilder().parse(file);
+	}
+
+	private File write(String content) throws IOException {
+		File file = createFile();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file;
+	}
+
+	private File createFile() throws IOException {
+		File file = File.createTempFile("shard", ".xml");
+		files.add(file);
+		return file;
+	}
+
+}
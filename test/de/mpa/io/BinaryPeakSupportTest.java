@@ -0,0 +1,59 @@
+package de.mpa.io;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryPeakSupportTest extends TestCase {
+
+	private double[] mzs, intensities;
+
+	private byte[] charges;
+
+	@Before
+	public void setUp() {
+		mzs = new double[] { 100.91263, 129.39695, 130.07421, 512.30011, 759.17698 };
+		intensities = new double[] { 654.0, 3621.5, 10.25, 1.0E6, 568.0 };
+		charges = new byte[] { 0, 2, 0, 1, 0 };
+	}
+
+	@Test
+	public void testLosslessRoundTrip() {
+		assertTrue(Arrays.equals(mzs, BinaryPeakSupport.decodeDoubles(BinaryPeakSupport.encodeDoubles(mzs))));
+		assertTrue(Arrays.equals(intensities, BinaryPeakSupport.decodeDoubles(BinaryPeakSupport.encodeDoubles(intensities))));
+		assertTrue(Arrays.equals(charges, BinaryPeakSupport.decodeCharges(BinaryPeakSupport.encodeCharges(charges))));
+
+		assertNull(BinaryPeakSupport.decodeCharges(BinaryPeakSupport.encodeCharges(new byte[5])));
+		assertNull(BinaryPeakSupport.decodeCharges(BinaryPeakSupport.encodeCharges(null)));
+	}
+
+	@Test
+	public void testCompactRoundTrip() {
+		byte[] mzBlob = BinaryPeakSupport.encode(mzs, PeakCodec.DELTA_FLOAT32);
+		byte[] inBlob = BinaryPeakSupport.encode(intensities, PeakCodec.FLOAT32);
+		assertEquals(BinaryPeakSupport.HEADER_SIZE + mzs.length * 4, mzBlob.length);
+		assertEquals(BinaryPeakSupport.HEADER_SIZE + intensities.length * 4, inBlob.length);
+
+		double[] decodedMzs = BinaryPeakSupport.decodeDoubles(mzBlob);
+		double[] decodedIntensities = BinaryPeakSupport.decodeDoubles(inBlob);
+		for (int i = 0; i < mzs.length; i++) {
+			assertEquals(mzs[i], decodedMzs[i], 1e-4);
+			assertEquals(intensities[i], decodedIntensities[i], intensities[i] * 1e-7);
+		}
+	}
+
+	@Test
+	public void testLegacyDecoding() {
+		byte[] mzText = SixtyFourBitStringSupport.encodeDoublesToBase64String(mzs).getBytes();
+		byte[] chText = SixtyFourBitStringSupport.encodeBytesAsIntsToBase64String(charges).getBytes();
+
+		assertFalse(BinaryPeakSupport.isBinary(mzText));
+		assertTrue(Arrays.equals(mzs, BinaryPeakSupport.decodeDoubles(mzText)));
+		assertTrue(Arrays.equals(charges, BinaryPeakSupport.decodeCharges(chText)));
+		assertNull(BinaryPeakSupport.decodeDoubles(null));
+	}
+
+}
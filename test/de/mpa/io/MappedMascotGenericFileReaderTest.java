@@ -0,0 +1,57 @@
+package de.mpa.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.io.MascotGenericFileReader.LoadMode;
+
+public class MappedMascotGenericFileReaderTest extends TestCase {
+
+	private File file;
+
+	private MappedMascotGenericFileReader reader;
+
+	@Before
+	public void setUp() {
+		file = new File("test/de/mpa/resources/Test_100.mgf");
+		try {
+			reader = new MappedMascotGenericFileReader(file, LoadMode.NONE);
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	@Test
+	public void testSurveySpectra() throws IOException {
+		reader.survey();
+		List<Long> spectrumPositions = reader.getSpectrumPositions(false);
+
+		assertEquals(100, spectrumPositions.size());
+
+		MascotGenericFileReader rafReader = new MascotGenericFileReader(file, LoadMode.SURVEY);
+		assertEquals(rafReader.getSpectrumPositions(), spectrumPositions);
+
+		reader.close();
+	}
+
+	@Test
+	public void testLoadSpectra() throws IOException {
+		reader.load();
+		List<MascotGenericFile> spectrumFiles = reader.getSpectrumFiles();
+
+		assertEquals(100, spectrumFiles.size());
+
+		assertEquals(79.299714, spectrumFiles.get(0).getHighestIntensity(), 0.01);
+		assertEquals(103.3638582, spectrumFiles.get(0).getTotalIntensity(), 0.01);
+
+		assertEquals(832.62274, spectrumFiles.get(99).getHighestIntensity(), 0.01);
+		assertEquals(6371.3626816, spectrumFiles.get(99).getTotalIntensity(), 0.01);
+	}
+
+}
@@ -0,0 +1,57 @@
+package de.mpa.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.io.MascotGenericFileReader.LoadMode;
+
+public class MascotGenericFileIndexTest extends TestCase {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		File tempDir = Files.createTempDirectory("mgfidx").toFile();
+		tempDir.deleteOnExit();
+		file = new File(tempDir, "Test_100.mgf");
+		Files.copy(new File("test/de/mpa/resources/Test_100.mgf").toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		file.deleteOnExit();
+		MascotGenericFileIndex.getIndexFile(file).deleteOnExit();
+	}
+
+	@Test
+	public void testBuildAndReadIndex() throws IOException {
+		assertNull(MascotGenericFileIndex.read(file));
+
+		MascotGenericFileReader reader = new MappedMascotGenericFileReader(file, LoadMode.NONE);
+		MascotGenericFileIndex index = reader.index();
+		assertTrue(MascotGenericFileIndex.getIndexFile(file).exists());
+		assertEquals(100, index.size());
+
+		MascotGenericFileIndex readIndex = MascotGenericFileIndex.read(file);
+		assertNotNull(readIndex);
+		assertEquals(index.getPositions(), readIndex.getPositions());
+
+		MascotGenericFile first = reader.loadSpectrum(0);
+		assertEquals(first.getTitle(), readIndex.getTitle(0));
+		assertEquals(first.getPrecursorMZ(), readIndex.getPrecursorMz(0), 1e-9);
+		assertEquals(first.getCharge(), readIndex.getCharge(0));
+		assertEquals(first.getPeaks().size(), readIndex.getPeakCount(0));
+		assertEquals(103.3638582, readIndex.getTotalIntensity(0), 0.01);
+		assertEquals(6371.3626816, readIndex.getTotalIntensity(99), 0.01);
+		reader.close();
+
+		// a modified file invalidates the index
+		assertTrue(file.setLastModified(file.lastModified() - 10000L));
+		assertNull(MascotGenericFileIndex.read(file));
+	}
+
+}
@@ -0,0 +1,64 @@
+package de.mpa.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.io.MascotGenericFileReader.LoadMode;
+
+public class MascotGenericFileIteratorTest extends TestCase {
+
+	private File file;
+
+	@Before
+	public void setUp() {
+		file = new File("test/de/mpa/resources/Test_100.mgf");
+	}
+
+	@Test
+	public void testStreamSpectra() throws IOException {
+		List<MascotGenericFile> spectra = new MascotGenericFileReader(file, LoadMode.LOAD).getSpectrumFiles();
+
+		MascotGenericFileReader reader = new MascotGenericFileReader(file, LoadMode.NONE);
+		MascotGenericFileIterator iterator = reader.iterator();
+		int count = 0;
+		while (iterator.hasNext()) {
+			MascotGenericFile expected = spectra.get(count++);
+			MascotGenericFile actual = iterator.next();
+			assertEquals(expected.getFilename(), actual.getFilename());
+			assertEquals(expected.getTitle(), actual.getTitle());
+			assertEquals(expected.getPrecursorMZ(), actual.getPrecursorMZ());
+			assertEquals(expected.getCharge(), actual.getCharge());
+			assertTrue(Arrays.equals(expected.getMzArray(), actual.getMzArray()));
+			assertTrue(Arrays.equals(expected.getIntensityArray(), actual.getIntensityArray()));
+		}
+		assertEquals(100, count);
+
+		try {
+			iterator.next();
+			fail();
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+		reader.close();
+	}
+
+	@Test
+	public void testCloseEarly() throws IOException {
+		MascotGenericFileReader reader = new MascotGenericFileReader(file, LoadMode.NONE);
+		MascotGenericFileIterator iterator = reader.iterator();
+		assertTrue(iterator.hasNext());
+		assertNotNull(iterator.next().getTitle());
+		iterator.close();
+		assertFalse(iterator.hasNext());
+		reader.close();
+	}
+
+}
@@ -40,4 +40,19 @@ public class MascotGenericFileReaderTest extends TestCase {
 		assertEquals(100, spectrumFiles.size());
 
 	}
+	
+	@Test
+	public void testLoadSpectraParallel() throws IOException {
+		List<MascotGenericFile> expected = new MascotGenericFileReader(
+				new File("test/de/mpa/resources/Test_100.mgf"), LoadMode.LOAD).getSpectrumFiles();
+		
+		reader.loadParallel(4);
+		List<MascotGenericFile> spectrumFiles = reader.getSpectrumFiles();
+		assertEquals(expected.size(), spectrumFiles.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getFilename(), spectrumFiles.get(i).getFilename());
+			assertEquals(expected.get(i).getTitle(), spectrumFiles.get(i).getTitle());
+			assertEquals(expected.get(i).getPeakCount(), spectrumFiles.get(i).getPeakCount());
+		}
+	}
 }
@@ -0,0 +1,92 @@
+package de.mpa.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.io.MascotGenericFileReader.LoadMode;
+
+public class MascotGenericFileSplitterTest extends TestCase {
+
+	private File file;
+
+	@Before
+	public void setUp() {
+		file = new File("test/de/mpa/resources/Test_100.mgf");
+	}
+
+	@Test
+	public void testCountSpectra() throws IOException {
+		assertEquals(100, MascotGenericFileSplitter.countSpectra(file));
+	}
+
+	@Test
+	public void testSplit() throws IOException {
+		List<MascotGenericFile> spectra = new MascotGenericFileReader(file, LoadMode.LOAD).getSpectrumFiles();
+		List<File> shardFiles = createShardFiles(3);
+		try {
+			int[] sizes = MascotGenericFileSplitter.split(file, shardFiles);
+			assertEquals(34, sizes[0]);
+			assertEquals(33, sizes[1]);
+			assertEquals(33, sizes[2]);
+
+			// consecutive spectra in original order
+			int index = 0;
+			for (int i = 0; i < shardFiles.size(); i++) {
+				List<MascotGenericFile> shard = new MascotGenericFileReader(shardFiles.get(i), LoadMode.LOAD).getSpectrumFiles();
+				assertEquals(sizes[i], shard.size());
+				for (MascotGenericFile actual : shard) {
+					MascotGenericFile expected = spectra.get(index++);
+					assertEquals(expected.getTitle(), actual.getTitle());
+					assertEquals(expected.getPrecursorMZ(), actual.getPrecursorMZ());
+					assertTrue(Arrays.equals(expected.getMzArray(), actual.getMzArray()));
+				}
+			}
+			assertEquals(spectra.size(), index);
+		} finally {
+			delete(shardFiles);
+		}
+	}
+
+	@Test
+	public void testMoreShardsThanSpectra() throws IOException {
+		File small = new File("test/de/mpa/resources/Test_4.mgf");
+		List<File> shardFiles = createShardFiles(6);
+		try {
+			int[] sizes = MascotGenericFileSplitter.split(small, shardFiles);
+			int total = 0;
+			for (int i = 0; i < sizes.length; i++) {
+				assertTrue(shardFiles.get(i).exists());
+				assertEquals(sizes[i], MascotGenericFileSplitter.countSpectra(shardFiles.get(i)));
+				total += sizes[i];
+			}
+			assertEquals(MascotGenericFileSplitter.countSpectra(small), total);
+		} finally {
+			delete(shardFiles);
+		}
+	}
+
+	private List<File> createShardFiles(int count) throws IOException {
+		List<File> shardFiles = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			File shardFile = File.createTempFile("shard" + i, ".mgf");
+			shardFile.deleteOnExit();
+			shardFiles.add(shardFile);
+		}
+		return shardFiles;
+	}
+
+	private void delete(List<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+}
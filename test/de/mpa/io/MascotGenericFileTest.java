@@ -0,0 +1,38 @@
+package de.mpa.io;
+
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class MascotGenericFileTest extends TestCase {
+
+	@Test
+	public void testPeakArrays() {
+		String contents = "BEGIN IONS\nTITLE=test\nPEPMASS=500.0 100.0\nCHARGE=2+\n"
+				+ "300.0 30.0\n100.0 10.0 1+\n200.0 20.0\n100.0 15.0 2+\nEND IONS\n";
+		MascotGenericFile mgf = new MascotGenericFile("test.mgf", contents);
+
+		// peaks are sorted by m/z, duplicate m/z keep the last peak
+		assertEquals(3, mgf.getPeakCount());
+		assertEquals(100.0, mgf.getMzArray()[0], 0.0);
+		assertEquals(15.0, mgf.getIntensityArray()[0], 0.0);
+		assertEquals(2, mgf.getChargeArray()[0]);
+		assertEquals(0, mgf.getChargeArray()[1]);
+		assertEquals(300.0, mgf.getMzArray()[2], 0.0);
+		assertEquals(65.0, mgf.getTotalIntensity(), 0.01);
+
+		// compatibility views
+		HashMap<Double, Double> peaks = mgf.getPeaks();
+		assertEquals(3, peaks.size());
+		assertEquals(20.0, peaks.get(200.0), 0.0);
+		assertEquals(1, mgf.getCharges().size());
+		assertEquals(2, mgf.getCharges().get(100.0).intValue());
+
+		// round trip through MGF text
+		MascotGenericFile copy = new MascotGenericFile("test.mgf", mgf.toString());
+		assertEquals(mgf, copy);
+	}
+
+}
@@ -0,0 +1,94 @@
+package de.mpa.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.mpa.io.MascotGenericFileReader.LoadMode;
+
+public class PeakCodecTest extends TestCase {
+
+	private double[] mzs, intensities;
+
+	@Before
+	public void setUp() throws IOException {
+		File file = new File("test/de/mpa/resources/Test_4.mgf");
+		MascotGenericFile mgf = new MascotGenericFileReader(file, LoadMode.LOAD).getSpectrumFiles().get(0);
+		mzs = mgf.getMzArray();
+		intensities = mgf.getIntensityArray();
+	}
+
+	@Test
+	public void testLosslessRoundTrip() {
+		assertTrue(Arrays.equals(mzs, decode(encode(mzs, PeakCodec.FLOAT64))));
+		assertTrue(Arrays.equals(new double[0], decode(encode(new double[0], PeakCodec.FLOAT64))));
+	}
+
+	@Test
+	public void testLinearRoundTrip() {
+		byte[] blob = encode(mzs, PeakCodec.NUMPRESS_LINEAR);
+		assertTrue(blob.length < mzs.length * 8);
+		double[] decoded = decode(blob);
+		assertEquals(mzs.length, decoded.length);
+		for (int i = 0; i < mzs.length; i++) {
+			assertEquals(mzs[i], decoded[i], 1e-6);
+		}
+
+		// irregular spacing, negative values and large jumps
+		double[] values = { -512.25, 0.0, 3.5, 3.5, 1999.99, 17.125, -1999.99, 0.001 };
+		decoded = decode(encode(values, PeakCodec.NUMPRESS_LINEAR));
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], decoded[i], 1e-6);
+		}
+
+		for (double[] small : new double[][] { {}, { 42.0 }, { 42.0, 43.0 }, { 0.0, 0.0, 0.0 } }) {
+			decoded = decode(encode(small, PeakCodec.NUMPRESS_LINEAR));
+			assertEquals(small.length, decoded.length);
+			for (int i = 0; i < small.length; i++) {
+				assertEquals(small[i], decoded[i], 1e-6);
+			}
+		}
+	}
+
+	@Test
+	public void testSlofRoundTrip() {
+		double[] values = Arrays.copyOf(intensities, intensities.length + 2);
+		values[values.length - 2] = 0.0;
+		values[values.length - 1] = 1.0E7;
+		byte[] blob = encode(values, PeakCodec.NUMPRESS_SLOF);
+		assertEquals(BinaryPeakSupport.HEADER_SIZE + 8 + values.length * 2, blob.length);
+		double[] decoded = decode(blob);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], decoded[i], (values[i] + 1.0) * 5e-4);
+		}
+	}
+
+	@Test
+	public void testTransparentDecoding() {
+		for (PeakCodec codec : PeakCodec.values()) {
+			assertEquals(codec, PeakCodec.valueOf(codec.getId()));
+			String encoded = SixtyFourBitStringSupport.encodeDoublesToBase64String(mzs, codec);
+			double[] decoded = SixtyFourBitStringSupport.decodeBase64StringToDoubles(encoded);
+			assertEquals(mzs.length, decoded.length);
+			for (int i = 0; i < mzs.length; i++) {
+				assertEquals(mzs[i], decoded[i], mzs[i] * 5e-4);
+			}
+		}
+		String legacy = SixtyFourBitStringSupport.encodeDoublesToBase64String(mzs);
+		assertTrue(Arrays.equals(mzs, SixtyFourBitStringSupport.decodeBase64StringToDoubles(legacy)));
+	}
+
+	private static byte[] encode(double[] values, PeakCodec codec) {
+		return BinaryPeakSupport.encode(values, codec);
+	}
+
+	private static double[] decode(byte[] blob) {
+		return BinaryPeakSupport.decodeDoubles(blob);
+	}
+
+}
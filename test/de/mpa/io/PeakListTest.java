@@ -0,0 +1,44 @@
+package de.mpa.io;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class PeakListTest extends TestCase {
+
+	@Test
+	public void testSelectHighest() {
+		Random random = new Random(42L);
+		PeakList peakList = null;
+		for (int n = 0; n < 200; n += 7) {
+			double[] mzs = new double[n];
+			double[] intensities = new double[n];
+			for (int i = 0; i < n; i++) {
+				mzs[i] = 100.0 + i;
+				// coarse values to provoke ties
+				intensities[i] = random.nextInt(50);
+			}
+			for (int k = 1; k <= n + 1; k += 3) {
+				peakList = PeakList.selectHighest(mzs, intensities, k, peakList);
+				int expSize = Math.min(k, n);
+				assertEquals(expSize, peakList.size());
+
+				// selected intensities must equal the top k of the sorted intensities
+				double[] sorted = intensities.clone();
+				Arrays.sort(sorted);
+				double[] selected = Arrays.copyOf(peakList.getIntensityArray(), expSize);
+				Arrays.sort(selected);
+				assertTrue(Arrays.equals(Arrays.copyOfRange(sorted, n - expSize, n), selected));
+
+				// selected peaks are in ascending m/z order
+				for (int i = 1; i < expSize; i++) {
+					assertTrue(peakList.getMz(i - 1) < peakList.getMz(i));
+				}
+			}
+		}
+	}
+
+}
@@ -1,9 +1,12 @@
 package de.mpa.io;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.TreeMap;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.codec.binary.Base64;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -37,4 +40,26 @@ public class SixtyFourBitStringDecoderTest extends TestCase {
 		assertEquals(129.39695, charges.firstKey(), 1e-4);
 		assertEquals(2, charges.firstEntry().getValue().intValue());
 	}
+
+	@Test
+	public void testDirectDecoding() {
+		double[] expected = decodeWithCodec(mzString);
+		assertTrue(Arrays.equals(expected, SixtyFourBitStringSupport.decodeBase64StringToDoubles(mzString)));
+		assertTrue(Arrays.equals(expected, SixtyFourBitStringSupport.decodeBase64ToDoubles(mzString.getBytes())));
+
+		// chunked Base64 output containing line breaks
+		String chunked = inString.replaceAll("(.{76})", "$1\r\n");
+		assertTrue(Arrays.equals(decodeWithCodec(inString), SixtyFourBitStringSupport.decodeBase64StringToDoubles(chunked)));
+
+		// unpadded input
+		assertTrue(Arrays.equals(expected, SixtyFourBitStringSupport.decodeBase64StringToDoubles(mzString.replace("=", ""))));
+		assertEquals(0, SixtyFourBitStringSupport.decodeBase64StringToDoubles("").length);
+	}
+
+	private static double[] decodeWithCodec(String encodedString) {
+		byte[] bytes = Base64.decodeBase64(encodedString);
+		double[] res = new double[bytes.length / 8];
+		ByteBuffer.wrap(bytes).asDoubleBuffer().get(res);
+		return res;
+	}
 }